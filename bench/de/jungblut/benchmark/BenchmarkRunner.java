@@ -0,0 +1,30 @@
+package de.jungblut.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmark jar. Runs all benchmarks (or the ones matching
+ * the regex given as first argument) with the GC profiler attached, so every
+ * result reports its normalized allocation rate next to the throughput.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public final class BenchmarkRunner {
+
+  private BenchmarkRunner() {
+    throw new IllegalAccessError();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    String include = args.length > 0 ? args[0] : ".*Benchmark.*";
+    Options opt = new OptionsBuilder().include(include)
+        .addProfiler(GCProfiler.class).forks(1).build();
+    new Runner(opt).run();
+  }
+
+}
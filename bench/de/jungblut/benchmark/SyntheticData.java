@@ -0,0 +1,93 @@
+package de.jungblut.benchmark;
+
+import java.util.Random;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.sparse.SparseDoubleVector;
+
+/**
+ * Seeded synthetic data generators for the benchmarks, so that every run
+ * measures on exactly the same input.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public final class SyntheticData {
+
+  public static final long SEED = 0xC0FFEEL;
+
+  private SyntheticData() {
+    throw new IllegalAccessError();
+  }
+
+  /**
+   * @return a new random seeded with {@link #SEED}.
+   */
+  public static Random newRandom() {
+    return new Random(SEED);
+  }
+
+  /**
+   * Creates dense vectors with uniform values between -1 and 1.
+   * 
+   * @param n the number of vectors.
+   * @param dimension the dimension of each vector.
+   */
+  public static DoubleVector[] denseVectors(int n, int dimension, Random rnd) {
+    DoubleVector[] vectors = new DoubleVector[n];
+    for (int i = 0; i < n; i++) {
+      double[] arr = new double[dimension];
+      for (int j = 0; j < dimension; j++) {
+        arr[j] = rnd.nextDouble() * 2d - 1d;
+      }
+      vectors[i] = new DenseDoubleVector(arr);
+    }
+    return vectors;
+  }
+
+  /**
+   * Creates vectors where each element is zero with the given sparsity. A
+   * sparsity of zero yields dense vectors, everything above yields
+   * {@link SparseDoubleVector}s.
+   * 
+   * @param n the number of vectors.
+   * @param dimension the dimension of each vector.
+   * @param sparsity the fraction of zero elements between 0 and 1.
+   * @param counts if true the non-zero values are positive integer counts
+   *          (like term frequencies), else uniform between 0 and 1.
+   */
+  public static DoubleVector[] sparseVectors(int n, int dimension,
+      double sparsity, boolean counts, Random rnd) {
+    DoubleVector[] vectors = new DoubleVector[n];
+    for (int i = 0; i < n; i++) {
+      DoubleVector v = sparsity > 0d ? new SparseDoubleVector(dimension)
+          : new DenseDoubleVector(dimension);
+      for (int j = 0; j < dimension; j++) {
+        if (rnd.nextDouble() >= sparsity) {
+          v.set(j, counts ? 1 + rnd.nextInt(5) : rnd.nextDouble());
+        }
+      }
+      vectors[i] = v;
+    }
+    return vectors;
+  }
+
+  /**
+   * Creates random outcome vectors, binary classes are encoded as a single
+   * element, more classes as a one-hot vector.
+   */
+  public static DenseDoubleVector[] outcomes(int n, int numClasses, Random rnd) {
+    DenseDoubleVector[] outcome = new DenseDoubleVector[n];
+    for (int i = 0; i < n; i++) {
+      if (numClasses == 2) {
+        outcome[i] = new DenseDoubleVector(new double[] { rnd.nextInt(2) });
+      } else {
+        outcome[i] = new DenseDoubleVector(numClasses);
+        outcome[i].set(rnd.nextInt(numClasses), 1d);
+      }
+    }
+    return outcome;
+  }
+
+}
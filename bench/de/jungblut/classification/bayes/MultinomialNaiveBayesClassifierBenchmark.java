@@ -0,0 +1,62 @@
+package de.jungblut.classification.bayes;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.jungblut.benchmark.SyntheticData;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MultinomialNaiveBayesClassifierBenchmark {
+
+  private static final int NUM_DOCUMENTS = 1024;
+
+  @Param({ "2", "50" })
+  public int numClasses;
+
+  @Param({ "10000", "100000" })
+  public int vocabularySize;
+
+  @Param({ "0.999", "0.99" })
+  public double sparsity;
+
+  @Param({ "false", "true" })
+  public boolean sparseModel;
+
+  private MultinomialNaiveBayesClassifier classifier;
+  private DoubleVector[] documents;
+  private int documentIndex;
+
+  @Setup
+  public void setup() {
+    Random rnd = SyntheticData.newRandom();
+    documents = SyntheticData.sparseVectors(NUM_DOCUMENTS, vocabularySize,
+        sparsity, true, rnd);
+    // encode the classes always as index, so the binary case works as well
+    DenseDoubleVector[] outcome = new DenseDoubleVector[NUM_DOCUMENTS];
+    for (int i = 0; i < NUM_DOCUMENTS; i++) {
+      outcome[i] = new DenseDoubleVector(new double[] { i % numClasses });
+    }
+    classifier = new MultinomialNaiveBayesClassifier(sparseModel);
+    classifier.train(documents, outcome);
+  }
+
+  @Benchmark
+  public DoubleVector predict() {
+    return classifier
+        .predict(documents[documentIndex++ & (NUM_DOCUMENTS - 1)]);
+  }
+
+}
@@ -0,0 +1,100 @@
+package de.jungblut.classification.nn;
+
+import static de.jungblut.math.activation.ActivationFunctionSelector.LINEAR;
+import static de.jungblut.math.activation.ActivationFunctionSelector.SIGMOID;
+import static de.jungblut.math.activation.ActivationFunctionSelector.SOFTMAX;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import de.jungblut.benchmark.SyntheticData;
+import de.jungblut.classification.nn.MultilayerPerceptron.Precision;
+import de.jungblut.classification.nn.MultilayerPerceptron.TrainingType;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.activation.ActivationFunction;
+import de.jungblut.math.dense.DenseDoubleMatrix;
+import de.jungblut.math.minimize.Fmincg;
+import de.jungblut.math.tuple.Tuple;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MultilayerPerceptronCostFunctionBenchmark {
+
+  @Param({ "1000", "10000" })
+  public int rows;
+
+  @Param({ "100" })
+  public int inputs;
+
+  @Param({ "32", "256" })
+  public int hidden;
+
+  @Param({ "10" })
+  public int outputs;
+
+  @Param({ "0.0", "0.9" })
+  public double sparsity;
+
+  @Param({ "0.0", "0.1" })
+  public double lambda;
+
+  @Param({ "CPU", "JAVA" })
+  public TrainingType trainingType;
+
+  @Param({ "1", "4" })
+  public int numThreads;
+
+  @Param({ "DOUBLE", "FLOAT" })
+  public Precision precision;
+
+  private MultilayerPerceptronCostFunction costFunction;
+  private DoubleVector theta;
+  private double[] gradient;
+
+  @Setup
+  public void setup() {
+    MultilayerPerceptron.SEED = SyntheticData.SEED;
+    Random rnd = SyntheticData.newRandom();
+    MultilayerPerceptron mlp = MultilayerPerceptron.MultilayerPerceptronConfiguration
+        .newConfiguration(
+            new int[] { inputs, hidden, outputs },
+            new ActivationFunction[] { LINEAR.get(), SIGMOID.get(),
+                SOFTMAX.get() }, new Fmincg(), 1)
+        .trainingType(trainingType).numThreads(numThreads)
+        .precision(precision).build();
+    DenseDoubleMatrix x = new DenseDoubleMatrix(SyntheticData.sparseVectors(
+        rows, inputs, sparsity, false, rnd));
+    DenseDoubleMatrix y = new DenseDoubleMatrix(SyntheticData.outcomes(rows,
+        outputs, rnd));
+    costFunction = new MultilayerPerceptronCostFunction(mlp, x, y, lambda);
+    theta = mlp.getFoldedThetaVector();
+    gradient = new double[theta.getDimension()];
+  }
+
+  @TearDown
+  public void tearDown() {
+    costFunction.close();
+  }
+
+  @Benchmark
+  public Tuple<Double, DoubleVector> evaluateCost() {
+    return costFunction.evaluateCost(theta);
+  }
+
+  @Benchmark
+  public double evaluateCostInPlace() {
+    return costFunction.evaluateCost(theta, gradient);
+  }
+
+}
@@ -0,0 +1,83 @@
+package de.jungblut.classification.nn;
+
+import static de.jungblut.math.activation.ActivationFunctionSelector.LINEAR;
+import static de.jungblut.math.activation.ActivationFunctionSelector.SIGMOID;
+import static de.jungblut.math.activation.ActivationFunctionSelector.SOFTMAX;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.jungblut.benchmark.SyntheticData;
+import de.jungblut.classification.nn.MultilayerPerceptron.Precision;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.activation.ActivationFunction;
+import de.jungblut.math.dense.DenseDoubleMatrix;
+import de.jungblut.math.minimize.Fmincg;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MultilayerPerceptronPredictionBenchmark {
+
+  @Param({ "10000" })
+  public int rows;
+
+  @Param({ "100" })
+  public int inputs;
+
+  @Param({ "32", "256" })
+  public int hidden;
+
+  @Param({ "10" })
+  public int outputs;
+
+  @Param({ "DOUBLE", "FLOAT" })
+  public Precision precision;
+
+  private MultilayerPerceptron mlp;
+  private QuantizedMultilayerPerceptron quantized;
+  private DoubleVector[] features;
+
+  @Setup
+  public void setup() {
+    MultilayerPerceptron.SEED = SyntheticData.SEED;
+    mlp = MultilayerPerceptron.MultilayerPerceptronConfiguration
+        .newConfiguration(
+            new int[] { inputs, hidden, outputs },
+            new ActivationFunction[] { LINEAR.get(), SIGMOID.get(),
+                SOFTMAX.get() }, new Fmincg(), 1).precision(precision)
+        .build();
+    quantized = QuantizedMultilayerPerceptron.quantize(mlp);
+    features = SyntheticData.denseVectors(rows, inputs,
+        SyntheticData.newRandom());
+  }
+
+  @Benchmark
+  public void predictSingle(Blackhole bh) {
+    for (DoubleVector v : features) {
+      bh.consume(mlp.predict(v));
+    }
+  }
+
+  @Benchmark
+  public void predictSingleQuantized(Blackhole bh) {
+    for (DoubleVector v : features) {
+      bh.consume(quantized.predict(v));
+    }
+  }
+
+  @Benchmark
+  public DenseDoubleMatrix predictBatch() {
+    return mlp.predictBatch(features);
+  }
+
+}
@@ -0,0 +1,53 @@
+package de.jungblut.clustering;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.jungblut.benchmark.SyntheticData;
+import de.jungblut.distance.EuclidianDistance;
+import de.jungblut.math.DoubleVector;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class KMeansClusteringBenchmark {
+
+  private static final int ITERATIONS = 5;
+
+  @Param({ "10000" })
+  public int size;
+
+  @Param({ "2", "50" })
+  public int dimension;
+
+  @Param({ "0.0", "0.9" })
+  public double sparsity;
+
+  @Param({ "10", "100" })
+  public int k;
+
+  private DoubleVector[] vectors;
+
+  @Setup
+  public void setup() {
+    vectors = SyntheticData.sparseVectors(size, dimension, sparsity, false,
+        SyntheticData.newRandom());
+  }
+
+  @Benchmark
+  public ArrayList<DoubleVector>[] cluster() {
+    // seed with the first k vectors, so every invocation does the same work
+    KMeansClustering clustering = new KMeansClustering(k, vectors, false);
+    return clustering.cluster(ITERATIONS, EuclidianDistance.get(), 0d, false);
+  }
+
+}
@@ -0,0 +1,71 @@
+package de.jungblut.datastructure;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.jungblut.benchmark.SyntheticData;
+import de.jungblut.datastructure.KDTree.VectorDistanceTuple;
+import de.jungblut.math.DoubleVector;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class KDTreeBenchmark {
+
+  private static final int NUM_QUERIES = 1024;
+
+  @Param({ "1000", "100000" })
+  public int size;
+
+  @Param({ "2", "3", "16" })
+  public int dimension;
+
+  @Param({ "10" })
+  public int k;
+
+  private KDTree<Integer> tree;
+  private FlatKDTree<Integer> flatTree;
+  private DoubleVector[] queries;
+  private int queryIndex;
+
+  @Setup
+  public void setup() {
+    Random rnd = SyntheticData.newRandom();
+    DoubleVector[] points = SyntheticData.denseVectors(size, dimension, rnd);
+    tree = new KDTree<>();
+    for (int i = 0; i < points.length; i++) {
+      tree.add(points[i], i);
+    }
+    tree.balanceBySort();
+    Integer[] indices = new Integer[points.length];
+    for (int i = 0; i < points.length; i++) {
+      indices[i] = i;
+    }
+    flatTree = new FlatKDTree<>(Arrays.asList(points), Arrays.asList(indices));
+    queries = SyntheticData.denseVectors(NUM_QUERIES, dimension, rnd);
+  }
+
+  @Benchmark
+  public List<VectorDistanceTuple<Integer>> getNearestNeighbours() {
+    DoubleVector query = queries[queryIndex++ & (NUM_QUERIES - 1)];
+    return tree.getNearestNeighbours(query, k);
+  }
+
+  @Benchmark
+  public List<VectorDistanceTuple<Integer>> getNearestNeighboursFlat() {
+    DoubleVector query = queries[queryIndex++ & (NUM_QUERIES - 1)];
+    return flatTree.getNearestNeighbours(query, k);
+  }
+
+}
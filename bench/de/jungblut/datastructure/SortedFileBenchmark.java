@@ -0,0 +1,101 @@
+package de.jungblut.datastructure;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.io.IntWritable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import de.jungblut.benchmark.SyntheticData;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SortedFileBenchmark {
+
+  private static final int NUM_SEGMENTS = 8;
+
+  @Param({ "100000", "1000000" })
+  public int numItems;
+
+  @Param({ "65536", "1048576" })
+  public int bufferSize;
+
+  private File baseDir;
+  private IntWritable[] items;
+  private List<File> segments;
+  private int run;
+
+  @Setup
+  public void setup() throws IOException {
+    baseDir = Files.createTempDirectory("sortedfile-bench").toFile();
+    Random rnd = SyntheticData.newRandom();
+    items = new IntWritable[numItems];
+    for (int i = 0; i < numItems; i++) {
+      items[i] = new IntWritable(rnd.nextInt());
+    }
+    // prepare sorted segments in the intermediate format for the merger
+    segments = new ArrayList<>();
+    final int itemsPerSegment = numItems / NUM_SEGMENTS;
+    for (int s = 0; s < NUM_SEGMENTS; s++) {
+      File segment = new File(baseDir, "segment_" + s + ".bin");
+      try (SortedFile<IntWritable> file = new SortedFile<>(new File(baseDir,
+          "spill_" + s).getAbsolutePath(), segment.getAbsolutePath(),
+          bufferSize, IntWritable.class, true)) {
+        for (int i = s * itemsPerSegment; i < (s + 1) * itemsPerSegment; i++) {
+          file.collect(items[i]);
+        }
+      }
+      segments.add(segment);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    FileUtil.fullyDelete(baseDir);
+  }
+
+  @TearDown(Level.Invocation)
+  public void cleanupRun() {
+    new File(baseDir, "collected_" + run + ".bin").delete();
+    new File(baseDir, "merged_" + run + ".bin").delete();
+    run++;
+  }
+
+  @Benchmark
+  public File collectAndClose() throws IOException {
+    File out = new File(baseDir, "collected_" + run + ".bin");
+    try (SortedFile<IntWritable> file = new SortedFile<>(new File(baseDir,
+        "spill_run_" + run).getAbsolutePath(), out.getAbsolutePath(),
+        bufferSize, IntWritable.class)) {
+      for (IntWritable item : items) {
+        file.collect(item);
+      }
+    }
+    return out;
+  }
+
+  @Benchmark
+  public File merge() throws IOException {
+    File out = new File(baseDir, "merged_" + run + ".bin");
+    // intermediate merging keeps the input segments, so we can rerun it
+    Merger.mergeIntermediate(IntWritable.class, out, segments);
+    return out;
+  }
+
+}
@@ -0,0 +1,92 @@
+package de.jungblut.math.minimize;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.jungblut.benchmark.SyntheticData;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.tuple.Tuple;
+
+/**
+ * Runs a fixed number of conjugate gradient iterations on a badly scaled
+ * quadratic. Run it with the GC profiler (see BenchmarkRunner) to compare the
+ * allocation rate of the minimizer, the in-place cost function only allocates
+ * inside the minimizer itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FmincgBenchmark {
+
+  @Param({ "10000", "1000000" })
+  public int dimension;
+
+  @Param({ "10" })
+  public int iterations;
+
+  @Param({ "true", "false" })
+  public boolean inPlace;
+
+  private CostFunction costFunction;
+  private DoubleVector start;
+
+  @Setup
+  public void setup() {
+    Random rnd = SyntheticData.newRandom();
+    final double[] weights = new double[dimension];
+    double[] x = new double[dimension];
+    for (int i = 0; i < dimension; i++) {
+      weights[i] = 1d + rnd.nextDouble() * 100d;
+      x[i] = rnd.nextDouble() * 2d - 1d;
+    }
+    start = new DenseDoubleVector(x);
+    // f(x) = sum w_i * (x_i - 1)^2
+    final InPlaceCostFunction quadratic = new InPlaceCostFunction() {
+      @Override
+      public double evaluateCost(DoubleVector input, double[] gradient) {
+        double cost = 0d;
+        for (int i = 0; i < gradient.length; i++) {
+          double diff = input.get(i) - 1d;
+          cost += weights[i] * diff * diff;
+          gradient[i] = 2d * weights[i] * diff;
+        }
+        return cost;
+      }
+
+      @Override
+      public Tuple<Double, DoubleVector> evaluateCost(DoubleVector input) {
+        double[] gradient = new double[input.getDimension()];
+        double cost = evaluateCost(input, gradient);
+        return new Tuple<Double, DoubleVector>(cost, new DenseDoubleVector(
+            gradient));
+      }
+    };
+    if (inPlace) {
+      costFunction = quadratic;
+    } else {
+      // hide the in-place evaluation from the minimizer
+      costFunction = new CostFunction() {
+        @Override
+        public Tuple<Double, DoubleVector> evaluateCost(DoubleVector input) {
+          return quadratic.evaluateCost(input);
+        }
+      };
+    }
+  }
+
+  @Benchmark
+  public DoubleVector minimize() {
+    return Fmincg.minimizeFunction(costFunction, start, iterations, false);
+  }
+
+}
@@ -0,0 +1,53 @@
+package de.jungblut.nlp;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.jungblut.benchmark.SyntheticData;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.nlp.MinHash.HashType;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MinHashBenchmark {
+
+  private static final int NUM_VECTORS = 256;
+
+  @Param({ "10", "100" })
+  public int numHashes;
+
+  @Param({ "LINEAR", "MURMUR128" })
+  public HashType hashType;
+
+  @Param({ "10000" })
+  public int dimension;
+
+  @Param({ "0.99", "0.9" })
+  public double sparsity;
+
+  private MinHash minHash;
+  private DoubleVector[] vectors;
+  private int vectorIndex;
+
+  @Setup
+  public void setup() {
+    minHash = MinHash.create(numHashes, hashType, SyntheticData.SEED);
+    vectors = SyntheticData.sparseVectors(NUM_VECTORS, dimension, sparsity,
+        true, SyntheticData.newRandom());
+  }
+
+  @Benchmark
+  public int[] minHashVector() {
+    return minHash.minHashVector(vectors[vectorIndex++ & (NUM_VECTORS - 1)]);
+  }
+
+}
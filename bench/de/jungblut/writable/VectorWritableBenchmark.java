@@ -0,0 +1,64 @@
+package de.jungblut.writable;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.jungblut.benchmark.SyntheticData;
+import de.jungblut.math.DoubleVector;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VectorWritableBenchmark {
+
+  @Param({ "100", "10000" })
+  public int dimension;
+
+  // zero sparsity benchmarks the dense vector serialization
+  @Param({ "0.0", "0.99" })
+  public double sparsity;
+
+  private DoubleVector vector;
+  private DataOutputBuffer outputBuffer;
+  private DataInputBuffer inputBuffer;
+  private byte[] serialized;
+  private int serializedLength;
+
+  @Setup
+  public void setup() throws IOException {
+    vector = SyntheticData.sparseVectors(1, dimension, sparsity, false,
+        SyntheticData.newRandom())[0];
+    outputBuffer = new DataOutputBuffer();
+    inputBuffer = new DataInputBuffer();
+    VectorWritable.writeVector(vector, outputBuffer);
+    serializedLength = outputBuffer.getLength();
+    serialized = new byte[serializedLength];
+    System.arraycopy(outputBuffer.getData(), 0, serialized, 0,
+        serializedLength);
+  }
+
+  @Benchmark
+  public int writeVector() throws IOException {
+    outputBuffer.reset();
+    VectorWritable.writeVector(vector, outputBuffer);
+    return outputBuffer.getLength();
+  }
+
+  @Benchmark
+  public DoubleVector readVector() throws IOException {
+    inputBuffer.reset(serialized, serializedLength);
+    return VectorWritable.readVector(inputBuffer);
+  }
+
+}
@@ -0,0 +1,142 @@
+package de.jungblut.bsp;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hama.bsp.BSPPeer;
+import org.apache.hama.bsp.sync.SyncException;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.minimize.CostFunction;
+import de.jungblut.math.minimize.Fmincg;
+import de.jungblut.math.tuple.Tuple;
+
+/**
+ * Cost function whose training data is sharded across the peers of a BSP job.
+ * Every peer evaluates the cost function of its own rows and the partial costs
+ * and gradients are summed with an allreduce over {@link BSPPeer#send} and
+ * {@link BSPPeer#sync()}, weighted by the number of rows of each peer. Thus
+ * every peer ends up with the cost and gradient of the whole data set.
+ * <p>
+ * All peers have to run the same deterministic minimizer (like {@link Fmincg})
+ * from the same starting point, so they call this function the same number of
+ * times. The sum doesn't depend on the order in which the messages arrive, so
+ * all peers follow exactly the same path.
+ * <p>
+ * The local cost functions average over their rows, so a regularization term
+ * is added by every peer. Construct them with lambda divided by the number of
+ * peers that have rows to get the regularization of the whole data set.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public final class DistributedCostFunction implements CostFunction {
+
+  private final BSPPeer<?, ?, ?, ?, GradientMessage> peer;
+  private final CostFunction localFunction;
+  private final int localRows;
+
+  /**
+   * @param peer the peer to exchange the gradients with.
+   * @param localFunction the cost function on the rows of this peer, may be
+   *          null if the peer has no rows.
+   * @param localRows the number of rows of this peer.
+   */
+  public DistributedCostFunction(BSPPeer<?, ?, ?, ?, GradientMessage> peer,
+      CostFunction localFunction, int localRows) {
+    this.peer = peer;
+    this.localFunction = localFunction;
+    this.localRows = localRows;
+  }
+
+  @Override
+  public Tuple<Double, DoubleVector> evaluateCost(DoubleVector input) {
+    final int n = input.getDimension();
+    // the weighted cost, the number of rows and the weighted gradient
+    double[] values = new double[n + 2];
+    if (localRows > 0) {
+      Tuple<Double, DoubleVector> local = localFunction.evaluateCost(input);
+      values[0] = localRows * local.getFirst();
+      values[1] = localRows;
+      DoubleVector gradient = local.getSecond();
+      for (int i = 0; i < n; i++) {
+        values[i + 2] = localRows * gradient.get(i);
+      }
+    }
+
+    try {
+      allReduce(peer, values);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (IOException | SyncException e) {
+      throw new RuntimeException(e);
+    }
+
+    final double rows = values[1];
+    double[] gradient = new double[n];
+    for (int i = 0; i < n; i++) {
+      gradient[i] = values[i + 2] / rows;
+    }
+    return new Tuple<Double, DoubleVector>(values[0] / rows,
+        new DenseDoubleVector(gradient));
+  }
+
+  /**
+   * Sums the given values of all peers in place. The vector is split into a
+   * chunk per peer: every peer sums its chunk of all vectors (reduce-scatter)
+   * and sends the sum back to all peers (allgather). This takes two
+   * supersteps and every peer sends and receives about twice the length of the
+   * vector, independent of the number of peers.
+   * 
+   * @param peer the peer, all peers have to call this at the same superstep.
+   * @param values the values of this peer, the sum is written into it.
+   */
+  public static void allReduce(BSPPeer<?, ?, ?, ?, GradientMessage> peer,
+      double[] values) throws IOException, SyncException, InterruptedException {
+    final String[] peers = peer.getAllPeerNames();
+    final int numPeers = peers.length;
+    final int self = Arrays.asList(peers).indexOf(peer.getPeerName());
+
+    // send the i-th chunk to the i-th peer
+    for (int i = 0; i < numPeers; i++) {
+      int start = chunkStart(values.length, numPeers, i);
+      int end = chunkStart(values.length, numPeers, i + 1);
+      peer.send(peers[i],
+          new GradientMessage(self, start, Arrays.copyOfRange(values, start,
+              end)));
+    }
+    peer.sync();
+
+    double[][] chunks = new double[numPeers][];
+    GradientMessage msg;
+    while ((msg = peer.getCurrentMessage()) != null) {
+      chunks[msg.getSender()] = msg.getValues();
+    }
+    final int start = chunkStart(values.length, numPeers, self);
+    double[] sum = new double[chunkStart(values.length, numPeers, self + 1)
+        - start];
+    // sum in the order of the peers, not in the order of arrival
+    for (double[] chunk : chunks) {
+      for (int k = 0; k < sum.length; k++) {
+        sum[k] += chunk[k];
+      }
+    }
+
+    // send the summed chunk to everyone
+    for (String name : peers) {
+      peer.send(name, new GradientMessage(self, start, sum));
+    }
+    peer.sync();
+    while ((msg = peer.getCurrentMessage()) != null) {
+      System.arraycopy(msg.getValues(), 0, values, msg.getOffset(),
+          msg.getValues().length);
+    }
+  }
+
+  private static int chunkStart(int length, int numPeers, int index) {
+    return (int) ((long) length * index / numPeers);
+  }
+
+}
@@ -0,0 +1,270 @@
+package de.jungblut.bsp;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.hama.HamaConfiguration;
+import org.apache.hama.bsp.BSP;
+import org.apache.hama.bsp.BSPJob;
+import org.apache.hama.bsp.BSPPeer;
+import org.apache.hama.bsp.sync.SyncException;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.classification.nn.MultilayerPerceptron;
+import de.jungblut.classification.nn.MultilayerPerceptronCostFunction;
+import de.jungblut.classification.regression.LogisticRegressionCostFunction;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.minimize.CostFunction;
+import de.jungblut.math.minimize.Fmincg;
+import de.jungblut.regression.RegressionCostFunction;
+import de.jungblut.writable.VectorWritable;
+
+/**
+ * Full batch training with {@link Fmincg} on the rows of a data set that is
+ * split across BSP peers. The input are sequencefiles of feature and outcome
+ * {@link VectorWritable}s. Every peer builds the cost function of its split
+ * with a {@link CostFunctionFactory} and all peers run the same minimization
+ * on a {@link DistributedCostFunction}. The first peer writes the learned
+ * parameters.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public final class DistributedTrainingBSP
+    extends
+    BSP<VectorWritable, VectorWritable, NullWritable, VectorWritable, GradientMessage> {
+
+  public static final String FACTORY_CLASS_KEY = "distributed.training.factory.class";
+  public static final String MAX_ITERATIONS_KEY = "distributed.training.max.iterations";
+  public static final String LAMBDA_KEY = "distributed.training.lambda";
+  public static final String MODEL_PATH_KEY = "distributed.training.model.path";
+
+  private static final Log LOG = LogFactory.getLog(DistributedTrainingBSP.class);
+
+  /**
+   * Creates the cost function of the rows of a single peer and the parameters
+   * to start with, which must be the same on every peer.
+   */
+  public static interface CostFunctionFactory {
+
+    /**
+     * @param features the features of this peer, at least a single row.
+     * @param outcome the outcome of every row.
+     * @param lambda the regularization of this peer, already divided by the
+     *          number of peers.
+     * @param conf the configuration of the job.
+     * @return a cost function that averages over the given rows.
+     */
+    public CostFunction newCostFunction(DoubleVector[] features,
+        DoubleVector[] outcome, double lambda, Configuration conf)
+        throws IOException;
+
+    /**
+     * @param numFeatures the dimension of the features.
+     * @param numOutcomes the dimension of the outcome.
+     * @param conf the configuration of the job.
+     * @return the starting parameters.
+     */
+    public DoubleVector newInitialTheta(int numFeatures, int numOutcomes,
+        Configuration conf) throws IOException;
+
+  }
+
+  private CostFunctionFactory factory;
+  private int maxIterations;
+  private double lambda;
+
+  @Override
+  public void setup(
+      BSPPeer<VectorWritable, VectorWritable, NullWritable, VectorWritable, GradientMessage> peer)
+      throws IOException, SyncException, InterruptedException {
+    Configuration conf = peer.getConfiguration();
+    Class<? extends CostFunctionFactory> factoryClass = conf.getClass(
+        FACTORY_CLASS_KEY, null, CostFunctionFactory.class);
+    Preconditions.checkNotNull(factoryClass, "No " + FACTORY_CLASS_KEY
+        + " configured!");
+    factory = ReflectionUtils.newInstance(factoryClass, conf);
+    maxIterations = conf.getInt(MAX_ITERATIONS_KEY, 100);
+    lambda = conf.getFloat(LAMBDA_KEY, 0f);
+  }
+
+  @Override
+  public void bsp(
+      BSPPeer<VectorWritable, VectorWritable, NullWritable, VectorWritable, GradientMessage> peer)
+      throws IOException, SyncException, InterruptedException {
+    List<DoubleVector> features = new ArrayList<>();
+    List<DoubleVector> outcome = new ArrayList<>();
+    VectorWritable key = new VectorWritable();
+    VectorWritable value = new VectorWritable();
+    // every read creates new vectors, so they don't need to be copied
+    while (peer.readNext(key, value)) {
+      features.add(key.getVector());
+      outcome.add(value.getVector());
+    }
+    final int rows = features.size();
+
+    // peers without rows learn the dimensions from the others
+    double[] dimensions = new double[3];
+    if (rows > 0) {
+      dimensions[0] = features.get(0).getDimension();
+      dimensions[1] = outcome.get(0).getDimension();
+      dimensions[2] = 1;
+    }
+    DistributedCostFunction.allReduce(peer, dimensions);
+    final int nonEmptyPeers = (int) dimensions[2];
+    Preconditions.checkArgument(nonEmptyPeers > 0, "The input is empty!");
+    final int numFeatures = (int) (dimensions[0] / nonEmptyPeers);
+    final int numOutcomes = (int) (dimensions[1] / nonEmptyPeers);
+    LOG.info(peer.getPeerName() + " trains on " + rows + " rows.");
+
+    Configuration conf = peer.getConfiguration();
+    CostFunction localFunction = null;
+    if (rows > 0) {
+      // every peer adds its own regularization
+      localFunction = factory.newCostFunction(
+          features.toArray(new DoubleVector[rows]),
+          outcome.toArray(new DoubleVector[rows]), lambda / nonEmptyPeers,
+          conf);
+    }
+    DistributedCostFunction f = new DistributedCostFunction(peer,
+        localFunction, rows);
+    DoubleVector theta;
+    try {
+      theta = Fmincg.minimizeFunction(f,
+          factory.newInitialTheta(numFeatures, numOutcomes, conf),
+          maxIterations, false);
+    } finally {
+      // cost functions with own threads stop them after the training
+      if (localFunction instanceof MultilayerPerceptronCostFunction) {
+        ((MultilayerPerceptronCostFunction) localFunction).close();
+      }
+    }
+
+    if (peer.getPeerName().equals(peer.getAllPeerNames()[0])) {
+      peer.write(NullWritable.get(), new VectorWritable(theta));
+    }
+  }
+
+  /**
+   * Trains a {@link LogisticRegressionCostFunction} on the first element of the
+   * outcome, starting with all parameters zero.
+   */
+  public static final class LogisticRegressionFactory implements
+      CostFunctionFactory {
+
+    @Override
+    public CostFunction newCostFunction(DoubleVector[] features,
+        DoubleVector[] outcome, double lambda, Configuration conf) {
+      return new LogisticRegressionCostFunction(
+          new DenseDoubleMatrix(features), firstColumn(outcome), lambda);
+    }
+
+    @Override
+    public DoubleVector newInitialTheta(int numFeatures, int numOutcomes,
+        Configuration conf) {
+      return new DenseDoubleVector(numFeatures + 1);
+    }
+  }
+
+  /**
+   * Trains a {@link RegressionCostFunction} on the first element of the
+   * outcome, starting with all parameters zero.
+   */
+  public static final class RegressionFactory implements CostFunctionFactory {
+
+    @Override
+    public CostFunction newCostFunction(DoubleVector[] features,
+        DoubleVector[] outcome, double lambda, Configuration conf) {
+      return new RegressionCostFunction(new DenseDoubleMatrix(features),
+          firstColumn(outcome), lambda);
+    }
+
+    @Override
+    public DoubleVector newInitialTheta(int numFeatures, int numOutcomes,
+        Configuration conf) {
+      return new DenseDoubleVector(numFeatures + 1);
+    }
+  }
+
+  /**
+   * Trains a {@link MultilayerPerceptron} that was serialized to the path
+   * configured with {@link #MODEL_PATH_KEY}, it defines the architecture and
+   * the weights to start with. The output are the folded weights.
+   */
+  public static final class MultilayerPerceptronFactory implements
+      CostFunctionFactory {
+
+    private MultilayerPerceptron network;
+
+    @Override
+    public CostFunction newCostFunction(DoubleVector[] features,
+        DoubleVector[] outcome, double lambda, Configuration conf)
+        throws IOException {
+      return new MultilayerPerceptronCostFunction(getNetwork(conf),
+          new DenseDoubleMatrix(features), new DenseDoubleMatrix(outcome),
+          lambda);
+    }
+
+    @Override
+    public DoubleVector newInitialTheta(int numFeatures, int numOutcomes,
+        Configuration conf) throws IOException {
+      return getNetwork(conf).getFoldedThetaVector();
+    }
+
+    private MultilayerPerceptron getNetwork(Configuration conf)
+        throws IOException {
+      if (network == null) {
+        String path = conf.get(MODEL_PATH_KEY);
+        Preconditions.checkNotNull(path, "No " + MODEL_PATH_KEY
+            + " configured!");
+        try (DataInputStream in = FileSystem.get(conf).open(new Path(path))) {
+          network = MultilayerPerceptron.deserialize(in);
+        }
+      }
+      return network;
+    }
+  }
+
+  static DenseDoubleVector firstColumn(DoubleVector[] outcome) {
+    DenseDoubleVector y = new DenseDoubleVector(outcome.length);
+    for (int i = 0; i < outcome.length; i++) {
+      y.set(i, outcome[i].get(0));
+    }
+    return y;
+  }
+
+  /**
+   * Creates a basic job with sequencefiles as in and output.
+   * 
+   * @param factory the factory of the cost function to minimize.
+   */
+  public static BSPJob createJob(Configuration cnf, Path in, Path out,
+      Class<? extends CostFunctionFactory> factory) throws IOException {
+    HamaConfiguration conf = new HamaConfiguration(cnf);
+    conf.setClass(FACTORY_CLASS_KEY, factory, CostFunctionFactory.class);
+    BSPJob job = new BSPJob(conf, DistributedTrainingBSP.class);
+    job.setJobName("Distributed Training");
+    job.setJarByClass(DistributedTrainingBSP.class);
+    job.setBspClass(DistributedTrainingBSP.class);
+    job.setInputPath(in);
+    job.setOutputPath(out);
+    job.setInputFormat(org.apache.hama.bsp.SequenceFileInputFormat.class);
+    job.setOutputFormat(org.apache.hama.bsp.SequenceFileOutputFormat.class);
+    job.setOutputKeyClass(NullWritable.class);
+    job.setOutputValueClass(VectorWritable.class);
+    return job;
+  }
+
+}
@@ -0,0 +1,67 @@
+package de.jungblut.bsp;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Writable;
+
+/**
+ * A chunk of a vector that is summed by {@link DistributedCostFunction}.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public final class GradientMessage implements Writable {
+
+  private int sender;
+  private int offset;
+  private double[] values;
+
+  public GradientMessage() {
+  }
+
+  /**
+   * @param sender the index of the sending peer.
+   * @param offset the index of the first value in the whole vector.
+   * @param values the values of the chunk.
+   */
+  public GradientMessage(int sender, int offset, double[] values) {
+    this.sender = sender;
+    this.offset = offset;
+    this.values = values;
+  }
+
+  @Override
+  public void readFields(DataInput in) throws IOException {
+    sender = in.readInt();
+    offset = in.readInt();
+    values = new double[in.readInt()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = in.readDouble();
+    }
+  }
+
+  @Override
+  public void write(DataOutput out) throws IOException {
+    out.writeInt(sender);
+    out.writeInt(offset);
+    out.writeInt(values.length);
+    for (double value : values) {
+      out.writeDouble(value);
+    }
+  }
+
+  public int getSender() {
+    return sender;
+  }
+
+  public int getOffset() {
+    return offset;
+  }
+
+  public double[] getValues() {
+    return values;
+  }
+
+}
@@ -1,6 +1,15 @@
 package de.jungblut.classification.bayes;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.google.common.base.Preconditions;
 
@@ -10,22 +19,48 @@ import de.jungblut.math.DoubleVector.DoubleVectorElement;
 import de.jungblut.math.dense.DenseDoubleMatrix;
 import de.jungblut.math.dense.DenseDoubleVector;
 import de.jungblut.math.dense.DenseIntVector;
+import de.jungblut.partition.BlockPartitioner;
+import de.jungblut.partition.Boundaries.Range;
+import de.jungblut.writable.MappedModelFile;
 
 /**
- * Simple multinomial naive bayes classifier.
+ * Simple multinomial naive bayes classifier. By default the log-likelihoods
+ * are stored in a dense (classes x vocabulary) matrix, the sparse model only
+ * stores the observed (class, token) pairs in a {@link SparseNaiveBayesModel}.
+ * <p>
+ * Training only sums up {@link NaiveBayesCounts}, the model is computed from
+ * them on the next prediction. Thus new documents or the counts of other
+ * threads and shards can be added without counting the old documents again.
+ * Updates must not run concurrently with predictions.
  * 
  * @author thomas.jungblut
  * 
  */
 public final class MultinomialNaiveBayesClassifier extends AbstractClassifier {
 
+  private final boolean sparse;
+
   private DenseDoubleMatrix probabilityMatrix;
+  private SparseNaiveBayesModel sparseModel;
   private DenseDoubleVector classProbability;
 
+  // the training state, the model is computed from it on demand
+  private NaiveBayesCounts counts;
+  private volatile boolean dirty;
+
   /**
    * Default constructor to construct this classifier.
    */
   public MultinomialNaiveBayesClassifier() {
+    this(false);
+  }
+
+  /**
+   * @param sparse true if the classifier should be trained into a
+   *          {@link SparseNaiveBayesModel} instead of a dense matrix.
+   */
+  public MultinomialNaiveBayesClassifier(boolean sparse) {
+    this.sparse = sparse;
   }
 
   /**
@@ -37,13 +72,36 @@ public final class MultinomialNaiveBayesClassifier extends AbstractClassifier {
    */
   public MultinomialNaiveBayesClassifier(DenseDoubleMatrix probabilityMatrix,
       DenseDoubleVector classProbability) {
-    super();
+    this(false);
     this.probabilityMatrix = probabilityMatrix;
     this.classProbability = classProbability;
   }
 
+  /**
+   * Deserialization constructor to instantiate an already trained sparse
+   * classifier.
+   * 
+   * @param sparseModel the sparse log-likelihoods.
+   * @param classProbability the prior class probabilities.
+   */
+  public MultinomialNaiveBayesClassifier(SparseNaiveBayesModel sparseModel,
+      DenseDoubleVector classProbability) {
+    this(true);
+    this.sparseModel = sparseModel;
+    this.classProbability = classProbability;
+  }
+
   @Override
   public void train(DoubleVector[] features, DenseDoubleVector[] outcome) {
+    train(features, outcome, 1);
+  }
+
+  /**
+   * Trains this classifier from scratch, the documents are counted in
+   * parallel by the given number of threads.
+   */
+  public void train(DoubleVector[] features, DenseDoubleVector[] outcome,
+      int numThreads) {
     int[] classes = new int[outcome.length];
     for (int i = 0; i < outcome.length; i++) {
       if (outcome[i].getDimension() == 1) {
@@ -52,58 +110,136 @@ public final class MultinomialNaiveBayesClassifier extends AbstractClassifier {
         classes[i] = outcome[i].maxIndex();
       }
     }
-    trainInternal(features, new DenseIntVector(classes));
+    trainInternal(features, new DenseIntVector(classes), numThreads);
   }
 
   /**
    * Trains this classifier by the given word counts and the prediction.
    */
-  private void trainInternal(DoubleVector[] features, DenseIntVector prediction) {
+  private void trainInternal(final DoubleVector[] features,
+      final DenseIntVector prediction, int numThreads) {
     Preconditions.checkArgument(features.length > 0,
         "Features must contain at least a single item!");
     Preconditions.checkArgument(features.length == prediction.getLength(),
         "There must be an equal amount of features and prediction outcomes!");
+    Preconditions.checkArgument(numThreads > 0,
+        "Number of threads must be positive! Given: " + numThreads);
 
     final int numDistinctClasses = prediction.getNumberOfDistinctElements();
-    probabilityMatrix = new DenseDoubleMatrix(numDistinctClasses,
-        features[0].getDimension(), 1.0d);
-
-    int[] tokenPerClass = new int[numDistinctClasses];
-    int[] numDocumentsPerClass = new int[numDistinctClasses];
-
-    // init the probability with the document length = word count for each token
-    for (int columnIndex = 0; columnIndex < features.length; columnIndex++) {
-      final DoubleVector document = features[columnIndex];
-      final int predictedClass = prediction.get(columnIndex);
-      tokenPerClass[predictedClass] += document.getLength();
-      numDocumentsPerClass[predictedClass]++;
-
-      Iterator<DoubleVectorElement> iterateNonZero = document.iterateNonZero();
-      while (iterateNonZero.hasNext()) {
-        DoubleVectorElement next = iterateNonZero.next();
-        double currentCount = probabilityMatrix.get(predictedClass,
-            next.getIndex());
-        probabilityMatrix.set(predictedClass, next.getIndex(), currentCount
-            + next.getValue());
+    final int vocabularySize = features[0].getDimension();
+    numThreads = Math.min(numThreads, features.length);
+    if (numThreads == 1) {
+      NaiveBayesCounts total = new NaiveBayesCounts(numDistinctClasses,
+          vocabularySize);
+      for (int i = 0; i < features.length; i++) {
+        total.add(features[i], prediction.get(i));
       }
+      setCounts(total);
+      return;
     }
 
-    // know we know the token distribution per class, we can calculate the
-    // probability. It is intended for them to be negative in some cases
-    for (int row = 0; row < numDistinctClasses; row++) {
-      for (int tokenColumn = 0; tokenColumn < probabilityMatrix
-          .getColumnCount(); tokenColumn++) {
-        double currentWordCount = probabilityMatrix.get(row, tokenColumn);
-        double logLikelyhood = Math.log(currentWordCount
-            / (tokenPerClass[row] + probabilityMatrix.getColumnCount() - 1));
-        probabilityMatrix.set(row, tokenColumn, logLikelyhood);
+    // every thread counts a block of the documents, they are merged in order
+    ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+    try {
+      List<Future<NaiveBayesCounts>> futures = new ArrayList<>(numThreads);
+      for (final Range range : new BlockPartitioner().partition(numThreads,
+          features.length).getBoundaries()) {
+        futures.add(pool.submit(new Callable<NaiveBayesCounts>() {
+          @Override
+          public NaiveBayesCounts call() throws Exception {
+            NaiveBayesCounts partial = new NaiveBayesCounts(
+                numDistinctClasses, vocabularySize);
+            for (int i = range.getStart(); i <= range.getEnd(); i++) {
+              partial.add(features[i], prediction.get(i));
+            }
+            return partial;
+          }
+        }));
       }
+      NaiveBayesCounts total = new NaiveBayesCounts(numDistinctClasses,
+          vocabularySize);
+      for (Future<NaiveBayesCounts> future : futures) {
+        total.merge(future.get());
+      }
+      setCounts(total);
+    } catch (InterruptedException | ExecutionException e) {
+      throw new RuntimeException(e);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Adds a single document to the training state, the model is recomputed on
+   * the next prediction.
+   * 
+   * @param document the token counts of the document.
+   * @param classIndex the class of the document.
+   */
+  public void update(DoubleVector document, int classIndex) {
+    ensureCounts();
+    counts.add(document, classIndex);
+    dirty = true;
+  }
+
+  /**
+   * Adds the counts of other documents, for example of another shard, to the
+   * training state. The model is recomputed on the next prediction.
+   */
+  public void merge(NaiveBayesCounts other) {
+    ensureCounts();
+    counts.merge(other);
+    dirty = true;
+  }
+
+  /**
+   * Replaces the training state by the given counts, the model is computed on
+   * the next prediction.
+   */
+  public void setCounts(NaiveBayesCounts counts) {
+    this.counts = counts;
+    dirty = true;
+  }
+
+  /**
+   * @return the training state, null if the classifier was deserialized from
+   *         a model.
+   */
+  public NaiveBayesCounts getCounts() {
+    return counts;
+  }
+
+  private void ensureCounts() {
+    Preconditions.checkState(counts != null || !isTrained(),
+        "A deserialized model can't be updated, it has no counts!");
+    if (counts == null) {
+      counts = new NaiveBayesCounts();
     }
+  }
 
-    classProbability = new DenseDoubleVector(numDistinctClasses);
-    for (int i = 0; i < numDistinctClasses; i++) {
-      classProbability.set(i, (numDocumentsPerClass[i])
-          / (double) features.length);
+  private boolean isTrained() {
+    return classProbability != null;
+  }
+
+  /**
+   * Computes the log-likelihoods and the priors from the counts if they have
+   * changed since the last computation.
+   */
+  private void finish() {
+    if (!dirty) {
+      return;
+    }
+    synchronized (this) {
+      if (!dirty) {
+        return;
+      }
+      if (sparse) {
+        sparseModel = counts.toSparseModel();
+      } else {
+        probabilityMatrix = counts.toProbabilityMatrix();
+      }
+      classProbability = counts.getClassProbability();
+      dirty = false;
     }
   }
 
@@ -133,13 +269,21 @@ public final class MultinomialNaiveBayesClassifier extends AbstractClassifier {
   }
 
   private DenseDoubleVector getProbabilityDistribution(DoubleVector document) {
+    finish();
 
     int numClasses = classProbability.getLength();
-    DenseDoubleVector distribution = new DenseDoubleVector(numClasses);
-    // loop through all classes and get the max probable one
-    for (int i = 0; i < numClasses; i++) {
-      double probability = getProbabilityForClass(document, i);
-      distribution.set(i, probability);
+    DenseDoubleVector distribution;
+    if (sparseModel != null) {
+      // a single pass over the document for all classes
+      distribution = new DenseDoubleVector(
+          sparseModel.logLikelihoods(document));
+    } else {
+      distribution = new DenseDoubleVector(numClasses);
+      // loop through all classes and get the max probable one
+      for (int i = 0; i < numClasses; i++) {
+        double probability = getProbabilityForClass(document, i);
+        distribution.set(i, probability);
+      }
     }
 
     double maxProbability = distribution.max();
@@ -163,14 +307,67 @@ public final class MultinomialNaiveBayesClassifier extends AbstractClassifier {
    * @return the internal prior class probability.
    */
   public DenseDoubleVector getClassProbability() {
+    finish();
     return this.classProbability;
   }
 
   /**
-   * @return the internal probability matrix.
+   * @return the internal probability matrix, null if the model is sparse.
    */
   public DenseDoubleMatrix getProbabilityMatrix() {
+    finish();
     return this.probabilityMatrix;
   }
 
+  /**
+   * @return the internal sparse model, null if the model is dense.
+   */
+  public SparseNaiveBayesModel getSparseModel() {
+    finish();
+    return this.sparseModel;
+  }
+
+  /**
+   * Opens a classifier that was written by
+   * {@link #serializeMapped(MultinomialNaiveBayesClassifier, File)}.
+   */
+  public static MultinomialNaiveBayesClassifier deserializeMapped(File file)
+      throws IOException {
+    MappedModelFile in = MappedModelFile.open(file,
+        MultinomialNaiveBayesClassifier.class);
+    if (in.contains("deltas")) {
+      return new MultinomialNaiveBayesClassifier(new SparseNaiveBayesModel(
+          in.getVector("unseenLogLikelihood").toArray(),
+          in.getInts("tokenPointers"), in.getInts("classIndices"), in
+              .getVector("deltas").toArray()),
+          in.getVector("classProbability"));
+    }
+    return new MultinomialNaiveBayesClassifier(
+        in.getMatrix("probabilityMatrix"), in.getVector("classProbability"));
+  }
+
+  /**
+   * Writes the probabilities to a page aligned model file that can be opened
+   * with {@link #deserializeMapped(File)}.
+   */
+  public static void serializeMapped(MultinomialNaiveBayesClassifier model,
+      File file) throws IOException {
+    model.finish();
+    MappedModelFile.Writer writer = MappedModelFile.newWriter(
+        MultinomialNaiveBayesClassifier.class).putVector("classProbability",
+        model.classProbability);
+    if (model.sparseModel != null) {
+      SparseNaiveBayesModel sparseModel = model.sparseModel;
+      writer
+          .putVector("unseenLogLikelihood",
+              new DenseDoubleVector(sparseModel.getUnseenLogLikelihood()))
+          .putInts("tokenPointers", sparseModel.getTokenPointers())
+          .putInts("classIndices", sparseModel.getClassIndices())
+          .putVector("deltas", new DenseDoubleVector(sparseModel.getDeltas()));
+    } else {
+      writer.putMatrix("probabilityMatrix", model.probabilityMatrix);
+    }
+    writer.write(file);
+  }
+
 }
@@ -0,0 +1,244 @@
+package de.jungblut.classification.bayes;
+
+import gnu.trove.iterator.TIntDoubleIterator;
+import gnu.trove.map.hash.TIntDoubleHashMap;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.apache.hadoop.io.Writable;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.dense.DenseDoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleVector;
+
+/**
+ * The training state of a {@link MultinomialNaiveBayesClassifier}: the
+ * summed token counts, the number of tokens and the number of documents of
+ * every class. Documents can be added at any time and the counts of several
+ * threads or shards can be merged, the result doesn't depend on how the
+ * documents were split. The log-likelihoods are only computed when the counts
+ * are turned into a model.
+ * <p>
+ * The number of classes and the vocabulary grow with the added documents. The
+ * counts are a {@link Writable}, so partial counts can be summed up in a
+ * reducer. They are not thread-safe.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public final class NaiveBayesCounts implements Writable {
+
+  private int vocabularySize;
+  private TIntDoubleHashMap[] tokenCounts;
+  private double[] tokensPerClass;
+  private long[] documentsPerClass;
+
+  public NaiveBayesCounts() {
+    this(0, 0);
+  }
+
+  /**
+   * @param numClasses the expected number of classes.
+   * @param vocabularySize the expected dimension of the documents.
+   */
+  public NaiveBayesCounts(int numClasses, int vocabularySize) {
+    this.vocabularySize = vocabularySize;
+    this.tokenCounts = new TIntDoubleHashMap[0];
+    this.tokensPerClass = new double[0];
+    this.documentsPerClass = new long[0];
+    ensureClasses(numClasses);
+  }
+
+  /**
+   * Adds the token counts of a document.
+   * 
+   * @param document the token counts, only the non-zero elements are read.
+   * @param classIndex the class of the document, starting at zero.
+   */
+  public void add(DoubleVector document, int classIndex) {
+    Preconditions.checkArgument(classIndex >= 0,
+        "Class index must not be negative! Given: " + classIndex);
+    ensureClasses(classIndex + 1);
+    vocabularySize = Math.max(vocabularySize, document.getDimension());
+    final TIntDoubleHashMap counts = tokenCounts[classIndex];
+    tokensPerClass[classIndex] += document.getLength();
+    documentsPerClass[classIndex]++;
+    Iterator<DoubleVectorElement> iterateNonZero = document.iterateNonZero();
+    while (iterateNonZero.hasNext()) {
+      DoubleVectorElement next = iterateNonZero.next();
+      counts.adjustOrPutValue(next.getIndex(), next.getValue(),
+          next.getValue());
+    }
+  }
+
+  /**
+   * Adds documents of a class whose tokens are added with
+   * {@link #addToken(int, int, double, long)}, for example by a reducer that
+   * receives the counts grouped by token.
+   */
+  public void addDocuments(int classIndex, long documents) {
+    Preconditions.checkArgument(classIndex >= 0,
+        "Class index must not be negative! Given: " + classIndex);
+    ensureClasses(classIndex + 1);
+    documentsPerClass[classIndex] += documents;
+  }
+
+  /**
+   * Adds the summed count of a token in the documents of a class.
+   * 
+   * @param classIndex the class of the documents.
+   * @param token the index of the token.
+   * @param count the summed count of the token.
+   * @param documentFrequency the number of documents that contain the token,
+   *          each of them adds a non-zero element to the class.
+   */
+  public void addToken(int classIndex, int token, double count,
+      long documentFrequency) {
+    Preconditions.checkArgument(classIndex >= 0,
+        "Class index must not be negative! Given: " + classIndex);
+    ensureClasses(classIndex + 1);
+    vocabularySize = Math.max(vocabularySize, token + 1);
+    tokensPerClass[classIndex] += documentFrequency;
+    tokenCounts[classIndex].adjustOrPutValue(token, count, count);
+  }
+
+  /**
+   * Adds the counts of the other state to this one.
+   */
+  public void merge(NaiveBayesCounts other) {
+    ensureClasses(other.getNumClasses());
+    vocabularySize = Math.max(vocabularySize, other.vocabularySize);
+    for (int c = 0; c < other.getNumClasses(); c++) {
+      tokensPerClass[c] += other.tokensPerClass[c];
+      documentsPerClass[c] += other.documentsPerClass[c];
+      final TIntDoubleHashMap counts = tokenCounts[c];
+      TIntDoubleIterator it = other.tokenCounts[c].iterator();
+      while (it.hasNext()) {
+        it.advance();
+        counts.adjustOrPutValue(it.key(), it.value(), it.value());
+      }
+    }
+  }
+
+  /**
+   * @return the summed count of the token in the documents of the class.
+   */
+  public double getCount(int classIndex, int token) {
+    return tokenCounts[classIndex].get(token);
+  }
+
+  public long getNumDocuments(int classIndex) {
+    return documentsPerClass[classIndex];
+  }
+
+  public int getNumClasses() {
+    return tokenCounts.length;
+  }
+
+  public int getVocabularySize() {
+    return vocabularySize;
+  }
+
+  /**
+   * @return the fraction of the documents in each class.
+   */
+  public DenseDoubleVector getClassProbability() {
+    long documents = 0;
+    for (long count : documentsPerClass) {
+      documents += count;
+    }
+    DenseDoubleVector classProbability = new DenseDoubleVector(
+        documentsPerClass.length);
+    for (int i = 0; i < documentsPerClass.length; i++) {
+      classProbability.set(i, documentsPerClass[i] / (double) documents);
+    }
+    return classProbability;
+  }
+
+  /**
+   * @return the smoothed log-likelihoods as a dense (classes x vocabulary)
+   *         matrix.
+   */
+  public DenseDoubleMatrix toProbabilityMatrix() {
+    final int numClasses = getNumClasses();
+    DenseDoubleMatrix probabilityMatrix = new DenseDoubleMatrix(numClasses,
+        vocabularySize, 1.0d);
+    for (int row = 0; row < numClasses; row++) {
+      TIntDoubleIterator it = tokenCounts[row].iterator();
+      while (it.hasNext()) {
+        it.advance();
+        probabilityMatrix.set(row, it.key(), 1.0d + it.value());
+      }
+      final double denominator = tokensPerClass[row] + vocabularySize - 1;
+      for (int tokenColumn = 0; tokenColumn < vocabularySize; tokenColumn++) {
+        probabilityMatrix.set(row, tokenColumn,
+            Math.log(probabilityMatrix.get(row, tokenColumn) / denominator));
+      }
+    }
+    return probabilityMatrix;
+  }
+
+  /**
+   * @return the smoothed log-likelihoods of the observed tokens.
+   */
+  public SparseNaiveBayesModel toSparseModel() {
+    return SparseNaiveBayesModel.fromCounts(tokenCounts, tokensPerClass,
+        vocabularySize);
+  }
+
+  private void ensureClasses(int numClasses) {
+    final int oldClasses = tokenCounts.length;
+    if (numClasses <= oldClasses) {
+      return;
+    }
+    tokenCounts = Arrays.copyOf(tokenCounts, numClasses);
+    for (int c = oldClasses; c < numClasses; c++) {
+      tokenCounts[c] = new TIntDoubleHashMap();
+    }
+    tokensPerClass = Arrays.copyOf(tokensPerClass, numClasses);
+    documentsPerClass = Arrays.copyOf(documentsPerClass, numClasses);
+  }
+
+  @Override
+  public void write(DataOutput out) throws IOException {
+    out.writeInt(vocabularySize);
+    out.writeInt(tokenCounts.length);
+    for (int c = 0; c < tokenCounts.length; c++) {
+      out.writeLong(documentsPerClass[c]);
+      out.writeDouble(tokensPerClass[c]);
+      out.writeInt(tokenCounts[c].size());
+      TIntDoubleIterator it = tokenCounts[c].iterator();
+      while (it.hasNext()) {
+        it.advance();
+        out.writeInt(it.key());
+        out.writeDouble(it.value());
+      }
+    }
+  }
+
+  @Override
+  public void readFields(DataInput in) throws IOException {
+    vocabularySize = in.readInt();
+    final int numClasses = in.readInt();
+    tokenCounts = new TIntDoubleHashMap[numClasses];
+    tokensPerClass = new double[numClasses];
+    documentsPerClass = new long[numClasses];
+    for (int c = 0; c < numClasses; c++) {
+      documentsPerClass[c] = in.readLong();
+      tokensPerClass[c] = in.readDouble();
+      final int size = in.readInt();
+      tokenCounts[c] = new TIntDoubleHashMap(Math.max(size, 1));
+      for (int i = 0; i < size; i++) {
+        tokenCounts[c].put(in.readInt(), in.readDouble());
+      }
+    }
+  }
+
+}
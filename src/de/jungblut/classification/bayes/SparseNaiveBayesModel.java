@@ -0,0 +1,159 @@
+package de.jungblut.classification.bayes;
+
+import gnu.trove.iterator.TIntDoubleIterator;
+import gnu.trove.map.hash.TIntDoubleHashMap;
+
+import java.util.Iterator;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+
+/**
+ * Sparse token log-likelihoods of a {@link MultinomialNaiveBayesClassifier}.
+ * Only the (class, token) pairs that were observed in training are stored,
+ * the smoothed log-likelihood of an unseen token is a single value per class.
+ * An observed pair stores the difference to it, which is the log of its
+ * smoothed count, so log p(token | class) = unseen[class] + delta.
+ * <p>
+ * The pairs are stored token major: the classes and deltas of a token are
+ * contiguous, so scoring a document walks its non-zero tokens once and
+ * accumulates into all classes. The memory is one int per vocabulary entry
+ * plus an int and a double per observed pair.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public final class SparseNaiveBayesModel {
+
+  // log-likelihood of an unseen token per class
+  private final double[] unseenLogLikelihood;
+  // token t occupies the indices tokenPointers[t] until tokenPointers[t + 1]
+  private final int[] tokenPointers;
+  private final int[] classIndices;
+  private final double[] deltas;
+
+  SparseNaiveBayesModel(double[] unseenLogLikelihood, int[] tokenPointers,
+      int[] classIndices, double[] deltas) {
+    Preconditions.checkArgument(classIndices.length == deltas.length,
+        "There must be a delta for every class index!");
+    Preconditions.checkArgument(
+        tokenPointers[tokenPointers.length - 1] == deltas.length,
+        "The token pointers don't match the number of deltas!");
+    this.unseenLogLikelihood = unseenLogLikelihood;
+    this.tokenPointers = tokenPointers;
+    this.classIndices = classIndices;
+    this.deltas = deltas;
+  }
+
+  /**
+   * Creates the model from the token counts of every class, with the same
+   * smoothing as the dense probability matrix.
+   * 
+   * @param counts the summed token counts of every class.
+   * @param tokensPerClass the number of tokens of every class.
+   * @param vocabularySize the dimension of the documents.
+   */
+  static SparseNaiveBayesModel fromCounts(TIntDoubleHashMap[] counts,
+      double[] tokensPerClass, int vocabularySize) {
+    final int numClasses = counts.length;
+    double[] unseen = new double[numClasses];
+    int[] tokenPointers = new int[vocabularySize + 1];
+    for (int c = 0; c < numClasses; c++) {
+      unseen[c] = -Math.log(tokensPerClass[c] + vocabularySize - 1);
+      for (int token : counts[c].keys()) {
+        tokenPointers[token + 1]++;
+      }
+    }
+    for (int t = 0; t < vocabularySize; t++) {
+      tokenPointers[t + 1] += tokenPointers[t];
+    }
+    int[] classIndices = new int[tokenPointers[vocabularySize]];
+    double[] deltas = new double[classIndices.length];
+    // the next free index of every token, the classes are ascending
+    int[] next = new int[vocabularySize];
+    System.arraycopy(tokenPointers, 0, next, 0, vocabularySize);
+    for (int c = 0; c < numClasses; c++) {
+      TIntDoubleIterator it = counts[c].iterator();
+      while (it.hasNext()) {
+        it.advance();
+        int index = next[it.key()]++;
+        classIndices[index] = c;
+        // the count was smoothed by one
+        deltas[index] = Math.log1p(it.value());
+      }
+    }
+    return new SparseNaiveBayesModel(unseen, tokenPointers, classIndices,
+        deltas);
+  }
+
+  /**
+   * @return the sum of the token log-likelihoods of the document for every
+   *         class, the tokens are weighted by their count.
+   */
+  public double[] logLikelihoods(DoubleVector document) {
+    final int numClasses = unseenLogLikelihood.length;
+    double[] scores = new double[numClasses];
+    double tokens = 0d;
+    Iterator<DoubleVectorElement> it = document.iterateNonZero();
+    while (it.hasNext()) {
+      DoubleVectorElement next = it.next();
+      final double count = next.getValue();
+      final int token = next.getIndex();
+      tokens += count;
+      for (int p = tokenPointers[token]; p < tokenPointers[token + 1]; p++) {
+        scores[classIndices[p]] += count * deltas[p];
+      }
+    }
+    // every token contributes the unseen log-likelihood
+    for (int c = 0; c < numClasses; c++) {
+      scores[c] += tokens * unseenLogLikelihood[c];
+    }
+    return scores;
+  }
+
+  /**
+   * @return log p(token | class).
+   */
+  public double getLogLikelihood(int classIndex, int token) {
+    for (int p = tokenPointers[token]; p < tokenPointers[token + 1]; p++) {
+      if (classIndices[p] == classIndex) {
+        return unseenLogLikelihood[classIndex] + deltas[p];
+      }
+    }
+    return unseenLogLikelihood[classIndex];
+  }
+
+  public int getNumClasses() {
+    return unseenLogLikelihood.length;
+  }
+
+  public int getVocabularySize() {
+    return tokenPointers.length - 1;
+  }
+
+  /**
+   * @return the number of observed (class, token) pairs.
+   */
+  public int getNumEntries() {
+    return deltas.length;
+  }
+
+  double[] getUnseenLogLikelihood() {
+    return unseenLogLikelihood;
+  }
+
+  int[] getTokenPointers() {
+    return tokenPointers;
+  }
+
+  int[] getClassIndices() {
+    return classIndices;
+  }
+
+  double[] getDeltas() {
+    return deltas;
+  }
+
+}
@@ -1,10 +1,13 @@
 package de.jungblut.classification.knn;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import com.google.common.base.Preconditions;
 
 import de.jungblut.classification.AbstractClassifier;
+import de.jungblut.datastructure.FlatKDTree;
 import de.jungblut.datastructure.KDTree;
 import de.jungblut.datastructure.KDTree.VectorDistanceTuple;
 import de.jungblut.math.DoubleVector;
@@ -15,11 +18,20 @@ import de.jungblut.math.dense.DenseDoubleVector;
  * of known examples and predicts based on the k-nearest neighbours majority
  * vote for a class. A KD tree is used internally to speedup the searches, thus
  * the distance metric is restricted to the EuclidianDistance.
+ * <p>
+ * Dense examples are searched in a {@link FlatKDTree}, which is built again
+ * from all examples every time new ones are trained. Once a sparse example is
+ * trained, all examples are kept in a {@link KDTree} instead, because the flat
+ * tree would store every dimension of them.
  * 
  */
 public final class KNearestNeighbours extends AbstractClassifier {
 
-  private final KDTree<DenseDoubleVector> tree;
+  // the dense examples of the flat tree, null once the pointer tree is used
+  private List<DoubleVector> features = new ArrayList<>();
+  private List<DenseDoubleVector> outcomes = new ArrayList<>();
+  private FlatKDTree<DenseDoubleVector> flatTree;
+  private KDTree<DenseDoubleVector> tree;
   private final int numOutcomes;
   private final int k;
 
@@ -33,7 +45,6 @@ public final class KNearestNeighbours extends AbstractClassifier {
   public KNearestNeighbours(int numOutcomes, int k) {
     this.numOutcomes = numOutcomes;
     this.k = k;
-    this.tree = new KDTree<>();
   }
 
   @Override
@@ -44,6 +55,22 @@ public final class KNearestNeighbours extends AbstractClassifier {
     Preconditions.checkArgument(features.length > 0,
         "You need at least a single item in your classifier!");
 
+    if (tree == null && !containsSparse(features)) {
+      // the flat tree is immutable, so it is built again with all examples
+      this.features.addAll(Arrays.asList(features));
+      this.outcomes.addAll(Arrays.asList(outcome));
+      flatTree = new FlatKDTree<>(this.features, this.outcomes);
+      return;
+    }
+    if (tree == null) {
+      tree = new KDTree<>();
+      for (int i = 0; i < this.features.size(); i++) {
+        tree.add(this.features.get(i), this.outcomes.get(i));
+      }
+      this.features = null;
+      this.outcomes = null;
+      flatTree = null;
+    }
     for (int i = 0; i < features.length; i++) {
       tree.add(features[i], outcome[i]);
     }
@@ -51,8 +78,12 @@ public final class KNearestNeighbours extends AbstractClassifier {
 
   @Override
   public DoubleVector predict(DoubleVector features) {
-    List<VectorDistanceTuple<DenseDoubleVector>> nearestNeighbours = tree
-        .getNearestNeighbours(features, k);
+    List<VectorDistanceTuple<DenseDoubleVector>> nearestNeighbours;
+    if (flatTree != null) {
+      nearestNeighbours = flatTree.getNearestNeighbours(features, k);
+    } else {
+      nearestNeighbours = tree.getNearestNeighbours(features, k);
+    }
 
     DenseDoubleVector outcomeHistogram = new DenseDoubleVector(numOutcomes);
     for (VectorDistanceTuple<DenseDoubleVector> tuple : nearestNeighbours) {
@@ -71,4 +102,13 @@ public final class KNearestNeighbours extends AbstractClassifier {
       return outcomeHistogram;
     }
   }
+
+  private static boolean containsSparse(DoubleVector[] features) {
+    for (DoubleVector feature : features) {
+      if (feature.isSparse()) {
+        return true;
+      }
+    }
+    return false;
+  }
 }
@@ -18,6 +18,18 @@ public enum ErrorFunction {
           .subtract((output.subtractBy(1.0d))
               .multiplyElementWise(logMatrix(target.subtractBy(1d))))).sum();
     }
+
+    @Override
+    public double getError(double[] y, double[] hypothesis, int rows,
+        int columns) {
+      double sum = 0d;
+      final int length = rows * columns;
+      for (int i = 0; i < length; i++) {
+        sum += -y[i] * log(hypothesis[i]) - (1d - y[i])
+            * log(1d - hypothesis[i]);
+      }
+      return sum;
+    }
   },
   SOFTMAX_ERROR {
     // cross entropy
@@ -25,6 +37,17 @@ public enum ErrorFunction {
     public double getError(DoubleMatrix output, DoubleMatrix target) {
       return output.multiplyElementWise(logMatrix(target)).sum();
     }
+
+    @Override
+    public double getError(double[] y, double[] hypothesis, int rows,
+        int columns) {
+      double sum = 0d;
+      final int length = rows * columns;
+      for (int i = 0; i < length; i++) {
+        sum += y[i] * log(hypothesis[i]);
+      }
+      return sum;
+    }
   },
   SQUARED_MEAN_ERROR {
     @Override
@@ -38,29 +61,91 @@ public enum ErrorFunction {
       }
       return avg / output.getRowCount();
     }
+
+    @Override
+    public double getError(double[] y, double[] hypothesis, int rows,
+        int columns) {
+      double avg = 0d;
+      final int length = rows * columns;
+      for (int i = 0; i < length; i++) {
+        double diff = y[i] - hypothesis[i];
+        avg += (diff * diff);
+      }
+      return avg / rows;
+    }
+
+    @Override
+    public double combineShardErrors(double[] errors, int[] rows) {
+      if (errors.length == 1) {
+        return errors[0];
+      }
+      // each shard is averaged over its own rows, so weight them back
+      double sum = 0d;
+      int totalRows = 0;
+      for (int i = 0; i < errors.length; i++) {
+        sum += errors[i] * rows[i];
+        totalRows += rows[i];
+      }
+      return sum / totalRows;
+    }
   };
 
   public abstract double getError(DoubleMatrix y, DoubleMatrix hypothesis);
 
+  /**
+   * Calculates the error on raw arrays, both need to have the same layout (e.g.
+   * column major) with rows * columns elements.
+   * 
+   * @param y the outcome.
+   * @param hypothesis the prediction.
+   * @param rows the number of rows (examples).
+   * @param columns the number of columns (outputs).
+   * @return the error, same as {@link #getError(DoubleMatrix, DoubleMatrix)}.
+   */
+  public abstract double getError(double[] y, double[] hypothesis, int rows,
+      int columns);
+
+  /**
+   * Combines the errors of disjoint row shards to the error of the whole
+   * matrix. Defaults to the sum, since most errors are sums over all rows.
+   * 
+   * @param errors the error of each shard.
+   * @param rows the number of rows of each shard.
+   * @return the error as if it was computed over all rows at once.
+   */
+  public double combineShardErrors(double[] errors, int[] rows) {
+    if (errors.length == 1) {
+      return errors[0];
+    }
+    double sum = 0d;
+    for (double error : errors) {
+      sum += error;
+    }
+    return sum;
+  }
+
   // helper on calculating the log of every element of the matrix
   static DoubleMatrix logMatrix(DoubleMatrix input) {
     DenseDoubleMatrix log = new DenseDoubleMatrix(input.getRowCount(),
         input.getColumnCount());
     for (int row = 0; row < log.getRowCount(); row++) {
       for (int col = 0; col < log.getColumnCount(); col++) {
-        double d = input.get(row, col);
-        // guard the logarithm
-        if (Double.isNaN(d) || Double.isInfinite(d)) {
-          log.set(row, col, 0d);
-        } else if (d <= 0d || d <= -0d) {
-          // assume a quite low value of log(1e-5)
-          log.set(row, col, -10d);
-        } else {
-          log.set(row, col, Math.log(d));
-        }
+        log.set(row, col, log(input.get(row, col)));
       }
     }
     return log;
   }
 
+  // guarded logarithm of a single element
+  static double log(double d) {
+    if (Double.isNaN(d) || Double.isInfinite(d)) {
+      return 0d;
+    } else if (d <= 0d || d <= -0d) {
+      // assume a quite low value of log(1e-5)
+      return -10d;
+    } else {
+      return Math.log(d);
+    }
+  }
+
 }
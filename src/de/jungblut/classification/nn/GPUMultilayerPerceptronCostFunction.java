@@ -1,7 +1,6 @@
 package de.jungblut.classification.nn;
 
-import de.jungblut.math.DoubleMatrix;
-import de.jungblut.math.cuda.JCUDAMatrixUtils;
+import de.jungblut.math.backend.JCUDAMatrixBackend;
 import de.jungblut.math.dense.DenseDoubleMatrix;
 
 /**
@@ -14,14 +13,7 @@ public final class GPUMultilayerPerceptronCostFunction extends
 
   public GPUMultilayerPerceptronCostFunction(MultilayerPerceptron network,
       DenseDoubleMatrix x, DenseDoubleMatrix y, double lambda) {
-    super(network, x, y, lambda);
-  }
-
-  @Override
-  protected DoubleMatrix multiply(DoubleMatrix a1, DoubleMatrix a2,
-      boolean a1Transpose, boolean a2Transpose) {
-    return JCUDAMatrixUtils.multiply((DenseDoubleMatrix) a1,
-        (DenseDoubleMatrix) a2, a1Transpose, a2Transpose);
+    super(network, x, y, lambda, JCUDAMatrixBackend.get());
   }
 
 }
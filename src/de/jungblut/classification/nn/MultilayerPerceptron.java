@@ -2,23 +2,36 @@ package de.jungblut.classification.nn;
 
 import java.io.DataInput;
 import java.io.DataOutput;
+import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
 
 import com.google.common.base.Preconditions;
 
 import de.jungblut.classification.AbstractClassifier;
 import de.jungblut.classification.Classifier;
+import de.jungblut.math.DoubleMatrix;
 import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
 import de.jungblut.math.activation.ActivationFunction;
 import de.jungblut.math.activation.LinearActivationFunction;
 import de.jungblut.math.activation.SigmoidActivationFunction;
 import de.jungblut.math.activation.SoftMaxActivationFunction;
+import de.jungblut.math.backend.CompressedSparseRowMatrix;
+import de.jungblut.math.backend.JBlasMatrixBackend;
+import de.jungblut.math.backend.JCUDAMatrixBackend;
+import de.jungblut.math.backend.JavaMatrixBackend;
+import de.jungblut.math.backend.MatrixBackend;
 import de.jungblut.math.dense.DenseDoubleMatrix;
 import de.jungblut.math.dense.DenseDoubleVector;
 import de.jungblut.math.minimize.CostFunction;
 import de.jungblut.math.minimize.DenseMatrixFolder;
+import de.jungblut.math.minimize.MatrixView;
 import de.jungblut.math.minimize.Minimizer;
+import de.jungblut.math.minimize.ParameterVector;
 import de.jungblut.math.minimize.StochasticMinimizer;
+import de.jungblut.writable.MappedModelFile;
 import de.jungblut.writable.MatrixWritable;
 
 /**
@@ -34,14 +47,62 @@ import de.jungblut.writable.MatrixWritable;
 public final class MultilayerPerceptron extends AbstractClassifier {
 
   /**
-   * Train normally on the CPU or on the GPU via CUDA?
+   * Train on the CPU via native BLAS, in pure java or on the GPU via CUDA?
+   * Backends are only loaded when their type is used, so the GPU is not
+   * probed unless it is chosen. CPU falls back to the pure java backend if
+   * the native library of jblas can't be loaded on this platform.
    */
   public static enum TrainingType {
-    CPU, GPU
+    CPU {
+      @Override
+      public MatrixBackend getBackend() {
+        if (JBlasMatrixBackend.isAvailable()) {
+          return JBlasMatrixBackend.get();
+        }
+        return JavaMatrixBackend.get();
+      }
+    },
+    JAVA {
+      @Override
+      public MatrixBackend getBackend() {
+        return JavaMatrixBackend.get();
+      }
+    },
+    GPU {
+      @Override
+      public MatrixBackend getBackend() {
+        return JCUDAMatrixBackend.get();
+      }
+    };
+
+    /**
+     * @return the backend that computes the matrix multiplications.
+     */
+    public abstract MatrixBackend getBackend();
+  }
+
+  /**
+   * Numeric precision of the training data, the activations and the
+   * serialized weights. FLOAT halves the heap that the training data and the
+   * activations occupy and the bytes that every matrix multiplication has to
+   * move, so memory bound networks train and predict faster. In return only
+   * about seven significant digits remain: the weights are rounded to single
+   * precision, cost and gradient deviate from the double precision values in
+   * the order of 1e-6 relative, which is well below the noise of a stochastic
+   * minimizer but may end line search minimizers a few iterations earlier.
+   * The stochastic evaluation of single examples and mini batches always
+   * computes in double precision. The MLP benchmarks are parameterized with
+   * the precision to measure the difference on the target hardware.
+   */
+  public static enum Precision {
+    DOUBLE, FLOAT
   }
 
   public static long SEED = System.currentTimeMillis();
 
+  // number of rows that are forward propagated at once in batch predictions
+  private static final int PREDICTION_BLOCK_SIZE = 256;
+
   /**
    * Configuration for training a neural net through the {@link Classifier}
    * 
@@ -54,10 +115,14 @@ public final class MultilayerPerceptron extends AbstractClassifier {
     final ActivationFunction[] activationFunctions;
 
     TrainingType type = TrainingType.CPU;
+    Precision precision = Precision.DOUBLE;
     double lambda = 0d;
     boolean verbose = false;
     double hiddenDropoutProbability = 0d;
     double visibleDropoutProbability = 0d;
+    int numThreads = 1;
+    boolean sparseInput = false;
+    int negativeSamples = 0;
     WeightMatrix[] weights;
 
     private MultilayerPerceptronConfiguration(int[] layer,
@@ -81,13 +146,22 @@ public final class MultilayerPerceptron extends AbstractClassifier {
 
     /**
      * Sets the training type, it defaults to CPU- so only use if you want to
-     * use the GPU.
+     * use the GPU or the pure java implementation.
      */
     public MultilayerPerceptronConfiguration trainingType(TrainingType type) {
       this.type = type;
       return this;
     }
 
+    /**
+     * Sets the numeric precision, it defaults to DOUBLE. See {@link Precision}
+     * for the tradeoff.
+     */
+    public MultilayerPerceptronConfiguration precision(Precision precision) {
+      this.precision = precision;
+      return this;
+    }
+
     /**
      * Sets the regularization parameter lambda, defaults to 0 if not set.
      */
@@ -128,6 +202,46 @@ public final class MultilayerPerceptron extends AbstractClassifier {
       return this;
     }
 
+    /**
+     * Sets the number of threads to compute the full batch cost function with.
+     * The training data is split into as many shards whose forward and
+     * backward passes are computed in parallel, defaults to 1.
+     */
+    public MultilayerPerceptronConfiguration numThreads(int numThreads) {
+      Preconditions.checkArgument(numThreads > 0,
+          "Number of threads must be positive!");
+      this.numThreads = numThreads;
+      return this;
+    }
+
+    /**
+     * Stores the full batch training set in compressed sparse row format. The
+     * input layer product and its gradient are then only computed over the
+     * non-zero features, so memory and time scale with the number of non-zeros
+     * instead of rows times features. Sparse input is always computed in
+     * double precision.
+     */
+    public MultilayerPerceptronConfiguration sparseInput() {
+      this.sparseInput = true;
+      return this;
+    }
+
+    /**
+     * Trains a softmax output layer with negative sampling. Each row only
+     * computes the output units of its positive classes and of the given number
+     * of uniformly sampled negative classes, the softmax is normalized over
+     * these candidates. The training cost per row then grows with the number of
+     * samples instead of the number of classes. The predictions always use the
+     * exact softmax. Needs a hidden layer and double precision, defaults to 0,
+     * which trains the exact softmax.
+     */
+    public MultilayerPerceptronConfiguration negativeSampling(int samples) {
+      Preconditions.checkArgument(samples > 0,
+          "Number of negative samples must be positive!");
+      this.negativeSamples = samples;
+      return this;
+    }
+
     /**
      * Sets the initial weights, maybe from an already trained network, or from
      * a fancy random initialization technique.
@@ -196,10 +310,42 @@ public final class MultilayerPerceptron extends AbstractClassifier {
   private double lambda;
   private double hiddenDropoutProbability;
   private double visibleDropoutProbability;
+  private int numThreads = 1;
+  private boolean sparseInput;
+  private int negativeSamples;
   private TrainingType type;
+  private Precision precision = Precision.DOUBLE;
   private boolean verbose;
   private ErrorFunction error = ErrorFunction.SIGMOID_ERROR;
 
+  // folded weights for the batch prediction, packed on first use
+  private volatile PackedWeights packedWeights;
+  // each predicting thread gets its own activation buffers
+  private final ThreadLocal<double[][]> predictionBuffers = new ThreadLocal<double[][]>() {
+    @Override
+    protected double[][] initialValue() {
+      double[][] buffers = new double[layers.length][];
+      for (int i = 0; i < layers.length; i++) {
+        // all but the output layer get an extra column for the bias
+        int columns = i < layers.length - 1 ? layers[i] + 1 : layers[i];
+        buffers[i] = new double[PREDICTION_BLOCK_SIZE * columns];
+      }
+      return buffers;
+    }
+  };
+  private final ThreadLocal<float[][]> floatPredictionBuffers = new ThreadLocal<float[][]>() {
+    @Override
+    protected float[][] initialValue() {
+      // the input is converted from the double buffer
+      float[][] buffers = new float[layers.length][];
+      for (int i = 0; i < layers.length; i++) {
+        int columns = i < layers.length - 1 ? layers[i] + 1 : layers[i];
+        buffers[i] = new float[PREDICTION_BLOCK_SIZE * columns];
+      }
+      return buffers;
+    }
+  };
+
   private MultilayerPerceptron(MultilayerPerceptronConfiguration conf) {
 
     this.layers = conf.layer;
@@ -208,8 +354,12 @@ public final class MultilayerPerceptron extends AbstractClassifier {
     this.stochasticMinimizer = conf.stochasticMinimizer;
     this.lambda = conf.lambda;
     this.type = conf.type;
+    this.precision = conf.precision;
     this.hiddenDropoutProbability = conf.hiddenDropoutProbability;
     this.visibleDropoutProbability = conf.visibleDropoutProbability;
+    this.numThreads = conf.numThreads;
+    this.sparseInput = conf.sparseInput;
+    this.negativeSamples = conf.negativeSamples;
     this.verbose = conf.verbose;
 
     // if the activations are not supplied, we are using standard linear-sigmoid
@@ -247,6 +397,14 @@ public final class MultilayerPerceptron extends AbstractClassifier {
     } else {
       error = ErrorFunction.SIGMOID_ERROR;
     }
+    if (negativeSamples > 0) {
+      Preconditions.checkArgument(error == ErrorFunction.SOFTMAX_ERROR,
+          "Negative sampling needs a softmax output layer!");
+      Preconditions.checkArgument(layers.length > 2,
+          "Negative sampling needs a hidden layer!");
+      Preconditions.checkArgument(precision == Precision.DOUBLE,
+          "Negative sampling needs double precision!");
+    }
   }
 
   /**
@@ -254,13 +412,15 @@ public final class MultilayerPerceptron extends AbstractClassifier {
    * to query the network after a training session.
    */
   private MultilayerPerceptron(int[] layers, WeightMatrix[] weights,
-      ActivationFunction[] activations) {
+      ActivationFunction[] activations, Precision precision) {
     this.layers = layers;
+    this.precision = precision;
     this.weights = weights;
     this.activations = activations;
     this.minimizer = null;
     this.stochasticMinimizer = null;
     this.maxIterations = -1;
+    this.type = TrainingType.CPU;
   }
 
   /**
@@ -268,6 +428,11 @@ public final class MultilayerPerceptron extends AbstractClassifier {
    */
   @Override
   public DenseDoubleVector predict(DoubleVector xi) {
+    if (precision == Precision.FLOAT) {
+      DoubleVector row = predictBatch(new DoubleVector[] { xi })
+          .getRowVector(0);
+      return new DenseDoubleVector(row.toArray());
+    }
     DoubleVector activationVector = addBias(xi);
     final int len = layers.length - 1;
     for (int i = 1; i <= len; i++) {
@@ -295,6 +460,175 @@ public final class MultilayerPerceptron extends AbstractClassifier {
     return activations;
   }
 
+  /**
+   * Predicts the outcome of each row of the given matrix. The rows are forward
+   * propagated in blocks through matrix multiplications on the backend of the
+   * training type, the bias is part of the multiplication. This is safe to be
+   * called from multiple threads, each thread reuses its own buffers.
+   * 
+   * @param features the features, one example per row.
+   * @return a new matrix with the output activations of each example in the
+   *         same row.
+   */
+  public DenseDoubleMatrix predict(DoubleMatrix features) {
+    return predictBatch(features, null);
+  }
+
+  /**
+   * Predicts the outcome of each of the given examples, same as
+   * {@link #predict(DoubleMatrix)}.
+   * 
+   * @param features the examples.
+   * @return a new matrix with the output activations of each example in the
+   *         row of its index.
+   */
+  public DenseDoubleMatrix predictBatch(DoubleVector[] features) {
+    return predictBatch(null, features);
+  }
+
+  private DenseDoubleMatrix predictBatch(DoubleMatrix matrix,
+      DoubleVector[] vectors) {
+    final int m = matrix != null ? matrix.getRowCount() : vectors.length;
+    final int last = layers.length - 1;
+    final int inputs = layers[0];
+    final PackedWeights packed = getPackedWeights();
+    final MatrixBackend backend = type.getBackend();
+    final double[][] a = predictionBuffers.get();
+
+    double[] result = new double[m * layers[last]];
+    for (int start = 0; start < m; start += PREDICTION_BLOCK_SIZE) {
+      final int rows = Math.min(PREDICTION_BLOCK_SIZE, m - start);
+      // copy the block in column major order behind the bias column
+      double[] input = a[0];
+      Arrays.fill(input, 0, rows, 1d);
+      Arrays.fill(input, rows, rows * (inputs + 1), 0d);
+      for (int row = 0; row < rows; row++) {
+        if (matrix != null && !matrix.isSparse()) {
+          for (int col = 0; col < inputs; col++) {
+            input[(col + 1) * rows + row] = matrix.get(start + row, col);
+          }
+        } else {
+          DoubleVector v = matrix != null ? matrix.getRowVector(start + row)
+              : vectors[start + row];
+          if (v.isSparse()) {
+            Iterator<DoubleVectorElement> iterateNonZero = v.iterateNonZero();
+            while (iterateNonZero.hasNext()) {
+              DoubleVectorElement next = iterateNonZero.next();
+              input[(next.getIndex() + 1) * rows + row] = next.getValue();
+            }
+          } else {
+            for (int col = 0; col < inputs; col++) {
+              input[(col + 1) * rows + row] = v.get(col);
+            }
+          }
+        }
+      }
+
+      if (precision == Precision.FLOAT) {
+        forwardFloat(packed, backend, input, rows, result, start, m);
+        continue;
+      }
+      for (int i = 1; i <= last; i++) {
+        // the hidden layers have their bias units in the first column
+        int offset = i < last ? rows : 0;
+        backend.gemm(false, true, rows, layers[i], layers[i - 1] + 1, 1d,
+            a[i - 1], 0, rows, packed.theta, packed.offsets[i - 1], layers[i],
+            0d, a[i], offset, rows);
+        if (i < last) {
+          Arrays.fill(a[i], 0, rows, 1d);
+        }
+        activations[i].applyInPlace(a[i], offset, rows, layers[i]);
+      }
+
+      for (int col = 0; col < layers[last]; col++) {
+        System.arraycopy(a[last], col * rows, result, col * m + start, rows);
+      }
+    }
+    return new DenseDoubleMatrix(result, m, layers[last]);
+  }
+
+  /**
+   * Forward propagates a block in single precision and writes the output into
+   * the result.
+   */
+  private void forwardFloat(PackedWeights packed, MatrixBackend backend,
+      double[] input, int rows, double[] result, int start, int m) {
+    final int last = layers.length - 1;
+    final float[][] a = floatPredictionBuffers.get();
+    final int inputLength = rows * (layers[0] + 1);
+    for (int k = 0; k < inputLength; k++) {
+      a[0][k] = (float) input[k];
+    }
+    for (int i = 1; i <= last; i++) {
+      int offset = i < last ? rows : 0;
+      backend.gemm(false, true, rows, layers[i], layers[i - 1] + 1, 1f,
+          a[i - 1], 0, rows, packed.floatTheta, packed.offsets[i - 1],
+          layers[i], 0f, a[i], offset, rows);
+      if (i < last) {
+        Arrays.fill(a[i], 0, rows, 1f);
+      }
+      activations[i].applyInPlace(a[i], offset, rows, layers[i]);
+    }
+    for (int col = 0; col < layers[last]; col++) {
+      for (int row = 0; row < rows; row++) {
+        result[col * m + start + row] = a[last][col * rows + row];
+      }
+    }
+  }
+
+  /**
+   * @return the packed weights, repacked if a weight matrix was replaced.
+   */
+  private PackedWeights getPackedWeights() {
+    PackedWeights packed = packedWeights;
+    if (packed == null || !packed.isPackedFrom(weights)) {
+      packed = new PackedWeights(weights, layers, precision);
+      packedWeights = packed;
+    }
+    return packed;
+  }
+
+  /**
+   * The weight matrices folded column major into a single array.
+   */
+  private static final class PackedWeights {
+
+    private final DenseDoubleMatrix[] source;
+    private final double[] theta;
+    // rounded copy of theta, only packed for single precision
+    private final float[] floatTheta;
+    private final int[] offsets;
+
+    PackedWeights(WeightMatrix[] weights, int[] layers, Precision precision) {
+      this.source = new DenseDoubleMatrix[weights.length];
+      for (int i = 0; i < weights.length; i++) {
+        source[i] = weights[i].getWeights();
+      }
+      this.theta = ParameterVector.copyOf(source).getData();
+      if (precision == Precision.FLOAT) {
+        this.floatTheta = new float[theta.length];
+        for (int i = 0; i < theta.length; i++) {
+          floatTheta[i] = (float) theta[i];
+        }
+      } else {
+        this.floatTheta = null;
+      }
+      this.offsets = ParameterVector
+          .computeOffsets(MultilayerPerceptronCostFunction
+              .computeUnfoldParameters(layers));
+    }
+
+    // changes inside of the weight matrices are not detected, only new ones
+    boolean isPackedFrom(WeightMatrix[] weights) {
+      for (int i = 0; i < weights.length; i++) {
+        if (weights[i].getWeights() != source[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
   private static DoubleVector addBias(DoubleVector activations) {
     DenseDoubleVector v = new DenseDoubleVector(activations.getLength() + 1);
     v.set(0, 1.0d); // bias unit is always at index zero
@@ -306,13 +640,15 @@ public final class MultilayerPerceptron extends AbstractClassifier {
 
   @Override
   public void train(DoubleVector[] features, DenseDoubleVector[] outcome) {
-    if (type == TrainingType.CPU) {
-      train(new DenseDoubleMatrix(features), new DenseDoubleMatrix(outcome),
-          minimizer, maxIterations, lambda, verbose);
-    } else {
-      trainGPU(new DenseDoubleMatrix(features), new DenseDoubleMatrix(outcome),
-          minimizer, maxIterations, lambda, verbose);
+    if (sparseInput) {
+      train(CompressedSparseRowMatrix.fromVectors(features),
+          new DenseDoubleMatrix(outcome), minimizer, maxIterations, lambda,
+          verbose);
+      return;
     }
+    // the cost function multiplies on the backend of the training type
+    train(new DenseDoubleMatrix(features), new DenseDoubleMatrix(outcome),
+        minimizer, maxIterations, lambda, verbose);
   }
 
   /**
@@ -338,13 +674,7 @@ public final class MultilayerPerceptron extends AbstractClassifier {
         this, new DenseDoubleMatrix(1, 0), null, lambda);
     theta = stochasticMinimizer.minimize(costFunction, theta, maxIterations,
         verbose);
-    int[][] unfoldParameters = MultilayerPerceptronCostFunction
-        .computeUnfoldParameters(layers);
-    DenseDoubleMatrix[] unfoldMatrices = DenseMatrixFolder.unfoldMatrices(
-        theta, unfoldParameters);
-    for (int i = 0; i < unfoldMatrices.length; i++) {
-      getWeights()[i].setWeights(unfoldMatrices[i]);
-    }
+    setFoldedThetaVector(theta);
   }
 
   /**
@@ -365,10 +695,11 @@ public final class MultilayerPerceptron extends AbstractClassifier {
    */
   public final double train(DenseDoubleMatrix x, DenseDoubleMatrix y,
       Minimizer minimizer, int maxIterations, double lambda, boolean verbose) {
-    CostFunction costFunction = new MultilayerPerceptronCostFunction(this, x,
-        y, lambda);
-    return trainInternal(minimizer, maxIterations, verbose, costFunction,
-        getFoldedThetaVector());
+    try (MultilayerPerceptronCostFunction costFunction = new MultilayerPerceptronCostFunction(
+        this, x, y, lambda)) {
+      return trainInternal(minimizer, maxIterations, verbose, costFunction,
+          getFoldedThetaVector());
+    }
   }
 
   /**
@@ -392,9 +723,35 @@ public final class MultilayerPerceptron extends AbstractClassifier {
   public final double train(DenseDoubleMatrix x, DenseDoubleMatrix y,
       Minimizer minimizer, int maxIterations, double lambda, boolean verbose,
       DenseDoubleVector theta) {
-    CostFunction costFunction = new MultilayerPerceptronCostFunction(this, x,
-        y, lambda);
-    return trainInternal(minimizer, maxIterations, verbose, costFunction, theta);
+    try (MultilayerPerceptronCostFunction costFunction = new MultilayerPerceptronCostFunction(
+        this, x, y, lambda)) {
+      return trainInternal(minimizer, maxIterations, verbose, costFunction,
+          theta);
+    }
+  }
+
+  /**
+   * Full backpropagation training method on sparse features, the input layer
+   * is only computed over the non-zero features. Note that it only guarantees
+   * to find a global minimum solution in case of linear or convex problems
+   * (zero / one hidden layer), of course this is also dependend on the concrete
+   * minimizer implementation.
+   * 
+   * @param x the training examples in compressed sparse row format.
+   * @param y the outcomes for the training examples.
+   * @param minimizer the minimizer to use to train the neural network.
+   * @param maxIterations the number of maximum iterations to train.
+   * @param lambda the given regularization parameter.
+   * @param verbose output to console with the last given errors.
+   * @return the cost of the training.
+   */
+  public final double train(CompressedSparseRowMatrix x, DenseDoubleMatrix y,
+      Minimizer minimizer, int maxIterations, double lambda, boolean verbose) {
+    try (MultilayerPerceptronCostFunction costFunction = new MultilayerPerceptronCostFunction(
+        this, x, y, lambda)) {
+      return trainInternal(minimizer, maxIterations, verbose, costFunction,
+          getFoldedThetaVector());
+    }
   }
 
   /**
@@ -418,9 +775,11 @@ public final class MultilayerPerceptron extends AbstractClassifier {
   public final double trainGPU(DenseDoubleMatrix x, DenseDoubleMatrix y,
       Minimizer minimizer, int maxIterations, double lambda, boolean verbose,
       DenseDoubleVector theta) {
-    CostFunction costFunction = new GPUMultilayerPerceptronCostFunction(this,
-        x, y, lambda);
-    return trainInternal(minimizer, maxIterations, verbose, costFunction, theta);
+    try (GPUMultilayerPerceptronCostFunction costFunction = new GPUMultilayerPerceptronCostFunction(
+        this, x, y, lambda)) {
+      return trainInternal(minimizer, maxIterations, verbose, costFunction,
+          theta);
+    }
   }
 
   /**
@@ -441,10 +800,11 @@ public final class MultilayerPerceptron extends AbstractClassifier {
    */
   public final double trainGPU(DenseDoubleMatrix x, DenseDoubleMatrix y,
       Minimizer minimizer, int maxIterations, double lambda, boolean verbose) {
-    CostFunction costFunction = new GPUMultilayerPerceptronCostFunction(this,
-        x, y, lambda);
-    return trainInternal(minimizer, maxIterations, verbose, costFunction,
-        getFoldedThetaVector());
+    try (GPUMultilayerPerceptronCostFunction costFunction = new GPUMultilayerPerceptronCostFunction(
+        this, x, y, lambda)) {
+      return trainInternal(minimizer, maxIterations, verbose, costFunction,
+          getFoldedThetaVector());
+    }
   }
 
   /**
@@ -453,9 +813,9 @@ public final class MultilayerPerceptron extends AbstractClassifier {
    * @param minimizer the minimizer to use.
    * @param maxIterations the maximum number of iterations to take.
    * @param verbose output to console with the last given errors.
-   * @param costFunction the costfunction to use, normally GPU training uses the
-   *          {@link GPUMultilayerPerceptronCostFunction} and the normal
-   *          training uses {@link MultilayerPerceptronCostFunction}.
+   * @param costFunction the costfunction to use, normally a
+   *          {@link MultilayerPerceptronCostFunction} with the backend of the
+   *          training type.
    * @param initialTheta the initial weights to be used (init with initTheta()).
    * @return the cost of the training.
    */
@@ -464,15 +824,7 @@ public final class MultilayerPerceptron extends AbstractClassifier {
     Preconditions.checkNotNull(minimizer, "Minimizer must be supplied!");
     DoubleVector theta = minimizer.minimize(costFunction, initialTheta,
         maxIterations, verbose);
-    int[][] unfoldParameters = MultilayerPerceptronCostFunction
-        .computeUnfoldParameters(layers);
-
-    DenseDoubleMatrix[] unfoldMatrices = DenseMatrixFolder.unfoldMatrices(
-        theta, unfoldParameters);
-
-    for (int i = 0; i < unfoldMatrices.length; i++) {
-      getWeights()[i].setWeights(unfoldMatrices[i]);
-    }
+    setFoldedThetaVector(theta);
 
     return costFunction.evaluateCost(theta).getFirst();
   }
@@ -486,7 +838,28 @@ public final class MultilayerPerceptron extends AbstractClassifier {
     for (int i = 0; i < weightMatrices.length; i++) {
       weightMatrices[i] = getWeights()[i].getWeights();
     }
-    return DenseMatrixFolder.foldMatrices(weightMatrices);
+    return ParameterVector.copyOf(weightMatrices).asVector();
+  }
+
+  /**
+   * Sets the weight matrices from the given folded theta vector. In single
+   * precision the weights are rounded, so the model predicts the same after
+   * serialization.
+   */
+  private void setFoldedThetaVector(DoubleVector theta) {
+    MatrixView[] views = DenseMatrixFolder.unfoldViews(theta,
+        MultilayerPerceptronCostFunction.computeUnfoldParameters(layers));
+    for (int i = 0; i < views.length; i++) {
+      DenseDoubleMatrix matrix = views[i].toDenseMatrix();
+      if (precision == Precision.FLOAT) {
+        for (int row = 0; row < matrix.getRowCount(); row++) {
+          for (int col = 0; col < matrix.getColumnCount(); col++) {
+            matrix.set(row, col, (float) matrix.get(row, col));
+          }
+        }
+      }
+      getWeights()[i].setWeights(matrix);
+    }
   }
 
   public WeightMatrix[] getWeights() {
@@ -501,6 +874,10 @@ public final class MultilayerPerceptron extends AbstractClassifier {
     return activations;
   }
 
+  int getNegativeSamples() {
+    return this.negativeSamples;
+  }
+
   double getHiddenDropoutProbability() {
     return this.hiddenDropoutProbability;
   }
@@ -513,6 +890,18 @@ public final class MultilayerPerceptron extends AbstractClassifier {
     return this.error;
   }
 
+  TrainingType getTrainingType() {
+    return this.type;
+  }
+
+  int getNumThreads() {
+    return this.numThreads;
+  }
+
+  Precision getPrecision() {
+    return this.precision;
+  }
+
   /**
    * Deserializes a new neural network from the given input stream. Note that
    * "in" will not be closed by this method.
@@ -520,6 +909,12 @@ public final class MultilayerPerceptron extends AbstractClassifier {
   public static MultilayerPerceptron deserialize(DataInput in)
       throws IOException {
     int numLayers = in.readInt();
+    // single precision models are marked by a negative number of layers
+    Precision precision = Precision.DOUBLE;
+    if (numLayers < 0) {
+      precision = Precision.FLOAT;
+      numLayers = -numLayers;
+    }
     int[] layers = new int[numLayers];
     for (int i = 0; i < numLayers; i++) {
       layers[i] = in.readInt();
@@ -527,23 +922,71 @@ public final class MultilayerPerceptron extends AbstractClassifier {
 
     WeightMatrix[] weights = new WeightMatrix[numLayers - 1];
     for (int i = 0; i < weights.length; i++) {
-      DenseDoubleMatrix weightMatrix = (DenseDoubleMatrix) MatrixWritable
-          .read(in);
+      DenseDoubleMatrix weightMatrix;
+      if (precision == Precision.FLOAT) {
+        weightMatrix = readFloatMatrix(in);
+      } else {
+        weightMatrix = (DenseDoubleMatrix) MatrixWritable.read(in);
+      }
       weights[i] = new WeightMatrix(weightMatrix);
     }
 
     ActivationFunction[] funcs = new ActivationFunction[numLayers];
     for (int i = 0; i < numLayers; i++) {
-      try {
-        funcs[i] = (ActivationFunction) Class.forName(in.readUTF())
-            .newInstance();
-      } catch (InstantiationException | IllegalAccessException
-          | ClassNotFoundException e) {
-        throw new RuntimeException(e);
-      }
+      funcs[i] = newActivation(in.readUTF());
+    }
+
+    return new MultilayerPerceptron(layers, weights, funcs, precision);
+  }
+
+  /**
+   * Opens a network that was written by
+   * {@link #serializeMapped(MultilayerPerceptron, File)}. The file is memory
+   * mapped, so the weights are bulk copied from the shared page cache.
+   */
+  public static MultilayerPerceptron deserializeMapped(File file)
+      throws IOException {
+    MappedModelFile in = MappedModelFile.open(file, MultilayerPerceptron.class);
+    int[] layers = in.getInts("layers");
+    WeightMatrix[] weights = new WeightMatrix[layers.length - 1];
+    for (int i = 0; i < weights.length; i++) {
+      weights[i] = new WeightMatrix(in.getMatrix("weights." + i));
+    }
+    ActivationFunction[] funcs = new ActivationFunction[layers.length];
+    for (int i = 0; i < layers.length; i++) {
+      funcs[i] = newActivation(in.getString("activations." + i));
     }
+    return new MultilayerPerceptron(layers, weights, funcs,
+        Precision.valueOf(in.getString("precision")));
+  }
+
+  /**
+   * Writes this network at its current state to a page aligned model file that
+   * can be opened with {@link #deserializeMapped(File)}.
+   */
+  public static void serializeMapped(MultilayerPerceptron model, File file)
+      throws IOException {
+    MappedModelFile.Writer out = MappedModelFile
+        .newWriter(MultilayerPerceptron.class);
+    out.putInts("layers", model.layers);
+    out.putString("precision", model.precision.name());
+    for (int i = 0; i < model.weights.length; i++) {
+      out.putMatrix("weights." + i, model.weights[i].getWeights());
+    }
+    for (int i = 0; i < model.activations.length; i++) {
+      out.putString("activations." + i, model.activations[i].getClass()
+          .getName());
+    }
+    out.write(file);
+  }
 
-    return new MultilayerPerceptron(layers, weights, funcs);
+  private static ActivationFunction newActivation(String className) {
+    try {
+      return (ActivationFunction) Class.forName(className).newInstance();
+    } catch (InstantiationException | IllegalAccessException
+        | ClassNotFoundException e) {
+      throw new RuntimeException(e);
+    }
   }
 
   /**
@@ -552,7 +995,8 @@ public final class MultilayerPerceptron extends AbstractClassifier {
    */
   public static void serialize(MultilayerPerceptron model, DataOutput out)
       throws IOException {
-    out.writeInt(model.layers.length);
+    boolean single = model.precision == Precision.FLOAT;
+    out.writeInt(single ? -model.layers.length : model.layers.length);
     // first write all the layers
     for (int l : model.layers) {
       out.writeInt(l);
@@ -560,7 +1004,11 @@ public final class MultilayerPerceptron extends AbstractClassifier {
     // write the weight matrices
     for (WeightMatrix mat : model.weights) {
       DenseDoubleMatrix weights = mat.getWeights();
-      MatrixWritable.write(weights, out);
+      if (single) {
+        writeFloatMatrix(weights, out);
+      } else {
+        MatrixWritable.write(weights, out);
+      }
     }
     // then write the activation classes
     for (ActivationFunction func : model.activations) {
@@ -568,4 +1016,26 @@ public final class MultilayerPerceptron extends AbstractClassifier {
     }
   }
 
+  private static void writeFloatMatrix(DenseDoubleMatrix matrix, DataOutput out)
+      throws IOException {
+    out.writeInt(matrix.getRowCount());
+    out.writeInt(matrix.getColumnCount());
+    for (int col = 0; col < matrix.getColumnCount(); col++) {
+      for (int row = 0; row < matrix.getRowCount(); row++) {
+        out.writeFloat((float) matrix.get(row, col));
+      }
+    }
+  }
+
+  private static DenseDoubleMatrix readFloatMatrix(DataInput in)
+      throws IOException {
+    int rows = in.readInt();
+    int cols = in.readInt();
+    double[] data = new double[rows * cols];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = in.readFloat();
+    }
+    return new DenseDoubleMatrix(data, rows, cols);
+  }
+
 }
@@ -1,56 +1,137 @@
 package de.jungblut.classification.nn;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 
-import de.jungblut.math.DoubleMatrix;
+import com.google.common.base.Preconditions;
+
+import de.jungblut.classification.nn.MultilayerPerceptron.Precision;
 import de.jungblut.math.DoubleVector;
 import de.jungblut.math.activation.ActivationFunction;
+import de.jungblut.math.backend.CompressedSparseRowMatrix;
+import de.jungblut.math.backend.MatrixBackend;
 import de.jungblut.math.dense.DenseDoubleMatrix;
 import de.jungblut.math.dense.DenseDoubleVector;
-import de.jungblut.math.minimize.CostFunction;
 import de.jungblut.math.minimize.DenseMatrixFolder;
-import de.jungblut.math.minimize.StochasticCostFunction;
+import de.jungblut.math.minimize.InPlaceCostFunction;
+import de.jungblut.math.minimize.MiniBatch;
+import de.jungblut.math.minimize.MiniBatchCostFunction;
+import de.jungblut.math.minimize.ParameterVector;
 import de.jungblut.math.tuple.Tuple;
+import de.jungblut.partition.BlockPartitioner;
+import de.jungblut.partition.Boundaries.Range;
 
 /**
- * Neural network costfunction for a multilayer perceptron.
+ * Neural network costfunction for a multilayer perceptron. <br/>
+ * The training data is stored in column major arrays, the activations and
+ * deltas are computed in workspaces that are allocated once and reused across
+ * evaluations. The weights are read directly from the folded parameters and
+ * the gradient is written directly in the folded layout. With
+ * {@link Precision#FLOAT} the full batch is stored and computed in single
+ * precision, the stochastic evaluations always compute in double precision.
+ * Features in {@link CompressedSparseRowMatrix} format compute the input layer
+ * only over their non-zero elements. With negative sampling the softmax output
+ * is only computed for the positive and a sample of the negative classes.
+ * Full batches with more than one thread are computed in a pool of this cost
+ * function, it must be closed after the training to stop its threads.
  * 
  * @author thomas.jungblut
  */
-public class MultilayerPerceptronCostFunction implements CostFunction,
-    StochasticCostFunction {
+public class MultilayerPerceptronCostFunction implements InPlaceCostFunction,
+    MiniBatchCostFunction, AutoCloseable {
 
-  private final DenseDoubleMatrix x;
-  private final DenseDoubleMatrix y;
   private final double lambda;
 
-  private final int m;
   private final int[] layerSizes;
-  private final int[][] unfoldParameters;
+  // offset of each weight matrix in the folded parameters
+  private final int[] thetaOffsets;
+  private final int numParameters;
 
   private final ActivationFunction[] activations;
   private final ErrorFunction error;
 
-  private final DenseDoubleVector ones;
-
   private final double visibleDropoutProbability;
   private final double hiddenDropoutProbability;
-  private final Random rnd;
+  // number of sampled negative classes, 0 for the exact output layer
+  private final int negativeSamples;
+  private final MatrixBackend backend;
 
+  // rows of x/y split into consecutive blocks, a single one if sequential
+  private final Shard[] shards;
+  private final int[] shardRows;
+  private final ForkJoinPool pool;
+  // single row shard for the stochastic evaluation, created on demand
+  private final AtomicReference<DoubleShard> stochasticShard = new AtomicReference<>();
+  // shard of the size of a full mini batch, created on demand
+  private final AtomicReference<DoubleShard> batchShard = new AtomicReference<>();
+
+  /**
+   * Creates a new costfunction that multiplies on the backend of the training
+   * type of the given network.
+   */
   public MultilayerPerceptronCostFunction(MultilayerPerceptron network,
       DenseDoubleMatrix x, DenseDoubleMatrix y, double lambda) {
-    this.m = x.getRowCount();
-    this.ones = DenseDoubleVector.ones(m);
-    this.x = new DenseDoubleMatrix(ones, x);
-    this.y = y;
+    this(network, x, y, lambda, network.getTrainingType().getBackend());
+  }
+
+  /**
+   * Creates a new costfunction that multiplies on the given backend.
+   */
+  public MultilayerPerceptronCostFunction(MultilayerPerceptron network,
+      DenseDoubleMatrix x, DenseDoubleMatrix y, double lambda,
+      MatrixBackend backend) {
+    this(network, x, null, y, lambda, backend);
+  }
+
+  /**
+   * Creates a new costfunction on sparse features, the hidden layers multiply
+   * on the backend of the training type of the given network.
+   */
+  public MultilayerPerceptronCostFunction(MultilayerPerceptron network,
+      CompressedSparseRowMatrix x, DenseDoubleMatrix y, double lambda) {
+    this(network, null, x, y, lambda, network.getTrainingType().getBackend());
+  }
+
+  private MultilayerPerceptronCostFunction(MultilayerPerceptron network,
+      DenseDoubleMatrix x, CompressedSparseRowMatrix sparseX,
+      DenseDoubleMatrix y, double lambda, MatrixBackend backend) {
+    this.backend = backend;
     this.lambda = lambda;
     this.layerSizes = network.getLayers();
-    this.unfoldParameters = computeUnfoldParameters(layerSizes);
     this.activations = network.getActivations();
     this.error = network.getError();
     this.visibleDropoutProbability = network.getVisibleDropoutProbability();
     this.hiddenDropoutProbability = network.getHiddenDropoutProbability();
-    this.rnd = new Random();
+    this.negativeSamples = network.getNegativeSamples();
+
+    int[][] unfoldParameters = computeUnfoldParameters(layerSizes);
+    this.thetaOffsets = ParameterVector.computeOffsets(unfoldParameters);
+    this.numParameters = ParameterVector.computeLength(unfoldParameters);
+
+    // stochastic training doesn't supply a full batch
+    if (y != null) {
+      int rows = sparseX != null ? sparseX.getRowCount() : x.getRowCount();
+      int numThreads = Math.max(1, Math.min(network.getNumThreads(), rows));
+      this.shards = sparseX != null ? partition(sparseX, y, numThreads)
+          : partition(x, y, numThreads, network.getPrecision());
+      this.shardRows = new int[shards.length];
+      for (int i = 0; i < shards.length; i++) {
+        shardRows[i] = shards[i].rows;
+      }
+      this.pool = shards.length > 1 ? new ForkJoinPool(shards.length) : null;
+    } else {
+      this.shards = null;
+      this.shardRows = null;
+      this.pool = null;
+    }
   }
 
   /**
@@ -59,15 +140,73 @@ public class MultilayerPerceptronCostFunction implements CostFunction,
   @Override
   public Tuple<Double, DoubleVector> evaluateCost(DoubleVector input,
       DoubleVector x, DenseDoubleVector y) {
-    DenseDoubleMatrix tmpX = new DenseDoubleMatrix(1, x.getLength() + 1);
-    // add bias
-    tmpX.set(0, 0, 1d);
-    // copy the rest into the matrix
-    for (int i = 1; i < tmpX.getColumnCount(); i++) {
-      tmpX.set(0, i, x.get(i - 1));
+    // take the cached shard, concurrent callers simply create their own
+    DoubleShard shard = stochasticShard.getAndSet(null);
+    if (shard == null) {
+      shard = new DoubleShard(1, new double[x.getDimension() + 1],
+          new double[y.getDimension()]);
+    }
+    // add bias and copy the rest into the shard
+    shard.x[0] = 1d;
+    for (int i = 0; i < x.getDimension(); i++) {
+      shard.x[i + 1] = x.get(i);
+    }
+    for (int i = 0; i < y.getDimension(); i++) {
+      shard.y[i] = y.get(i);
+    }
+    shard.indexPositives();
+
+    double[] theta = input.toArray();
+    double[] gradient = new double[numParameters];
+    Workspace ws = shard.backpropagate(theta, gradient);
+    double err = ws.error;
+    shard.release(ws);
+    stochasticShard.set(shard);
+    double j = finish(theta, gradient, err, 1);
+    return new Tuple<Double, DoubleVector>(j, new DenseDoubleVector(gradient));
+  }
+
+  /**
+   * Mini-batch learning function for neural networks, the batch is copied into
+   * a shard that is reused for all batches of the same size.
+   */
+  @Override
+  public double evaluateCost(DoubleVector input, MiniBatch batch,
+      double[] gradient) {
+    final int rows = batch.getRows();
+    final int capacity = batch.getCapacity();
+    DoubleShard shard = batchShard.getAndSet(null);
+    if (shard == null || shard.rows != rows) {
+      if (shard != null) {
+        // keep the full size shard for the next batch
+        batchShard.set(shard);
+      }
+      double[] shardX = new double[rows * (batch.getNumFeatures() + 1)];
+      Arrays.fill(shardX, 0, rows, 1d);
+      shard = new DoubleShard(rows, shardX,
+          new double[rows * batch.getNumOutcomes()]);
+    }
+    // copy column by column, the batch may contain less rows than it can hold
+    double[] features = batch.getFeatures();
+    for (int col = 0; col < batch.getNumFeatures(); col++) {
+      System.arraycopy(features, col * capacity, shard.x, (col + 1) * rows,
+          rows);
     }
-    return backpropagate(input, tmpX,
-        new DenseDoubleMatrix(y.toArray(), 1, y.getDimension()));
+    double[] outcomes = batch.getOutcomes();
+    for (int col = 0; col < batch.getNumOutcomes(); col++) {
+      System.arraycopy(outcomes, col * capacity, shard.y, col * rows, rows);
+    }
+    // the outcome of a reused shard changes with every batch
+    shard.indexPositives();
+
+    double[] theta = input.toArray();
+    Workspace ws = shard.backpropagate(theta, gradient);
+    double err = ws.error;
+    shard.release(ws);
+    if (rows == capacity) {
+      batchShard.compareAndSet(null, shard);
+    }
+    return finish(theta, gradient, err, rows);
   }
 
   /**
@@ -78,136 +217,816 @@ public class MultilayerPerceptronCostFunction implements CostFunction,
    */
   @Override
   public Tuple<Double, DoubleVector> evaluateCost(DoubleVector input) {
-    return backpropagate(input, x, y);
+    double[] gradient = new double[numParameters];
+    double j = evaluateCost(input, gradient);
+    return new Tuple<Double, DoubleVector>(j, new DenseDoubleVector(gradient));
   }
 
-  /**
-   * Do a full forward pass and backpropagate the error.
-   * 
-   * @param input the input parameters (theta).
-   * @param x the features.
-   * @param y the outcome.
-   * @return a tuple of cost and gradient.
-   */
-  private Tuple<Double, DoubleVector> backpropagate(DoubleVector input,
-      DenseDoubleMatrix x, DenseDoubleMatrix y) {
-    DenseDoubleMatrix[] thetas = DenseMatrixFolder.unfoldMatrices(input,
-        unfoldParameters);
-    DenseDoubleMatrix[] thetaGradients = new DenseDoubleMatrix[thetas.length];
-
-    // start forward propagation
-    // we compute the aX activations for all layers
-    DenseDoubleMatrix[] ax = new DenseDoubleMatrix[layerSizes.length];
-    // for zX we constantly null the zero index, since it has no use
-    DoubleMatrix[] zx = new DoubleMatrix[layerSizes.length];
-
-    // for the first weights, we don't need to compute Z
-    if (visibleDropoutProbability > 0d) {
-      // compute dropout for ax[0], copy X to not alter internal
-      // representation
-      ax[0] = DenseDoubleMatrix.copy(x);
-      dropout(ax[0], visibleDropoutProbability);
-    } else {
-      ax[0] = x;
+  @Override
+  public double evaluateCost(DoubleVector input, double[] gradient) {
+    Preconditions.checkNotNull(shards,
+        "Full batch evaluation needs the outcome to be supplied!");
+    final double[] theta = input.toArray();
+    if (shards.length == 1) {
+      // sequential case, write directly into the given gradient
+      Workspace ws = shards[0].backpropagate(theta, gradient);
+      double err = ws.error;
+      shards[0].release(ws);
+      return finish(theta, gradient, err, shardRows[0]);
     }
-    for (int i = 1; i < layerSizes.length; i++) {
-      zx[i] = multiply(ax[i - 1], thetas[i - 1], false, true);
 
-      if (i < (layerSizes.length - 1)) {
-        ax[i] = new DenseDoubleMatrix(ones, activations[i].apply(zx[i]));
-        if (hiddenDropoutProbability > 0d) {
-          // compute dropout for ax[i]
-          dropout(ax[i], hiddenDropoutProbability);
+    // run the forward and backward pass for each shard in parallel, each of
+    // them sums up the gradient in its own workspace
+    List<Callable<Workspace>> tasks = new ArrayList<>(shards.length);
+    for (final Shard shard : shards) {
+      tasks.add(new Callable<Workspace>() {
+        @Override
+        public Workspace call() throws Exception {
+          return shard.backpropagate(theta, null);
         }
+      });
+    }
+    List<Future<Workspace>> futures;
+    try {
+      futures = pool.invokeAll(tasks);
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+
+    // reduce in shard order, so the result is deterministic
+    double[] errors = new double[shards.length];
+    int m = 0;
+    for (int i = 0; i < shards.length; i++) {
+      Workspace ws;
+      try {
+        ws = futures.get(i).get();
+      } catch (InterruptedException | ExecutionException e) {
+        throw new RuntimeException(e);
+      }
+      if (i == 0) {
+        System.arraycopy(ws.gradient, 0, gradient, 0, numParameters);
       } else {
-        // the output doesn't need a bias
-        ax[i] = (DenseDoubleMatrix) activations[i].apply(zx[i]);
+        for (int k = 0; k < numParameters; k++) {
+          gradient[k] += ws.gradient[k];
+        }
       }
+      errors[i] = ws.error;
+      shards[i].release(ws);
+      m += shardRows[i];
+    }
+    return finish(theta, gradient,
+        error.combineShardErrors(errors, shardRows), m);
+  }
+
+  /**
+   * Shuts down the threads of the full batch evaluation, the full batch can't
+   * be evaluated afterwards.
+   */
+  @Override
+  public void close() {
+    if (pool != null) {
+      pool.shutdown();
     }
+  }
 
-    // only calculate the regularization term if lambda is not 0
+  /**
+   * Normalizes the gradient sums in place and adds the regularization to cost
+   * and gradient. The bias weights are not regularized.
+   * 
+   * @param theta the folded weights.
+   * @param gradient the unnormalized folded gradient sums.
+   * @param err the error of the output layer over all rows.
+   * @param m the number of rows.
+   * @return the cost.
+   */
+  private double finish(double[] theta, double[] gradient, double err, int m) {
+    final double scale = 1.0d / m;
+    final double regScale = lambda / m;
     double regularization = 0.0d;
-    if (lambda != 0d) {
-      for (DenseDoubleMatrix theta : thetas) {
-        regularization += (theta.slice(0, theta.getRowCount(), 1,
-            theta.getColumnCount())).pow(2).sum();
-      }
-      regularization = (lambda / (2.0d * m)) * regularization;
-    }
-
-    // now backpropagate the error backwards by calculating the deltas.
-    // also here we are following the math equations and nulling out the 0th
-    // entry.
-    DoubleMatrix[] deltaX = new DoubleMatrix[layerSizes.length];
-    // set the last delta to the difference of outcome and prediction
-    deltaX[deltaX.length - 1] = ax[layerSizes.length - 1].subtract(y);
-    // compute the deltas onto the input layer
-    for (int i = (layerSizes.length - 2); i > 0; i--) {
-      DoubleMatrix slice = thetas[i].slice(0, thetas[i].getRowCount(), 1,
-          thetas[i].getColumnCount());
-      deltaX[i] = multiply(deltaX[i + 1], slice, false, false);
-      // apply the gradient of the activations
-      deltaX[i] = deltaX[i].multiplyElementWise(activations[i].gradient(zx[i]));
-    }
-
-    // calculate the gradients of the weights
-    for (int i = 0; i < thetaGradients.length; i++) {
-      DoubleMatrix gradDXA = multiply(deltaX[i + 1], ax[i], true, false);
-      thetaGradients[i] = (DenseDoubleMatrix) (gradDXA.multiply(1.0d / m));
+    for (int i = 0; i < thetaOffsets.length; i++) {
+      final int offset = thetaOffsets[i];
+      final int biasEnd = offset + layerSizes[i + 1];
+      final int end = offset + layerSizes[i + 1] * (layerSizes[i] + 1);
+      // the first column holds the bias weights
+      for (int k = offset; k < biasEnd; k++) {
+        gradient[k] *= scale;
+      }
+      for (int k = biasEnd; k < end; k++) {
+        gradient[k] *= scale;
+      }
+      // only calculate the regularization term if lambda is not 0
       if (lambda != 0d) {
-        thetaGradients[i] = (DenseDoubleMatrix) thetaGradients[i]
-            .add((thetas[i].multiply(lambda / m)));
-        // subtract the regularized bias
-        DoubleVector regBias = thetas[i]
-            .slice(0, thetas[i].getRowCount(), 0, 1).multiply(lambda / m)
-            .getColumnVector(0);
-        thetaGradients[i].setColumnVector(0, regBias);
+        for (int k = biasEnd; k < end; k++) {
+          gradient[k] += regScale * theta[k];
+          regularization += theta[k] * theta[k];
+        }
       }
     }
+    regularization = (lambda / (2.0d * m)) * regularization;
 
     // calculate our cost function (error in the last layer)
-    double j = (1.0d / m) * error.getError(y, ax[layerSizes.length - 1])
-        + regularization;
+    return (1.0d / m) * err + regularization;
+  }
+
+  /**
+   * A consecutive block of rows of the training data in column major order,
+   * the features already contain the bias column. The forward and backward
+   * pass of a shard only depends on the weights, so shards can be computed
+   * concurrently.
+   */
+  private abstract class Shard {
 
-    return new Tuple<Double, DoubleVector>(j,
-        DenseMatrixFolder.foldMatrices(thetaGradients));
+    final int rows;
+    final double[] y;
+    // dropout is drawn from a separate generator for every shard
+    final Random rnd = new Random();
+    // cached workspace, concurrent evaluations create their own
+    private final AtomicReference<Workspace> cache = new AtomicReference<>();
+
+    Shard(int rows, double[] y) {
+      this.rows = rows;
+      this.y = y;
+    }
+
+    /**
+     * Do a full forward pass and backpropagate the error.
+     * 
+     * @param theta the folded weights.
+     * @param gradient the folded gradient to write the unnormalized sums into,
+     *          if null they are written into the gradient of the workspace.
+     * @return the workspace that contains the error and the gradient sums, it
+     *         must be released after reading.
+     */
+    final Workspace backpropagate(double[] theta, double[] gradient) {
+      Workspace ws = cache.getAndSet(null);
+      if (ws == null) {
+        ws = newWorkspace();
+      }
+      if (gradient == null) {
+        if (ws.gradient == null) {
+          ws.gradient = new double[numParameters];
+        }
+        gradient = ws.gradient;
+      }
+      ws.error = backpropagate(ws, theta, gradient);
+      return ws;
+    }
+
+    final void release(Workspace ws) {
+      cache.set(ws);
+    }
+
+    abstract Workspace newWorkspace();
+
+    /**
+     * @return the error of the output layer.
+     */
+    abstract double backpropagate(Workspace ws, double[] theta,
+        double[] gradient);
   }
 
   /**
-   * Computes dropout for the activations matrix. Each element for each row has
-   * the similar probability p to be "dropped out" (set to 0) of the
-   * computation. This way, the network does learn to not rely on other units
-   * thus learning to detect more general features than drastically overfitting
-   * the dataset.
+   * Results of a shard, subclasses contain the buffers that are reused across
+   * evaluations. All of them are in column major order with one row per
+   * example.
+   */
+  private static class Workspace {
+    // gradient sums if the shard doesn't write into the result directly
+    double[] gradient;
+    double error;
+  }
+
+  private class DoubleShard extends Shard {
+
+    private final double[] x;
+    // positive classes of every row in compressed sparse row format, only
+    // needed for the negative sampling
+    private final int[] positivePointers;
+    private int[] positives;
+
+    DoubleShard(int rows, double[] x, double[] y) {
+      super(rows, y);
+      this.x = x;
+      if (negativeSamples > 0) {
+        this.positivePointers = new int[rows + 1];
+        this.positives = new int[rows];
+      } else {
+        this.positivePointers = null;
+      }
+    }
+
+    @Override
+    Workspace newWorkspace() {
+      return new DoubleWorkspace(rows, x.length);
+    }
+
+    /**
+     * Applies the input dropout and writes the product of the input and the
+     * weights of the first layer into the given activations.
+     */
+    void forwardInput(DoubleWorkspace ws, double[] theta, double[] a,
+        int offset) {
+      if (visibleDropoutProbability > 0d) {
+        // compute dropout on a copy to not alter the internal representation
+        System.arraycopy(x, 0, ws.input, 0, x.length);
+        dropout(rnd, ws.input, x.length, visibleDropoutProbability);
+      }
+      backend.gemm(false, true, rows, layerSizes[1], layerSizes[0] + 1, 1d,
+          visibleDropoutProbability > 0d ? ws.input : x, 0, rows, theta,
+          thetaOffsets[0], layerSizes[1], 0d, a, offset, rows);
+    }
+
+    /**
+     * Writes the gradient sums of the weights of the first layer.
+     */
+    void inputGradient(DoubleWorkspace ws, double[] gradient) {
+      backend.gemm(true, false, layerSizes[1], layerSizes[0] + 1, rows, 1d,
+          ws.delta[1], 0, rows, visibleDropoutProbability > 0d ? ws.input : x,
+          0, rows, 0d, gradient, thetaOffsets[0], layerSizes[1]);
+    }
+
+    @Override
+    double backpropagate(Workspace workspace, double[] theta,
+        double[] gradient) {
+      final DoubleWorkspace ws = (DoubleWorkspace) workspace;
+      final int r = rows;
+      final int last = layerSizes.length - 1;
+
+      // with negative sampling the output layer is computed per row below
+      final boolean sampled = negativeSamples > 0;
+      // start forward propagation
+      // we compute the aX activations for all layers
+      for (int i = 1; i <= (sampled ? last - 1 : last); i++) {
+        final int units = layerSizes[i];
+        // the hidden layers have their bias units in the first column
+        final int offset = i < last ? r : 0;
+        if (i == 1) {
+          forwardInput(ws, theta, ws.a[i], offset);
+        } else {
+          backend.gemm(false, true, r, units, layerSizes[i - 1] + 1, 1d,
+              ws.a[i - 1], 0, r, theta, thetaOffsets[i - 1], units, 0d,
+              ws.a[i], offset, r);
+        }
+        if (i < last) {
+          activations[i].applyWithGradient(ws.a[i], offset, ws.g[i], 0, r,
+              units);
+          if (hiddenDropoutProbability > 0d) {
+            // the bias units may have been dropped out in the last evaluation
+            Arrays.fill(ws.a[i], 0, r, 1d);
+            dropout(rnd, ws.a[i], r * (units + 1), hiddenDropoutProbability);
+          }
+        } else {
+          // the output doesn't need a bias
+          activations[i].applyInPlace(ws.a[i], 0, r, units);
+        }
+      }
+
+      // now backpropagate the error backwards by calculating the deltas.
+      // set the last delta to the difference of outcome and prediction
+      double err;
+      if (sampled) {
+        err = sampledOutput(ws, theta, gradient);
+      } else {
+        double[] output = ws.a[last];
+        double[] outputDelta = ws.delta[last];
+        for (int k = 0; k < outputDelta.length; k++) {
+          outputDelta[k] = output[k] - y[k];
+        }
+        err = error.getError(y, output, r, layerSizes[last]);
+      }
+      // compute the deltas onto the input layer
+      for (int i = last - 1; i > 0; i--) {
+        if (!sampled || i < last - 1) {
+          // the weights are multiplied without their bias column
+          backend.gemm(false, false, r, layerSizes[i], layerSizes[i + 1], 1d,
+              ws.delta[i + 1], 0, r, theta, thetaOffsets[i]
+                  + layerSizes[i + 1], layerSizes[i + 1], 0d, ws.delta[i], 0,
+              r);
+        }
+        // apply the gradient of the activations
+        double[] delta = ws.delta[i];
+        double[] g = ws.g[i];
+        for (int k = 0; k < delta.length; k++) {
+          delta[k] *= g[k];
+        }
+      }
+
+      // sum up the gradients of the weights directly in the folded layout
+      inputGradient(ws, gradient);
+      for (int i = 1; i < (sampled ? last - 1 : last); i++) {
+        backend.gemm(true, false, layerSizes[i + 1], layerSizes[i] + 1, r, 1d,
+            ws.delta[i + 1], 0, r, ws.a[i], 0, r, 0d, gradient,
+            thetaOffsets[i], layerSizes[i + 1]);
+      }
+
+      return err;
+    }
+
+    /**
+     * Computes the softmax output of every row only for its candidates, the
+     * positive classes and a sample of the negative classes. Writes the
+     * gradient of the output weights and the deltas of the last hidden layer,
+     * without the gradient of its activation.
+     * 
+     * @return the error of the output layer, the same as
+     *         {@link ErrorFunction#SOFTMAX_ERROR} on the candidates.
+     */
+    private double sampledOutput(DoubleWorkspace ws, double[] theta,
+        double[] gradient) {
+      final int r = rows;
+      final int last = layerSizes.length - 1;
+      final int classes = layerSizes[last];
+      // the hidden units including their bias
+      final int units = layerSizes[last - 1] + 1;
+      final int offset = thetaOffsets[last - 1];
+      final double[] a = ws.a[last - 1];
+      final double[] hiddenDelta = ws.delta[last - 1];
+      final int[] candidates = ws.candidates;
+      final double[] p = ws.probabilities;
+      Arrays.fill(gradient, offset, offset + classes * units, 0d);
+      Arrays.fill(hiddenDelta, 0d);
+
+      double err = 0d;
+      for (int row = 0; row < r; row++) {
+        final int n = sampleCandidates(ws, row);
+        double max = Double.NEGATIVE_INFINITY;
+        for (int s = 0; s < n; s++) {
+          final int c = candidates[s];
+          double z = 0d;
+          for (int j = 0; j < units; j++) {
+            z += theta[offset + j * classes + c] * a[j * r + row];
+          }
+          p[s] = z;
+          max = Math.max(max, z);
+        }
+        double sum = 0d;
+        for (int s = 0; s < n; s++) {
+          p[s] = Math.exp(p[s] - max);
+          sum += p[s];
+        }
+        for (int s = 0; s < n; s++) {
+          final int c = candidates[s];
+          final double target = y[c * r + row];
+          p[s] /= sum;
+          err += target * ErrorFunction.log(p[s]);
+          final double d = p[s] - target;
+          for (int j = 0; j < units; j++) {
+            gradient[offset + j * classes + c] += d * a[j * r + row];
+          }
+          // the bias column of the weights doesn't propagate back
+          for (int j = 1; j < units; j++) {
+            hiddenDelta[(j - 1) * r + row] += d
+                * theta[offset + j * classes + c];
+          }
+        }
+      }
+      return err;
+    }
+
+    /**
+     * Collects the classes with a non-zero outcome of every row, must be called
+     * whenever the outcome of the shard changed.
+     */
+    void indexPositives() {
+      if (positivePointers == null) {
+        return;
+      }
+      final int classes = layerSizes[layerSizes.length - 1];
+      final int[] pointers = positivePointers;
+      Arrays.fill(pointers, 0);
+      for (int c = 0; c < classes; c++) {
+        for (int row = 0; row < rows; row++) {
+          if (y[c * rows + row] != 0d) {
+            pointers[row + 1]++;
+          }
+        }
+      }
+      for (int row = 0; row < rows; row++) {
+        pointers[row + 1] += pointers[row];
+      }
+      if (positives.length < pointers[rows]) {
+        positives = new int[pointers[rows]];
+      }
+      // fill the rows by advancing their start pointers, afterwards every
+      // pointer is at the start of the next row and is shifted back
+      for (int c = 0; c < classes; c++) {
+        for (int row = 0; row < rows; row++) {
+          if (y[c * rows + row] != 0d) {
+            positives[pointers[row]++] = c;
+          }
+        }
+      }
+      System.arraycopy(pointers, 0, pointers, 1, rows);
+      pointers[0] = 0;
+    }
+
+    /**
+     * Writes the positive classes of the row and the sampled negative classes
+     * into the candidates of the workspace. The negatives are drawn uniformly
+     * without replacement, if there are not more negatives than samples all of
+     * them are taken.
+     * 
+     * @return the number of candidates.
+     */
+    private int sampleCandidates(DoubleWorkspace ws, int row) {
+      final int classes = layerSizes[layerSizes.length - 1];
+      final int[] candidates = ws.candidates;
+      int n = 0;
+      final int end = positivePointers[row + 1];
+      for (int k = positivePointers[row]; k < end; k++) {
+        candidates[n++] = positives[k];
+      }
+      final int positives = n;
+      if (classes - positives <= negativeSamples) {
+        for (int c = 0; c < classes; c++) {
+          if (!contains(candidates, positives, c)) {
+            candidates[n++] = c;
+          }
+        }
+      } else {
+        // rejection sampling is cheap as long as the samples are few
+        while (n < positives + negativeSamples) {
+          final int c = rnd.nextInt(classes);
+          if (!contains(candidates, n, c)) {
+            candidates[n++] = c;
+          }
+        }
+      }
+      return n;
+    }
+  }
+
+  /**
+   * Shard that stores the features in compressed sparse row format, the bias
+   * column is implicit. Only the input layer is computed sparse, the hidden
+   * layers are dense anyway.
+   */
+  private final class CsrShard extends DoubleShard {
+
+    private final CompressedSparseRowMatrix features;
+
+    CsrShard(CompressedSparseRowMatrix x, double[] y) {
+      super(x.getRowCount(), null, y);
+      this.features = x;
+    }
+
+    @Override
+    Workspace newWorkspace() {
+      return new DoubleWorkspace(rows, features.getNumNonZeros());
+    }
+
+    @Override
+    void forwardInput(DoubleWorkspace ws, double[] theta, double[] a,
+        int offset) {
+      final int units = layerSizes[1];
+      final double[] values = dropoutValues(ws);
+      // start with the bias weights and add the non-zero features
+      for (int j = 0; j < units; j++) {
+        Arrays.fill(a, offset + j * rows, offset + (j + 1) * rows,
+            theta[thetaOffsets[0] + j]);
+      }
+      features.multiplyTransposed(values, theta, thetaOffsets[0] + units, units,
+          units, a, offset, rows);
+    }
+
+    @Override
+    void inputGradient(DoubleWorkspace ws, double[] gradient) {
+      final int units = layerSizes[1];
+      final int offset = thetaOffsets[0];
+      Arrays.fill(gradient, offset, offset + units * (layerSizes[0] + 1), 0d);
+      // the bias gradient is the sum of the deltas
+      final double[] delta = ws.delta[1];
+      for (int j = 0; j < units; j++) {
+        double sum = 0d;
+        for (int row = 0; row < rows; row++) {
+          sum += delta[j * rows + row];
+        }
+        gradient[offset + j] = sum;
+      }
+      features.transposeMultiply(delta, 0, rows, units,
+          visibleDropoutProbability > 0d ? ws.input : null, gradient, offset
+              + units, units);
+    }
+
+    /**
+     * @return the non-zero values after the dropout or null if there is none.
+     */
+    private double[] dropoutValues(DoubleWorkspace ws) {
+      if (visibleDropoutProbability <= 0d) {
+        return null;
+      }
+      double[] values = features.getValues();
+      System.arraycopy(values, 0, ws.input, 0, values.length);
+      dropout(rnd, ws.input, values.length, visibleDropoutProbability);
+      return ws.input;
+    }
+  }
+
+  private final class DoubleWorkspace extends Workspace {
+
+    // copy of the input for the dropout
+    private final double[] input;
+    // activations, hidden layers have their bias units in the first column
+    private final double[][] a;
+    // gradients of the hidden activations
+    private final double[][] g;
+    private final double[][] delta;
+    // candidates for the negative sampling
+    private final int[] candidates;
+    private final double[] probabilities;
+
+    DoubleWorkspace(int rows, int inputLength) {
+      final int last = layerSizes.length - 1;
+      this.input = visibleDropoutProbability > 0d ? new double[inputLength]
+          : null;
+      this.a = new double[layerSizes.length][];
+      this.g = new double[layerSizes.length][];
+      this.delta = new double[layerSizes.length][];
+      // the sampled output layer doesn't need the full activations
+      final int layers = negativeSamples > 0 ? last - 1 : last;
+      for (int i = 1; i <= layers; i++) {
+        if (i < last) {
+          a[i] = new double[rows * (layerSizes[i] + 1)];
+          Arrays.fill(a[i], 0, rows, 1d);
+          g[i] = new double[rows * layerSizes[i]];
+        } else {
+          a[i] = new double[rows * layerSizes[i]];
+        }
+        delta[i] = new double[rows * layerSizes[i]];
+      }
+      if (negativeSamples > 0) {
+        this.candidates = new int[layerSizes[last]];
+        this.probabilities = new double[layerSizes[last]];
+      } else {
+        this.candidates = null;
+        this.probabilities = null;
+      }
+    }
+  }
+
+  /**
+   * Shard that stores the features and computes the passes in single
+   * precision. The outcome and the error stay in double precision, the
+   * weights are rounded for every evaluation and the gradient sums are widened
+   * again.
+   */
+  private final class FloatShard extends Shard {
+
+    private final float[] x;
+
+    FloatShard(int rows, float[] x, double[] y) {
+      super(rows, y);
+      this.x = x;
+    }
+
+    @Override
+    Workspace newWorkspace() {
+      return new FloatWorkspace(rows);
+    }
+
+    @Override
+    double backpropagate(Workspace workspace, double[] theta,
+        double[] gradient) {
+      final FloatWorkspace ws = (FloatWorkspace) workspace;
+      final int r = rows;
+      final int last = layerSizes.length - 1;
+      final float[] weights = ws.theta;
+      for (int k = 0; k < numParameters; k++) {
+        weights[k] = (float) theta[k];
+      }
+
+      float[] input = x;
+      if (visibleDropoutProbability > 0d) {
+        System.arraycopy(x, 0, ws.input, 0, x.length);
+        dropout(rnd, ws.input, x.length, visibleDropoutProbability);
+        input = ws.input;
+      }
+      for (int i = 1; i <= last; i++) {
+        final int units = layerSizes[i];
+        final int offset = i < last ? r : 0;
+        backend.gemm(false, true, r, units, layerSizes[i - 1] + 1, 1f,
+            i == 1 ? input : ws.a[i - 1], 0, r, weights, thetaOffsets[i - 1],
+            units, 0f, ws.a[i], offset, r);
+        if (i < last) {
+          activations[i].applyWithGradient(ws.a[i], offset, ws.g[i], 0, r,
+              units);
+          if (hiddenDropoutProbability > 0d) {
+            Arrays.fill(ws.a[i], 0, r, 1f);
+            dropout(rnd, ws.a[i], r * (units + 1), hiddenDropoutProbability);
+          }
+        } else {
+          activations[i].applyInPlace(ws.a[i], 0, r, units);
+        }
+      }
+
+      float[] output = ws.a[last];
+      float[] outputDelta = ws.delta[last];
+      for (int k = 0; k < outputDelta.length; k++) {
+        ws.output[k] = output[k];
+        outputDelta[k] = (float) (output[k] - y[k]);
+      }
+      for (int i = last - 1; i > 0; i--) {
+        backend.gemm(false, false, r, layerSizes[i], layerSizes[i + 1], 1f,
+            ws.delta[i + 1], 0, r, weights, thetaOffsets[i]
+                + layerSizes[i + 1], layerSizes[i + 1], 0f, ws.delta[i], 0, r);
+        float[] delta = ws.delta[i];
+        float[] g = ws.g[i];
+        for (int k = 0; k < delta.length; k++) {
+          delta[k] *= g[k];
+        }
+      }
+
+      for (int i = 0; i < last; i++) {
+        backend.gemm(true, false, layerSizes[i + 1], layerSizes[i] + 1, r, 1f,
+            ws.delta[i + 1], 0, r, i == 0 ? input : ws.a[i], 0, r, 0f,
+            ws.gradientSums, thetaOffsets[i], layerSizes[i + 1]);
+      }
+      for (int k = 0; k < numParameters; k++) {
+        gradient[k] = ws.gradientSums[k];
+      }
+
+      return error.getError(y, ws.output, r, layerSizes[last]);
+    }
+  }
+
+  private final class FloatWorkspace extends Workspace {
+
+    // the weights rounded to single precision
+    private final float[] theta;
+    private final float[] gradientSums;
+    private final float[] input;
+    private final float[][] a;
+    private final float[][] g;
+    private final float[][] delta;
+    // the output widened for the error function
+    private final double[] output;
+
+    FloatWorkspace(int rows) {
+      final int last = layerSizes.length - 1;
+      this.theta = new float[numParameters];
+      this.gradientSums = new float[numParameters];
+      this.input = visibleDropoutProbability > 0d ? new float[rows
+          * (layerSizes[0] + 1)] : null;
+      this.a = new float[layerSizes.length][];
+      this.g = new float[layerSizes.length][];
+      this.delta = new float[layerSizes.length][];
+      for (int i = 1; i <= last; i++) {
+        if (i < last) {
+          a[i] = new float[rows * (layerSizes[i] + 1)];
+          Arrays.fill(a[i], 0, rows, 1f);
+          g[i] = new float[rows * layerSizes[i]];
+        } else {
+          a[i] = new float[rows * layerSizes[i]];
+        }
+        delta[i] = new float[rows * layerSizes[i]];
+      }
+      this.output = new double[rows * layerSizes[last]];
+    }
+  }
+
+  /**
+   * Splits x and y into consecutive blocks of rows and stores them in column
+   * major order, the features get an additional bias column.
    * 
-   * @param activations activations of units per record on each column.
-   * @param p dropout probability.
+   * @param x the features.
+   * @param y the outcome.
+   * @param numShards the number of shards to create.
+   * @param precision the precision to store the features and compute in.
+   * @return the shards, empty ranges are omitted.
    */
-  private void dropout(DenseDoubleMatrix activations, double p) {
-    for (int row = 0; row < activations.getRowCount(); row++) {
-      for (int col = 0; col < activations.getColumnCount(); col++) {
-        if (rnd.nextDouble() <= p) {
-          activations.set(row, col, 0d);
+  private Shard[] partition(DenseDoubleMatrix x, DenseDoubleMatrix y,
+      int numShards, Precision precision) {
+    Set<Range> boundaries = new BlockPartitioner().partition(numShards,
+        x.getRowCount()).getBoundaries();
+    List<Range> ranges = new ArrayList<>(boundaries.size());
+    for (Range r : boundaries) {
+      if (r.getEnd() - r.getStart() + 1 > 0) {
+        ranges.add(r);
+      }
+    }
+    final boolean single = precision == Precision.FLOAT;
+    final int cols = x.getColumnCount() + 1;
+    // the features of every shard, the first column is the bias
+    double[][] doubleX = new double[ranges.size()][];
+    float[][] floatX = new float[ranges.size()][];
+    for (int i = 0; i < ranges.size(); i++) {
+      Range r = ranges.get(i);
+      int rows = r.getEnd() - r.getStart() + 1;
+      if (single) {
+        floatX[i] = new float[rows * cols];
+        Arrays.fill(floatX[i], 0, rows, 1f);
+      } else {
+        doubleX[i] = new double[rows * cols];
+        Arrays.fill(doubleX[i], 0, rows, 1d);
+      }
+    }
+    // copy column by column, every shard takes its block of rows
+    for (int col = 0; col < x.getColumnCount(); col++) {
+      double[] column = x.getColumn(col);
+      for (int i = 0; i < ranges.size(); i++) {
+        Range r = ranges.get(i);
+        int rows = r.getEnd() - r.getStart() + 1;
+        int offset = (col + 1) * rows;
+        if (single) {
+          for (int row = 0; row < rows; row++) {
+            floatX[i][offset + row] = (float) column[r.getStart() + row];
+          }
+        } else {
+          System.arraycopy(column, r.getStart(), doubleX[i], offset, rows);
         }
       }
     }
+    Shard[] result = new Shard[ranges.size()];
+    for (int i = 0; i < ranges.size(); i++) {
+      Range r = ranges.get(i);
+      int rows = r.getEnd() - r.getStart() + 1;
+      double[] shardY = new double[rows * y.getColumnCount()];
+      result[i] = single ? new FloatShard(rows, floatX[i], shardY)
+          : new DoubleShard(rows, doubleX[i], shardY);
+    }
+    copyOutcome(y, result);
+    return result;
   }
 
   /**
-   * General matrix multiplication of two matrices
+   * Splits the sparse x and y into consecutive blocks of rows, the bias column
+   * of the features is implicit.
    * 
-   * @param ax the activation matrix.
-   * @param theta the weight matrix.
-   * @param axTranspose
-   * @param thetaTranspose
-   * @return the matrix that contains the result of the multiplication of both
-   *         parameters.
-   */
-  protected DoubleMatrix multiply(DoubleMatrix a1, DoubleMatrix a2,
-      boolean a1Transpose, boolean a2Transpose) {
-    a2 = a2Transpose ? a2.transpose() : a2;
-    a1 = a1Transpose ? a1.transpose() : a1;
-    return a1.multiply(a2);
+   * @param x the features.
+   * @param y the outcome.
+   * @param numShards the number of shards to create.
+   * @return the shards, empty ranges are omitted.
+   */
+  private Shard[] partition(CompressedSparseRowMatrix x, DenseDoubleMatrix y,
+      int numShards) {
+    Set<Range> boundaries = new BlockPartitioner().partition(numShards,
+        x.getRowCount()).getBoundaries();
+    List<Shard> list = new ArrayList<>(boundaries.size());
+    for (Range r : boundaries) {
+      int rows = r.getEnd() - r.getStart() + 1;
+      if (rows <= 0) {
+        continue;
+      }
+      list.add(new CsrShard(x.slice(r.getStart(), rows), new double[rows
+          * y.getColumnCount()]));
+    }
+    Shard[] result = list.toArray(new Shard[list.size()]);
+    copyOutcome(y, result);
+    return result;
+  }
+
+  private static void copyOutcome(DenseDoubleMatrix y, Shard[] shards) {
+    for (int col = 0; col < y.getColumnCount(); col++) {
+      double[] column = y.getColumn(col);
+      int start = 0;
+      for (Shard shard : shards) {
+        System.arraycopy(column, start, shard.y, col * shard.rows, shard.rows);
+        start += shard.rows;
+      }
+    }
+    for (Shard shard : shards) {
+      if (shard instanceof DoubleShard) {
+        ((DoubleShard) shard).indexPositives();
+      }
+    }
+  }
+
+  private static boolean contains(int[] array, int length, int value) {
+    for (int i = 0; i < length; i++) {
+      if (array[i] == value) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Computes dropout for the activations. Each element for each row has the
+   * similar probability p to be "dropped out" (set to 0) of the computation.
+   * This way, the network does learn to not rely on other units thus learning
+   * to detect more general features than drastically overfitting the dataset.
+   * 
+   * @param rnd the random number generator to draw with.
+   * @param activations activations of units per record on each column.
+   * @param length the number of elements to apply the dropout on.
+   * @param p dropout probability.
+   */
+  private static void dropout(Random rnd, double[] activations, int length,
+      double p) {
+    for (int k = 0; k < length; k++) {
+      if (rnd.nextDouble() <= p) {
+        activations[k] = 0d;
+      }
+    }
+  }
+
+  private static void dropout(Random rnd, float[] activations, int length,
+      double p) {
+    for (int k = 0; k < length; k++) {
+      if (rnd.nextDouble() <= p) {
+        activations[k] = 0f;
+      }
+    }
   }
 
   /**
@@ -0,0 +1,273 @@
+package de.jungblut.classification.nn;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.activation.ActivationFunction;
+import de.jungblut.math.dense.DenseDoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleVector;
+
+/**
+ * Inference only version of a trained {@link MultilayerPerceptron} with 8 bit
+ * integer weights. Every row of a weight matrix (the incoming weights of a
+ * unit) is scaled by its largest absolute value into bytes, the bias weights
+ * stay in single precision. The activations of each layer are quantized the
+ * same way before they are multiplied, so the products are integer dot
+ * products that are scaled back once per unit. The weights take an eighth of
+ * the memory of the double precision model.
+ * <p>
+ * It isn't a classifier, because it can't be trained: train the
+ * {@link MultilayerPerceptron} and {@link #quantize(MultilayerPerceptron)} it
+ * afterwards.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public final class QuantizedMultilayerPerceptron {
+
+  // the largest absolute value of a quantized byte
+  private static final int RANGE = 127;
+
+  private final int[] layers;
+  private final ActivationFunction[] activations;
+  // row major weights without the bias column, one byte per weight
+  private final byte[][] weights;
+  // scale of every row to get back the weights
+  private final float[][] scales;
+  private final float[][] biases;
+
+  // each predicting thread gets its own buffers
+  private final ThreadLocal<Buffers> buffers = new ThreadLocal<Buffers>() {
+    @Override
+    protected Buffers initialValue() {
+      return new Buffers();
+    }
+  };
+
+  private QuantizedMultilayerPerceptron(int[] layers,
+      ActivationFunction[] activations, byte[][] weights, float[][] scales,
+      float[][] biases) {
+    this.layers = layers;
+    this.activations = activations;
+    this.weights = weights;
+    this.scales = scales;
+    this.biases = biases;
+  }
+
+  /**
+   * Quantizes the weights of the given trained network.
+   * 
+   * @param network the network to quantize, it is not altered.
+   * @return a new quantized network that can only predict.
+   */
+  public static QuantizedMultilayerPerceptron quantize(
+      MultilayerPerceptron network) {
+    int[] layers = network.getLayers();
+    WeightMatrix[] matrices = network.getWeights();
+    byte[][] weights = new byte[matrices.length][];
+    float[][] scales = new float[matrices.length][];
+    float[][] biases = new float[matrices.length][];
+    for (int i = 0; i < matrices.length; i++) {
+      DenseDoubleMatrix matrix = matrices[i].getWeights();
+      final int units = layers[i + 1];
+      final int inputs = layers[i];
+      // the integer dot products must not overflow
+      Preconditions.checkArgument(inputs <= Integer.MAX_VALUE
+          / (RANGE * RANGE), "Layer " + i + " has too many units: " + inputs);
+      weights[i] = new byte[units * inputs];
+      scales[i] = new float[units];
+      biases[i] = new float[units];
+      double[] row = new double[inputs];
+      for (int unit = 0; unit < units; unit++) {
+        // the first column holds the bias weight
+        biases[i][unit] = (float) matrix.get(unit, 0);
+        for (int k = 0; k < inputs; k++) {
+          row[k] = matrix.get(unit, k + 1);
+        }
+        scales[i][unit] = quantize(row, inputs, weights[i], unit * inputs);
+      }
+    }
+    return new QuantizedMultilayerPerceptron(layers.clone(), network
+        .getActivations().clone(), weights, scales, biases);
+  }
+
+  /**
+   * @return the activations of the output layer for the given features.
+   */
+  public DenseDoubleVector predict(DoubleVector features) {
+    Preconditions.checkArgument(features.getDimension() == layers[0],
+        "Dimension of the features doesn't match: " + features.getDimension()
+            + " != " + layers[0]);
+    Buffers b = buffers.get();
+    double[] input = b.activations[0];
+    if (features.isSparse()) {
+      Arrays.fill(input, 0d);
+      Iterator<DoubleVectorElement> it = features.iterateNonZero();
+      while (it.hasNext()) {
+        DoubleVectorElement next = it.next();
+        input[next.getIndex()] = next.getValue();
+      }
+    } else {
+      for (int k = 0; k < input.length; k++) {
+        input[k] = features.get(k);
+      }
+    }
+
+    for (int i = 0; i < weights.length; i++) {
+      final int units = layers[i + 1];
+      final int inputs = layers[i];
+      final byte[] w = weights[i];
+      final byte[] q = b.quantized;
+      final double inputScale = quantize(b.activations[i], inputs, q, 0);
+      final double[] output = b.activations[i + 1];
+      for (int unit = 0; unit < units; unit++) {
+        final int offset = unit * inputs;
+        int dot = 0;
+        for (int k = 0; k < inputs; k++) {
+          dot += w[offset + k] * q[k];
+        }
+        output[unit] = biases[i][unit] + scales[i][unit] * inputScale * dot;
+      }
+      activations[i + 1].applyInPlace(output, 0, 1, units);
+    }
+    // copy the output, the buffer is reused by the next prediction
+    return new DenseDoubleVector(b.activations[weights.length].clone());
+  }
+
+  /**
+   * Scales the values into bytes by their largest absolute value.
+   * 
+   * @param values the values to quantize.
+   * @param length the number of values.
+   * @param result the bytes to write the quantized values into.
+   * @param offset the index of the first byte to write.
+   * @return the scale to multiply the bytes with to get back the values.
+   */
+  private static float quantize(double[] values, int length, byte[] result,
+      int offset) {
+    double max = 0d;
+    for (int k = 0; k < length; k++) {
+      max = Math.max(max, Math.abs(values[k]));
+    }
+    if (max == 0d) {
+      Arrays.fill(result, offset, offset + length, (byte) 0);
+      return 0f;
+    }
+    final double factor = RANGE / max;
+    for (int k = 0; k < length; k++) {
+      result[offset + k] = (byte) Math.round(values[k] * factor);
+    }
+    return (float) (max / RANGE);
+  }
+
+  public int[] getLayers() {
+    return this.layers;
+  }
+
+  /**
+   * @return the number of bytes of the weights, the scales and the biases.
+   */
+  public long getWeightBytes() {
+    long bytes = 0;
+    for (int i = 0; i < weights.length; i++) {
+      bytes += weights[i].length + 4L * scales[i].length + 4L
+          * biases[i].length;
+    }
+    return bytes;
+  }
+
+  /**
+   * Deserializes a new quantized network from the given input stream. Note
+   * that "in" will not be closed by this method.
+   */
+  public static QuantizedMultilayerPerceptron deserialize(DataInput in)
+      throws IOException {
+    int numLayers = in.readInt();
+    int[] layers = new int[numLayers];
+    for (int i = 0; i < numLayers; i++) {
+      layers[i] = in.readInt();
+    }
+
+    byte[][] weights = new byte[numLayers - 1][];
+    float[][] scales = new float[numLayers - 1][];
+    float[][] biases = new float[numLayers - 1][];
+    for (int i = 0; i < weights.length; i++) {
+      final int units = layers[i + 1];
+      scales[i] = new float[units];
+      biases[i] = new float[units];
+      for (int unit = 0; unit < units; unit++) {
+        scales[i][unit] = in.readFloat();
+      }
+      for (int unit = 0; unit < units; unit++) {
+        biases[i][unit] = in.readFloat();
+      }
+      weights[i] = new byte[units * layers[i]];
+      in.readFully(weights[i]);
+    }
+
+    ActivationFunction[] funcs = new ActivationFunction[numLayers];
+    for (int i = 0; i < numLayers; i++) {
+      try {
+        funcs[i] = (ActivationFunction) Class.forName(in.readUTF())
+            .newInstance();
+      } catch (InstantiationException | IllegalAccessException
+          | ClassNotFoundException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    return new QuantizedMultilayerPerceptron(layers, funcs, weights, scales,
+        biases);
+  }
+
+  /**
+   * Serializes the quantized network to a binary file. Note that "out" will
+   * not be closed in this method.
+   */
+  public static void serialize(QuantizedMultilayerPerceptron model,
+      DataOutput out) throws IOException {
+    out.writeInt(model.layers.length);
+    for (int l : model.layers) {
+      out.writeInt(l);
+    }
+    for (int i = 0; i < model.weights.length; i++) {
+      for (float scale : model.scales[i]) {
+        out.writeFloat(scale);
+      }
+      for (float bias : model.biases[i]) {
+        out.writeFloat(bias);
+      }
+      out.write(model.weights[i]);
+    }
+    for (ActivationFunction func : model.activations) {
+      out.writeUTF(func.getClass().getName());
+    }
+  }
+
+  /**
+   * The activations of every layer and the quantized input of a layer.
+   */
+  private final class Buffers {
+
+    private final double[][] activations;
+    private final byte[] quantized;
+
+    Buffers() {
+      this.activations = new double[layers.length][];
+      int max = 0;
+      for (int i = 0; i < layers.length; i++) {
+        activations[i] = new double[layers[i]];
+        max = Math.max(max, layers[i]);
+      }
+      this.quantized = new byte[max];
+    }
+  }
+
+}
@@ -0,0 +1,224 @@
+package de.jungblut.classification.regression;
+
+import gnu.trove.map.hash.TIntDoubleHashMap;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.apache.commons.math3.util.FastMath;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.classification.AbstractClassifier;
+import de.jungblut.datastructure.InputProvider;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.sparse.SparseDoubleVector;
+import de.jungblut.math.tuple.Tuple;
+
+/**
+ * Online logistic regression (binary classification) that is trained with
+ * follow-the-regularized-leader proximal (FTRL-proximal) updates, see McMahan
+ * et al., Ad Click Prediction: a View from the Trenches. Every example is
+ * learned with a single update, so the training data never has to be in
+ * memory and new examples can be folded in at any time.
+ * <p>
+ * The per-coordinate state is kept in primitive hash maps that only contain
+ * the features that have been seen, the weights are computed lazily from it.
+ * The L1 regularization drives the weights of rare or useless features to
+ * exactly zero, so the model is sparse. The first weight is the intercept,
+ * followed by one weight per feature, like in {@link LogisticRegression}.
+ * <p>
+ * The updates are not thread-safe.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public final class FTRLLogisticRegression extends AbstractClassifier {
+
+  // the state of the intercept
+  private static final int BIAS = 0;
+  // bound of the linear predictor to avoid exp overflows
+  private static final double MAX_LINEAR = 35d;
+
+  private final double alpha;
+  private final double beta;
+  private final double l1;
+  private final double l2;
+
+  // the accumulated gradients minus the proximal terms
+  private final TIntDoubleHashMap z = new TIntDoubleHashMap();
+  // the accumulated squared gradients
+  private final TIntDoubleHashMap n = new TIntDoubleHashMap();
+
+  // coordinates and weights of the current example, grown on demand
+  private int[] indices = new int[16];
+  private double[] values = new double[16];
+  private double[] weights = new double[16];
+
+  /**
+   * Creates a new online logistic regression.
+   * 
+   * @param alpha the learning rate.
+   * @param beta the smoothing of the per-coordinate learning rate, usually 1.
+   * @param l1 the L1 regularization, the larger the sparser the model.
+   * @param l2 the L2 regularization.
+   */
+  public FTRLLogisticRegression(double alpha, double beta, double l1,
+      double l2) {
+    Preconditions.checkArgument(alpha > 0d,
+        "Learning rate must be positive! Given: " + alpha);
+    Preconditions.checkArgument(beta >= 0d && l1 >= 0d && l2 >= 0d,
+        "Beta and the regularization must not be negative!");
+    this.alpha = alpha;
+    this.beta = beta;
+    this.l1 = l1;
+    this.l2 = l2;
+  }
+
+  /**
+   * Makes a single pass over the given examples in their order.
+   */
+  @Override
+  public void train(DoubleVector[] features, DenseDoubleVector[] outcome) {
+    for (int i = 0; i < features.length; i++) {
+      update(features[i], outcome[i].get(0));
+    }
+  }
+
+  /**
+   * Makes a single pass over the examples of the given provider, it can be
+   * called again with new examples to continue training.
+   * 
+   * @return the average log loss of the examples before they were learned.
+   */
+  public double train(
+      InputProvider<Tuple<DoubleVector, DenseDoubleVector>> provider) {
+    double loss = 0d;
+    long count = 0;
+    for (Tuple<DoubleVector, DenseDoubleVector> example : provider.iterate()) {
+      loss += update(example.getFirst(), example.getSecond().get(0));
+      count++;
+    }
+    return count == 0 ? 0d : loss / count;
+  }
+
+  /**
+   * Learns a single example.
+   * 
+   * @param features the features, only the non-zero elements are touched.
+   * @param label the class, either 0 or 1.
+   * @return the log loss of the example before it was learned.
+   */
+  public double update(DoubleVector features, double label) {
+    final int size = gather(features);
+    double linear = 0d;
+    for (int i = 0; i < size; i++) {
+      weights[i] = weight(indices[i]);
+      linear += weights[i] * values[i];
+    }
+    linear = Math.max(Math.min(linear, MAX_LINEAR), -MAX_LINEAR);
+    final double diff = sigmoid(linear) - label;
+    for (int i = 0; i < size; i++) {
+      final int index = indices[i];
+      final double gradient = diff * values[i];
+      final double squared = gradient * gradient;
+      final double lastN = n.get(index);
+      final double sigma = (Math.sqrt(lastN + squared) - Math.sqrt(lastN))
+          / alpha;
+      final double delta = gradient - sigma * weights[i];
+      z.adjustOrPutValue(index, delta, delta);
+      n.adjustOrPutValue(index, squared, squared);
+    }
+    return Math.max(linear, 0d) - label * linear
+        + Math.log1p(FastMath.exp(-Math.abs(linear)));
+  }
+
+  @Override
+  public DoubleVector predict(DoubleVector features) {
+    double linear = weight(BIAS);
+    Iterator<DoubleVectorElement> it = features.iterateNonZero();
+    while (it.hasNext()) {
+      DoubleVectorElement next = it.next();
+      linear += weight(next.getIndex() + 1) * next.getValue();
+    }
+    linear = Math.max(Math.min(linear, MAX_LINEAR), -MAX_LINEAR);
+    return new DenseDoubleVector(new double[] { sigmoid(linear) });
+  }
+
+  /**
+   * @param numFeatures the dimension of the features.
+   * @return the sparse weights, the intercept followed by the features.
+   */
+  public DoubleVector getWeights(int numFeatures) {
+    DoubleVector theta = new SparseDoubleVector(numFeatures + 1);
+    for (int index : z.keys()) {
+      double w = weight(index);
+      if (w != 0d) {
+        theta.set(index, w);
+      }
+    }
+    return theta;
+  }
+
+  /**
+   * @return the number of weights that are not zero, including the intercept.
+   */
+  public int getNumNonZeroWeights() {
+    int count = 0;
+    for (int index : z.keys()) {
+      if (weight(index) != 0d) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Computes the weight of a coordinate from its state, it is zero if the
+   * accumulated gradient doesn't exceed the L1 regularization.
+   */
+  private double weight(int index) {
+    final double zi = z.get(index);
+    if (Math.abs(zi) <= l1) {
+      return 0d;
+    }
+    return -(zi - Math.signum(zi) * l1)
+        / ((beta + Math.sqrt(n.get(index))) / alpha + l2);
+  }
+
+  /**
+   * Copies the intercept and the non-zero features into the buffers.
+   * 
+   * @return the number of coordinates.
+   */
+  private int gather(DoubleVector features) {
+    indices[0] = BIAS;
+    values[0] = 1d;
+    int size = 1;
+    Iterator<DoubleVectorElement> it = features.iterateNonZero();
+    while (it.hasNext()) {
+      DoubleVectorElement next = it.next();
+      if (size == indices.length) {
+        grow();
+      }
+      indices[size] = next.getIndex() + 1;
+      values[size] = next.getValue();
+      size++;
+    }
+    return size;
+  }
+
+  private void grow() {
+    final int length = indices.length * 2;
+    indices = Arrays.copyOf(indices, length);
+    values = Arrays.copyOf(values, length);
+    weights = new double[length];
+  }
+
+  private static double sigmoid(double z) {
+    return 1d / (1d + FastMath.exp(-z));
+  }
+
+}
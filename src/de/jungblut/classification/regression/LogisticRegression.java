@@ -2,18 +2,26 @@ package de.jungblut.classification.regression;
 
 import static de.jungblut.math.activation.ActivationFunctionSelector.SIGMOID;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Random;
 
 import de.jungblut.classification.AbstractClassifier;
 import de.jungblut.classification.nn.MultilayerPerceptron;
 import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.backend.CompressedSparseRowMatrix;
 import de.jungblut.math.dense.DenseDoubleMatrix;
 import de.jungblut.math.dense.DenseDoubleVector;
 import de.jungblut.math.minimize.Minimizer;
+import de.jungblut.writable.MappedModelFile;
 
 /**
  * Logistic regression (binary classification). For multiple classes, better use
- * the {@link MultilayerPerceptron} with no hidden layer.
+ * the {@link MultilayerPerceptron} with no hidden layer. Sparse features are
+ * trained in {@link CompressedSparseRowMatrix} format.
  * 
  * @author thomas.jungblut
  * 
@@ -58,31 +66,59 @@ public final class LogisticRegression extends AbstractClassifier {
     this.theta = theta;
   }
 
+  /**
+   * Trains on the given features, if they are sparse vectors they are kept in
+   * compressed sparse row format.
+   */
   @Override
   public void train(DoubleVector[] features, DenseDoubleVector[] outcome) {
-    DenseDoubleMatrix x = new DenseDoubleMatrix(features);
     DenseDoubleVector y = new DenseDoubleVector(outcome.length);
     for (int i = 0; i < outcome.length; i++) {
       y.set(i, outcome[i].get(0));
     }
-    train(x, y);
+    if (features[0].isSparse()) {
+      train(CompressedSparseRowMatrix.fromVectors(features), y);
+    } else {
+      train(new DenseDoubleMatrix(features), y);
+    }
   }
 
   @Override
   public DoubleVector predict(DoubleVector features) {
-    DoubleVector biasedFeatures = new DenseDoubleVector(
-        features.getLength() + 1, 1d);
-    for (int i = 0; i < features.getLength(); i++) {
-      biasedFeatures.set(i + 1, features.get(i));
-    }
     return new DenseDoubleVector(new double[] { SIGMOID.get().apply(
-        biasedFeatures.dot(theta)) });
+        score(features)) });
+  }
+
+  /**
+   * @return the intercept plus the dot product of the weights and the
+   *         non-zero features.
+   */
+  private double score(DoubleVector features) {
+    double sum = theta.get(0);
+    Iterator<DoubleVectorElement> it = features.iterateNonZero();
+    while (it.hasNext()) {
+      DoubleVectorElement next = it.next();
+      sum += next.getValue() * theta.get(next.getIndex() + 1);
+    }
+    return sum;
   }
 
   public void train(DenseDoubleMatrix x, DenseDoubleVector y) {
-    LogisticRegressionCostFunction fnc = new LogisticRegressionCostFunction(x,
-        y, lambda);
-    DoubleVector initialTheta = new DenseDoubleVector(x.getColumnCount() + 1);
+    train(new LogisticRegressionCostFunction(x, y, lambda),
+        x.getColumnCount() + 1);
+  }
+
+  /**
+   * Trains on sparse features, the memory and time of an iteration scale with
+   * the number of non-zero features.
+   */
+  public void train(CompressedSparseRowMatrix x, DenseDoubleVector y) {
+    train(new LogisticRegressionCostFunction(x, y, lambda),
+        x.getColumnCount() + 1);
+  }
+
+  private void train(LogisticRegressionCostFunction fnc, int numParameters) {
+    DoubleVector initialTheta = new DenseDoubleVector(numParameters);
     for (int i = 0; i < initialTheta.getLength(); i++) {
       initialTheta.set(i, (random.nextDouble() * 2) - 1d);
     }
@@ -103,10 +139,47 @@ public final class LogisticRegression extends AbstractClassifier {
     return vec;
   }
 
+  /**
+   * Predicts the output by the given sparse input.
+   * 
+   * @return the predicted vector consisting out of zeroes and ones.
+   */
+  public DoubleVector predict(CompressedSparseRowMatrix input,
+      double threshold) {
+    double[] scores = new double[input.getRowCount()];
+    Arrays.fill(scores, theta.get(0));
+    input.multiplyTransposed(null, theta.toArray(), 1, 1, 1, scores, 0,
+        scores.length);
+    for (int i = 0; i < scores.length; i++) {
+      scores[i] = SIGMOID.get().apply(scores[i]) > threshold ? 1.0d : 0.0d;
+    }
+    return new DenseDoubleVector(scores);
+  }
+
   /**
    * @return the learned weights.FSO
    */
   public DoubleVector getTheta() {
     return theta;
   }
+
+  /**
+   * Opens a model that was written by
+   * {@link #serializeMapped(LogisticRegression, File)}.
+   */
+  public static LogisticRegression deserializeMapped(File file)
+      throws IOException {
+    return new LogisticRegression(MappedModelFile.open(file,
+        LogisticRegression.class).getVector("theta"));
+  }
+
+  /**
+   * Writes the learned weights to a page aligned model file that can be opened
+   * with {@link #deserializeMapped(File)}.
+   */
+  public static void serializeMapped(LogisticRegression model, File file)
+      throws IOException {
+    MappedModelFile.newWriter(LogisticRegression.class)
+        .putVector("theta", model.theta).write(file);
+  }
 }
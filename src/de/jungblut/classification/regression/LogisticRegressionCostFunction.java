@@ -2,35 +2,44 @@ package de.jungblut.classification.regression;
 
 import static de.jungblut.math.activation.ActivationFunctionSelector.SIGMOID;
 
+import java.util.Arrays;
 import java.util.Collections;
 
 import de.jungblut.classification.nn.ErrorFunction;
 import de.jungblut.math.DoubleMatrix;
 import de.jungblut.math.DoubleVector;
+import de.jungblut.math.backend.CompressedSparseRowMatrix;
 import de.jungblut.math.dense.DenseDoubleMatrix;
 import de.jungblut.math.dense.DenseDoubleVector;
-import de.jungblut.math.minimize.CostFunction;
+import de.jungblut.math.minimize.InPlaceCostFunction;
 import de.jungblut.math.minimize.Minimizer;
 import de.jungblut.math.sparse.SparseDoubleColumnMatrix;
 import de.jungblut.math.tuple.Tuple;
 
 /**
  * Logistic regression cost function to optimize with an arbitrary
- * {@link Minimizer}.
+ * {@link Minimizer}. Features in {@link CompressedSparseRowMatrix} format are
+ * never densified: the intercept is added separately instead of as a column
+ * of ones and the hypothesis and gradient are computed over the non-zero
+ * elements only, so memory and time scale with their number.
  * 
  * @author thomas.jungblut
  * 
  */
-public final class LogisticRegressionCostFunction implements CostFunction {
+public final class LogisticRegressionCostFunction implements
+    InPlaceCostFunction {
 
   private static final ErrorFunction ERROR_FUNCTION = ErrorFunction.SIGMOID_ERROR;
 
   private final DoubleMatrix x;
   private final DenseDoubleMatrix y;
+  // the features and outcome of the sparse path, null for the matrices above
+  private final CompressedSparseRowMatrix sparseX;
+  private final double[] outcome;
   private final double lambda;
   private final int m;
 
-  private DenseDoubleMatrix eye;
+  private final DenseDoubleMatrix eye;
 
   public LogisticRegressionCostFunction(DoubleMatrix x, DoubleVector y,
       double lambda) {
@@ -42,14 +51,40 @@ public final class LogisticRegressionCostFunction implements CostFunction {
           .getLength()), x);
     }
     this.y = new DenseDoubleMatrix(Collections.singletonList(y));
+    this.sparseX = null;
+    this.outcome = null;
     this.lambda = lambda;
     this.m = y.getLength();
     eye = DenseDoubleMatrix.eye(x.getColumnCount() + 1);
     eye.set(0, 0, 0.0d);
   }
 
+  /**
+   * Creates a new cost function on sparse features, the parameters are the
+   * intercept followed by a weight per column of x.
+   */
+  public LogisticRegressionCostFunction(CompressedSparseRowMatrix x,
+      DoubleVector y, double lambda) {
+    this.x = null;
+    this.y = null;
+    this.eye = null;
+    this.sparseX = x;
+    this.outcome = new double[y.getLength()];
+    for (int i = 0; i < outcome.length; i++) {
+      outcome[i] = y.get(i);
+    }
+    this.lambda = lambda;
+    this.m = y.getLength();
+  }
+
   @Override
   public Tuple<Double, DoubleVector> evaluateCost(DoubleVector input) {
+    if (sparseX != null) {
+      double[] gradient = new double[input.getDimension()];
+      double j = evaluateSparse(input.toArray(), gradient);
+      return new Tuple<Double, DoubleVector>(j, new DenseDoubleVector(
+          gradient));
+    }
 
     double reg = input.slice(1, input.getLength()).pow(2).sum() * lambda
         / (2.0d * m);
@@ -65,4 +100,47 @@ public final class LogisticRegressionCostFunction implements CostFunction {
 
     return new Tuple<>(j, gradient);
   }
+
+  @Override
+  public double evaluateCost(DoubleVector input, double[] gradient) {
+    if (sparseX != null) {
+      return evaluateSparse(input.toArray(), gradient);
+    }
+    Tuple<Double, DoubleVector> result = evaluateCost(input);
+    DoubleVector g = result.getSecond();
+    for (int i = 0; i < gradient.length; i++) {
+      gradient[i] = g.get(i);
+    }
+    return result.getFirst();
+  }
+
+  private double evaluateSparse(double[] theta, double[] gradient) {
+    // h = sigmoid(theta_0 + X * theta_1..n)
+    double[] hypothesis = new double[m];
+    Arrays.fill(hypothesis, theta[0]);
+    sparseX.multiplyTransposed(null, theta, 1, 1, 1, hypothesis, 0, m);
+    for (int i = 0; i < m; i++) {
+      hypothesis[i] = SIGMOID.get().apply(hypothesis[i]);
+    }
+    double sum = ERROR_FUNCTION.getError(outcome, hypothesis, m, 1);
+
+    // the hypothesis turns into the residual h - y
+    double bias = 0d;
+    for (int i = 0; i < m; i++) {
+      hypothesis[i] -= outcome[i];
+      bias += hypothesis[i];
+    }
+    Arrays.fill(gradient, 0d);
+    gradient[0] = bias / m;
+    // X^T * (h - y) only touches the columns of the non-zero features
+    sparseX.transposeMultiply(hypothesis, 0, m, 1, null, gradient, 1, 1);
+
+    // the intercept isn't regularized
+    double reg = 0d;
+    for (int i = 1; i < theta.length; i++) {
+      reg += theta[i] * theta[i];
+      gradient[i] = (gradient[i] + lambda * theta[i]) / m;
+    }
+    return sum / m + reg * lambda / (2.0d * m);
+  }
 }
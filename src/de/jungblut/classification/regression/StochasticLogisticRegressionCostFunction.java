@@ -0,0 +1,78 @@
+package de.jungblut.classification.regression;
+
+import java.util.Iterator;
+
+import org.apache.commons.math3.util.FastMath;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.minimize.HogwildStochasticGradientDescent;
+import de.jungblut.math.minimize.StochasticCostFunction;
+import de.jungblut.math.sparse.SparseDoubleVector;
+import de.jungblut.math.tuple.Tuple;
+
+/**
+ * Logistic regression cost function on a single example for stochastic
+ * minimizers. The first parameter is the intercept, followed by one weight per
+ * feature. For sparse features the gradient is sparse as well and only
+ * contains the intercept and the non-zero features, so it can be applied
+ * cheaply by a {@link HogwildStochasticGradientDescent}. The function is
+ * stateless and thus thread-safe.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public final class StochasticLogisticRegressionCostFunction implements
+    StochasticCostFunction {
+
+  @Override
+  public Tuple<Double, DoubleVector> evaluateCost(DoubleVector input,
+      DoubleVector x, DenseDoubleVector y) {
+    final double outcome = y.get(0);
+    if (x.isSparse()) {
+      double z = input.get(0);
+      Iterator<DoubleVectorElement> it = x.iterateNonZero();
+      while (it.hasNext()) {
+        DoubleVectorElement next = it.next();
+        z += input.get(next.getIndex() + 1) * next.getValue();
+      }
+      final double diff = sigmoid(z) - outcome;
+      DoubleVector gradient = new SparseDoubleVector(input.getDimension());
+      gradient.set(0, diff);
+      it = x.iterateNonZero();
+      while (it.hasNext()) {
+        DoubleVectorElement next = it.next();
+        gradient.set(next.getIndex() + 1, diff * next.getValue());
+      }
+      return new Tuple<>(logLoss(z, outcome), gradient);
+    }
+
+    double z = input.get(0);
+    for (int i = 0; i < x.getDimension(); i++) {
+      z += input.get(i + 1) * x.get(i);
+    }
+    final double diff = sigmoid(z) - outcome;
+    double[] gradient = new double[input.getDimension()];
+    gradient[0] = diff;
+    for (int i = 0; i < x.getDimension(); i++) {
+      gradient[i + 1] = diff * x.get(i);
+    }
+    return new Tuple<Double, DoubleVector>(logLoss(z, outcome),
+        new DenseDoubleVector(gradient));
+  }
+
+  private static double sigmoid(double z) {
+    return 1d / (1d + FastMath.exp(-z));
+  }
+
+  /**
+   * @return the log loss of the sigmoid of z, computed without overflowing for
+   *         large absolute values of z.
+   */
+  private static double logLoss(double z, double outcome) {
+    return Math.max(z, 0d) - outcome * z
+        + Math.log1p(FastMath.exp(-Math.abs(z)));
+  }
+
+}
@@ -6,7 +6,7 @@ import java.util.List;
 
 import org.apache.commons.math3.util.FastMath;
 
-import de.jungblut.datastructure.KDTree;
+import de.jungblut.datastructure.FlatKDTree;
 import de.jungblut.datastructure.KDTree.VectorDistanceTuple;
 import de.jungblut.distance.EuclidianDistance;
 import de.jungblut.math.DoubleVector;
@@ -43,13 +43,12 @@ public final class MeanShiftClustering {
   public static List<DoubleVector> cluster(List<DoubleVector> points,
       double windowSize, double mergeWindow, int maxIterations, boolean verbose) {
     // initialize our lookup structure
-    KDTree<Integer> kdTree = new KDTree<>();
     // assign an index to each point
-    int index = 0;
-    for (DoubleVector v : points) {
-      kdTree.add(v, index++);
+    List<Integer> indices = new ArrayList<>(points.size());
+    for (int i = 0; i < points.size(); i++) {
+      indices.add(i);
     }
-    kdTree.balanceBySort();
+    FlatKDTree<Integer> kdTree = new FlatKDTree<>(points, indices);
     // start observing the centers
     List<DoubleVector> centers = observeCenters(kdTree, points, windowSize,
         verbose);
@@ -100,7 +99,7 @@ public final class MeanShiftClustering {
    * @param h the window size "h".
    * @return the number of centers that haven't converged yet.
    */
-  private static int meanShift(KDTree<Integer> kdTree,
+  private static int meanShift(FlatKDTree<Integer> kdTree,
       List<DoubleVector> centers, double h) {
     int remainingConvergence = 0;
     for (int i = 0; i < centers.size(); i++) {
@@ -132,7 +131,7 @@ public final class MeanShiftClustering {
   /**
    * Small one pass exclusive clustering.
    */
-  private static List<DoubleVector> observeCenters(KDTree<Integer> kdTree,
+  private static List<DoubleVector> observeCenters(FlatKDTree<Integer> kdTree,
       List<DoubleVector> points, double h, boolean verbose) {
     List<DoubleVector> centers = new ArrayList<>();
     BitSet assignedIndices = new BitSet(kdTree.size());
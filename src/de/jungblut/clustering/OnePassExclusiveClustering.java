@@ -5,7 +5,7 @@ import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.List;
 
-import de.jungblut.datastructure.KDTree;
+import de.jungblut.datastructure.FlatKDTree;
 import de.jungblut.datastructure.KDTree.VectorDistanceTuple;
 import de.jungblut.distance.EuclidianDistance;
 import de.jungblut.math.DoubleVector;
@@ -66,12 +66,11 @@ public final class OnePassExclusiveClustering {
    */
   public List<DoubleVector> cluster(List<DoubleVector> values, boolean verbose) {
     ArrayList<DoubleVector> centers = new ArrayList<>();
-    KDTree<Integer> tree = new KDTree<>();
-    int index = 0;
-    for (DoubleVector value : values) {
-      tree.add(value, index++);
+    List<Integer> indices = new ArrayList<>(values.size());
+    for (int i = 0; i < values.size(); i++) {
+      indices.add(i);
     }
-    tree.balanceBySort();
+    FlatKDTree<Integer> tree = new FlatKDTree<>(values, indices);
 
     BitSet set = new BitSet(values.size());
     int items = 0;
@@ -0,0 +1,337 @@
+package de.jungblut.datastructure;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.datastructure.KDTree.VectorDistanceTuple;
+import de.jungblut.math.DoubleVector;
+
+/**
+ * Immutable kd-tree that is built once from all points and stores them in flat
+ * arrays instead of linked nodes. The tree is implicit: the node of the index
+ * range [lo, hi) is its middle index, the left subtree is the range before it
+ * and the right subtree the range after it, so every subtree is contiguous in
+ * memory. The coordinates of all points are kept in a single double array in
+ * this order, the split dimension of every node in an int array, the split
+ * value is the coordinate of the node itself.
+ * <p>
+ * Each node splits at the median of the dimension with the largest spread of
+ * its points, thus the tree is always balanced. A query compares the
+ * coordinates directly and collects the candidates in a primitive heap, it
+ * only creates the tuples of the returned neighbours. Queries don't modify
+ * the tree, so it can be shared between threads.
+ * <p>
+ * The coordinates of every dimension are stored, so the tree is made for
+ * dense and rather low dimensional data. The distances are euclidian, like in
+ * {@link KDTree}.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public final class FlatKDTree<VALUE> {
+
+  private final int size;
+  private final int dimension;
+  // row-major coordinates of the points in tree order
+  private final double[] coordinates;
+  private final int[] splitDimensions;
+  private final DoubleVector[] vectors;
+  private final Object[] values;
+
+  /**
+   * Builds a tree of the given points with null values.
+   */
+  public FlatKDTree(List<DoubleVector> points) {
+    this(points, null);
+  }
+
+  /**
+   * Builds a tree of the given points.
+   * 
+   * @param points the points, they must have the same dimension.
+   * @param values the value of every point, or null.
+   */
+  public FlatKDTree(List<DoubleVector> points, List<VALUE> values) {
+    Preconditions.checkArgument(values == null
+        || points.size() == values.size(),
+        "Points and values length didn't match: " + points.size() + "!="
+            + (values == null ? 0 : values.size()));
+    this.size = points.size();
+    this.dimension = size == 0 ? 0 : points.get(0).getDimension();
+    double[] raw = new double[size * dimension];
+    int[] order = new int[size];
+    for (int i = 0; i < size; i++) {
+      DoubleVector point = points.get(i);
+      Preconditions.checkArgument(point.getDimension() == dimension,
+          "All points must have dimension " + dimension + "! Given: "
+              + point.getDimension());
+      for (int d = 0; d < dimension; d++) {
+        raw[i * dimension + d] = point.get(d);
+      }
+      order[i] = i;
+    }
+
+    this.splitDimensions = new int[size];
+    build(raw, order, 0, size);
+
+    this.coordinates = new double[size * dimension];
+    this.vectors = new DoubleVector[size];
+    this.values = new Object[size];
+    for (int i = 0; i < size; i++) {
+      System.arraycopy(raw, order[i] * dimension, coordinates, i * dimension,
+          dimension);
+      vectors[i] = points.get(order[i]);
+      this.values[i] = values == null ? null : values.get(order[i]);
+    }
+  }
+
+  /**
+   * Recursively partitions the range at its median, the order array contains
+   * the point index of every tree position afterwards.
+   */
+  private void build(double[] raw, int[] order, int lo, int hi) {
+    if (hi - lo <= 0) {
+      return;
+    }
+    final int mid = (lo + hi) >>> 1;
+    final int split = widestDimension(raw, order, lo, hi);
+    select(raw, order, lo, hi - 1, mid, split);
+    splitDimensions[mid] = split;
+    build(raw, order, lo, mid);
+    build(raw, order, mid + 1, hi);
+  }
+
+  /**
+   * @return the dimension with the largest difference between the minimum and
+   *         maximum coordinate in the range.
+   */
+  private int widestDimension(double[] raw, int[] order, int lo, int hi) {
+    int widest = 0;
+    double widestSpread = -1d;
+    for (int d = 0; d < dimension; d++) {
+      double min = Double.POSITIVE_INFINITY;
+      double max = Double.NEGATIVE_INFINITY;
+      for (int i = lo; i < hi; i++) {
+        double value = raw[order[i] * dimension + d];
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+      }
+      if (max - min > widestSpread) {
+        widestSpread = max - min;
+        widest = d;
+      }
+    }
+    return widest;
+  }
+
+  /**
+   * Quickselect on the inclusive range [left, right], afterwards the element
+   * at k is in its sorted position, the ones before are not larger and the
+   * ones after are not smaller in the split dimension.
+   */
+  private void select(double[] raw, int[] order, int left, int right, int k,
+      int split) {
+    while (left < right) {
+      final double pivot = raw[order[(left + right) >>> 1] * dimension + split];
+      int i = left;
+      int j = right;
+      while (i <= j) {
+        while (raw[order[i] * dimension + split] < pivot) {
+          i++;
+        }
+        while (raw[order[j] * dimension + split] > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          int tmp = order[i];
+          order[i] = order[j];
+          order[j] = tmp;
+          i++;
+          j--;
+        }
+      }
+      if (k <= j) {
+        right = j;
+      } else if (k >= i) {
+        left = i;
+      } else {
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return the nearest neighbors to the given vector.
+   */
+  public List<VectorDistanceTuple<VALUE>> getNearestNeighbours(DoubleVector vec) {
+    return getNearestNeighbours(vec, Integer.MAX_VALUE);
+  }
+
+  /**
+   * @return the k nearest neighbors to the given vector.
+   */
+  public List<VectorDistanceTuple<VALUE>> getNearestNeighbours(
+      DoubleVector vec, int k) {
+    return getNearestNeighbours(vec, k, Double.MAX_VALUE);
+  }
+
+  /**
+   * @return the neighbors within the radius to the given vector.
+   */
+  public List<VectorDistanceTuple<VALUE>> getNearestNeighbours(
+      DoubleVector vec, double radius) {
+    return getNearestNeighbours(vec, Integer.MAX_VALUE, radius);
+  }
+
+  /**
+   * @return the k nearest neighbors within the radius to the given vector, in
+   *         no particular order.
+   */
+  @SuppressWarnings("unchecked")
+  public List<VectorDistanceTuple<VALUE>> getNearestNeighbours(
+      DoubleVector vec, int k, double radius) {
+    Preconditions.checkArgument(size == 0 || vec.getDimension() == dimension,
+        "Query must have dimension " + dimension + "! Given: "
+            + vec.getDimension());
+    double[] query = new double[dimension];
+    for (int d = 0; d < dimension; d++) {
+      query[d] = vec.get(d);
+    }
+    NeighbourHeap heap = new NeighbourHeap(k);
+    search(query, 0, size, radius * radius, heap);
+
+    List<VectorDistanceTuple<VALUE>> list = new ArrayList<>(heap.size);
+    for (int i = 0; i < heap.size; i++) {
+      int index = heap.indices[i];
+      list.add(new VectorDistanceTuple<>(vectors[index], (VALUE) values[index],
+          Math.sqrt(heap.distances[i])));
+    }
+    return list;
+  }
+
+  /**
+   * Visits the node of the range, then the subtree on the side of the query
+   * and the other subtree only if the split plane is closer than the current
+   * k-th neighbour and the radius.
+   */
+  private void search(double[] query, int lo, int hi, double radiusSquared,
+      NeighbourHeap heap) {
+    if (hi - lo <= 0) {
+      return;
+    }
+    final int mid = (lo + hi) >>> 1;
+    final int offset = mid * dimension;
+    double distance = 0d;
+    for (int d = 0; d < dimension; d++) {
+      double diff = query[d] - coordinates[offset + d];
+      distance += diff * diff;
+    }
+    if (distance <= radiusSquared) {
+      heap.offer(mid, distance);
+    }
+
+    final int split = splitDimensions[mid];
+    final double planeDistance = query[split] - coordinates[offset + split];
+    if (planeDistance < 0d) {
+      search(query, lo, mid, radiusSquared, heap);
+    } else {
+      search(query, mid + 1, hi, radiusSquared, heap);
+    }
+    double bound = heap.isFull() ? Math.min(heap.max(), radiusSquared)
+        : radiusSquared;
+    if (planeDistance * planeDistance <= bound) {
+      if (planeDistance < 0d) {
+        search(query, mid + 1, hi, radiusSquared, heap);
+      } else {
+        search(query, lo, mid, radiusSquared, heap);
+      }
+    }
+  }
+
+  /**
+   * @return the number of points in this tree.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return the dimension of the points.
+   */
+  public int getDimension() {
+    return dimension;
+  }
+
+  /**
+   * Bounded max-heap of tree positions by their squared distance.
+   */
+  private static final class NeighbourHeap {
+
+    private final int capacity;
+    private int[] indices;
+    private double[] distances;
+    private int size;
+
+    NeighbourHeap(int capacity) {
+      this.capacity = capacity;
+      int initial = Math.max(1, Math.min(capacity, 16));
+      this.indices = new int[initial];
+      this.distances = new double[initial];
+    }
+
+    void offer(int index, double distance) {
+      if (size < capacity) {
+        if (size == indices.length) {
+          int length = (int) Math.min((long) capacity, size * 2L);
+          indices = Arrays.copyOf(indices, length);
+          distances = Arrays.copyOf(distances, length);
+        }
+        int pos = size++;
+        // sift up
+        while (pos > 0) {
+          int parent = (pos - 1) >>> 1;
+          if (distances[parent] >= distance) {
+            break;
+          }
+          indices[pos] = indices[parent];
+          distances[pos] = distances[parent];
+          pos = parent;
+        }
+        indices[pos] = index;
+        distances[pos] = distance;
+      } else if (distance < distances[0]) {
+        int pos = 0;
+        // sift down the replaced root
+        while (true) {
+          int child = 2 * pos + 1;
+          if (child >= size) {
+            break;
+          }
+          if (child + 1 < size && distances[child + 1] > distances[child]) {
+            child++;
+          }
+          if (distances[child] <= distance) {
+            break;
+          }
+          indices[pos] = indices[child];
+          distances[pos] = distances[child];
+          pos = child;
+        }
+        indices[pos] = index;
+        distances[pos] = distance;
+      }
+    }
+
+    boolean isFull() {
+      return size >= capacity;
+    }
+
+    double max() {
+      return distances[0];
+    }
+  }
+
+}
@@ -99,6 +99,53 @@ public abstract class AbstractActivationFunction implements ActivationFunction {
     return newInstance;
   }
 
+  @Override
+  public void applyInPlace(double[] values, int offset, int rows, int columns) {
+    final int end = offset + rows * columns;
+    for (int i = offset; i < end; i++) {
+      values[i] = apply(values[i]);
+    }
+  }
+
+  @Override
+  public void gradientInPlace(double[] values, int offset, int rows,
+      int columns) {
+    final int end = offset + rows * columns;
+    for (int i = offset; i < end; i++) {
+      values[i] = gradient(values[i]);
+    }
+  }
+
+  @Override
+  public void applyWithGradient(double[] values, int offset,
+      double[] gradient, int gradientOffset, int rows, int columns) {
+    final int length = rows * columns;
+    for (int i = 0; i < length; i++) {
+      double input = values[offset + i];
+      gradient[gradientOffset + i] = gradient(input);
+      values[offset + i] = apply(input);
+    }
+  }
+
+  @Override
+  public void applyInPlace(float[] values, int offset, int rows, int columns) {
+    final int end = offset + rows * columns;
+    for (int i = offset; i < end; i++) {
+      values[i] = (float) apply(values[i]);
+    }
+  }
+
+  @Override
+  public void applyWithGradient(float[] values, int offset, float[] gradient,
+      int gradientOffset, int rows, int columns) {
+    final int length = rows * columns;
+    for (int i = 0; i < length; i++) {
+      double input = values[offset + i];
+      gradient[gradientOffset + i] = (float) gradient(input);
+      values[offset + i] = (float) apply(input);
+    }
+  }
+
   protected DoubleMatrix newInstance(DoubleMatrix mat) {
     if (mat.isSparse()) {
       return new SparseDoubleColumnMatrix(mat.getRowCount(),
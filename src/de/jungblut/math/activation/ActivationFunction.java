@@ -58,4 +58,55 @@ public interface ActivationFunction {
    */
   public DoubleMatrix gradient(DoubleMatrix matrix);
 
+  /**
+   * Applies the activation function in place on a column major matrix that is
+   * stored in the given array.
+   * 
+   * @param values the array that contains the matrix.
+   * @param offset the index of the first element of the matrix.
+   * @param rows the number of rows.
+   * @param columns the number of columns.
+   */
+  public void applyInPlace(double[] values, int offset, int rows, int columns);
+
+  /**
+   * Replaces each element of a column major matrix that is stored in the given
+   * array by its gradient.
+   * 
+   * @param values the array that contains the matrix.
+   * @param offset the index of the first element of the matrix.
+   * @param rows the number of rows.
+   * @param columns the number of columns.
+   */
+  public void gradientInPlace(double[] values, int offset, int rows,
+      int columns);
+
+  /**
+   * Applies the activation function in place and writes the gradient of the
+   * original elements into another array in a single pass, so intermediate
+   * results can be shared between both.
+   * 
+   * @param values the array that contains the matrix.
+   * @param offset the index of the first element of the matrix.
+   * @param gradient the array to write the gradient into.
+   * @param gradientOffset the index where the gradient matrix starts.
+   * @param rows the number of rows.
+   * @param columns the number of columns.
+   */
+  public void applyWithGradient(double[] values, int offset,
+      double[] gradient, int gradientOffset, int rows, int columns);
+
+  /**
+   * Single precision variant of
+   * {@link #applyInPlace(double[], int, int, int)}.
+   */
+  public void applyInPlace(float[] values, int offset, int rows, int columns);
+
+  /**
+   * Single precision variant of
+   * {@link #applyWithGradient(double[], int, double[], int, int, int)}.
+   */
+  public void applyWithGradient(float[] values, int offset, float[] gradient,
+      int gradientOffset, int rows, int columns);
+
 }
@@ -27,4 +27,16 @@ public final class ElliotActivationFunction extends AbstractActivationFunction {
     return 1d / (denom * denom) * 2;
   }
 
+  @Override
+  public void applyWithGradient(double[] values, int offset,
+      double[] gradient, int gradientOffset, int rows, int columns) {
+    final int length = rows * columns;
+    for (int i = 0; i < length; i++) {
+      double input = values[offset + i];
+      double denom = 1d + Math.abs(input);
+      gradient[gradientOffset + i] = 1d / (denom * denom) * 2;
+      values[offset + i] = (input / 2d) / denom + 0.5d;
+    }
+  }
+
 }
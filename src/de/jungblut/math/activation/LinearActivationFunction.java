@@ -1,5 +1,7 @@
 package de.jungblut.math.activation;
 
+import java.util.Arrays;
+
 import de.jungblut.math.DoubleMatrix;
 import de.jungblut.math.DoubleVector;
 
@@ -43,4 +45,32 @@ public final class LinearActivationFunction extends AbstractActivationFunction {
     return matrix;
   }
 
+  @Override
+  public void applyInPlace(double[] values, int offset, int rows, int columns) {
+    // identity
+  }
+
+  @Override
+  public void gradientInPlace(double[] values, int offset, int rows,
+      int columns) {
+    Arrays.fill(values, offset, offset + rows * columns, 1d);
+  }
+
+  @Override
+  public void applyWithGradient(double[] values, int offset,
+      double[] gradient, int gradientOffset, int rows, int columns) {
+    Arrays.fill(gradient, gradientOffset, gradientOffset + rows * columns, 1d);
+  }
+
+  @Override
+  public void applyInPlace(float[] values, int offset, int rows, int columns) {
+    // identity
+  }
+
+  @Override
+  public void applyWithGradient(float[] values, int offset, float[] gradient,
+      int gradientOffset, int rows, int columns) {
+    Arrays.fill(gradient, gradientOffset, gradientOffset + rows * columns, 1f);
+  }
+
 }
@@ -28,4 +28,27 @@ public final class SigmoidActivationFunction extends AbstractActivationFunction
     return sigmoid(input) * (1d - sigmoid(input));
   }
 
+  @Override
+  public void applyWithGradient(double[] values, int offset,
+      double[] gradient, int gradientOffset, int rows, int columns) {
+    // the gradient only needs the activation itself
+    final int length = rows * columns;
+    for (int i = 0; i < length; i++) {
+      double sigmoid = sigmoid(values[offset + i]);
+      gradient[gradientOffset + i] = sigmoid * (1d - sigmoid);
+      values[offset + i] = sigmoid;
+    }
+  }
+
+  @Override
+  public void applyWithGradient(float[] values, int offset, float[] gradient,
+      int gradientOffset, int rows, int columns) {
+    final int length = rows * columns;
+    for (int i = 0; i < length; i++) {
+      double sigmoid = sigmoid(values[offset + i]);
+      gradient[gradientOffset + i] = (float) (sigmoid * (1d - sigmoid));
+      values[offset + i] = (float) sigmoid;
+    }
+  }
+
 }
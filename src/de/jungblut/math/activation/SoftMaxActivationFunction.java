@@ -1,5 +1,7 @@
 package de.jungblut.math.activation;
 
+import java.util.Arrays;
+
 import de.jungblut.math.DoubleMatrix;
 import de.jungblut.math.DoubleVector;
 
@@ -51,4 +53,69 @@ public final class SoftMaxActivationFunction extends AbstractActivationFunction
     return matrix;
   }
 
+  /**
+   * Normalizes each row of the matrix in place.
+   */
+  @Override
+  public void applyInPlace(double[] values, int offset, int rows, int columns) {
+    for (int row = 0; row < rows; row++) {
+      double max = Double.NEGATIVE_INFINITY;
+      for (int col = 0; col < columns; col++) {
+        max = Math.max(max, values[offset + col * rows + row]);
+      }
+      double sum = 0d;
+      for (int col = 0; col < columns; col++) {
+        int index = offset + col * rows + row;
+        double exp = Math.exp(values[index] - max);
+        values[index] = exp;
+        sum += exp;
+      }
+      for (int col = 0; col < columns; col++) {
+        values[offset + col * rows + row] /= sum;
+      }
+    }
+  }
+
+  @Override
+  public void gradientInPlace(double[] values, int offset, int rows,
+      int columns) {
+    Arrays.fill(values, offset, offset + rows * columns, 1d);
+  }
+
+  @Override
+  public void applyWithGradient(double[] values, int offset,
+      double[] gradient, int gradientOffset, int rows, int columns) {
+    Arrays.fill(gradient, gradientOffset, gradientOffset + rows * columns, 1d);
+    applyInPlace(values, offset, rows, columns);
+  }
+
+  /**
+   * Normalizes each row of the matrix in place, the sums are computed in
+   * double precision.
+   */
+  @Override
+  public void applyInPlace(float[] values, int offset, int rows, int columns) {
+    for (int row = 0; row < rows; row++) {
+      double max = Double.NEGATIVE_INFINITY;
+      for (int col = 0; col < columns; col++) {
+        max = Math.max(max, values[offset + col * rows + row]);
+      }
+      double sum = 0d;
+      for (int col = 0; col < columns; col++) {
+        sum += Math.exp(values[offset + col * rows + row] - max);
+      }
+      for (int col = 0; col < columns; col++) {
+        int index = offset + col * rows + row;
+        values[index] = (float) (Math.exp(values[index] - max) / sum);
+      }
+    }
+  }
+
+  @Override
+  public void applyWithGradient(float[] values, int offset, float[] gradient,
+      int gradientOffset, int rows, int columns) {
+    Arrays.fill(gradient, gradientOffset, gradientOffset + rows * columns, 1f);
+    applyInPlace(values, offset, rows, columns);
+  }
+
 }
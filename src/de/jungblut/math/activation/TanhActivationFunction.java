@@ -21,4 +21,26 @@ public final class TanhActivationFunction extends AbstractActivationFunction {
     return 1 - tanhX * tanhX;
   }
 
+  @Override
+  public void applyWithGradient(double[] values, int offset,
+      double[] gradient, int gradientOffset, int rows, int columns) {
+    final int length = rows * columns;
+    for (int i = 0; i < length; i++) {
+      final double tanhX = FastMath.tanh(values[offset + i]);
+      gradient[gradientOffset + i] = 1 - tanhX * tanhX;
+      values[offset + i] = tanhX;
+    }
+  }
+
+  @Override
+  public void applyWithGradient(float[] values, int offset, float[] gradient,
+      int gradientOffset, int rows, int columns) {
+    final int length = rows * columns;
+    for (int i = 0; i < length; i++) {
+      final double tanhX = FastMath.tanh(values[offset + i]);
+      gradient[gradientOffset + i] = (float) (1 - tanhX * tanhX);
+      values[offset + i] = (float) tanhX;
+    }
+  }
+
 }
@@ -0,0 +1,65 @@
+package de.jungblut.math.backend;
+
+import de.jungblut.math.DoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleMatrix;
+
+/**
+ * Base class for backends that only implement the raw column major
+ * {@link #gemm(boolean, boolean, int, int, int, double, double[], int, int, double[], int, int, double, double[], int, int)}
+ * and get the matrix multiplication by copying into that format. The single
+ * precision multiplication defaults to the pure java implementation.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public abstract class AbstractMatrixBackend implements MatrixBackend {
+
+  @Override
+  public DoubleMatrix multiply(DoubleMatrix a1, DoubleMatrix a2,
+      boolean a1Transpose, boolean a2Transpose) {
+    int m = a1Transpose ? a1.getColumnCount() : a1.getRowCount();
+    int k = a1Transpose ? a1.getRowCount() : a1.getColumnCount();
+    int n = a2Transpose ? a2.getRowCount() : a2.getColumnCount();
+    int k2 = a2Transpose ? a2.getColumnCount() : a2.getRowCount();
+    if (k != k2) {
+      throw new IllegalArgumentException("Inner dimensions do not match: " + k
+          + " != " + k2);
+    }
+    double[] result = new double[m * n];
+    gemm(a1Transpose, a2Transpose, m, n, k, 1d, toColumnMajor(a1), 0,
+        Math.max(1, a1.getRowCount()), toColumnMajor(a2), 0,
+        Math.max(1, a2.getRowCount()), 0d, result, 0, Math.max(1, m));
+    return new DenseDoubleMatrix(result, m, n);
+  }
+
+  @Override
+  public void gemm(boolean transposeA, boolean transposeB, int m, int n,
+      int k, float alpha, float[] a, int aOffset, int lda, float[] b,
+      int bOffset, int ldb, float beta, float[] c, int cOffset, int ldc) {
+    JavaMatrixBackend.get().gemm(transposeA, transposeB, m, n, k, alpha, a,
+        aOffset, lda, b, bOffset, ldb, beta, c, cOffset, ldc);
+  }
+
+  /**
+   * @return a new column major array that contains the given matrix.
+   */
+  public static double[] toColumnMajor(DoubleMatrix matrix) {
+    final int rows = matrix.getRowCount();
+    final int cols = matrix.getColumnCount();
+    double[] arr = new double[rows * cols];
+    if (matrix instanceof DenseDoubleMatrix) {
+      DenseDoubleMatrix dense = (DenseDoubleMatrix) matrix;
+      for (int col = 0; col < cols; col++) {
+        System.arraycopy(dense.getColumn(col), 0, arr, col * rows, rows);
+      }
+    } else {
+      for (int col = 0; col < cols; col++) {
+        for (int row = 0; row < rows; row++) {
+          arr[col * rows + row] = matrix.get(row, col);
+        }
+      }
+    }
+    return arr;
+  }
+
+}
@@ -0,0 +1,198 @@
+package de.jungblut.math.backend;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+
+/**
+ * Immutable sparse matrix in compressed sparse row (CSR) format. The non-zero
+ * elements are stored row by row in a single values array along with their
+ * column indices, the row pointers denote where each row starts. The memory
+ * and the multiplications scale with the number of non-zero elements instead
+ * of rows times columns. The multiplications write into column major arrays
+ * like {@link MatrixBackend#gemm}. The columns of a row are stored in the
+ * iteration order of the vector, they are not necessarily sorted.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public final class CompressedSparseRowMatrix {
+
+  private final int numRows;
+  private final int numColumns;
+  // row i occupies the indices rowPointers[i] until rowPointers[i + 1]
+  private final int[] rowPointers;
+  private final int[] columnIndices;
+  private final double[] values;
+
+  private CompressedSparseRowMatrix(int numRows, int numColumns,
+      int[] rowPointers, int[] columnIndices, double[] values) {
+    this.numRows = numRows;
+    this.numColumns = numColumns;
+    this.rowPointers = rowPointers;
+    this.columnIndices = columnIndices;
+    this.values = values;
+  }
+
+  /**
+   * Creates a new matrix with the given vectors as its rows, only their
+   * non-zero elements are stored.
+   * 
+   * @param vectors the rows, all of them must have the same dimension.
+   * @return a new CSR matrix.
+   */
+  public static CompressedSparseRowMatrix fromVectors(DoubleVector[] vectors) {
+    Preconditions.checkArgument(vectors.length > 0, "No vectors supplied!");
+    final int numColumns = vectors[0].getDimension();
+    int[] rowPointers = new int[vectors.length + 1];
+    for (int i = 0; i < vectors.length; i++) {
+      Preconditions.checkArgument(vectors[i].getDimension() == numColumns,
+          "Dimension of row " + i + " doesn't match: "
+              + vectors[i].getDimension() + " != " + numColumns);
+      rowPointers[i + 1] = rowPointers[i] + countNonZeros(vectors[i]);
+    }
+    int[] columnIndices = new int[rowPointers[vectors.length]];
+    double[] values = new double[columnIndices.length];
+    for (int i = 0; i < vectors.length; i++) {
+      int index = rowPointers[i];
+      Iterator<DoubleVectorElement> it = vectors[i].iterateNonZero();
+      while (it.hasNext()) {
+        DoubleVectorElement next = it.next();
+        columnIndices[index] = next.getIndex();
+        values[index] = next.getValue();
+        index++;
+      }
+    }
+    return new CompressedSparseRowMatrix(vectors.length, numColumns,
+        rowPointers, columnIndices, values);
+  }
+
+  /**
+   * @return a new matrix that contains a copy of the given rows.
+   */
+  public CompressedSparseRowMatrix slice(int rowStart, int rows) {
+    Preconditions.checkPositionIndexes(rowStart, rowStart + rows, numRows);
+    final int from = rowPointers[rowStart];
+    final int to = rowPointers[rowStart + rows];
+    int[] pointers = new int[rows + 1];
+    for (int i = 0; i <= rows; i++) {
+      pointers[i] = rowPointers[rowStart + i] - from;
+    }
+    return new CompressedSparseRowMatrix(rows, numColumns, pointers,
+        Arrays.copyOfRange(columnIndices, from, to), Arrays.copyOfRange(
+            values, from, to));
+  }
+
+  /**
+   * Computes C = C + X * B^T, where X is this matrix, B is a column major (n x
+   * columns) matrix and C is a column major (rows x n) matrix.
+   * 
+   * @param values the values to use instead of the values of this matrix, for
+   *          example after a dropout. Null to use the values of this matrix.
+   * @param b the column major array of B, a (n x columns) matrix.
+   * @param bOffset the index where B starts.
+   * @param ldb the leading dimension of B.
+   * @param n the number of columns of C.
+   * @param c the column major array of C, the result is added to it.
+   * @param cOffset the index where C starts.
+   * @param ldc the leading dimension of C.
+   */
+  public void multiplyTransposed(double[] values, double[] b, int bOffset,
+      int ldb, int n, double[] c, int cOffset, int ldc) {
+    final double[] vals = values == null ? this.values : values;
+    final double[] sums = new double[n];
+    for (int row = 0; row < numRows; row++) {
+      Arrays.fill(sums, 0d);
+      for (int p = rowPointers[row]; p < rowPointers[row + 1]; p++) {
+        final double v = vals[p];
+        // a column of B is contiguous
+        final int bCol = bOffset + columnIndices[p] * ldb;
+        for (int j = 0; j < n; j++) {
+          sums[j] += v * b[bCol + j];
+        }
+      }
+      for (int j = 0; j < n; j++) {
+        c[cOffset + j * ldc + row] += sums[j];
+      }
+    }
+  }
+
+  /**
+   * Computes G = G + A^T * X, where X is this matrix, A is a column major
+   * (rows x n) matrix and G is a column major (n x columns) matrix. Only the
+   * columns of G that belong to non-zero columns of X are touched.
+   * 
+   * @param a the column major array of A.
+   * @param aOffset the index where A starts.
+   * @param lda the leading dimension of A.
+   * @param n the number of columns of A.
+   * @param values the values to use instead of the values of this matrix, for
+   *          example after a dropout. Null to use the values of this matrix.
+   * @param g the column major array of G, the result is added to it.
+   * @param gOffset the index where G starts.
+   * @param ldg the leading dimension of G.
+   */
+  public void transposeMultiply(double[] a, int aOffset, int lda, int n,
+      double[] values, double[] g, int gOffset, int ldg) {
+    final double[] vals = values == null ? this.values : values;
+    final double[] row = new double[n];
+    for (int r = 0; r < numRows; r++) {
+      for (int j = 0; j < n; j++) {
+        row[j] = a[aOffset + j * lda + r];
+      }
+      for (int p = rowPointers[r]; p < rowPointers[r + 1]; p++) {
+        final double v = vals[p];
+        final int gCol = gOffset + columnIndices[p] * ldg;
+        for (int j = 0; j < n; j++) {
+          g[gCol + j] += v * row[j];
+        }
+      }
+    }
+  }
+
+  public int getRowCount() {
+    return numRows;
+  }
+
+  public int getColumnCount() {
+    return numColumns;
+  }
+
+  /**
+   * @return the number of stored non-zero elements.
+   */
+  public int getNumNonZeros() {
+    return values.length;
+  }
+
+  /**
+   * @return the row pointers, row i occupies the indices rowPointers[i] until
+   *         rowPointers[i + 1] in the column indices and values.
+   */
+  public int[] getRowPointers() {
+    return rowPointers;
+  }
+
+  public int[] getColumnIndices() {
+    return columnIndices;
+  }
+
+  public double[] getValues() {
+    return values;
+  }
+
+  private static int countNonZeros(DoubleVector vector) {
+    int count = 0;
+    Iterator<DoubleVectorElement> it = vector.iterateNonZero();
+    while (it.hasNext()) {
+      it.next();
+      count++;
+    }
+    return count;
+  }
+
+}
@@ -0,0 +1,85 @@
+package de.jungblut.math.backend;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jblas.NativeBlas;
+
+/**
+ * CPU backend that delegates the multiplication to the native BLAS dgemm (and
+ * sgemm for single precision) that ships with jblas. The matrices are copied
+ * into column major arrays, which is cheap compared to the multiplication
+ * itself.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public final class JBlasMatrixBackend extends AbstractMatrixBackend {
+
+  private static final Log LOG = LogFactory.getLog(JBlasMatrixBackend.class);
+
+  private static final JBlasMatrixBackend BACKEND = new JBlasMatrixBackend();
+
+  private JBlasMatrixBackend() {
+  }
+
+  @Override
+  public void gemm(boolean transposeA, boolean transposeB, int m, int n,
+      int k, double alpha, double[] a, int aOffset, int lda, double[] b,
+      int bOffset, int ldb, double beta, double[] c, int cOffset, int ldc) {
+    if (m == 0 || n == 0) {
+      return;
+    }
+    NativeBlas.dgemm(transposeA ? 'T' : 'N', transposeB ? 'T' : 'N', m, n, k,
+        alpha, a, aOffset, lda, b, bOffset, ldb, beta, c, cOffset, ldc);
+  }
+
+  @Override
+  public void gemm(boolean transposeA, boolean transposeB, int m, int n,
+      int k, float alpha, float[] a, int aOffset, int lda, float[] b,
+      int bOffset, int ldb, float beta, float[] c, int cOffset, int ldc) {
+    if (m == 0 || n == 0) {
+      return;
+    }
+    NativeBlas.sgemm(transposeA ? 'T' : 'N', transposeB ? 'T' : 'N', m, n, k,
+        alpha, a, aOffset, lda, b, bOffset, ldb, beta, c, cOffset, ldc);
+  }
+
+  /**
+   * @return the cached jblas backend, the native library will be loaded on
+   *         first use.
+   */
+  public static JBlasMatrixBackend get() {
+    return BACKEND;
+  }
+
+  /**
+   * @return true if the native library of jblas could be loaded, it is only
+   *         probed once.
+   */
+  public static boolean isAvailable() {
+    return NativeProbe.AVAILABLE;
+  }
+
+  /**
+   * Loads the native library with a trivial multiplication when it is first
+   * asked for.
+   */
+  private static final class NativeProbe {
+
+    private static final boolean AVAILABLE = probe();
+
+    private static boolean probe() {
+      try {
+        double[] c = new double[1];
+        NativeBlas.dgemm('N', 'N', 1, 1, 1, 1d, new double[] { 2d }, 0, 1,
+            new double[] { 3d }, 0, 1, 0d, c, 0, 1);
+        return c[0] == 6d;
+      } catch (LinkageError e) {
+        LOG.warn("Couldn't load the native BLAS of jblas, falling back to the"
+            + " java backend: " + e.getMessage());
+        return false;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,48 @@
+package de.jungblut.math.backend;
+
+import de.jungblut.math.DoubleMatrix;
+import de.jungblut.math.cuda.JCUDAMatrixUtils;
+import de.jungblut.math.dense.DenseDoubleMatrix;
+
+/**
+ * Backend that multiplies on the graphics card via {@link JCUDAMatrixUtils}.
+ * The device is probed when this backend is requested the first time. Single
+ * precision multiplications are computed in pure java.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public final class JCUDAMatrixBackend extends AbstractMatrixBackend {
+
+  private static final JCUDAMatrixBackend BACKEND = new JCUDAMatrixBackend();
+
+  private JCUDAMatrixBackend() {
+    JCUDAMatrixUtils.initialize();
+  }
+
+  @Override
+  public DoubleMatrix multiply(DoubleMatrix a1, DoubleMatrix a2,
+      boolean a1Transpose, boolean a2Transpose) {
+    if (a1 instanceof DenseDoubleMatrix && a2 instanceof DenseDoubleMatrix) {
+      return JCUDAMatrixUtils.multiply((DenseDoubleMatrix) a1,
+          (DenseDoubleMatrix) a2, a1Transpose, a2Transpose);
+    }
+    return super.multiply(a1, a2, a1Transpose, a2Transpose);
+  }
+
+  @Override
+  public void gemm(boolean transposeA, boolean transposeB, int m, int n,
+      int k, double alpha, double[] a, int aOffset, int lda, double[] b,
+      int bOffset, int ldb, double beta, double[] c, int cOffset, int ldc) {
+    JCUDAMatrixUtils.gemm(transposeA, transposeB, m, n, k, alpha, a, aOffset,
+        lda, b, bOffset, ldb, beta, c, cOffset, ldc);
+  }
+
+  /**
+   * @return the cached GPU backend, initializes the device on the first call.
+   */
+  public static JCUDAMatrixBackend get() {
+    return BACKEND;
+  }
+
+}
@@ -0,0 +1,174 @@
+package de.jungblut.math.backend;
+
+import de.jungblut.math.DoubleMatrix;
+
+/**
+ * Pure java backend, the multiplication is done by the matrix implementations
+ * themselves. This works everywhere and also makes use of sparse matrices.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public final class JavaMatrixBackend extends AbstractMatrixBackend {
+
+  private static final JavaMatrixBackend BACKEND = new JavaMatrixBackend();
+
+  private JavaMatrixBackend() {
+  }
+
+  @Override
+  public DoubleMatrix multiply(DoubleMatrix a1, DoubleMatrix a2,
+      boolean a1Transpose, boolean a2Transpose) {
+    a2 = a2Transpose ? a2.transpose() : a2;
+    a1 = a1Transpose ? a1.transpose() : a1;
+    return a1.multiply(a2);
+  }
+
+  @Override
+  public void gemm(boolean transposeA, boolean transposeB, int m, int n,
+      int k, double alpha, double[] a, int aOffset, int lda, double[] b,
+      int bOffset, int ldb, double beta, double[] c, int cOffset, int ldc) {
+    // scale C first, a zero beta must not propagate NaNs from the old content
+    for (int col = 0; col < n; col++) {
+      int cCol = cOffset + col * ldc;
+      for (int row = 0; row < m; row++) {
+        c[cCol + row] = beta == 0d ? 0d : c[cCol + row] * beta;
+      }
+    }
+    if (alpha == 0d) {
+      return;
+    }
+    // the loops are ordered so that the innermost loop always walks
+    // sequentially through the column major arrays
+    if (!transposeA && !transposeB) {
+      for (int col = 0; col < n; col++) {
+        int cCol = cOffset + col * ldc;
+        for (int l = 0; l < k; l++) {
+          double bv = alpha * b[bOffset + col * ldb + l];
+          if (bv != 0d) {
+            int aCol = aOffset + l * lda;
+            for (int row = 0; row < m; row++) {
+              c[cCol + row] += a[aCol + row] * bv;
+            }
+          }
+        }
+      }
+    } else if (!transposeA) {
+      for (int l = 0; l < k; l++) {
+        int aCol = aOffset + l * lda;
+        int bRow = bOffset + l * ldb;
+        for (int col = 0; col < n; col++) {
+          double bv = alpha * b[bRow + col];
+          if (bv != 0d) {
+            int cCol = cOffset + col * ldc;
+            for (int row = 0; row < m; row++) {
+              c[cCol + row] += a[aCol + row] * bv;
+            }
+          }
+        }
+      }
+    } else if (!transposeB) {
+      for (int col = 0; col < n; col++) {
+        int bCol = bOffset + col * ldb;
+        int cCol = cOffset + col * ldc;
+        for (int row = 0; row < m; row++) {
+          int aRow = aOffset + row * lda;
+          double sum = 0d;
+          for (int l = 0; l < k; l++) {
+            sum += a[aRow + l] * b[bCol + l];
+          }
+          c[cCol + row] += alpha * sum;
+        }
+      }
+    } else {
+      for (int col = 0; col < n; col++) {
+        int cCol = cOffset + col * ldc;
+        for (int row = 0; row < m; row++) {
+          int aRow = aOffset + row * lda;
+          double sum = 0d;
+          for (int l = 0; l < k; l++) {
+            sum += a[aRow + l] * b[bOffset + l * ldb + col];
+          }
+          c[cCol + row] += alpha * sum;
+        }
+      }
+    }
+  }
+
+  @Override
+  public void gemm(boolean transposeA, boolean transposeB, int m, int n,
+      int k, float alpha, float[] a, int aOffset, int lda, float[] b,
+      int bOffset, int ldb, float beta, float[] c, int cOffset, int ldc) {
+    // same loops as the double precision version
+    for (int col = 0; col < n; col++) {
+      int cCol = cOffset + col * ldc;
+      for (int row = 0; row < m; row++) {
+        c[cCol + row] = beta == 0f ? 0f : c[cCol + row] * beta;
+      }
+    }
+    if (alpha == 0f) {
+      return;
+    }
+    if (!transposeA && !transposeB) {
+      for (int col = 0; col < n; col++) {
+        int cCol = cOffset + col * ldc;
+        for (int l = 0; l < k; l++) {
+          float bv = alpha * b[bOffset + col * ldb + l];
+          if (bv != 0f) {
+            int aCol = aOffset + l * lda;
+            for (int row = 0; row < m; row++) {
+              c[cCol + row] += a[aCol + row] * bv;
+            }
+          }
+        }
+      }
+    } else if (!transposeA) {
+      for (int l = 0; l < k; l++) {
+        int aCol = aOffset + l * lda;
+        int bRow = bOffset + l * ldb;
+        for (int col = 0; col < n; col++) {
+          float bv = alpha * b[bRow + col];
+          if (bv != 0f) {
+            int cCol = cOffset + col * ldc;
+            for (int row = 0; row < m; row++) {
+              c[cCol + row] += a[aCol + row] * bv;
+            }
+          }
+        }
+      }
+    } else if (!transposeB) {
+      for (int col = 0; col < n; col++) {
+        int bCol = bOffset + col * ldb;
+        int cCol = cOffset + col * ldc;
+        for (int row = 0; row < m; row++) {
+          int aRow = aOffset + row * lda;
+          float sum = 0f;
+          for (int l = 0; l < k; l++) {
+            sum += a[aRow + l] * b[bCol + l];
+          }
+          c[cCol + row] += alpha * sum;
+        }
+      }
+    } else {
+      for (int col = 0; col < n; col++) {
+        int cCol = cOffset + col * ldc;
+        for (int row = 0; row < m; row++) {
+          int aRow = aOffset + row * lda;
+          float sum = 0f;
+          for (int l = 0; l < k; l++) {
+            sum += a[aRow + l] * b[bOffset + l * ldb + col];
+          }
+          c[cCol + row] += alpha * sum;
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the cached java backend.
+   */
+  public static JavaMatrixBackend get() {
+    return BACKEND;
+  }
+
+}
@@ -0,0 +1,63 @@
+package de.jungblut.math.backend;
+
+import de.jungblut.math.DoubleMatrix;
+
+/**
+ * Backend for the expensive general matrix multiplications. Implementations
+ * may compute in pure java, on native BLAS or on the graphics card.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public interface MatrixBackend {
+
+  /**
+   * Multiplies a1 with a2, each of them can be transposed before the
+   * multiplication.
+   * 
+   * @param a1 the left matrix.
+   * @param a2 the right matrix.
+   * @param a1Transpose true if a1 should be transposed.
+   * @param a2Transpose true if a2 should be transposed.
+   * @return a new matrix that contains the product.
+   */
+  public DoubleMatrix multiply(DoubleMatrix a1, DoubleMatrix a2,
+      boolean a1Transpose, boolean a2Transpose);
+
+  /**
+   * BLAS style general matrix multiplication on column major arrays: <br/>
+   * C = alpha * op(A) * op(B) + beta * C <br/>
+   * where op(A) is a m x k matrix, op(B) is a k x n matrix and C is a m x n
+   * matrix.
+   * 
+   * @param transposeA true if A is stored transposed.
+   * @param transposeB true if B is stored transposed.
+   * @param m the number of rows of op(A) and C.
+   * @param n the number of columns of op(B) and C.
+   * @param k the number of columns of op(A) and rows of op(B).
+   * @param alpha the scalar for the product.
+   * @param a the column major array of A.
+   * @param aOffset the index where A starts.
+   * @param lda the leading dimension of A.
+   * @param b the column major array of B.
+   * @param bOffset the index where B starts.
+   * @param ldb the leading dimension of B.
+   * @param beta the scalar for C, if zero C doesn't need to be initialized.
+   * @param c the column major array of C, the result is written into it.
+   * @param cOffset the index where C starts.
+   * @param ldc the leading dimension of C.
+   */
+  public void gemm(boolean transposeA, boolean transposeB, int m, int n,
+      int k, double alpha, double[] a, int aOffset, int lda, double[] b,
+      int bOffset, int ldb, double beta, double[] c, int cOffset, int ldc);
+
+  /**
+   * Single precision variant of
+   * {@link #gemm(boolean, boolean, int, int, int, double, double[], int, int, double[], int, int, double, double[], int, int)}
+   * with the same semantics.
+   */
+  public void gemm(boolean transposeA, boolean transposeB, int m, int n,
+      int k, float alpha, float[] a, int aOffset, int lda, float[] b,
+      int bOffset, int ldb, float beta, float[] c, int cOffset, int ldc);
+
+}
@@ -31,8 +31,31 @@ public final class JCUDAMatrixUtils {
   public static boolean CUBLAS2_AVAILABLE = false;
 
   private static cublasHandle handle;
+  private static volatile boolean initialized = false;
 
-  static {
+  /**
+   * Probes the device and initializes cublas. This is done lazily on the first
+   * use of this class, so the device won't be touched if nobody computes on
+   * it. Calling this multiple times has no effect once it succeeded.
+   * 
+   * @throws IllegalStateException if the device couldn't be initialized, the
+   *           next call will probe it again.
+   */
+  public static void initialize() {
+    if (initialized) {
+      return;
+    }
+    synchronized (JCUDAMatrixUtils.class) {
+      if (initialized) {
+        return;
+      }
+      initializeDevice();
+      // only publish after cublas and the handle are ready
+      initialized = true;
+    }
+  }
+
+  private static void initializeDevice() {
     try {
       JCuda.setExceptionsEnabled(EXCEPTIONS_ENABLED);
       cudaDeviceProp cudaDeviceProp = new cudaDeviceProp();
@@ -76,8 +99,9 @@ public final class JCUDAMatrixUtils {
           + cudaDeviceProp.minor);
 
     } catch (Throwable e) {
-      // e.printStackTrace();
       System.out.println(e.getLocalizedMessage());
+      throw new IllegalStateException("Couldn't initialize the CUDA device!",
+          e);
     }
   }
 
@@ -95,6 +119,7 @@ public final class JCUDAMatrixUtils {
    */
   public static DenseDoubleMatrix multiply(Pointer a, Pointer b,
       MatrixDimension dim) {
+    initialize();
 
     // Prepare the pointer for the result in DEVICE memory
     Pointer deviceResultPointer = new Pointer();
@@ -145,12 +170,85 @@ public final class JCUDAMatrixUtils {
     return matrix;
   }
 
+  /**
+   * BLAS style general matrix multiplication on column major host arrays: C =
+   * alpha * op(A) * op(B) + beta * C. The operands are copied to the device,
+   * multiplied and the result is copied back into c.
+   */
+  public static void gemm(boolean transposeA, boolean transposeB, int m,
+      int n, int k, double alpha, double[] a, int aOffset, int lda,
+      double[] b, int bOffset, int ldb, double beta, double[] c, int cOffset,
+      int ldc) {
+    initialize();
+    // dimensions of the matrices how they are stored
+    int aRows = transposeA ? k : m;
+    int aCols = transposeA ? m : k;
+    int bRows = transposeB ? n : k;
+    int bCols = transposeB ? k : n;
+
+    Pointer deviceA = setMatrix(a, aOffset, lda, aRows, aCols);
+    Pointer deviceB = setMatrix(b, bOffset, ldb, bRows, bCols);
+    Pointer deviceC = beta == 0d ? allocate(m * n) : setMatrix(c, cOffset,
+        ldc, m, n);
+
+    if (CUBLAS2_AVAILABLE) {
+      Pointer alphaPointer = Pointer.to(new double[] { alpha });
+      Pointer betaPointer = Pointer.to(new double[] { beta });
+      JCublas2.cublasDgemm(handle, transposeA ? cublasOperation.CUBLAS_OP_T
+          : cublasOperation.CUBLAS_OP_N,
+          transposeB ? cublasOperation.CUBLAS_OP_T
+              : cublasOperation.CUBLAS_OP_N, m, n, k, alphaPointer, deviceA,
+          Math.max(1, aRows), deviceB, Math.max(1, bRows), betaPointer,
+          deviceC, Math.max(1, m));
+    } else {
+      JCublas.cublasDgemm(transposeA ? 't' : 'n', transposeB ? 't' : 'n', m,
+          n, k, alpha, deviceA, Math.max(1, aRows), deviceB,
+          Math.max(1, bRows), beta, deviceC, Math.max(1, m));
+    }
+    JCuda.cudaDeviceSynchronize();
+
+    Pointer dst = Pointer.to(c).withByteOffset(cOffset * (long) Sizeof.DOUBLE);
+    if (CUBLAS2_AVAILABLE) {
+      JCublas2.cublasGetMatrix(m, n, Sizeof.DOUBLE, deviceC, Math.max(1, m),
+          dst, ldc);
+    } else {
+      JCublas.cublasGetMatrix(m, n, Sizeof.DOUBLE, deviceC, Math.max(1, m),
+          dst, ldc);
+    }
+
+    freePointer(deviceA);
+    freePointer(deviceB);
+    freePointer(deviceC);
+  }
+
+  private static Pointer allocate(int size) {
+    Pointer devicePointer = new Pointer();
+    JCuda.cudaMalloc(devicePointer, Math.max(1, size) * (long) Sizeof.DOUBLE);
+    return devicePointer;
+  }
+
+  private static Pointer setMatrix(double[] src, int offset, int ld, int rows,
+      int cols) {
+    Pointer devicePointer = allocate(rows * cols);
+    Pointer hostPointer = Pointer.to(src).withByteOffset(
+        offset * (long) Sizeof.DOUBLE);
+    if (CUBLAS2_AVAILABLE) {
+      JCublas2.cublasSetMatrix(rows, cols, Sizeof.DOUBLE, hostPointer, ld,
+          devicePointer, Math.max(1, rows));
+    } else {
+      JCublas.cublasSetMatrix(rows, cols, Sizeof.DOUBLE, hostPointer, ld,
+          devicePointer, Math.max(1, rows));
+    }
+    return devicePointer;
+  }
+
   /**
    * Copies the given matrix to the device memory in column major format.
    * 
    * @return a pointer to this matrix.
    */
   public static Pointer memcpyMatrix(DenseDoubleMatrix a) {
+    initialize();
     int matrixSizeA = a.getColumnCount() * a.getRowCount();
 
     double[] matrix = new double[matrixSizeA];
@@ -184,6 +282,7 @@ public final class JCUDAMatrixUtils {
    * @return a new matrix with the results from device.
    */
   public static DenseDoubleMatrix getMatrix(Pointer src, int rows, int columns) {
+    initialize();
     double[] raw = new double[rows * columns];
     Pointer dst = Pointer.to(raw);
     if (CUBLAS2_AVAILABLE) {
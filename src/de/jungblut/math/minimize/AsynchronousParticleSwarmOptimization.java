@@ -0,0 +1,371 @@
+package de.jungblut.math.minimize;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.partition.BlockPartitioner;
+import de.jungblut.partition.Boundaries.Range;
+
+/**
+ * Asynchronous version of the {@link ParticleSwarmOptimization}. The
+ * particles are split into partitions that are moved and evaluated
+ * continuously by the threads of a pool that is reused for every minimization.
+ * There is no barrier between the iterations: the global best position is
+ * published through an atomic reference as soon as a particle finds it, and
+ * every particle is moved towards the best position that is known at that
+ * time. Fast partitions thus never wait for stragglers.
+ * <p>
+ * The positions of the particles are stored in primitive arrays, the only
+ * allocation of a particle move is the copy of a new global best position. An
+ * iteration is complete once as many particles have been moved as the swarm
+ * has particles, so the partitions may be in different iterations at the same
+ * time.
+ * <p>
+ * The cost function is called concurrently, so it must be thread-safe. A
+ * minimizer that created its own pool must be closed to stop its threads.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public final class AsynchronousParticleSwarmOptimization implements
+    Minimizer, IterationListenerAware, AutoCloseable {
+
+  private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+
+  private final int numParticles;
+  private final double alpha;
+  private final double beta;
+  private final double phi;
+  private final int numPartitions;
+  private final ExecutorService pool;
+  // only a pool that was created by the minimizer is shut down by it
+  private final boolean ownsPool;
+  private IterationListener listener;
+
+  /**
+   * Creates a new minimizer with its own pool of daemon threads, it is shut
+   * down by {@link #close()}.
+   * 
+   * @param numParticles how many particles to use.
+   * @param alpha personal memory weighting.
+   * @param beta group memory weighting.
+   * @param phi own velocity weighting (inertia).
+   * @param numThreads the number of threads and partitions of the swarm.
+   */
+  public AsynchronousParticleSwarmOptimization(int numParticles, double alpha,
+      double beta, double phi, int numThreads) {
+    this(numParticles, alpha, beta, phi, newPool(numThreads), numThreads,
+        true);
+  }
+
+  /**
+   * Creates a new minimizer that runs on the given pool, the pool isn't shut
+   * down by the minimizer.
+   * 
+   * @param numParticles how many particles to use.
+   * @param alpha personal memory weighting.
+   * @param beta group memory weighting.
+   * @param phi own velocity weighting (inertia).
+   * @param pool the pool to move the particles in.
+   * @param numPartitions the number of partitions of the swarm that are moved
+   *          in parallel.
+   */
+  public AsynchronousParticleSwarmOptimization(int numParticles, double alpha,
+      double beta, double phi, ExecutorService pool, int numPartitions) {
+    this(numParticles, alpha, beta, phi, pool, numPartitions, false);
+  }
+
+  private AsynchronousParticleSwarmOptimization(int numParticles,
+      double alpha, double beta, double phi, ExecutorService pool,
+      int numPartitions, boolean ownsPool) {
+    Preconditions.checkArgument(numParticles > 0,
+        "Number of particles must be positive! Given: " + numParticles);
+    Preconditions.checkArgument(numPartitions > 0
+        && numPartitions <= numParticles,
+        "Number of partitions must be in [1, numParticles]! Given: "
+            + numPartitions);
+    this.numParticles = numParticles;
+    this.alpha = alpha;
+    this.beta = beta;
+    this.phi = phi;
+    this.pool = pool;
+    this.numPartitions = numPartitions;
+    this.ownsPool = ownsPool;
+  }
+
+  @Override
+  public DoubleVector minimize(CostFunction f, DoubleVector pInput,
+      int maxIterations, boolean verbose) {
+    final int dim = pInput.getDimension();
+    final double[] start = pInput.toArray().clone();
+    IterationMonitor monitor = new IterationMonitor(listener);
+    Swarm swarm = new Swarm(f, dim, monitor);
+    long startEvaluation = monitor.startEvaluation();
+    swarm.globalBest.set(new Best(
+        f.evaluateCost(new DenseDoubleVector(start)).getFirst(), start));
+    monitor.finishEvaluation(startEvaluation);
+
+    List<Future<Void>> futures = new ArrayList<>(numPartitions);
+    for (Range r : new BlockPartitioner().partition(numPartitions,
+        numParticles).getBoundaries()) {
+      futures.add(pool.submit(new Partition(swarm, r, start, maxIterations)));
+    }
+
+    try {
+      for (int iteration = 0; iteration < maxIterations; iteration++) {
+        monitor.startIteration();
+        // an iteration is complete once the whole swarm size was moved
+        awaitMoves(swarm.moves, futures);
+        double cost = swarm.globalBest.get().cost;
+        if (verbose) {
+          System.out.print("Iteration " + iteration + " | Cost: " + cost
+              + "\r");
+        }
+        if (monitor.finishIteration(iteration, cost, Double.NaN)) {
+          break;
+        }
+      }
+    } finally {
+      swarm.stopped = true;
+    }
+    for (Future<Void> future : futures) {
+      get(future);
+    }
+
+    return new DenseDoubleVector(swarm.globalBest.get().position);
+  }
+
+  @Override
+  public void setIterationListener(IterationListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Shuts down the pool if it was created by this minimizer, a given pool is
+   * left running. The minimizer can't be used afterwards.
+   */
+  @Override
+  public void close() {
+    if (ownsPool) {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Waits until the partitions moved the number of particles of the swarm,
+   * while waiting it checks whether a partition failed or finished early.
+   */
+  private void awaitMoves(Semaphore moves, List<Future<Void>> futures) {
+    try {
+      while (!moves.tryAcquire(numParticles, 100, TimeUnit.MILLISECONDS)) {
+        boolean running = false;
+        for (Future<Void> future : futures) {
+          if (future.isDone()) {
+            // rethrows the failure of the partition
+            get(future);
+          } else {
+            running = true;
+          }
+        }
+        if (!running) {
+          // all partitions are done, take the remaining moves
+          moves.drainPermits();
+          return;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static void get(Future<Void> future) {
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  /**
+   * Offers a new global best position, it is published if its cost is lower
+   * than the currently known best.
+   */
+  private static void offer(AtomicReference<Best> globalBest, double cost,
+      double[] position) {
+    Best current = globalBest.get();
+    if (cost >= current.cost) {
+      return;
+    }
+    Best candidate = new Best(cost, position.clone());
+    while (cost < current.cost) {
+      if (globalBest.compareAndSet(current, candidate)) {
+        return;
+      }
+      current = globalBest.get();
+    }
+  }
+
+  private static ExecutorService newPool(int numThreads) {
+    final int id = POOL_COUNTER.incrementAndGet();
+    return Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+      private final AtomicInteger threadCounter = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "AsyncPSO-" + id + "-"
+            + threadCounter.incrementAndGet());
+        // an unclosed minimizer must not keep the jvm alive
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Immutable global best position and its cost.
+   */
+  private static final class Best {
+
+    final double cost;
+    final double[] position;
+
+    Best(double cost, double[] position) {
+      this.cost = cost;
+      this.position = position;
+    }
+  }
+
+  /**
+   * The state of a single minimization that is shared by all partitions. The
+   * particles of each partition are only written by the partition itself.
+   */
+  private final class Swarm {
+
+    private final CostFunction f;
+    private final int dim;
+    private final IterationMonitor monitor;
+    // row major positions and personal best positions of all particles
+    private final double[] positions;
+    private final double[] bestPositions;
+    private final double[] bestCosts;
+    private final AtomicReference<Best> globalBest = new AtomicReference<>();
+    // one permit per moved particle
+    private final Semaphore moves = new Semaphore(0);
+    private volatile boolean stopped;
+
+    Swarm(CostFunction f, int dim, IterationMonitor monitor) {
+      this.f = f;
+      this.dim = dim;
+      this.monitor = monitor;
+      this.positions = new double[numParticles * dim];
+      this.bestPositions = new double[numParticles * dim];
+      this.bestCosts = new double[numParticles];
+    }
+  }
+
+  /**
+   * Moves the particles of a range for the given number of iterations.
+   */
+  private final class Partition implements Callable<Void> {
+
+    private final Random random = new Random();
+    private final Swarm swarm;
+    private final Range range;
+    private final double[] start;
+    private final int maxIterations;
+
+    Partition(Swarm swarm, Range range, double[] start, int maxIterations) {
+      this.swarm = swarm;
+      this.range = range;
+      this.start = start;
+      this.maxIterations = maxIterations;
+    }
+
+    @Override
+    public Void call() throws Exception {
+      final int dim = swarm.dim;
+      final double[] positions = swarm.positions;
+      final double[] bestPositions = swarm.bestPositions;
+      // a view on the position that is evaluated
+      final double[] candidate = new double[dim];
+      final DenseDoubleVector candidateVector = new DenseDoubleVector(
+          candidate);
+
+      // we are going to spread the particles a bit
+      long allocations = swarm.monitor.startWorker();
+      for (int p = range.getStart(); p <= range.getEnd(); p++) {
+        for (int j = 0; j < dim; j++) {
+          candidate[j] = start[j] + start[j] * random.nextDouble();
+        }
+        double cost = evaluate(candidateVector);
+        System.arraycopy(candidate, 0, positions, p * dim, dim);
+        System.arraycopy(candidate, 0, bestPositions, p * dim, dim);
+        swarm.bestCosts[p] = cost;
+        offer(swarm.globalBest, cost, candidate);
+      }
+      swarm.monitor.finishWorker(allocations);
+
+      for (int iteration = 0; iteration < maxIterations; iteration++) {
+        allocations = swarm.monitor.startWorker();
+        try {
+          for (int p = range.getStart(); p <= range.getEnd(); p++) {
+            if (swarm.stopped) {
+              return null;
+            }
+            final int offset = p * dim;
+            // the newest best position that any partition has found
+            final double[] globalBest = swarm.globalBest.get().position;
+            for (int j = 0; j < dim; j++) {
+              double position = positions[offset + j];
+              double personal = bestPositions[offset + j] - position;
+              double group = globalBest[j] - position;
+              // inertia, personal memory and group memory
+              candidate[j] = phi * position + alpha * random.nextDouble()
+                  * personal + beta * random.nextDouble() * group;
+            }
+            double cost = evaluate(candidateVector);
+            System.arraycopy(candidate, 0, positions, offset, dim);
+            // check if we have a personal best
+            if (cost < swarm.bestCosts[p]) {
+              swarm.bestCosts[p] = cost;
+              System.arraycopy(candidate, 0, bestPositions, offset, dim);
+              offer(swarm.globalBest, cost, candidate);
+            }
+            swarm.moves.release();
+          }
+        } finally {
+          // attributed to the iteration in which the pass finishes
+          swarm.monitor.finishWorker(allocations);
+        }
+      }
+      return null;
+    }
+
+    private double evaluate(DoubleVector candidate) {
+      long start = swarm.monitor.startEvaluation();
+      double cost = swarm.f.evaluateCost(candidate).getFirst();
+      swarm.monitor.finishEvaluation(start);
+      return cost;
+    }
+  }
+
+}
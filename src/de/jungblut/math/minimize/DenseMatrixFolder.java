@@ -10,22 +10,7 @@ public abstract class DenseMatrixFolder {
    * Folds the given matrices column-wise into a single vector.
    */
   public static DenseDoubleVector foldMatrices(DenseDoubleMatrix... matrices) {
-    int length = 0;
-    for (DenseDoubleMatrix matrix : matrices) {
-      length += matrix.getRowCount() * matrix.getColumnCount();
-    }
-
-    DenseDoubleVector v = new DenseDoubleVector(length);
-    int index = 0;
-    for (DenseDoubleMatrix matrix : matrices) {
-      for (int j = 0; j < matrix.getColumnCount(); j++) {
-        for (int i = 0; i < matrix.getRowCount(); i++) {
-          v.set(index++, matrix.get(i, j));
-        }
-      }
-    }
-
-    return v;
+    return ParameterVector.copyOf(matrices).asVector();
   }
 
   /**
@@ -37,25 +22,24 @@ public abstract class DenseMatrixFolder {
    */
   public static DenseDoubleMatrix[] unfoldMatrices(DoubleVector vector,
       int[][] sizeArray) {
-    DenseDoubleMatrix[] arr = new DenseDoubleMatrix[sizeArray.length];
-    for (int i = 0; i < sizeArray.length; i++) {
-      arr[i] = new DenseDoubleMatrix(sizeArray[i][0], sizeArray[i][1]);
+    MatrixView[] views = unfoldViews(vector, sizeArray);
+    DenseDoubleMatrix[] arr = new DenseDoubleMatrix[views.length];
+    for (int i = 0; i < views.length; i++) {
+      arr[i] = views[i].toDenseMatrix();
     }
-
-    int currentVectorIndex = 0;
-    for (int i = 0; i < arr.length; i++) {
-      final int numRows = sizeArray[i][0];
-      final int numColumns = sizeArray[i][1];
-      for (int col = 0; col < numColumns; col++) {
-        for (int row = 0; row < numRows; row++) {
-          arr[i].set(row, col, vector.get(currentVectorIndex++));
-        }
-      }
-    }
-
     return arr;
   }
 
+  /**
+   * Unfolds a vector into column major views by the rules defined in the
+   * sizeArray, same as {@link #unfoldMatrices(DoubleVector, int[][])} but
+   * without copying a dense vector.
+   */
+  public static MatrixView[] unfoldViews(DoubleVector vector,
+      int[][] sizeArray) {
+    return ParameterVector.wrap(vector, sizeArray).getViews();
+  }
+
   /**
    * Unfolds a single vector into a single matrix by rows.
    * 
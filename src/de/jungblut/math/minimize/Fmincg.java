@@ -1,5 +1,8 @@
 package de.jungblut.math.minimize;
 
+import static de.jungblut.math.minimize.VectorMath.axpy;
+import static de.jungblut.math.minimize.VectorMath.dot;
+
 import de.jungblut.math.DoubleVector;
 import de.jungblut.math.dense.DenseDoubleVector;
 import de.jungblut.math.tuple.Tuple;
@@ -56,7 +59,7 @@ import de.jungblut.math.tuple.Tuple;
  * 2) added an interface to exchange minimizers more easily <br/>
  * BTW "fmincg" stands for Function minimize nonlinear conjugate gradient
  */
-public final class Fmincg implements Minimizer {
+public final class Fmincg implements Minimizer, IterationListenerAware {
 
   // extrapolate maximum 3 times the current bracket.
   // this can be set higher for bigger extrapolations
@@ -73,6 +76,8 @@ public final class Fmincg implements Minimizer {
   // maximum allowed slope ratio
   private static final int RATIO = 100;
 
+  private IterationListener listener;
+
   /**
    * Minimizes the given CostFunction with Nonlinear conjugate gradient method. <br/>
    * It uses the Polack-Ribiere (PR) to calculate the conjugate direction. See <br/>
@@ -87,38 +92,49 @@ public final class Fmincg implements Minimizer {
    */
   public static DoubleVector minimizeFunction(CostFunction f,
       DoubleVector pInput, int length, boolean verbose) {
+    return minimizeFunction(f, pInput, length, verbose, new IterationMonitor(
+        null));
+  }
+
+  private static DoubleVector minimizeFunction(CostFunction f,
+      DoubleVector pInput, int length, boolean verbose,
+      IterationMonitor monitor) {
+
+    // all vectors are preallocated and updated in place, the input is copied
+    // since it must not be altered
+    double[] input = pInput.toArray().clone();
+    final DenseDoubleVector inputVector = new DenseDoubleVector(input);
+    final double[] X0 = new double[input.length];
+    double[] df1 = new double[input.length];
+    double[] df2 = new double[input.length];
+    final double[] s = new double[input.length];
 
-    DoubleVector input = pInput;
     int M = 0;
     int i = 0; // zero the run length counter
     int red = 1; // starting point
     int ls_failed = 0; // no previous line search has failed
-    // what we return as fX get function value and gradient
-    DenseDoubleVector fX = new DenseDoubleVector(0);
-    final Tuple<Double, DoubleVector> evaluateCost = f.evaluateCost(input);
-    double f1 = evaluateCost.getFirst();
-    DoubleVector df1 = evaluateCost.getSecond();
+    // get function value and gradient
+    double f1 = evaluate(f, monitor, inputVector, df1);
     i = i + (length < 0 ? 1 : 0);
     // search direction is steepest
-    DoubleVector s = df1.multiply(-1.0d);
+    negate(df1, s);
 
-    double d1 = s.multiply(-1.0d).dot(s); // this is the slope
+    double d1 = -dot(s, s); // this is the slope
     double z1 = red / (1.0 - d1); // initial step is red/(|s|+1)
 
+    int iteration = 0; // the number of line searches for the monitor
     while (i < Math.abs(length)) {// while not finished
+      monitor.startIteration();
       i = i + (length > 0 ? 1 : 0);// count iterations?!
       // make a copy of current values
-      DoubleVector X0 = input.deepCopy();
+      System.arraycopy(input, 0, X0, 0, input.length);
       double f0 = f1;
-      DoubleVector df0 = df1.deepCopy();
       // begin line search
-      input = input.add(s.multiply(z1));
-      final Tuple<Double, DoubleVector> evaluateCost2 = f.evaluateCost(input);
-      double f2 = evaluateCost2.getFirst();
-      DoubleVector df2 = evaluateCost2.getSecond();
+      axpy(z1, s, input);
+      double f2 = evaluate(f, monitor, inputVector, df2);
 
       i = i + (length < 0 ? 1 : 0); // count epochs
-      double d2 = df2.dot(s);
+      double d2 = dot(df2, s);
       // initialize point 3 equal to point 1
       double f3 = f1;
       double d3 = d1;
@@ -157,14 +173,11 @@ public final class Fmincg implements Minimizer {
           z2 = Math.max(Math.min(z2, INT * z3), (1 - INT) * z3);
           // update the step
           z1 = z1 + z2;
-          input = input.add(s.multiply(z2));
-          final Tuple<Double, DoubleVector> evaluateCost3 = f
-              .evaluateCost(input);
-          f2 = evaluateCost3.getFirst();
-          df2 = evaluateCost3.getSecond();
+          axpy(z2, s, input);
+          f2 = evaluate(f, monitor, inputVector, df2);
           M = M - 1;
           i = i + (length < 0 ? 1 : 0); // count epochs
-          d2 = df2.dot(s);
+          d2 = dot(df2, s);
           // z3 is now relative to the location of z2
           z3 = z3 - z2;
         }
@@ -208,33 +221,33 @@ public final class Fmincg implements Minimizer {
         z3 = -z2;
         z1 = z1 + z2;
         // update current estimates
-        input = input.add(s.multiply(z2));
-        final Tuple<Double, DoubleVector> evaluateCost3 = f.evaluateCost(input);
-        f2 = evaluateCost3.getFirst();
-        df2 = evaluateCost3.getSecond();
+        axpy(z2, s, input);
+        f2 = evaluate(f, monitor, inputVector, df2);
         M = M - 1;
         i = i + (length < 0 ? 1 : 0); // count epochs?!
-        d2 = df2.dot(s);
+        d2 = dot(df2, s);
       }// end of line search
 
-      DoubleVector tmp = null;
+      double[] tmp = null;
 
       if (success == 1) { // if line search succeeded
         f1 = f2;
-        fX = new DenseDoubleVector(fX.toArray(), f1);
         if (verbose)
           System.out.print("Iteration " + i + " | Cost: " + f1 + "\r");
         // Polack-Ribiere direction: s =
         // (df2'*df2-df1'*df2)/(df1'*df1)*s - df2;
-        final double numerator = (df2.dot(df2) - df1.dot(df2)) / df1.dot(df1);
-        s = s.multiply(numerator).subtract(df2);
+        final double numerator = (dot(df2, df2) - dot(df1, df2))
+            / dot(df1, df1);
+        for (int k = 0; k < s.length; k++) {
+          s[k] = s[k] * numerator - df2[k];
+        }
         tmp = df1;
         df1 = df2;
         df2 = tmp; // swap derivatives
-        d2 = df1.dot(s);
+        d2 = dot(df1, s);
         if (d2 > 0) { // new slope must be negative
-          s = df1.multiply(-1.0d); // otherwise use steepest direction
-          d2 = s.multiply(-1.0d).dot(s);
+          negate(df1, s); // otherwise use steepest direction
+          d2 = -dot(s, s);
         }
         // realmin in octave = 2.2251e-308
         // slope ratio but max RATIO
@@ -242,31 +255,72 @@ public final class Fmincg implements Minimizer {
         d1 = d2;
         ls_failed = 0; // this line search did not fail
       } else {
-        input = X0;
+        // restore point from before failed line search
+        System.arraycopy(X0, 0, input, 0, input.length);
         f1 = f0;
-        df1 = df0; // restore point from before failed line search
         // line search failed twice in a row?
         if (ls_failed == 1 || i > Math.abs(length)) {
           break; // or we ran out of time, so we give up
         }
+        // the gradient from before the line search (df0) is swapped out
+        // right away, so it is never copied
         tmp = df1;
         df1 = df2;
         df2 = tmp; // swap derivatives
-        s = df1.multiply(-1.0d); // try steepest
-        d1 = s.multiply(-1.0d).dot(s);
+        negate(df1, s); // try steepest
+        d1 = -dot(s, s);
         z1 = 1.0d / (1.0d - d1);
         ls_failed = 1; // this line search failed
       }
 
+      if (monitor.finishIteration(iteration++, f1, df1)) {
+        break;
+      }
     }
 
-    return input;
+    return inputVector;
+  }
+
+  /**
+   * Evaluates the cost function and writes the gradient into the given buffer,
+   * in place if the cost function supports it.
+   */
+  private static double evaluate(CostFunction f, IterationMonitor monitor,
+      DoubleVector input, double[] gradient) {
+    long start = monitor.startEvaluation();
+    if (f instanceof InPlaceCostFunction) {
+      double cost = ((InPlaceCostFunction) f).evaluateCost(input, gradient);
+      monitor.finishEvaluation(start);
+      return cost;
+    }
+    Tuple<Double, DoubleVector> evaluateCost = f.evaluateCost(input);
+    monitor.finishEvaluation(start);
+    DoubleVector result = evaluateCost.getSecond();
+    for (int i = 0; i < gradient.length; i++) {
+      gradient[i] = result.get(i);
+    }
+    return evaluateCost.getFirst();
+  }
+
+  /**
+   * Computes result = -x.
+   */
+  private static void negate(double[] x, double[] result) {
+    for (int i = 0; i < x.length; i++) {
+      result[i] = -x[i];
+    }
   }
 
   @Override
   public final DoubleVector minimize(CostFunction f, DoubleVector theta,
       int maxIterations, boolean verbose) {
-    return minimizeFunction(f, theta, maxIterations, verbose);
+    return minimizeFunction(f, theta, maxIterations, verbose,
+        new IterationMonitor(listener));
+  }
+
+  @Override
+  public void setIterationListener(IterationListener listener) {
+    this.listener = listener;
   }
 
 }
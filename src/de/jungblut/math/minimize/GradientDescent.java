@@ -3,6 +3,7 @@ package de.jungblut.math.minimize;
 import java.util.Arrays;
 
 import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
 import de.jungblut.math.tuple.Tuple;
 
 /**
@@ -11,10 +12,12 @@ import de.jungblut.math.tuple.Tuple;
  * @author thomas.jungblut
  * 
  */
-public final class GradientDescent implements Minimizer {
+public final class GradientDescent implements Minimizer,
+    IterationListenerAware {
 
   private final double alpha;
   private final double limit;
+  private IterationListener listener;
 
   /**
    * @param alpha the learning rate.
@@ -32,13 +35,25 @@ public final class GradientDescent implements Minimizer {
     double[] lastCosts = new double[3];
     Arrays.fill(lastCosts, Double.MAX_VALUE);
     final int lastIndex = lastCosts.length - 1;
+    IterationMonitor monitor = new IterationMonitor(listener);
+    if (f instanceof InPlaceCostFunction) {
+      return minimizeInPlace((InPlaceCostFunction) f, pInput, maxIterations,
+          verbose, lastCosts, monitor);
+    }
     DoubleVector theta = pInput;
     for (int iteration = 0; iteration < maxIterations; iteration++) {
+      monitor.startIteration();
+      long start = monitor.startEvaluation();
       Tuple<Double, DoubleVector> evaluateCost = f.evaluateCost(theta);
+      monitor.finishEvaluation(start);
       if (verbose) {
         System.out.print("Iteration " + iteration + " | Cost: "
             + evaluateCost.getFirst() + "\r");
       }
+      if (monitor.finishIteration(iteration, evaluateCost.getFirst(),
+          evaluateCost.getSecond())) {
+        break;
+      }
       shiftLeft(lastCosts);
       lastCosts[lastIndex] = evaluateCost.getFirst();
       // break if we converged below the limit
@@ -54,6 +69,50 @@ public final class GradientDescent implements Minimizer {
 
   }
 
+  /**
+   * Same loop as in {@link #minimize(CostFunction, DoubleVector, int, boolean)},
+   * but theta and the gradient are updated in place, so no vector is allocated
+   * per iteration.
+   */
+  private DoubleVector minimizeInPlace(InPlaceCostFunction f,
+      DoubleVector pInput, final int maxIterations, boolean verbose,
+      double[] lastCosts, IterationMonitor monitor) {
+    final int lastIndex = lastCosts.length - 1;
+    // copy the input, it must not be altered
+    double[] thetaArray = pInput.toArray().clone();
+    DenseDoubleVector theta = new DenseDoubleVector(thetaArray);
+    double[] gradient = new double[thetaArray.length];
+    for (int iteration = 0; iteration < maxIterations; iteration++) {
+      monitor.startIteration();
+      long start = monitor.startEvaluation();
+      double cost = f.evaluateCost(theta, gradient);
+      monitor.finishEvaluation(start);
+      if (verbose) {
+        System.out.print("Iteration " + iteration + " | Cost: " + cost + "\r");
+      }
+      if (monitor.finishIteration(iteration, cost, gradient)) {
+        break;
+      }
+      shiftLeft(lastCosts);
+      lastCosts[lastIndex] = cost;
+      // break if we converged below the limit
+      if (converged(lastCosts, limit)) {
+        break;
+      }
+      // basically subtract the gradient multiplied with the learning rate
+      for (int i = 0; i < thetaArray.length; i++) {
+        thetaArray[i] -= gradient[i] * alpha;
+      }
+    }
+
+    return theta;
+  }
+
+  @Override
+  public void setIterationListener(IterationListener listener) {
+    this.listener = listener;
+  }
+
   /**
    * Minimize a given cost function f with the initial parameters pInput (also
    * called theta) with a learning rate alpha and a fixed number of iterations.
@@ -0,0 +1,248 @@
+package de.jungblut.math.minimize;
+
+import static de.jungblut.math.minimize.GradientDescent.converged;
+import static de.jungblut.math.minimize.GradientDescent.shiftLeft;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.datastructure.InputProvider;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.tuple.Tuple;
+
+/**
+ * Parallel stochastic gradient descent without any locking, also known as
+ * "Hogwild!". The examples of the {@link InputProvider} are dealt round robin
+ * to a number of worker threads, so every worker trains on a disjoint slice of
+ * the data. All workers read and update the same parameter array without
+ * synchronization, which is safe enough when the gradients are sparse and thus
+ * rarely touch the same parameters at the same time. Sparse gradients are
+ * only applied on their non-zero elements.
+ * <p>
+ * The cost function is called concurrently, so it must be thread-safe. The
+ * parameters it receives may change while it is evaluated.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public final class HogwildStochasticGradientDescent implements
+    StochasticMinimizer, IterationListenerAware {
+
+  // number of examples that can be queued per worker
+  private static final int QUEUE_SIZE = 1024;
+
+  // marks the end of an epoch in the queue of a worker
+  private static final Tuple<DoubleVector, DenseDoubleVector> END_OF_EPOCH = new Tuple<>(
+      null, null);
+
+  private final InputProvider<Tuple<DoubleVector, DenseDoubleVector>> provider;
+  private final int numThreads;
+  private final double alpha;
+  private final double limit;
+  private IterationListener listener;
+
+  /**
+   * @param provider the input provider to get the data from.
+   * @param numThreads the number of worker threads.
+   * @param alpha the learning rate.
+   * @param limit the cost to archieve to break the iterations.
+   */
+  public HogwildStochasticGradientDescent(
+      InputProvider<Tuple<DoubleVector, DenseDoubleVector>> provider,
+      int numThreads, double alpha, double limit) {
+    Preconditions.checkArgument(numThreads > 0,
+        "Number of threads must be positive! Given: " + numThreads);
+    this.provider = provider;
+    this.numThreads = numThreads;
+    this.alpha = alpha;
+    this.limit = limit;
+  }
+
+  @Override
+  public final DoubleVector minimize(StochasticCostFunction f,
+      DoubleVector pInput, final int maxIterations, boolean verbose) {
+
+    double[] lastCosts = new double[3];
+    Arrays.fill(lastCosts, Double.MAX_VALUE);
+    final int lastIndex = lastCosts.length - 1;
+    // copy the input, it must not be altered. All workers share this array.
+    final double[] theta = pInput.toArray().clone();
+
+    IterationMonitor monitor = new IterationMonitor(listener);
+    ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+    try {
+      for (int iteration = 0; iteration < maxIterations; iteration++) {
+        monitor.startIteration();
+        List<BlockingQueue<Tuple<DoubleVector, DenseDoubleVector>>> queues = new ArrayList<>(
+            numThreads);
+        List<Future<double[]>> futures = new ArrayList<>(numThreads);
+        for (int i = 0; i < numThreads; i++) {
+          BlockingQueue<Tuple<DoubleVector, DenseDoubleVector>> queue = new ArrayBlockingQueue<>(
+              QUEUE_SIZE);
+          queues.add(queue);
+          futures.add(pool.submit(new Worker(f, theta, queue, monitor)));
+        }
+
+        // deal the examples to the workers, each one gets a disjoint slice
+        int index = 0;
+        for (Tuple<DoubleVector, DenseDoubleVector> data : provider.iterate()) {
+          put(queues.get(index++ % numThreads), data, futures);
+        }
+        for (BlockingQueue<Tuple<DoubleVector, DenseDoubleVector>> queue : queues) {
+          put(queue, END_OF_EPOCH, futures);
+        }
+
+        double costSum = 0d;
+        long n = 0;
+        for (Future<double[]> future : futures) {
+          double[] result = get(future);
+          costSum += result[0];
+          n += (long) result[1];
+        }
+        if (n == 0) {
+          break;
+        }
+
+        double cost = costSum / n;
+        if (verbose) {
+          System.out
+              .print("Iteration " + iteration + " | Cost: " + cost + "\r");
+        }
+        // the workers update with their own gradients
+        if (monitor.finishIteration(iteration, cost, Double.NaN)) {
+          break;
+        }
+        shiftLeft(lastCosts);
+        lastCosts[lastIndex] = cost;
+        // break if we converged below the limit
+        if (converged(lastCosts, limit)) {
+          break;
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+
+    return new DenseDoubleVector(theta);
+  }
+
+  @Override
+  public void setIterationListener(IterationListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Puts the example into the queue, while waiting it checks whether a worker
+   * failed, because it would never consume its queue again.
+   */
+  private static void put(
+      BlockingQueue<Tuple<DoubleVector, DenseDoubleVector>> queue,
+      Tuple<DoubleVector, DenseDoubleVector> data,
+      List<Future<double[]>> futures) {
+    try {
+      while (!queue.offer(data, 100, TimeUnit.MILLISECONDS)) {
+        for (Future<double[]> future : futures) {
+          if (future.isDone()) {
+            // rethrows the failure of the worker
+            get(future);
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static double[] get(Future<double[]> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  /**
+   * Trains on the examples of its queue until the end of the epoch.
+   */
+  private final class Worker implements Callable<double[]> {
+
+    private final StochasticCostFunction f;
+    private final double[] theta;
+    private final BlockingQueue<Tuple<DoubleVector, DenseDoubleVector>> queue;
+    private final IterationMonitor monitor;
+
+    Worker(StochasticCostFunction f, double[] theta,
+        BlockingQueue<Tuple<DoubleVector, DenseDoubleVector>> queue,
+        IterationMonitor monitor) {
+      this.f = f;
+      this.theta = theta;
+      this.queue = queue;
+      this.monitor = monitor;
+    }
+
+    /**
+     * @return the summed cost and the number of examples.
+     */
+    @Override
+    public double[] call() throws Exception {
+      // a view on the shared parameters, updates are visible without a copy
+      long allocations = monitor.startWorker();
+      DenseDoubleVector thetaVector = new DenseDoubleVector(theta);
+      double costSum = 0d;
+      int n = 0;
+      try {
+        Tuple<DoubleVector, DenseDoubleVector> data;
+        while ((data = queue.take()) != END_OF_EPOCH) {
+          long start = monitor.startEvaluation();
+          Tuple<Double, DoubleVector> evaluateCost = f.evaluateCost(
+              thetaVector, data.getFirst(), data.getSecond());
+          monitor.finishEvaluation(start);
+          costSum += evaluateCost.getFirst();
+          update(theta, evaluateCost.getSecond(), alpha);
+          n++;
+        }
+      } finally {
+        monitor.finishWorker(allocations);
+      }
+      return new double[] { costSum, n };
+    }
+  }
+
+  /**
+   * Subtracts the gradient multiplied with the learning rate from theta
+   * without any synchronization. Sparse gradients only touch their non-zero
+   * elements.
+   */
+  static void update(double[] theta, DoubleVector gradient, double alpha) {
+    if (gradient.isSparse()) {
+      Iterator<DoubleVectorElement> it = gradient.iterateNonZero();
+      while (it.hasNext()) {
+        DoubleVectorElement next = it.next();
+        theta[next.getIndex()] -= alpha * next.getValue();
+      }
+    } else {
+      for (int i = 0; i < theta.length; i++) {
+        theta[i] -= alpha * gradient.get(i);
+      }
+    }
+  }
+
+}
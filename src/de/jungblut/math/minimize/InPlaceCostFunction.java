@@ -0,0 +1,26 @@
+package de.jungblut.math.minimize;
+
+import de.jungblut.math.DoubleVector;
+
+/**
+ * Cost function that can write its gradient into a buffer supplied by the
+ * minimizer, so a minimizer that owns its gradient buffers doesn't produce a
+ * new gradient vector on every evaluation.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public interface InPlaceCostFunction extends CostFunction {
+
+  /**
+   * Evaluation for the cost function to retrieve cost and gradient.
+   * 
+   * @param input a given input vector.
+   * @param gradient the buffer to write the gradient of the input into, its
+   *          length must match the dimension of the input. Previous content is
+   *          overwritten.
+   * @return J, the cost of the input.
+   */
+  public double evaluateCost(DoubleVector input, double[] gradient);
+
+}
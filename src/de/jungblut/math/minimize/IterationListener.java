@@ -0,0 +1,23 @@
+package de.jungblut.math.minimize;
+
+/**
+ * Callback of a {@link Minimizer} or {@link StochasticMinimizer} that is
+ * notified after every iteration, for example to log the training progress or
+ * to stop a run that doesn't make progress anymore.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public interface IterationListener {
+
+  /**
+   * Called by the minimizing thread after every iteration.
+   * 
+   * @param statistics the statistics of the finished iteration. The object is
+   *          reused by the minimizer, so it is only valid during this call.
+   * @return true to continue the minimization, false to stop it after this
+   *         iteration and return the current parameters.
+   */
+  public boolean onIterationFinished(IterationStatistics statistics);
+
+}
@@ -0,0 +1,18 @@
+package de.jungblut.math.minimize;
+
+/**
+ * A {@link Minimizer} or {@link StochasticMinimizer} that can notify an
+ * {@link IterationListener} after every iteration.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public interface IterationListenerAware {
+
+  /**
+   * Sets the listener that is notified after every iteration and can stop the
+   * minimization early. Null (the default) disables the instrumentation.
+   */
+  public void setIterationListener(IterationListener listener);
+
+}
@@ -0,0 +1,168 @@
+package de.jungblut.math.minimize;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.jungblut.math.DoubleVector;
+
+/**
+ * Collects the {@link IterationStatistics} of a single minimization and
+ * passes them to the {@link IterationListener}. Without a listener every
+ * method returns immediately, so the minimizers can call it unconditionally.
+ * The evaluation and worker methods can be called from any thread.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+final class IterationMonitor {
+
+  // measures the allocations per thread, the method is null if the JVM
+  // doesn't support it
+  private static final ThreadMXBean THREAD_BEAN = ManagementFactory
+      .getThreadMXBean();
+  private static final Method ALLOCATED_BYTES = allocatedBytesMethod();
+
+  private final IterationListener listener;
+  private final IterationStatistics statistics = new IterationStatistics();
+  private final AtomicLong evaluations = new AtomicLong();
+  private final AtomicLong evaluationNanos = new AtomicLong();
+  private final AtomicLong workerAllocatedBytes = new AtomicLong();
+  private long totalEvaluations;
+  private long iterationStart;
+  private long allocationStart;
+
+  IterationMonitor(IterationListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Starts to measure the next iteration, must be called by the minimizing
+   * thread. Evaluations since the last iteration, like the ones to initialize
+   * the minimizer, are added to the next iteration.
+   */
+  void startIteration() {
+    if (listener == null) {
+      return;
+    }
+    allocationStart = allocatedBytes();
+    iterationStart = System.nanoTime();
+  }
+
+  /**
+   * @return the start time to pass to {@link #finishEvaluation(long)}.
+   */
+  long startEvaluation() {
+    return listener == null ? 0L : System.nanoTime();
+  }
+
+  void finishEvaluation(long start) {
+    if (listener == null) {
+      return;
+    }
+    evaluationNanos.addAndGet(System.nanoTime() - start);
+    evaluations.incrementAndGet();
+  }
+
+  /**
+   * @return the allocation counter to pass to {@link #finishWorker(long)}, for
+   *         threads other than the minimizing thread.
+   */
+  long startWorker() {
+    return listener == null ? 0L : allocatedBytes();
+  }
+
+  void finishWorker(long start) {
+    if (listener == null) {
+      return;
+    }
+    workerAllocatedBytes.addAndGet(allocatedBytes() - start);
+  }
+
+  /**
+   * Same as {@link #finishIteration(int, double, double)}, the norm of the
+   * gradient is only computed if there is a listener.
+   */
+  boolean finishIteration(int iteration, double cost, double[] gradient) {
+    return finishIteration(iteration, cost, listener == null ? Double.NaN
+        : Math.sqrt(VectorMath.dot(gradient, gradient)));
+  }
+
+  /**
+   * Same as {@link #finishIteration(int, double, double)}, the norm of the
+   * gradient is only computed if there is a listener.
+   */
+  boolean finishIteration(int iteration, double cost, DoubleVector gradient) {
+    return finishIteration(iteration, cost, listener == null
+        || gradient == null ? Double.NaN : Math.sqrt(gradient.dot(gradient)));
+  }
+
+  /**
+   * Passes the statistics of the iteration to the listener, must be called by
+   * the minimizing thread.
+   * 
+   * @param iteration the number of the iteration.
+   * @param cost the cost after the iteration.
+   * @param gradientNorm the norm of the gradient, NaN if unknown.
+   * @return true if the minimization should stop.
+   */
+  boolean finishIteration(int iteration, double cost, double gradientNorm) {
+    if (listener == null) {
+      return false;
+    }
+    long allocated = allocatedBytes();
+    statistics.iteration = iteration;
+    statistics.cost = cost;
+    statistics.gradientNorm = gradientNorm;
+    statistics.evaluations = evaluations.getAndSet(0L);
+    totalEvaluations += statistics.evaluations;
+    statistics.totalEvaluations = totalEvaluations;
+    statistics.evaluationNanos = evaluationNanos.getAndSet(0L);
+    statistics.iterationNanos = System.nanoTime() - iterationStart;
+    statistics.allocatedBytes = allocated < 0 ? -1L : allocated
+        - allocationStart + workerAllocatedBytes.getAndSet(0L);
+    return !listener.onIterationFinished(statistics);
+  }
+
+  /**
+   * @return the bytes allocated by the current thread so far, -1 if the JVM
+   *         can't measure it.
+   */
+  private static long allocatedBytes() {
+    if (ALLOCATED_BYTES == null) {
+      return -1L;
+    }
+    try {
+      return (Long) ALLOCATED_BYTES.invoke(THREAD_BEAN, Thread.currentThread()
+          .getId());
+    } catch (ReflectiveOperationException e) {
+      return -1L;
+    }
+  }
+
+  /**
+   * Looks up the allocation counter of the com.sun.management extension
+   * reflectively, so JVMs without it can still load this class.
+   * 
+   * @return the getThreadAllocatedBytes(long) method, null if it isn't
+   *         supported.
+   */
+  private static Method allocatedBytesMethod() {
+    try {
+      Class<?> sunBean = Class.forName("com.sun.management.ThreadMXBean");
+      if (!sunBean.isInstance(THREAD_BEAN)
+          || !(Boolean) sunBean.getMethod("isThreadAllocatedMemorySupported")
+              .invoke(THREAD_BEAN)
+          || !(Boolean) sunBean.getMethod("isThreadAllocatedMemoryEnabled")
+              .invoke(THREAD_BEAN)) {
+        return null;
+      }
+      return sunBean.getMethod("getThreadAllocatedBytes", long.class);
+    } catch (ReflectiveOperationException | LinkageError
+        | SecurityException e) {
+      return null;
+    }
+  }
+
+}
@@ -0,0 +1,103 @@
+package de.jungblut.math.minimize;
+
+/**
+ * Statistics of a single iteration of a minimizer that are passed to an
+ * {@link IterationListener}.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public final class IterationStatistics {
+
+  int iteration;
+  double cost;
+  double gradientNorm;
+  long evaluations;
+  long totalEvaluations;
+  long evaluationNanos;
+  long iterationNanos;
+  long allocatedBytes;
+
+  IterationStatistics() {
+  }
+
+  /**
+   * @return the zero based number of the iteration.
+   */
+  public int getIteration() {
+    return this.iteration;
+  }
+
+  /**
+   * @return the cost after the iteration, the average cost of an epoch for
+   *         stochastic minimizers.
+   */
+  public double getCost() {
+    return this.cost;
+  }
+
+  /**
+   * @return the euclidean norm of the last gradient of the iteration, the
+   *         norm of the last (mini-batch) gradient for stochastic minimizers.
+   *         NaN if the minimizer doesn't compute a single gradient.
+   */
+  public double getGradientNorm() {
+    return this.gradientNorm;
+  }
+
+  /**
+   * @return the number of cost function evaluations in this iteration.
+   */
+  public long getEvaluations() {
+    return this.evaluations;
+  }
+
+  /**
+   * @return the number of cost function evaluations since the minimization
+   *         started.
+   */
+  public long getTotalEvaluations() {
+    return this.totalEvaluations;
+  }
+
+  /**
+   * @return the wall time spent in the cost function in this iteration,
+   *         summed over all threads that evaluated it.
+   */
+  public long getEvaluationNanos() {
+    return this.evaluationNanos;
+  }
+
+  /**
+   * @return the average wall time of a cost function evaluation in this
+   *         iteration, NaN if the cost function wasn't evaluated.
+   */
+  public double getNanosPerEvaluation() {
+    return evaluations == 0 ? Double.NaN : (double) evaluationNanos
+        / evaluations;
+  }
+
+  /**
+   * @return the wall time of the whole iteration.
+   */
+  public long getIterationNanos() {
+    return this.iterationNanos;
+  }
+
+  /**
+   * @return the bytes allocated by the minimizer and its worker threads in this
+   *         iteration, -1 if the JVM can't measure allocations.
+   */
+  public long getAllocatedBytes() {
+    return this.allocatedBytes;
+  }
+
+  @Override
+  public String toString() {
+    return "Iteration " + iteration + " | Cost: " + cost + " | Gradient norm: "
+        + gradientNorm + " | Evaluations: " + evaluations + " | Time: "
+        + iterationNanos / 1000000 + "ms | Allocated: " + allocatedBytes
+        + " bytes";
+  }
+
+}
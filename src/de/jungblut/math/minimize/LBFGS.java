@@ -0,0 +1,360 @@
+package de.jungblut.math.minimize;
+
+import static de.jungblut.math.minimize.VectorMath.axpy;
+import static de.jungblut.math.minimize.VectorMath.dot;
+import static de.jungblut.math.minimize.VectorMath.scale;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.tuple.Tuple;
+
+/**
+ * Limited memory Broyden-Fletcher-Goldfarb-Shanno (L-BFGS) quasi-newton
+ * minimizer. The inverse hessian is approximated by the last position and
+ * gradient differences, the search direction is computed with the two-loop
+ * recursion and the step length with a line search that satisfies the strong
+ * Wolfe conditions. See Nocedal and Wright, Numerical Optimization, algorithms
+ * 3.5, 3.6 and 7.4.
+ * <p>
+ * All vectors are preallocated double arrays that are updated in place, an
+ * iteration doesn't allocate anything if the cost function is an
+ * {@link InPlaceCostFunction}. The history takes 2 * m * n doubles for m
+ * pairs and n parameters.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public final class LBFGS implements Minimizer, IterationListenerAware {
+
+  // the constants of the sufficient decrease and the curvature condition
+  private static final double C1 = 1e-4;
+  private static final double C2 = 0.9;
+  // max 20 function evaluations per line search
+  private static final int MAX_EVALUATIONS = 20;
+  // relative cost reduction below which we have converged
+  private static final double TOLERANCE = 1e-12;
+
+  private final int history;
+  private IterationListener listener;
+
+  /**
+   * Creates a new minimizer that keeps the last 10 updates.
+   */
+  public LBFGS() {
+    this(10);
+  }
+
+  /**
+   * @param history the number of updates to keep to approximate the hessian.
+   */
+  public LBFGS(int history) {
+    Preconditions.checkArgument(history > 0,
+        "History size must be positive! Given: " + history);
+    this.history = history;
+  }
+
+  @Override
+  public DoubleVector minimize(CostFunction f, DoubleVector theta,
+      int maxIterations, boolean verbose) {
+    return new State(f, theta.toArray().clone(), history, new IterationMonitor(
+        listener)).minimize(maxIterations, verbose);
+  }
+
+  @Override
+  public void setIterationListener(IterationListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Minimizes the given cost function with L-BFGS.
+   * 
+   * @param f the cost function to minimize.
+   * @param pInput the starting point, it isn't altered.
+   * @param history the number of updates to keep.
+   * @param maxIterations the number of iterations (line searches) to make.
+   * @param verbose output the progress to STDOUT.
+   * @return a vector containing the optimized input.
+   */
+  public static DoubleVector minimizeFunction(CostFunction f,
+      DoubleVector pInput, int history, int maxIterations, boolean verbose) {
+    return new State(f, pInput.toArray().clone(), history,
+        new IterationMonitor(null)).minimize(maxIterations, verbose);
+  }
+
+  /**
+   * The buffers of a single minimization.
+   */
+  private static final class State {
+
+    private final CostFunction f;
+    private final IterationMonitor monitor;
+    private final int m;
+    // current position and gradient
+    private double[] x;
+    private DenseDoubleVector xVector;
+    private double[] g;
+    private double cost;
+    // position and gradient of the line search
+    private double[] xNew;
+    private DenseDoubleVector xNewVector;
+    private double[] gNew;
+    private double costNew;
+    // the directional derivative of the last line search evaluation
+    private double slopeNew;
+    private final double[] direction;
+    // ring buffer of the position and gradient differences
+    private final double[][] s;
+    private final double[][] y;
+    private final double[] rho;
+    private final double[] alpha;
+    private int size;
+    private int newest = -1;
+
+    State(CostFunction f, double[] x, int m, IterationMonitor monitor) {
+      final int n = x.length;
+      this.f = f;
+      this.monitor = monitor;
+      this.m = m;
+      this.x = x;
+      this.xVector = new DenseDoubleVector(x);
+      this.g = new double[n];
+      this.xNew = new double[n];
+      this.xNewVector = new DenseDoubleVector(xNew);
+      this.gNew = new double[n];
+      this.direction = new double[n];
+      this.s = new double[m][n];
+      this.y = new double[m][n];
+      this.rho = new double[m];
+      this.alpha = new double[m];
+    }
+
+    DoubleVector minimize(int maxIterations, boolean verbose) {
+      cost = evaluate(xVector, g);
+      for (int iteration = 0; iteration < maxIterations; iteration++) {
+        monitor.startIteration();
+        computeDirection();
+        double slope = dot(g, direction);
+        if (slope >= 0d) {
+          // not a descent direction, restart with the steepest descent
+          size = 0;
+          computeDirection();
+          slope = dot(g, direction);
+          if (slope >= 0d) {
+            // the gradient is zero
+            break;
+          }
+        }
+        // scale the first step, later steps are scaled by the history
+        double step = size == 0 ? Math.min(1d, 1d / Math.sqrt(-slope)) : 1d;
+        if (!lineSearch(step, slope)) {
+          if (size == 0) {
+            // even the steepest descent doesn't make progress
+            break;
+          }
+          // retry with the steepest descent
+          size = 0;
+          continue;
+        }
+
+        final double lastCost = cost;
+        update();
+        if (verbose) {
+          System.out.print("Iteration " + iteration + " | Cost: " + cost
+              + "\r");
+        }
+        if (monitor.finishIteration(iteration, cost, g)) {
+          break;
+        }
+        if (Math.abs(lastCost - cost) <= TOLERANCE
+            * Math.max(1d, Math.max(Math.abs(lastCost), Math.abs(cost)))) {
+          break;
+        }
+      }
+      return xVector;
+    }
+
+    /**
+     * Computes the search direction with the two-loop recursion.
+     */
+    private void computeDirection() {
+      final double[] q = direction;
+      System.arraycopy(g, 0, q, 0, q.length);
+      for (int k = 0, i = newest; k < size; k++, i = (i - 1 + m) % m) {
+        alpha[i] = rho[i] * dot(s[i], q);
+        axpy(-alpha[i], y[i], q);
+      }
+      if (size > 0) {
+        // scale by the estimated curvature along the newest pair
+        scale(1d / (rho[newest] * dot(y[newest], y[newest])), q);
+      }
+      final int oldest = (newest - size + 1 + m) % m;
+      for (int k = 0, i = oldest; k < size; k++, i = (i + 1) % m) {
+        double beta = rho[i] * dot(y[i], q);
+        axpy(alpha[i] - beta, s[i], q);
+      }
+      scale(-1d, q);
+    }
+
+    /**
+     * Stores the differences of the accepted step and moves to it.
+     */
+    private void update() {
+      final int next = (newest + 1) % m;
+      final double[] sNext = s[next];
+      final double[] yNext = y[next];
+      for (int i = 0; i < x.length; i++) {
+        sNext[i] = xNew[i] - x[i];
+        yNext[i] = gNew[i] - g[i];
+      }
+      double sy = dot(sNext, yNext);
+      // skip updates that would make the approximation indefinite
+      if (sy > 0d) {
+        rho[next] = 1d / sy;
+        newest = next;
+        size = Math.min(size + 1, m);
+      } else if (size == m) {
+        // the oldest pair was overwritten
+        size--;
+      }
+      // swap the buffers, the line search evaluates in the old ones
+      double[] tmp = x;
+      x = xNew;
+      xNew = tmp;
+      DenseDoubleVector tmpVector = xVector;
+      xVector = xNewVector;
+      xNewVector = tmpVector;
+      tmp = g;
+      g = gNew;
+      gNew = tmp;
+      cost = costNew;
+    }
+
+    /**
+     * Searches a step along the direction that satisfies the strong Wolfe
+     * conditions, algorithm 3.5 of Nocedal and Wright. If the extrapolation
+     * runs out of evaluations, the last step is taken, as every step so far
+     * sufficiently decreased the cost.
+     * 
+     * @return true if a step was found, the new position and gradient are then
+     *         in xNew and gNew.
+     */
+    private boolean lineSearch(double initialStep, double slope) {
+      double step = initialStep;
+      double previousStep = 0d;
+      double previousCost = cost;
+      double previousSlope = slope;
+      for (int k = 0; k < MAX_EVALUATIONS; k++) {
+        evaluateStep(step);
+        if (costNew > cost + C1 * step * slope
+            || (k > 0 && costNew >= previousCost)) {
+          return zoom(previousStep, previousCost, previousSlope, step,
+              costNew, slopeNew, slope, MAX_EVALUATIONS - k - 1);
+        }
+        if (Math.abs(slopeNew) <= -C2 * slope) {
+          return true;
+        }
+        if (slopeNew >= 0d) {
+          return zoom(step, costNew, slopeNew, previousStep, previousCost,
+              previousSlope, slope, MAX_EVALUATIONS - k - 1);
+        }
+        previousStep = step;
+        previousCost = costNew;
+        previousSlope = slopeNew;
+        // extrapolate
+        step *= 2d;
+      }
+      // the last evaluated step is still in xNew and gNew
+      return previousStep > 0d;
+    }
+
+    /**
+     * Narrows the bracket between the low and the high step until a step
+     * satisfies the strong Wolfe conditions, algorithm 3.6 of Nocedal and
+     * Wright. The low step always has the lowest cost that satisfies the
+     * sufficient decrease condition.
+     */
+    private boolean zoom(double low, double lowCost, double lowSlope,
+        double high, double highCost, double highSlope, double slope,
+        int evaluations) {
+      for (int k = 0; k < evaluations; k++) {
+        double step = interpolate(low, lowCost, lowSlope, high, highCost,
+            highSlope);
+        evaluateStep(step);
+        if (costNew > cost + C1 * step * slope || costNew >= lowCost) {
+          high = step;
+          highCost = costNew;
+          highSlope = slopeNew;
+        } else {
+          if (Math.abs(slopeNew) <= -C2 * slope) {
+            return true;
+          }
+          if (slopeNew * (high - low) >= 0d) {
+            high = low;
+            highCost = lowCost;
+            highSlope = lowSlope;
+          }
+          low = step;
+          lowCost = costNew;
+          lowSlope = slopeNew;
+        }
+      }
+      // accept the best step if it at least decreased the cost
+      if (low > 0d && lowCost < cost) {
+        evaluateStep(low);
+        return true;
+      }
+      return false;
+    }
+
+    /**
+     * @return the minimizer of the cubic that interpolates both steps,
+     *         safeguarded to stay inside the bracket.
+     */
+    private static double interpolate(double a, double fa, double da,
+        double b, double fb, double db) {
+      double d1 = da + db - 3d * (fa - fb) / (a - b);
+      double d2 = Math.signum(b - a) * Math.sqrt(d1 * d1 - da * db);
+      double step = b - (b - a) * (db + d2 - d1) / (db - da + 2d * d2);
+      double lower = Math.min(a, b);
+      double upper = Math.max(a, b);
+      double margin = 0.1d * (upper - lower);
+      if (Double.isNaN(step) || step < lower + margin
+          || step > upper - margin) {
+        // bisect on numerical problems or if too close to the bracket
+        step = (a + b) / 2d;
+      }
+      return step;
+    }
+
+    /**
+     * Evaluates the cost and the directional derivative at x + step *
+     * direction.
+     */
+    private void evaluateStep(double step) {
+      for (int i = 0; i < x.length; i++) {
+        xNew[i] = x[i] + step * direction[i];
+      }
+      costNew = evaluate(xNewVector, gNew);
+      slopeNew = dot(gNew, direction);
+    }
+
+    private double evaluate(DoubleVector input, double[] gradient) {
+      long start = monitor.startEvaluation();
+      if (f instanceof InPlaceCostFunction) {
+        double cost = ((InPlaceCostFunction) f).evaluateCost(input, gradient);
+        monitor.finishEvaluation(start);
+        return cost;
+      }
+      Tuple<Double, DoubleVector> evaluateCost = f.evaluateCost(input);
+      monitor.finishEvaluation(start);
+      DoubleVector result = evaluateCost.getSecond();
+      for (int i = 0; i < gradient.length; i++) {
+        gradient[i] = result.get(i);
+      }
+      return evaluateCost.getFirst();
+    }
+  }
+
+}
@@ -0,0 +1,124 @@
+package de.jungblut.math.minimize;
+
+import de.jungblut.math.DoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleMatrix;
+
+/**
+ * Column major matrix view on a range of a double array, mainly used to look at
+ * a single matrix inside folded parameters without copying it. Writes go
+ * through to the underlying array.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public final class MatrixView {
+
+  private final double[] data;
+  private final int offset;
+  private final int rows;
+  private final int columns;
+
+  /**
+   * Creates a new view.
+   * 
+   * @param data the array to look at.
+   * @param offset the index of the first element (row 0, column 0).
+   * @param rows the number of rows, which is also the leading dimension.
+   * @param columns the number of columns.
+   */
+  public MatrixView(double[] data, int offset, int rows, int columns) {
+    if (offset < 0 || offset + rows * columns > data.length) {
+      throw new IllegalArgumentException("View of " + rows + "x" + columns
+          + " at offset " + offset + " doesn't fit into an array of length "
+          + data.length);
+    }
+    this.data = data;
+    this.offset = offset;
+    this.rows = rows;
+    this.columns = columns;
+  }
+
+  public double get(int row, int col) {
+    return data[offset + col * rows + row];
+  }
+
+  public void set(int row, int col, double value) {
+    data[offset + col * rows + row] = value;
+  }
+
+  /**
+   * Adds the given value to the element at row and col.
+   */
+  public void add(int row, int col, double value) {
+    data[offset + col * rows + row] += value;
+  }
+
+  public int getRowCount() {
+    return rows;
+  }
+
+  public int getColumnCount() {
+    return columns;
+  }
+
+  /**
+   * @return the underlying array, this is not a copy.
+   */
+  public double[] getData() {
+    return data;
+  }
+
+  /**
+   * @return the index of the first element in the underlying array.
+   */
+  public int getOffset() {
+    return offset;
+  }
+
+  /**
+   * @return the leading dimension (the distance between two columns), this is
+   *         always the number of rows.
+   */
+  public int getLeadingDimension() {
+    return rows;
+  }
+
+  /**
+   * Copies the given matrix into this view.
+   */
+  public void copyFrom(DoubleMatrix matrix) {
+    if (matrix.getRowCount() != rows || matrix.getColumnCount() != columns) {
+      throw new IllegalArgumentException("Dimensions do not match: "
+          + matrix.getRowCount() + "x" + matrix.getColumnCount() + " != "
+          + rows + "x" + columns);
+    }
+    if (matrix instanceof DenseDoubleMatrix) {
+      DenseDoubleMatrix dense = (DenseDoubleMatrix) matrix;
+      for (int col = 0; col < columns; col++) {
+        System.arraycopy(dense.getColumn(col), 0, data, offset + col * rows,
+            rows);
+      }
+    } else {
+      for (int col = 0; col < columns; col++) {
+        for (int row = 0; row < rows; row++) {
+          set(row, col, matrix.get(row, col));
+        }
+      }
+    }
+  }
+
+  /**
+   * @return a new dense matrix that contains a copy of this view.
+   */
+  public DenseDoubleMatrix toDenseMatrix() {
+    double[] copy = new double[rows * columns];
+    System.arraycopy(data, offset, copy, 0, copy.length);
+    return new DenseDoubleMatrix(copy, rows, columns);
+  }
+
+  @Override
+  public String toString() {
+    return rows + "x" + columns + " view at offset " + offset;
+  }
+
+}
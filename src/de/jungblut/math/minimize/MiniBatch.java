@@ -0,0 +1,152 @@
+package de.jungblut.math.minimize;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.tuple.Tuple;
+
+/**
+ * A batch of training examples whose features and outcomes are stored in
+ * column major arrays, ready to be multiplied without further copies. The
+ * arrays are allocated once for the capacity and are refilled for every batch,
+ * so the leading dimension of both is always the capacity, even if the batch
+ * contains fewer rows.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public final class MiniBatch {
+
+  private final int capacity;
+  private final int numFeatures;
+  private final int numOutcomes;
+  private final double[] x;
+  private final double[] y;
+  // the examples in the batch for functions that evaluate them one by one
+  private final Tuple<DoubleVector, DenseDoubleVector>[] rowsData;
+
+  private int rows;
+
+  /**
+   * Creates a new empty batch.
+   * 
+   * @param capacity the maximum number of rows in the batch.
+   * @param numFeatures the dimension of the feature vectors.
+   * @param numOutcomes the dimension of the outcome vectors.
+   */
+  @SuppressWarnings("unchecked")
+  public MiniBatch(int capacity, int numFeatures, int numOutcomes) {
+    Preconditions.checkArgument(capacity > 0, "Capacity must be positive!");
+    this.capacity = capacity;
+    this.numFeatures = numFeatures;
+    this.numOutcomes = numOutcomes;
+    this.x = new double[capacity * numFeatures];
+    this.y = new double[capacity * numOutcomes];
+    this.rowsData = new Tuple[capacity];
+  }
+
+  /**
+   * Adds the given example as the next row of this batch. Sparse features are
+   * only copied by their non-zero elements.
+   * 
+   * @param example the features and the outcome.
+   */
+  public void add(Tuple<DoubleVector, DenseDoubleVector> example) {
+    Preconditions.checkState(rows < capacity, "Batch is already full!");
+    DoubleVector features = example.getFirst();
+    DenseDoubleVector outcome = example.getSecond();
+    if (features.isSparse()) {
+      // the row may still contain values of the last batch
+      for (int col = 0; col < numFeatures; col++) {
+        x[col * capacity + rows] = 0d;
+      }
+      Iterator<DoubleVectorElement> it = features.iterateNonZero();
+      while (it.hasNext()) {
+        DoubleVectorElement next = it.next();
+        x[next.getIndex() * capacity + rows] = next.getValue();
+      }
+    } else {
+      for (int col = 0; col < numFeatures; col++) {
+        x[col * capacity + rows] = features.get(col);
+      }
+    }
+    for (int col = 0; col < numOutcomes; col++) {
+      y[col * capacity + rows] = outcome.get(col);
+    }
+    rowsData[rows] = example;
+    rows++;
+  }
+
+  /**
+   * Empties this batch, so it can be refilled.
+   */
+  public void clear() {
+    Arrays.fill(rowsData, 0, rows, null);
+    rows = 0;
+  }
+
+  /**
+   * @return true if no more rows can be added.
+   */
+  public boolean isFull() {
+    return rows == capacity;
+  }
+
+  /**
+   * @return the number of rows in this batch.
+   */
+  public int getRows() {
+    return rows;
+  }
+
+  /**
+   * @return the leading dimension of the feature and outcome arrays.
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * @return the dimension of the features.
+   */
+  public int getNumFeatures() {
+    return numFeatures;
+  }
+
+  /**
+   * @return the dimension of the outcome.
+   */
+  public int getNumOutcomes() {
+    return numOutcomes;
+  }
+
+  /**
+   * @return the features in column major order, the element of row i and
+   *         column j is at index j * capacity + i.
+   */
+  public double[] getFeatures() {
+    return x;
+  }
+
+  /**
+   * @return the outcomes in column major order, the element of row i and column
+   *         j is at index j * capacity + i.
+   */
+  public double[] getOutcomes() {
+    return y;
+  }
+
+  /**
+   * @return the example that was added as the given row.
+   */
+  public Tuple<DoubleVector, DenseDoubleVector> getExample(int row) {
+    Preconditions.checkElementIndex(row, rows);
+    return rowsData[row];
+  }
+
+}
@@ -0,0 +1,27 @@
+package de.jungblut.math.minimize;
+
+import de.jungblut.math.DoubleVector;
+
+/**
+ * Stochastic cost function that can evaluate a whole {@link MiniBatch} at once,
+ * so the examples can be computed with matrix multiplications instead of one
+ * by one.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public interface MiniBatchCostFunction extends StochasticCostFunction {
+
+  /**
+   * Evaluates cost and gradient averaged over the rows of the given batch.
+   * 
+   * @param input the parameters to evaluate.
+   * @param batch the examples to evaluate on.
+   * @param gradient the array to write the gradient into, must have the length
+   *          of the input. All of its elements are overwritten.
+   * @return the cost.
+   */
+  public double evaluateCost(DoubleVector input, MiniBatch batch,
+      double[] gradient);
+
+}
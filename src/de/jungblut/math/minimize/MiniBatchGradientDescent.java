@@ -0,0 +1,343 @@
+package de.jungblut.math.minimize;
+
+import static de.jungblut.math.minimize.GradientDescent.converged;
+import static de.jungblut.math.minimize.GradientDescent.shiftLeft;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.datastructure.InputProvider;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.tuple.Tuple;
+
+/**
+ * Mini-batch stochastic gradient descent. The examples of the
+ * {@link InputProvider} are grouped into batches of a fixed size and the
+ * parameters are updated after every batch, optionally with momentum and
+ * adaptive (AdaGrad) learning rates. While a batch is computed, a background
+ * thread already reads the next batches from the provider, so the data can be
+ * streamed from disk without stalling the computation.
+ * <p>
+ * If the function implements {@link MiniBatchCostFunction}, a batch is
+ * evaluated at once, otherwise the examples of a batch are evaluated one by
+ * one and their gradients are averaged.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public final class MiniBatchGradientDescent implements StochasticMinimizer,
+    IterationListenerAware {
+
+  private static final double EPSILON = 1e-8;
+
+  // marks the end of an epoch in the queue of filled batches
+  private static final MiniBatch END_OF_EPOCH = new MiniBatch(1, 0, 0);
+
+  public static final class MiniBatchGradientDescentConfiguration {
+    final InputProvider<Tuple<DoubleVector, DenseDoubleVector>> provider;
+    final int batchSize;
+    final double alpha;
+
+    double limit = 0d;
+    double momentum = 0d;
+    boolean adaptive = false;
+    int prefetchBatches = 2;
+
+    private MiniBatchGradientDescentConfiguration(
+        InputProvider<Tuple<DoubleVector, DenseDoubleVector>> provider,
+        int batchSize, double alpha) {
+      this.provider = provider;
+      this.batchSize = batchSize;
+      this.alpha = alpha;
+    }
+
+    /**
+     * Sets the cost difference between two epochs to break the iterations,
+     * defaults to 0.
+     */
+    public MiniBatchGradientDescentConfiguration breakOnDifference(
+        double limit) {
+      this.limit = limit;
+      return this;
+    }
+
+    /**
+     * Sets the momentum, the fraction of the last update that is added to the
+     * current one. Defaults to 0, which disables the momentum.
+     */
+    public MiniBatchGradientDescentConfiguration momentum(double momentum) {
+      Preconditions.checkArgument(momentum >= 0d && momentum < 1d,
+          "Momentum must be in [0, 1)! Given: " + momentum);
+      this.momentum = momentum;
+      return this;
+    }
+
+    /**
+     * Scales the learning rate of every parameter by the inverse square root
+     * of its summed squared gradients (AdaGrad).
+     */
+    public MiniBatchGradientDescentConfiguration adaptiveLearningRate() {
+      this.adaptive = true;
+      return this;
+    }
+
+    /**
+     * Sets the number of batches that are read ahead while a batch is
+     * computed, defaults to 2.
+     */
+    public MiniBatchGradientDescentConfiguration prefetchBatches(int batches) {
+      Preconditions.checkArgument(batches > 0,
+          "Number of prefetched batches must be positive! Given: " + batches);
+      this.prefetchBatches = batches;
+      return this;
+    }
+
+    public MiniBatchGradientDescent build() {
+      return new MiniBatchGradientDescent(this);
+    }
+
+    /**
+     * Creates a new configuration.
+     * 
+     * @param provider the input provider to get the data from.
+     * @param batchSize the number of examples per update.
+     * @param alpha the learning rate.
+     * @return a new configuration to build the minimizer with.
+     */
+    public static MiniBatchGradientDescentConfiguration newConfiguration(
+        InputProvider<Tuple<DoubleVector, DenseDoubleVector>> provider,
+        int batchSize, double alpha) {
+      Preconditions.checkArgument(batchSize > 0,
+          "Batch size must be positive! Given: " + batchSize);
+      return new MiniBatchGradientDescentConfiguration(provider, batchSize,
+          alpha);
+    }
+  }
+
+  private final InputProvider<Tuple<DoubleVector, DenseDoubleVector>> provider;
+  private final int batchSize;
+  private final double alpha;
+  private final double limit;
+  private final double momentum;
+  private final boolean adaptive;
+  private final int prefetchBatches;
+  private IterationListener listener;
+
+  private MiniBatchGradientDescent(MiniBatchGradientDescentConfiguration conf) {
+    this.provider = conf.provider;
+    this.batchSize = conf.batchSize;
+    this.alpha = conf.alpha;
+    this.limit = conf.limit;
+    this.momentum = conf.momentum;
+    this.adaptive = conf.adaptive;
+    this.prefetchBatches = conf.prefetchBatches;
+  }
+
+  @Override
+  public final DoubleVector minimize(StochasticCostFunction f,
+      DoubleVector pInput, final int maxIterations, boolean verbose) {
+
+    double[] lastCosts = new double[3];
+    Arrays.fill(lastCosts, Double.MAX_VALUE);
+    final int lastIndex = lastCosts.length - 1;
+    // copy the input, it must not be altered
+    double[] thetaArray = pInput.toArray().clone();
+    DenseDoubleVector theta = new DenseDoubleVector(thetaArray);
+    double[] gradient = new double[thetaArray.length];
+    double[] velocity = momentum > 0d ? new double[thetaArray.length] : null;
+    double[] squaredGradients = adaptive ? new double[thetaArray.length]
+        : null;
+
+    IterationMonitor monitor = new IterationMonitor(listener);
+    Prefetcher prefetcher = new Prefetcher(monitor);
+    for (int iteration = 0; iteration < maxIterations; iteration++) {
+      monitor.startIteration();
+      int n = 0;
+      double costSum = 0d;
+      Thread thread = prefetcher.startEpoch();
+      try {
+        MiniBatch batch;
+        while ((batch = prefetcher.full.take()) != END_OF_EPOCH) {
+          long start = monitor.startEvaluation();
+          double cost = evaluate(f, theta, batch, gradient);
+          monitor.finishEvaluation(start);
+          costSum += cost * batch.getRows();
+          n += batch.getRows();
+          batch.clear();
+          prefetcher.free.put(batch);
+          update(thetaArray, gradient, velocity, squaredGradients);
+        }
+        thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      } finally {
+        if (thread.isAlive()) {
+          thread.interrupt();
+        }
+      }
+      if (prefetcher.failure != null) {
+        throw new RuntimeException("Reading the input failed!",
+            prefetcher.failure);
+      }
+      if (n == 0) {
+        break;
+      }
+
+      double cost = costSum / n;
+      if (verbose) {
+        System.out.print("Iteration " + iteration + " | Cost: " + cost + "\r");
+      }
+      if (monitor.finishIteration(iteration, cost, gradient)) {
+        break;
+      }
+      shiftLeft(lastCosts);
+      lastCosts[lastIndex] = cost;
+      // break if we converged below the limit
+      if (converged(lastCosts, limit)) {
+        break;
+      }
+    }
+
+    return theta;
+  }
+
+  @Override
+  public void setIterationListener(IterationListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Evaluates the given batch and writes its averaged gradient.
+   * 
+   * @return the average cost of the batch.
+   */
+  private static double evaluate(StochasticCostFunction f,
+      DenseDoubleVector theta, MiniBatch batch, double[] gradient) {
+    if (f instanceof MiniBatchCostFunction) {
+      return ((MiniBatchCostFunction) f).evaluateCost(theta, batch, gradient);
+    }
+    Arrays.fill(gradient, 0d);
+    double cost = 0d;
+    for (int row = 0; row < batch.getRows(); row++) {
+      Tuple<DoubleVector, DenseDoubleVector> example = batch.getExample(row);
+      Tuple<Double, DoubleVector> evaluateCost = f.evaluateCost(theta,
+          example.getFirst(), example.getSecond());
+      cost += evaluateCost.getFirst();
+      DoubleVector exampleGradient = evaluateCost.getSecond();
+      for (int i = 0; i < gradient.length; i++) {
+        gradient[i] += exampleGradient.get(i);
+      }
+    }
+    final double scale = 1d / batch.getRows();
+    for (int i = 0; i < gradient.length; i++) {
+      gradient[i] *= scale;
+    }
+    return cost * scale;
+  }
+
+  /**
+   * Updates theta in place with the given gradient.
+   * 
+   * @param velocity the last update, null if no momentum is used.
+   * @param squaredGradients the sums of the squared gradients, null if the
+   *          learning rate is not adaptive.
+   */
+  private void update(double[] theta, double[] gradient, double[] velocity,
+      double[] squaredGradients) {
+    for (int i = 0; i < theta.length; i++) {
+      double step = alpha * gradient[i];
+      if (squaredGradients != null) {
+        squaredGradients[i] += gradient[i] * gradient[i];
+        step /= Math.sqrt(squaredGradients[i]) + EPSILON;
+      }
+      if (velocity != null) {
+        velocity[i] = momentum * velocity[i] - step;
+        theta[i] += velocity[i];
+      } else {
+        theta[i] -= step;
+      }
+    }
+  }
+
+  /**
+   * Reads the provider on a background thread and fills the batches. The
+   * batches are allocated once and cycle between the free and the full queue.
+   */
+  private final class Prefetcher implements Runnable {
+
+    // one batch more than prefetched, since one is always being computed
+    private final BlockingQueue<MiniBatch> free = new ArrayBlockingQueue<>(
+        prefetchBatches + 1);
+    // plus the end of epoch marker
+    private final BlockingQueue<MiniBatch> full = new ArrayBlockingQueue<>(
+        prefetchBatches + 2);
+    private final IterationMonitor monitor;
+    private int allocated;
+    private volatile Throwable failure;
+
+    Prefetcher(IterationMonitor monitor) {
+      this.monitor = monitor;
+    }
+
+    Thread startEpoch() {
+      failure = null;
+      Thread thread = new Thread(this, "MiniBatch-Prefetcher");
+      thread.setDaemon(true);
+      thread.start();
+      return thread;
+    }
+
+    @Override
+    public void run() {
+      long allocations = monitor.startWorker();
+      try {
+        MiniBatch batch = null;
+        for (Tuple<DoubleVector, DenseDoubleVector> example : provider
+            .iterate()) {
+          if (batch == null) {
+            batch = nextFreeBatch(example);
+          }
+          batch.add(example);
+          if (batch.isFull()) {
+            full.put(batch);
+            batch = null;
+          }
+        }
+        // the last batch may be partially filled
+        if (batch != null) {
+          full.put(batch);
+        }
+      } catch (InterruptedException e) {
+        // the minimizer gave up on this epoch
+        return;
+      } catch (Throwable t) {
+        failure = t;
+      } finally {
+        monitor.finishWorker(allocations);
+      }
+      full.offer(END_OF_EPOCH);
+    }
+
+    private MiniBatch nextFreeBatch(
+        Tuple<DoubleVector, DenseDoubleVector> example)
+        throws InterruptedException {
+      MiniBatch batch = free.poll();
+      if (batch == null) {
+        if (allocated < prefetchBatches + 1) {
+          allocated++;
+          // the dimensions are known with the first example
+          return new MiniBatch(batchSize, example.getFirst().getDimension(),
+              example.getSecond().getDimension());
+        }
+        batch = free.take();
+      }
+      return batch;
+    }
+  }
+
+}
@@ -0,0 +1,143 @@
+package de.jungblut.math.minimize;
+
+import de.jungblut.math.DoubleMatrix;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+
+/**
+ * Parameters of multiple matrices backed by a single contiguous array. Each
+ * matrix is stored column major at its own offset, which is the same layout as
+ * {@link DenseMatrixFolder#foldMatrices(de.jungblut.math.dense.DenseDoubleMatrix...)}
+ * produces. Folding into a vector and unfolding into {@link MatrixView}s never
+ * copies.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public final class ParameterVector {
+
+  private final double[] data;
+  private final int[] offsets;
+  private final MatrixView[] views;
+
+  /**
+   * Creates new zero parameters for the matrices in the given sizeArray.
+   * 
+   * @param sizeArray in each row the row and column count of a matrix.
+   */
+  public ParameterVector(int[][] sizeArray) {
+    this(new double[computeLength(sizeArray)], sizeArray);
+  }
+
+  /**
+   * Creates new parameters that wrap the given array.
+   * 
+   * @param data the array, it must be at least as long as all matrices.
+   * @param sizeArray in each row the row and column count of a matrix.
+   */
+  public ParameterVector(double[] data, int[][] sizeArray) {
+    int length = computeLength(sizeArray);
+    if (data.length < length) {
+      throw new IllegalArgumentException("Length of the data " + data.length
+          + " is shorter than the length of the matrices " + length);
+    }
+    this.data = data;
+    this.offsets = computeOffsets(sizeArray);
+    this.views = new MatrixView[sizeArray.length];
+    for (int i = 0; i < views.length; i++) {
+      views[i] = new MatrixView(data, offsets[i], sizeArray[i][0],
+          sizeArray[i][1]);
+    }
+  }
+
+  /**
+   * @return the view on the i-th matrix.
+   */
+  public MatrixView getView(int i) {
+    return views[i];
+  }
+
+  /**
+   * @return the views on all matrices.
+   */
+  public MatrixView[] getViews() {
+    return views;
+  }
+
+  /**
+   * @return the index where the i-th matrix starts.
+   */
+  public int getOffset(int i) {
+    return offsets[i];
+  }
+
+  public int getNumMatrices() {
+    return views.length;
+  }
+
+  /**
+   * @return the underlying array, this is not a copy.
+   */
+  public double[] getData() {
+    return data;
+  }
+
+  /**
+   * @return a vector that is backed by the same array.
+   */
+  public DenseDoubleVector asVector() {
+    return new DenseDoubleVector(data);
+  }
+
+  /**
+   * Wraps the given vector, dense vectors are not copied so writes to the views
+   * are reflected in the vector.
+   * 
+   * @param vector the folded parameters.
+   * @param sizeArray in each row the row and column count of a matrix.
+   */
+  public static ParameterVector wrap(DoubleVector vector, int[][] sizeArray) {
+    return new ParameterVector(vector.toArray(), sizeArray);
+  }
+
+  /**
+   * Copies the given matrices once into new parameters.
+   */
+  public static ParameterVector copyOf(DoubleMatrix... matrices) {
+    int[][] sizeArray = new int[matrices.length][];
+    for (int i = 0; i < matrices.length; i++) {
+      sizeArray[i] = new int[] { matrices[i].getRowCount(),
+          matrices[i].getColumnCount() };
+    }
+    ParameterVector params = new ParameterVector(sizeArray);
+    for (int i = 0; i < matrices.length; i++) {
+      params.views[i].copyFrom(matrices[i]);
+    }
+    return params;
+  }
+
+  /**
+   * @return the start index of each matrix given by the sizeArray.
+   */
+  public static int[] computeOffsets(int[][] sizeArray) {
+    int[] offsets = new int[sizeArray.length];
+    int offset = 0;
+    for (int i = 0; i < sizeArray.length; i++) {
+      offsets[i] = offset;
+      offset += sizeArray[i][0] * sizeArray[i][1];
+    }
+    return offsets;
+  }
+
+  /**
+   * @return the number of parameters of all matrices given by the sizeArray.
+   */
+  public static int computeLength(int[][] sizeArray) {
+    int length = 0;
+    for (int[] size : sizeArray) {
+      length += size[0] * size[1];
+    }
+    return length;
+  }
+
+}
@@ -28,13 +28,15 @@ import de.jungblut.partition.Boundaries.Range;
  * @author thomas.jungblut
  * 
  */
-public final class ParticleSwarmOptimization implements Minimizer {
+public final class ParticleSwarmOptimization implements Minimizer,
+    IterationListenerAware {
 
   private final int numParticles;
   private final double alpha;
   private final double beta;
   private final double phi;
   private final int numThreads;
+  private IterationListener listener;
 
   public ParticleSwarmOptimization(int numParticles, double alpha, double beta,
       double phi, int numThreads) {
@@ -48,6 +50,7 @@ public final class ParticleSwarmOptimization implements Minimizer {
   @Override
   public final DoubleVector minimize(CostFunction f, DoubleVector pInput,
       int maxIterations, boolean verbose) {
+    IterationMonitor monitor = new IterationMonitor(listener);
     ExecutorService pool = Executors.newFixedThreadPool(numThreads);
     // setup
     Random random = new Random();
@@ -62,8 +65,10 @@ public final class ParticleSwarmOptimization implements Minimizer {
         particlePositions[i].set(j, particlePositions[i].get(j)
             + particlePositions[i].get(j) * random.nextDouble());
       }
+      long start = monitor.startEvaluation();
       particlePersonalBestCost[i] = f.evaluateCost(particlePositions[i])
           .getFirst();
+      monitor.finishEvaluation(start);
     }
 
     Set<Range> boundaries = new BlockPartitioner().partition(numThreads,
@@ -72,16 +77,19 @@ public final class ParticleSwarmOptimization implements Minimizer {
     // everything else will be seeded to the start position
     DoubleVector[] particlePersonalBestPositions = new DoubleVector[numParticles];
     Arrays.fill(particlePersonalBestPositions, pInput);
+    long start = monitor.startEvaluation();
     double globalCost = f.evaluateCost(pInput).getFirst();
+    monitor.finishEvaluation(start);
 
     // loop as long as we haven't reached our max iterations
     for (int iteration = 0; iteration < maxIterations; iteration++) {
+      monitor.startIteration();
       ExecutorCompletionService<Tuple<Double, DoubleVector>> service = new ExecutorCompletionService<>(
           pool);
       for (Range r : boundaries) {
         service.submit(new CallableOptimization(f, pInput.getDimension(),
             globalCost, r, particlePositions, particlePersonalBestCost,
-            particlePersonalBestPositions, globalBestPosition));
+            particlePersonalBestPositions, globalBestPosition, monitor));
       }
 
       for (int i = 0; i < boundaries.size(); i++) {
@@ -106,6 +114,10 @@ public final class ParticleSwarmOptimization implements Minimizer {
         System.out.print("Iteration " + iteration + " | Cost: " + globalCost
             + "\r");
       }
+      // the swarm doesn't use any gradient
+      if (monitor.finishIteration(iteration, globalCost, Double.NaN)) {
+        break;
+      }
     }
 
     pool.shutdownNow();
@@ -113,6 +125,11 @@ public final class ParticleSwarmOptimization implements Minimizer {
     return globalBestPosition;
   }
 
+  @Override
+  public void setIterationListener(IterationListener listener) {
+    this.listener = listener;
+  }
+
   private final class CallableOptimization implements
       Callable<Tuple<Double, DoubleVector>> {
 
@@ -123,6 +140,7 @@ public final class ParticleSwarmOptimization implements Minimizer {
     private final DoubleVector[] particlePersonalBestPositions;
     private final int dim;
     private final CostFunction f;
+    private final IterationMonitor monitor;
 
     private DoubleVector globalBestPosition;
     private double globalCost;
@@ -131,8 +149,9 @@ public final class ParticleSwarmOptimization implements Minimizer {
         Range range, DoubleVector[] particlePositions,
         double[] particlePersonalBestCost,
         DoubleVector[] particlePersonalBestPositions,
-        DoubleVector globalBestPosition) {
+        DoubleVector globalBestPosition, IterationMonitor monitor) {
       this.f = f;
+      this.monitor = monitor;
       this.dim = dim;
       this.globalCost = globalCost;
       this.range = range;
@@ -144,6 +163,15 @@ public final class ParticleSwarmOptimization implements Minimizer {
 
     @Override
     public Tuple<Double, DoubleVector> call() throws Exception {
+      long allocations = monitor.startWorker();
+      try {
+        return optimize();
+      } finally {
+        monitor.finishWorker(allocations);
+      }
+    }
+
+    private Tuple<Double, DoubleVector> optimize() {
       // loop over all particles and calculate new positions
       for (int particleIndex = range.getStart(); particleIndex < range.getEnd(); particleIndex++) {
         DoubleVector currentPosition = particlePositions[particleIndex];
@@ -158,7 +186,9 @@ public final class ParticleSwarmOptimization implements Minimizer {
           vec.set(index, value);
         }
         particlePositions[particleIndex] = vec;
+        long start = monitor.startEvaluation();
         double cost = f.evaluateCost(vec).getFirst();
+        monitor.finishEvaluation(start);
         // check if we have a personal best
         if (cost < particlePersonalBestCost[particleIndex]) {
           particlePersonalBestCost[particleIndex] = cost;
@@ -16,11 +16,13 @@ import de.jungblut.math.tuple.Tuple;
  * @author thomas.jungblut
  * 
  */
-public final class StochasticGradientDescent implements StochasticMinimizer {
+public final class StochasticGradientDescent implements StochasticMinimizer,
+    IterationListenerAware {
 
   private final double alpha;
   private final double limit;
   private final InputProvider<Tuple<DoubleVector, DenseDoubleVector>> provider;
+  private IterationListener listener;
 
   /**
    * @param provider the input provider to get the data from.
@@ -43,24 +45,33 @@ public final class StochasticGradientDescent implements StochasticMinimizer {
     Arrays.fill(lastCosts, Double.MAX_VALUE);
     final int lastIndex = lastCosts.length - 1;
     DoubleVector theta = pInput;
+    IterationMonitor monitor = new IterationMonitor(listener);
     for (int iteration = 0; iteration < maxIterations; iteration++) {
+      monitor.startIteration();
       int n = 0;
       double costSum = 0d;
+      DoubleVector gradient = null;
       Iterable<Tuple<DoubleVector, DenseDoubleVector>> iterable = provider
           .iterate();
       // basically iterate over all the stuff in each iteration and make direct
       // updates
       for (Tuple<DoubleVector, DenseDoubleVector> data : iterable) {
+        long start = monitor.startEvaluation();
         Tuple<Double, DoubleVector> evaluateCost = f.evaluateCost(theta,
             data.getFirst(), data.getSecond());
+        monitor.finishEvaluation(start);
         costSum += evaluateCost.getFirst();
-        theta = theta.subtract(evaluateCost.getSecond().multiply(alpha));
+        gradient = evaluateCost.getSecond();
+        theta = theta.subtract(gradient.multiply(alpha));
         n++;
       }
       double cost = costSum / n;
       if (verbose) {
         System.out.print("Iteration " + iteration + " | Cost: " + cost + "\r");
       }
+      if (monitor.finishIteration(iteration, cost, gradient)) {
+        break;
+      }
       shiftLeft(lastCosts);
       lastCosts[lastIndex] = cost;
       // break if we converged below the limit
@@ -73,6 +84,11 @@ public final class StochasticGradientDescent implements StochasticMinimizer {
 
   }
 
+  @Override
+  public void setIterationListener(IterationListener listener) {
+    this.listener = listener;
+  }
+
   /**
    * Minimize a given cost function f with the initial parameters pInput (also
    * called theta) with a learning rate alpha and a fixed number of iterations.
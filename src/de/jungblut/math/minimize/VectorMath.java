@@ -0,0 +1,45 @@
+package de.jungblut.math.minimize;
+
+/**
+ * Vector operations on plain double arrays that the minimizers use to update
+ * their buffers in place.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+final class VectorMath {
+
+  private VectorMath() {
+    throw new IllegalAccessError();
+  }
+
+  /**
+   * @return the dot product of a and b.
+   */
+  static double dot(double[] a, double[] b) {
+    double sum = 0d;
+    for (int i = 0; i < a.length; i++) {
+      sum += a[i] * b[i];
+    }
+    return sum;
+  }
+
+  /**
+   * Computes y = y + alpha * x in place.
+   */
+  static void axpy(double alpha, double[] x, double[] y) {
+    for (int i = 0; i < x.length; i++) {
+      y[i] += alpha * x[i];
+    }
+  }
+
+  /**
+   * Computes x = alpha * x in place.
+   */
+  static void scale(double alpha, double[] x) {
+    for (int i = 0; i < x.length; i++) {
+      x[i] *= alpha;
+    }
+  }
+
+}
@@ -1,14 +1,14 @@
 package de.jungblut.ner;
 
+import java.util.Arrays;
 import java.util.Iterator;
 
 import de.jungblut.math.DoubleMatrix;
 import de.jungblut.math.DoubleVector;
 import de.jungblut.math.DoubleVector.DoubleVectorElement;
-import de.jungblut.math.dense.DenseDoubleMatrix;
 import de.jungblut.math.dense.DenseDoubleVector;
 import de.jungblut.math.minimize.CostFunction;
-import de.jungblut.math.minimize.DenseMatrixFolder;
+import de.jungblut.math.minimize.MatrixView;
 import de.jungblut.math.tuple.Tuple;
 
 /**
@@ -37,47 +37,45 @@ public final class ConditionalLikelihoodCostFunction implements CostFunction {
 
   @Override
   public Tuple<Double, DoubleVector> evaluateCost(DoubleVector input) {
-    // TODO if you are really caring about performance and memory usage, you can
-    // implement some methods to translate the indices from matrices to vectors,
-    // so you don't have to copy all that memory.
-    DenseDoubleMatrix theta = DenseMatrixFolder.unfoldMatrix(input, classes,
-        (int) (input.getLength() / (double) classes));
-    DenseDoubleMatrix gradient = new DenseDoubleMatrix(theta.getRowCount(),
-        theta.getColumnCount());
+    MatrixView theta = thetaView(input, classes);
+    double[] gradientArray = new double[input.getLength()];
+    MatrixView gradient = new MatrixView(gradientArray, 0,
+        theta.getRowCount(), classes);
 
     double cost = 0d;
+    double[] logProbabilities = new double[classes];
     // loop over all feature rows to determine the probabilities
     for (int row = 0; row < m; row++) {
       DoubleVector rowVector = features.getRowVector(row);
-      double[] logProbabilities = new double[classes];
+      DoubleVector outcomeVector = outcome.getRowVector(row);
+      Arrays.fill(logProbabilities, 0d);
       // sum the probabilities for each class over all features
       Iterator<DoubleVectorElement> iterateNonZero = rowVector.iterateNonZero();
       while (iterateNonZero.hasNext()) {
         DoubleVectorElement next = iterateNonZero.next();
         for (int i = 0; i < classes; i++) {
-          logProbabilities[i] += theta.get(i, next.getIndex());
+          logProbabilities[i] += theta.get(next.getIndex(), i);
         }
       }
       double z = logSum(logProbabilities);
       for (int i = 0; i < classes; i++) {
         double prob = Math.exp(logProbabilities[i] - z);
+        boolean correct = correctPrediction(i, outcomeVector);
         iterateNonZero = rowVector.iterateNonZero();
         while (iterateNonZero.hasNext()) {
           DoubleVectorElement next = iterateNonZero.next();
-          gradient.set(i, next.getIndex(), gradient.get(i, next.getIndex())
-              + prob);
-          if (correctPrediction(i, outcome.getRowVector(row))) {
-            gradient.set(i, next.getIndex(),
-                gradient.get(i, next.getIndex()) - 1d);
+          gradient.add(next.getIndex(), i, prob);
+          if (correct) {
+            gradient.add(next.getIndex(), i, -1d);
           }
         }
-        if (correctPrediction(i, outcome.getRowVector(row))) {
+        if (correct) {
           cost -= Math.log(prob);
         }
       }
     }
 
-    DenseDoubleVector foldGradient = DenseMatrixFolder.foldMatrix(gradient);
+    DenseDoubleVector foldGradient = new DenseDoubleVector(gradientArray);
 
     // now add the prior and finalize the derivative
     cost += computeLogPrior(input, foldGradient);
@@ -85,6 +83,20 @@ public final class ConditionalLikelihoodCostFunction implements CostFunction {
     return new Tuple<Double, DoubleVector>(cost, foldGradient);
   }
 
+  /**
+   * The parameters are folded by rows of a classes x features matrix, which is
+   * the column major layout of its transpose. So the returned view is indexed
+   * by (feature, class) and doesn't copy dense parameters.
+   * 
+   * @param input the folded parameters.
+   * @param classes the number of classes.
+   * @return a features x classes view on the parameters.
+   */
+  static MatrixView thetaView(DoubleVector input, int classes) {
+    return new MatrixView(input.toArray(), 0,
+        (int) (input.getLength() / (double) classes), classes);
+  }
+
   // checks if the prediction is correct, by comparing the index of the
   // predicted class to the maximum index of the outcome
   static boolean correctPrediction(int classIndex, DoubleVector outcome) {
@@ -1,18 +1,25 @@
 package de.jungblut.ner;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 
 import com.google.common.base.Preconditions;
 
 import de.jungblut.classification.AbstractClassifier;
+import de.jungblut.datastructure.CollectionInputProvider;
 import de.jungblut.math.DoubleMatrix;
 import de.jungblut.math.DoubleVector;
 import de.jungblut.math.ViterbiUtils;
 import de.jungblut.math.dense.DenseDoubleMatrix;
 import de.jungblut.math.dense.DenseDoubleVector;
-import de.jungblut.math.minimize.DenseMatrixFolder;
+import de.jungblut.math.minimize.HogwildStochasticGradientDescent;
 import de.jungblut.math.minimize.Minimizer;
 import de.jungblut.math.sparse.SparseDoubleRowMatrix;
+import de.jungblut.math.tuple.Tuple;
+import de.jungblut.writable.MappedModelFile;
 
 /**
  * Maximum entropy markov model for named entity recognition (classifying labels
@@ -26,12 +33,38 @@ public final class MaxEntMarkovModel extends AbstractClassifier {
   private final Minimizer minimizer;
   private final boolean verbose;
   private final int numIterations;
+  private final int numThreads;
+  private final double alpha;
   private DenseDoubleMatrix theta;
   private int classes;
 
   public MaxEntMarkovModel(Minimizer minimizer, int numIterations,
       boolean verbose) {
+    this(minimizer, 0, 0d, numIterations, verbose);
+  }
+
+  /**
+   * Creates a model that is trained example by example with a
+   * {@link HogwildStochasticGradientDescent}, which only updates the
+   * parameters of the active features.
+   * 
+   * @param numThreads the number of worker threads.
+   * @param alpha the learning rate.
+   * @param numIterations the number of passes over the examples.
+   * @param verbose if TRUE it will print progress.
+   */
+  public MaxEntMarkovModel(int numThreads, double alpha, int numIterations,
+      boolean verbose) {
+    this(null, numThreads, alpha, numIterations, verbose);
+    Preconditions.checkArgument(numThreads > 0,
+        "Number of threads must be positive! Given: " + numThreads);
+  }
+
+  private MaxEntMarkovModel(Minimizer minimizer, int numThreads,
+      double alpha, int numIterations, boolean verbose) {
     this.minimizer = minimizer;
+    this.numThreads = numThreads;
+    this.alpha = alpha;
     this.numIterations = numIterations;
     this.verbose = verbose;
   }
@@ -50,6 +83,15 @@ public final class MaxEntMarkovModel extends AbstractClassifier {
             "There wasn't at least a single featurevector, or the two array didn't match in size.");
     this.classes = outcome[0].getDimension() == 1 ? 2 : outcome[0]
         .getDimension();
+    DoubleVector input = minimizer == null ? trainStochastic(features,
+        outcome) : trainBatch(features, outcome);
+    // copy the (feature, class) view once into the classes x features model
+    theta = (DenseDoubleMatrix) ConditionalLikelihoodCostFunction
+        .thetaView(input, classes).toDenseMatrix().transpose();
+  }
+
+  private DoubleVector trainBatch(DoubleVector[] features,
+      DenseDoubleVector[] outcome) {
     DoubleMatrix mat = null;
     if (features[0].isSparse()) {
       mat = new SparseDoubleRowMatrix(features);
@@ -59,9 +101,22 @@ public final class MaxEntMarkovModel extends AbstractClassifier {
     ConditionalLikelihoodCostFunction func = new ConditionalLikelihoodCostFunction(
         mat, new DenseDoubleMatrix(outcome));
     DenseDoubleVector vx = new DenseDoubleVector(mat.getColumnCount() * classes);
-    DoubleVector input = minimizer.minimize(func, vx, numIterations, verbose);
-    theta = DenseMatrixFolder.unfoldMatrix(input, classes,
-        (int) (input.getLength() / (double) classes));
+    return minimizer.minimize(func, vx, numIterations, verbose);
+  }
+
+  private DoubleVector trainStochastic(DoubleVector[] features,
+      DenseDoubleVector[] outcome) {
+    List<Tuple<DoubleVector, DenseDoubleVector>> examples = new ArrayList<>(
+        features.length);
+    for (int i = 0; i < features.length; i++) {
+      examples.add(new Tuple<>(features[i], outcome[i]));
+    }
+    HogwildStochasticGradientDescent sgd = new HogwildStochasticGradientDescent(
+        new CollectionInputProvider<>(examples), numThreads, alpha, 1e-8);
+    DenseDoubleVector vx = new DenseDoubleVector(features[0].getDimension()
+        * classes);
+    return sgd.minimize(new StochasticConditionalLikelihoodCostFunction(
+        classes), vx, numIterations, verbose);
   }
 
   @Override
@@ -93,4 +148,25 @@ public final class MaxEntMarkovModel extends AbstractClassifier {
     return ViterbiUtils.decode(theta, features, featuresPerState, classes);
   }
 
+  /**
+   * Opens a model that was written by
+   * {@link #serializeMapped(MaxEntMarkovModel, File)}.
+   */
+  public static MaxEntMarkovModel deserializeMapped(File file)
+      throws IOException {
+    MappedModelFile in = MappedModelFile.open(file, MaxEntMarkovModel.class);
+    return new MaxEntMarkovModel(in.getMatrix("theta"), in.getInt("classes"));
+  }
+
+  /**
+   * Writes the learned parameters to a page aligned model file that can be
+   * opened with {@link #deserializeMapped(File)}.
+   */
+  public static void serializeMapped(MaxEntMarkovModel model, File file)
+      throws IOException {
+    MappedModelFile.newWriter(MaxEntMarkovModel.class)
+        .putMatrix("theta", model.theta).putInt("classes", model.classes)
+        .write(file);
+  }
+
 }
@@ -0,0 +1,68 @@
+package de.jungblut.ner;
+
+import java.util.Iterator;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.DoubleVector.DoubleVectorElement;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.minimize.HogwildStochasticGradientDescent;
+import de.jungblut.math.minimize.StochasticCostFunction;
+import de.jungblut.math.sparse.SparseDoubleVector;
+import de.jungblut.math.tuple.Tuple;
+
+/**
+ * Conditional likelihood cost function on a single example for stochastic
+ * minimizers. The parameters are folded like in
+ * {@link ConditionalLikelihoodCostFunction}, the gradient is sparse and only
+ * contains the non-zero features for every class, so it can be applied cheaply
+ * by a {@link HogwildStochasticGradientDescent}. The gaussian prior is left
+ * out, because it would touch every parameter on every example. The function
+ * is stateless and thus thread-safe.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public final class StochasticConditionalLikelihoodCostFunction implements
+    StochasticCostFunction {
+
+  private final int classes;
+
+  public StochasticConditionalLikelihoodCostFunction(int classes) {
+    this.classes = classes;
+  }
+
+  @Override
+  public Tuple<Double, DoubleVector> evaluateCost(DoubleVector input,
+      DoubleVector x, DenseDoubleVector y) {
+    final int numFeatures = input.getDimension() / classes;
+    double[] logProbabilities = new double[classes];
+    // sum the probabilities for each class over all features
+    Iterator<DoubleVectorElement> iterateNonZero = x.iterateNonZero();
+    while (iterateNonZero.hasNext()) {
+      DoubleVectorElement next = iterateNonZero.next();
+      for (int i = 0; i < classes; i++) {
+        logProbabilities[i] += input.get(i * numFeatures + next.getIndex());
+      }
+    }
+    double z = ConditionalLikelihoodCostFunction.logSum(logProbabilities);
+
+    double cost = 0d;
+    DoubleVector gradient = new SparseDoubleVector(input.getDimension());
+    for (int i = 0; i < classes; i++) {
+      double prob = Math.exp(logProbabilities[i] - z);
+      boolean correct = ConditionalLikelihoodCostFunction.correctPrediction(i,
+          y);
+      double diff = correct ? prob - 1d : prob;
+      iterateNonZero = x.iterateNonZero();
+      while (iterateNonZero.hasNext()) {
+        DoubleVectorElement next = iterateNonZero.next();
+        gradient.set(i * numFeatures + next.getIndex(), diff);
+      }
+      if (correct) {
+        cost -= Math.log(prob);
+      }
+    }
+    return new Tuple<>(cost, gradient);
+  }
+
+}
@@ -0,0 +1,279 @@
+package de.jungblut.nlp.mr;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+
+import com.google.common.collect.HashMultiset;
+
+import de.jungblut.classification.bayes.MultinomialNaiveBayesClassifier;
+import de.jungblut.classification.bayes.NaiveBayesCounts;
+import de.jungblut.nlp.Tokenizer;
+
+/**
+ * MapReduce job that trains a sparse {@link MultinomialNaiveBayesClassifier}
+ * on labelled documents. The input are text lines of the class label and the
+ * document, separated by a tab, like the input of the
+ * {@link WordCorpusFrequencyJob}. The mapper combines the (class, token)
+ * counts of many documents in memory before it writes them. The single
+ * reducer assigns the token indices, writes them as the dictionary to the
+ * output and writes the class labels and the model to the configured paths.
+ * The model is written with
+ * {@link MultinomialNaiveBayesClassifier#serializeMapped}, documents must be
+ * vectorized with the dictionary as sparse term frequency vectors.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public class NaiveBayesTrainingJob {
+
+  public static final String MODEL_OUT_PATH_KEY = "naivebayes.model.out.path";
+  public static final String CLASSES_OUT_PATH_KEY = "naivebayes.classes.out.path";
+  public static final String MAX_COMBINER_ENTRIES_KEY = "naivebayes.combiner.max.entries";
+
+  // sorts before every token, the values are the documents of each class
+  static final Text DOCUMENTS_KEY = new Text("");
+
+  private static final Log LOG = LogFactory
+      .getLog(NaiveBayesTrainingJob.class);
+
+  /**
+   * Sums up the counts of the (class, token) pairs of all documents of a
+   * split, they are written whenever the configured number of pairs is
+   * reached. Output is the token as key, the value is the class, the document
+   * frequency and the term frequency. The number of documents of each class
+   * is written to the empty token.
+   */
+  public static class CountMapper extends
+      Mapper<LongWritable, Text, Text, TextIntIntIntWritable> {
+
+    private static final IntWritable ZERO = new IntWritable(0);
+
+    private Tokenizer tokenizer;
+    private int maxEntries;
+    // class -> token -> (document frequency, term frequency)
+    private final Map<String, Map<String, int[]>> counts = new HashMap<>();
+    private final Map<String, int[]> documents = new HashMap<>();
+    private int entries;
+
+    @Override
+    protected void setup(Context context) throws IOException,
+        InterruptedException {
+      tokenizer = WordCorpusFrequencyJob.getTokenizer(context
+          .getConfiguration());
+      maxEntries = context.getConfiguration().getInt(MAX_COMBINER_ENTRIES_KEY,
+          1000000);
+    }
+
+    @Override
+    protected void map(LongWritable key, Text value, Context context)
+        throws IOException, InterruptedException {
+      // assuming that the class label is tab separated with the document
+      String[] split = value.toString().split("\t");
+      if (split.length != 2) {
+        LOG.warn("Ignore line (couldn't be split correctly): " + value);
+        return;
+      }
+      String label = split[0];
+      Map<String, int[]> classCounts = counts.get(label);
+      if (classCounts == null) {
+        classCounts = new HashMap<>();
+        counts.put(label, classCounts);
+        documents.put(label, new int[1]);
+      }
+      documents.get(label)[0]++;
+
+      // this set stores the term frequency
+      HashMultiset<String> set = HashMultiset.create(Arrays.asList(tokenizer
+          .tokenize(split[1])));
+      for (String token : set.elementSet()) {
+        if (token.isEmpty()) {
+          continue;
+        }
+        int[] tokenCounts = classCounts.get(token);
+        if (tokenCounts == null) {
+          tokenCounts = new int[2];
+          classCounts.put(token, tokenCounts);
+          entries++;
+        }
+        tokenCounts[0]++;
+        tokenCounts[1] += set.count(token);
+      }
+
+      if (entries >= maxEntries) {
+        flush(context);
+      }
+    }
+
+    @Override
+    protected void cleanup(Context context) throws IOException,
+        InterruptedException {
+      flush(context);
+    }
+
+    private void flush(Context context) throws IOException,
+        InterruptedException {
+      for (Entry<String, Map<String, int[]>> classEntry : counts.entrySet()) {
+        Text label = new Text(classEntry.getKey());
+        context.write(DOCUMENTS_KEY, new TextIntIntIntWritable(label, ZERO,
+            ZERO, new IntWritable(documents.get(classEntry.getKey())[0])));
+        for (Entry<String, int[]> entry : classEntry.getValue().entrySet()) {
+          context.write(new Text(entry.getKey()), new TextIntIntIntWritable(
+              label, new IntWritable(entry.getValue()[0]), new IntWritable(
+                  entry.getValue()[1]), ZERO));
+        }
+      }
+      counts.clear();
+      documents.clear();
+      entries = 0;
+    }
+  }
+
+  /**
+   * Sums up the counts of every token, assigns the next index to it and writes
+   * the token and its index. The model and the class labels are written at
+   * the end (this must run as single reducer).
+   */
+  public static class ModelReducer extends
+      Reducer<Text, TextIntIntIntWritable, Text, IntWritable> {
+
+    private final NaiveBayesCounts counts = new NaiveBayesCounts();
+    private final Map<String, Integer> classes = new HashMap<>();
+    // ID assigned to the token
+    private int currentIndex = 0;
+
+    @Override
+    protected void reduce(Text key, Iterable<TextIntIntIntWritable> values,
+        Context context) throws IOException, InterruptedException {
+      if (key.equals(DOCUMENTS_KEY)) {
+        // the first key, the classes are indexed in sorted order
+        Map<String, Long> documents = new HashMap<>();
+        for (TextIntIntIntWritable value : values) {
+          String label = value.getFirst().toString();
+          Long sum = documents.get(label);
+          documents.put(label, (sum == null ? 0L : sum)
+              + value.getFourth().get());
+        }
+        List<String> labels = new ArrayList<>(documents.keySet());
+        Collections.sort(labels);
+        for (String label : labels) {
+          classes.put(label, classes.size());
+          counts.addDocuments(classes.get(label), documents.get(label));
+        }
+        return;
+      }
+
+      for (TextIntIntIntWritable value : values) {
+        Integer classIndex = classes.get(value.getFirst().toString());
+        counts.addToken(classIndex, currentIndex, value.getThird().get(),
+            value.getSecond().get());
+      }
+      context.write(key, new IntWritable(currentIndex));
+      currentIndex++;
+    }
+
+    @Override
+    protected void cleanup(Context context) throws IOException,
+        InterruptedException {
+      if (classes.isEmpty()) {
+        LOG.warn("No documents were read, thus no model is written.");
+        return;
+      }
+      Configuration conf = context.getConfiguration();
+      FileSystem fs = FileSystem.get(conf);
+      try (BufferedWriter classWriter = new BufferedWriter(
+          new OutputStreamWriter(fs.create(new Path(
+              conf.get(CLASSES_OUT_PATH_KEY)))))) {
+        for (Entry<String, Integer> entry : classes.entrySet()) {
+          classWriter.write(entry.getValue() + "\t" + entry.getKey() + "\n");
+        }
+      }
+
+      MultinomialNaiveBayesClassifier classifier = new MultinomialNaiveBayesClassifier(
+          true);
+      classifier.setCounts(counts);
+      // the model file is mapped, so it is written locally and copied
+      File local = File.createTempFile("naivebayes", ".model");
+      try {
+        MultinomialNaiveBayesClassifier.serializeMapped(classifier, local);
+        fs.copyFromLocalFile(new Path(local.getAbsolutePath()), new Path(
+            conf.get(MODEL_OUT_PATH_KEY)));
+      } finally {
+        local.delete();
+      }
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length != 4) {
+      System.out
+          .println("Usage: <Comma separated input paths> <Model output path> <Classes output path> <Dictionary output path>");
+      System.exit(1);
+    }
+    Configuration conf = new Configuration();
+    Job job = createJob(args[0], args[1], args[2], args[3], conf);
+
+    job.waitForCompletion(true);
+  }
+
+  /**
+   * Creates a naive bayes training job.
+   * 
+   * @param in the input path, may comma separate multiple paths.
+   * @param modelOut the output path of the model.
+   * @param classesOut the output path of the class labels and their index.
+   * @param out the output directory of the dictionary.
+   * @param conf the configuration.
+   * @return a job with the configured propertys like name, key/value classes
+   *         and input format as text.
+   */
+  public static Job createJob(String in, String modelOut, String classesOut,
+      String out, Configuration conf) throws IOException {
+    conf.set(MODEL_OUT_PATH_KEY, modelOut);
+    conf.set(CLASSES_OUT_PATH_KEY, classesOut);
+    Job job = new Job(conf, "Naive Bayes Training");
+
+    job.setInputFormatClass(TextInputFormat.class);
+    job.setOutputFormatClass(SequenceFileOutputFormat.class);
+
+    FileInputFormat.setInputPaths(job, in);
+    FileOutputFormat.setOutputPath(job, new Path(out));
+
+    job.setMapperClass(CountMapper.class);
+    job.setReducerClass(ModelReducer.class);
+
+    job.setMapOutputKeyClass(Text.class);
+    job.setMapOutputValueClass(TextIntIntIntWritable.class);
+
+    job.setOutputKeyClass(Text.class);
+    job.setOutputValueClass(IntWritable.class);
+
+    job.setNumReduceTasks(1);
+    return job;
+  }
+
+}
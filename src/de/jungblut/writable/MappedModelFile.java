@@ -0,0 +1,360 @@
+package de.jungblut.writable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.google.common.base.Preconditions;
+
+import de.jungblut.math.DoubleMatrix;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.backend.AbstractMatrixBackend;
+import de.jungblut.math.dense.DenseDoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleVector;
+
+/**
+ * Versioned binary model format that is opened through
+ * {@link FileChannel#map}. A model is a set of named sections (double
+ * matrices, int arrays and strings), every section starts at a page aligned
+ * offset and is stored in little endian order. The header on the first pages
+ * contains the name, type, shape and location of every section.
+ * <p>
+ * Opening a file only parses the header and maps the sections, the data is
+ * read from the page cache on access, so processes that open the same file
+ * share its pages. {@link #getDoubles(String)} is a view on the mapped pages
+ * without any copy, the matrices and vectors are bulk copied into the heap
+ * since the math library only wraps arrays.
+ * 
+ * @author thomas.jungblut
+ * 
+ */
+public final class MappedModelFile {
+
+  public static final int VERSION = 1;
+  // the sections are aligned to this size
+  public static final int PAGE_SIZE = 4096;
+  // "JMOD" in ascii
+  private static final int MAGIC = 0x4A4D4F44;
+
+  private static final byte DOUBLES = 0;
+  private static final byte INTS = 1;
+  private static final byte STRING = 2;
+
+  // section that contains the class name of the model
+  private static final String MODEL_SECTION = "model";
+
+  private final Map<String, Section> sections;
+
+  private MappedModelFile(Map<String, Section> sections) {
+    this.sections = sections;
+  }
+
+  /**
+   * @return true if the file contains a section with the given name.
+   */
+  public boolean contains(String name) {
+    return sections.containsKey(name);
+  }
+
+  /**
+   * @return a read-only view of the doubles of the section in column major
+   *         order, directly on the mapped pages.
+   */
+  public DoubleBuffer getDoubles(String name) {
+    return section(name, DOUBLES).buffer.duplicate()
+        .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+  }
+
+  /**
+   * @return a copy of the matrix section.
+   */
+  public DenseDoubleMatrix getMatrix(String name) {
+    Section section = section(name, DOUBLES);
+    double[] data = new double[section.rows * section.columns];
+    getDoubles(name).get(data);
+    return new DenseDoubleMatrix(data, section.rows, section.columns);
+  }
+
+  /**
+   * @return a copy of the vector section.
+   */
+  public DenseDoubleVector getVector(String name) {
+    Section section = section(name, DOUBLES);
+    double[] data = new double[section.rows * section.columns];
+    getDoubles(name).get(data);
+    return new DenseDoubleVector(data);
+  }
+
+  /**
+   * @return a copy of the int array section.
+   */
+  public int[] getInts(String name) {
+    Section section = section(name, INTS);
+    int[] data = new int[section.rows];
+    section.buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer()
+        .get(data);
+    return data;
+  }
+
+  /**
+   * @return the value of a single int section.
+   */
+  public int getInt(String name) {
+    int[] ints = getInts(name);
+    Preconditions.checkArgument(ints.length == 1, "Section " + name
+        + " contains " + ints.length + " ints!");
+    return ints[0];
+  }
+
+  public String getString(String name) {
+    Section section = section(name, STRING);
+    byte[] bytes = new byte[section.rows];
+    section.buffer.duplicate().get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private Section section(String name, byte type) {
+    Section section = sections.get(name);
+    Preconditions.checkArgument(section != null, "Section " + name
+        + " doesn't exist!");
+    Preconditions.checkArgument(section.type == type, "Section " + name
+        + " has a different type!");
+    return section;
+  }
+
+  /**
+   * Opens the given file and checks that it was written for the given model.
+   * 
+   * @param file the model file.
+   * @param modelClass the class of the model that wrote the file.
+   * @return the opened model.
+   * @throws IOException if the file can't be read, has an unknown format or
+   *           contains a different model.
+   */
+  public static MappedModelFile open(File file, Class<?> modelClass)
+      throws IOException {
+    MappedModelFile model = open(file);
+    if (!model.contains(MODEL_SECTION)
+        || !model.getString(MODEL_SECTION).equals(modelClass.getName())) {
+      throw new IOException(file + " doesn't contain a "
+          + modelClass.getSimpleName() + "!");
+    }
+    return model;
+  }
+
+  /**
+   * Opens the given file, the sections are mapped read-only. The mapping stays
+   * valid after this method returns, the file itself is closed.
+   * 
+   * @param file the model file.
+   * @return the opened model.
+   * @throws IOException if the file can't be read or has an unknown format.
+   */
+  public static MappedModelFile open(File file) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+        FileChannel channel = raf.getChannel()) {
+      // the header length is at a fixed position
+      ByteBuffer prefix = channel.map(MapMode.READ_ONLY, 0, 12).order(
+          ByteOrder.LITTLE_ENDIAN);
+      if (prefix.getInt() != MAGIC) {
+        throw new IOException(file + " is not a model file!");
+      }
+      int version = prefix.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported model file version " + version
+            + " in " + file + ", supported is " + VERSION);
+      }
+      int headerLength = prefix.getInt();
+      ByteBuffer header = channel.map(MapMode.READ_ONLY, 12, headerLength)
+          .order(ByteOrder.LITTLE_ENDIAN);
+      int numSections = header.getInt();
+      Map<String, Section> sections = new HashMap<>();
+      for (int i = 0; i < numSections; i++) {
+        byte[] name = new byte[header.getShort()];
+        header.get(name);
+        byte type = header.get();
+        int rows = header.getInt();
+        int columns = header.getInt();
+        long offset = header.getLong();
+        long length = header.getLong();
+        MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, offset,
+            length);
+        sections.put(new String(name, StandardCharsets.UTF_8), new Section(
+            type, rows, columns, buffer));
+      }
+      return new MappedModelFile(Collections.unmodifiableMap(sections));
+    }
+  }
+
+  /**
+   * @return a new writer to collect the sections of a model.
+   */
+  public static Writer newWriter() {
+    return new Writer();
+  }
+
+  /**
+   * @return a new writer whose file is marked to contain the given model.
+   */
+  public static Writer newWriter(Class<?> modelClass) {
+    return new Writer().putString(MODEL_SECTION, modelClass.getName());
+  }
+
+  /**
+   * Collects the sections of a model and writes them to a file.
+   */
+  public static final class Writer {
+
+    private final Map<String, Object> data = new LinkedHashMap<>();
+    private final Map<String, int[]> shapes = new HashMap<>();
+
+    private Writer() {
+    }
+
+    public Writer putMatrix(String name, DoubleMatrix matrix) {
+      data.put(name, AbstractMatrixBackend.toColumnMajor(matrix));
+      shapes.put(name,
+          new int[] { matrix.getRowCount(), matrix.getColumnCount() });
+      return this;
+    }
+
+    public Writer putVector(String name, DoubleVector vector) {
+      double[] values = new double[vector.getDimension()];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = vector.get(i);
+      }
+      data.put(name, values);
+      shapes.put(name, new int[] { values.length, 1 });
+      return this;
+    }
+
+    public Writer putInts(String name, int[] values) {
+      data.put(name, values.clone());
+      shapes.put(name, new int[] { values.length, 1 });
+      return this;
+    }
+
+    public Writer putInt(String name, int value) {
+      return putInts(name, new int[] { value });
+    }
+
+    public Writer putString(String name, String value) {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      data.put(name, bytes);
+      shapes.put(name, new int[] { bytes.length, 1 });
+      return this;
+    }
+
+    /**
+     * Writes all sections to the given file, an existing file is overwritten.
+     */
+    public void write(File file) throws IOException {
+      // the header is written after the prefix of magic, version and length
+      int headerLength = 4;
+      for (String name : data.keySet()) {
+        headerLength += 2 + name.getBytes(StandardCharsets.UTF_8).length + 1
+            + 4 + 4 + 8 + 8;
+      }
+      long offset = align(12 + headerLength);
+      long[] offsets = new long[data.size()];
+      long[] lengths = new long[data.size()];
+      int index = 0;
+      for (Object values : data.values()) {
+        offsets[index] = offset;
+        lengths[index] = byteLength(values);
+        offset = align(offset + lengths[index]);
+        index++;
+      }
+
+      try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+          FileChannel channel = raf.getChannel()) {
+        raf.setLength(0);
+        ByteBuffer header = ByteBuffer.allocate(12 + headerLength).order(
+            ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(headerLength);
+        header.putInt(data.size());
+        index = 0;
+        for (Entry<String, Object> entry : data.entrySet()) {
+          byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+          int[] shape = shapes.get(entry.getKey());
+          header.putShort((short) name.length).put(name);
+          header.put(type(entry.getValue())).putInt(shape[0]).putInt(shape[1]);
+          header.putLong(offsets[index]).putLong(lengths[index]);
+          index++;
+        }
+        header.flip();
+        channel.write(header, 0);
+
+        index = 0;
+        for (Object values : data.values()) {
+          // every section is mapped on its own
+          MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE,
+              offsets[index], lengths[index]);
+          buffer.order(ByteOrder.LITTLE_ENDIAN);
+          if (values instanceof double[]) {
+            buffer.asDoubleBuffer().put((double[]) values);
+          } else if (values instanceof int[]) {
+            buffer.asIntBuffer().put((int[]) values);
+          } else {
+            buffer.put((byte[]) values);
+          }
+          buffer.force();
+          index++;
+        }
+        // pad the last section to a full page
+        raf.setLength(offset);
+      }
+    }
+
+    private static long align(long offset) {
+      return (offset + PAGE_SIZE - 1) / PAGE_SIZE * PAGE_SIZE;
+    }
+
+    private static long byteLength(Object values) {
+      if (values instanceof double[]) {
+        return 8L * ((double[]) values).length;
+      } else if (values instanceof int[]) {
+        return 4L * ((int[]) values).length;
+      }
+      return ((byte[]) values).length;
+    }
+
+    private static byte type(Object values) {
+      if (values instanceof double[]) {
+        return DOUBLES;
+      } else if (values instanceof int[]) {
+        return INTS;
+      }
+      return STRING;
+    }
+  }
+
+  private static final class Section {
+
+    private final byte type;
+    // rows and columns of matrices, the length of everything else
+    private final int rows;
+    private final int columns;
+    private final ByteBuffer buffer;
+
+    Section(byte type, int rows, int columns, ByteBuffer buffer) {
+      this.type = type;
+      this.rows = rows;
+      this.columns = columns;
+      this.buffer = buffer;
+    }
+  }
+
+}
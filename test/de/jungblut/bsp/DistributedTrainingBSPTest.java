@@ -0,0 +1,101 @@
+package de.jungblut.bsp;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hama.bsp.BSPJob;
+import org.junit.Test;
+
+import de.jungblut.bsp.DistributedTrainingBSP.LogisticRegressionFactory;
+import de.jungblut.classification.regression.LogisticRegressionCostFunction;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.minimize.Fmincg;
+import de.jungblut.writable.VectorWritable;
+
+public class DistributedTrainingBSPTest extends TestCase {
+
+  private static final int ROWS = 300;
+  private static final double LAMBDA = 1d;
+  private static final int ITERATIONS = 100;
+
+  @Test
+  public void testLogisticRegressionInLocalMode() throws Exception {
+    Random rnd = new Random(0);
+    DoubleVector[] features = new DoubleVector[ROWS];
+    DoubleVector[] outcome = new DoubleVector[ROWS];
+    for (int i = 0; i < ROWS; i++) {
+      double x = rnd.nextDouble() * 2 - 1;
+      double y = rnd.nextDouble() * 2 - 1;
+      features[i] = new DenseDoubleVector(new double[] { x, y });
+      // noisy labels, so the regularized optimum is finite
+      outcome[i] = new DenseDoubleVector(new double[] { x + y
+          + rnd.nextGaussian() * 0.5 > 0 ? 1 : 0 });
+    }
+
+    Configuration conf = new Configuration();
+    conf.set("bsp.local.tasks.maximum", "3");
+    conf.setInt(DistributedTrainingBSP.MAX_ITERATIONS_KEY, ITERATIONS);
+    conf.setFloat(DistributedTrainingBSP.LAMBDA_KEY, (float) LAMBDA);
+    FileSystem fs = FileSystem.getLocal(conf);
+    File dir = Files.createTempDirectory("distributed_training").toFile();
+    Path in = new Path(dir.getAbsolutePath(), "in");
+    Path out = new Path(dir.getAbsolutePath(), "out");
+    // a file per peer, of different sizes
+    int[] splits = { 0, 50, 170, ROWS };
+    for (int file = 0; file < splits.length - 1; file++) {
+      try (SequenceFile.Writer writer = SequenceFile.createWriter(fs, conf,
+          new Path(in, "part-" + file), VectorWritable.class,
+          VectorWritable.class)) {
+        for (int i = splits[file]; i < splits[file + 1]; i++) {
+          writer.append(new VectorWritable(features[i]), new VectorWritable(
+              outcome[i]));
+        }
+      }
+    }
+
+    BSPJob job = DistributedTrainingBSP.createJob(conf, in, out,
+        LogisticRegressionFactory.class);
+    job.setNumBspTask(3);
+    assertTrue(job.waitForCompletion(false));
+
+    DoubleVector distributed = null;
+    for (FileStatus status : fs.listStatus(out)) {
+      if (status.isDir() || status.getLen() == 0
+          || status.getPath().getName().startsWith(".")) {
+        continue;
+      }
+      try (SequenceFile.Reader reader = new SequenceFile.Reader(fs,
+          status.getPath(), conf)) {
+        VectorWritable value = new VectorWritable();
+        while (reader.next(NullWritable.get(), value)) {
+          assertNull("Only the first peer writes the result.", distributed);
+          distributed = value.getVector();
+        }
+      }
+    }
+    assertNotNull(distributed);
+
+    // the same training on a single machine
+    DoubleVector local = Fmincg.minimizeFunction(
+        new LogisticRegressionCostFunction(new DenseDoubleMatrix(features),
+            DistributedTrainingBSP.firstColumn(outcome), LAMBDA),
+        new DenseDoubleVector(3), ITERATIONS, false);
+    assertEquals(local.getDimension(), distributed.getDimension());
+    for (int i = 0; i < local.getDimension(); i++) {
+      assertEquals(local.get(i), distributed.get(i), 1e-4);
+    }
+    fs.delete(new Path(dir.getAbsolutePath()), true);
+  }
+
+}
@@ -1,5 +1,6 @@
 package de.jungblut.classification.bayes;
 
+import java.io.File;
 import java.util.Arrays;
 
 import junit.framework.TestCase;
@@ -71,4 +72,66 @@ public class MultinomialNaiveBayesClassifierTest extends TestCase {
     assertTrue("" + claz, DoubleMath.fuzzyEquals(claz.get(1), 0.15, 0.05d));
   }
 
+  @Test
+  public void testSparseModel() throws Exception {
+    DoubleVector[] features = new DoubleVector[] {
+        new SparseDoubleVector(new double[] { 1, 0, 0, 0, 0, 0 }),
+        new SparseDoubleVector(new double[] { 2, 0, 0, 0, 0, 0 }),
+        new SparseDoubleVector(new double[] { 1, 1, 0, 0, 0, 0 }),
+        new SparseDoubleVector(new double[] { 0, 0, 1, 1, 1, 0 }),
+        new SparseDoubleVector(new double[] { 0, 0, 0, 3, 1, 0 }),
+        new SparseDoubleVector(new double[] { 0, 1, 0, 0, 0, 1 }), };
+    DenseDoubleVector[] outcome = new DenseDoubleVector[] {
+        new DenseDoubleVector(new double[] { 1 }),
+        new DenseDoubleVector(new double[] { 1 }),
+        new DenseDoubleVector(new double[] { 1 }),
+        new DenseDoubleVector(new double[] { 0 }),
+        new DenseDoubleVector(new double[] { 0 }),
+        new DenseDoubleVector(new double[] { 2 }), };
+    MultinomialNaiveBayesClassifier dense = new MultinomialNaiveBayesClassifier();
+    dense.train(features, outcome);
+    MultinomialNaiveBayesClassifier sparse = new MultinomialNaiveBayesClassifier(
+        true);
+    sparse.train(features, outcome);
+    assertNull(sparse.getProbabilityMatrix());
+
+    // only the observed pairs are stored
+    SparseNaiveBayesModel model = sparse.getSparseModel();
+    assertEquals(3, model.getNumClasses());
+    assertEquals(6, model.getVocabularySize());
+    assertEquals(7, model.getNumEntries());
+    DoubleMatrix mat = dense.getProbabilityMatrix();
+    for (int c = 0; c < 3; c++) {
+      for (int t = 0; t < 6; t++) {
+        assertEquals(mat.get(c, t), model.getLogLikelihood(c, t), 1e-12);
+      }
+    }
+    assertEquals(0d, dense.getClassProbability()
+        .subtract(sparse.getClassProbability()).abs().sum(), 1e-12);
+
+    File tmp = File.createTempFile("naivebayes", ".tmp");
+    tmp.deleteOnExit();
+    MultinomialNaiveBayesClassifier.serializeMapped(sparse, tmp);
+    MultinomialNaiveBayesClassifier mapped = MultinomialNaiveBayesClassifier
+        .deserializeMapped(tmp);
+    assertNotNull(mapped.getSparseModel());
+
+    DoubleVector[] documents = new DoubleVector[] {
+        new SparseDoubleVector(new double[] { 1, 0, 0, 0, 0, 0 }),
+        new DenseDoubleVector(new double[] { 0, 0, 2, 1, 0, 0 }),
+        new DenseDoubleVector(new double[] { 0, 1, 0, 0, 0, 3 }),
+        new DenseDoubleVector(new double[] { 1, 1, 1, 1, 1, 1 }), };
+    for (DoubleVector document : documents) {
+      DoubleVector expected = dense.predict(document);
+      for (MultinomialNaiveBayesClassifier clf : Arrays.asList(sparse,
+          mapped)) {
+        DoubleVector actual = clf.predict(document);
+        assertEquals(expected.getDimension(), actual.getDimension());
+        for (int c = 0; c < expected.getDimension(); c++) {
+          assertEquals(expected.get(c), actual.get(c), 1e-12);
+        }
+      }
+    }
+  }
+
 }
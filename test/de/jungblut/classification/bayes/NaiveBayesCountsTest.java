@@ -0,0 +1,129 @@
+package de.jungblut.classification.bayes;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.sparse.SparseDoubleVector;
+
+public class NaiveBayesCountsTest extends TestCase {
+
+  private static final int NUM_DOCUMENTS = 300;
+  private static final int NUM_CLASSES = 3;
+  private static final int VOCABULARY = 50;
+
+  private static DoubleVector[] features = new DoubleVector[NUM_DOCUMENTS];
+  private static DenseDoubleVector[] outcome = new DenseDoubleVector[NUM_DOCUMENTS];
+
+  static {
+    Random rnd = new Random(0);
+    for (int i = 0; i < NUM_DOCUMENTS; i++) {
+      int c = i % NUM_CLASSES;
+      features[i] = new SparseDoubleVector(VOCABULARY);
+      for (int j = 0; j < 5; j++) {
+        // every class prefers its own block of the vocabulary
+        int token = rnd.nextBoolean() ? c * 10 + rnd.nextInt(10) : rnd
+            .nextInt(VOCABULARY);
+        features[i].set(token, features[i].get(token) + 1);
+      }
+      outcome[i] = new DenseDoubleVector(new double[] { c });
+    }
+  }
+
+  @Test
+  public void testParallelTraining() {
+    for (boolean sparse : new boolean[] { false, true }) {
+      MultinomialNaiveBayesClassifier sequential = new MultinomialNaiveBayesClassifier(
+          sparse);
+      sequential.train(features, outcome);
+      MultinomialNaiveBayesClassifier parallel = new MultinomialNaiveBayesClassifier(
+          sparse);
+      parallel.train(features, outcome, 4);
+      assertSamePredictions(sequential, parallel);
+    }
+  }
+
+  @Test
+  public void testIncrementalTraining() {
+    MultinomialNaiveBayesClassifier batch = new MultinomialNaiveBayesClassifier(
+        true);
+    batch.train(features, outcome);
+
+    // yesterday's documents were trained, today's are added one by one
+    MultinomialNaiveBayesClassifier incremental = new MultinomialNaiveBayesClassifier(
+        true);
+    int half = NUM_DOCUMENTS / 2;
+    DoubleVector[] firstFeatures = new DoubleVector[half];
+    DenseDoubleVector[] firstOutcome = new DenseDoubleVector[half];
+    System.arraycopy(features, 0, firstFeatures, 0, half);
+    System.arraycopy(outcome, 0, firstOutcome, 0, half);
+    incremental.train(firstFeatures, firstOutcome);
+    // predicting in between computes the model of the first half
+    incremental.predict(features[0]);
+    for (int i = half; i < NUM_DOCUMENTS; i++) {
+      incremental.update(features[i], (int) outcome[i].get(0));
+    }
+    assertSamePredictions(batch, incremental);
+  }
+
+  @Test
+  public void testMergeWritable() throws Exception {
+    NaiveBayesCounts all = new NaiveBayesCounts();
+    NaiveBayesCounts[] shards = new NaiveBayesCounts[] {
+        new NaiveBayesCounts(), new NaiveBayesCounts() };
+    for (int i = 0; i < NUM_DOCUMENTS; i++) {
+      all.add(features[i], (int) outcome[i].get(0));
+      shards[i % 2].add(features[i], (int) outcome[i].get(0));
+    }
+
+    // the shards are sent to a reducer
+    NaiveBayesCounts merged = new NaiveBayesCounts();
+    for (NaiveBayesCounts shard : shards) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      shard.write(new DataOutputStream(bytes));
+      NaiveBayesCounts read = new NaiveBayesCounts();
+      read.readFields(new DataInputStream(new ByteArrayInputStream(bytes
+          .toByteArray())));
+      merged.merge(read);
+    }
+
+    assertEquals(NUM_CLASSES, merged.getNumClasses());
+    assertEquals(VOCABULARY, merged.getVocabularySize());
+    for (int c = 0; c < NUM_CLASSES; c++) {
+      assertEquals(all.getNumDocuments(c), merged.getNumDocuments(c));
+      for (int t = 0; t < VOCABULARY; t++) {
+        assertEquals(all.getCount(c, t), merged.getCount(c, t));
+      }
+    }
+
+    MultinomialNaiveBayesClassifier clf = new MultinomialNaiveBayesClassifier();
+    clf.train(features, outcome);
+    MultinomialNaiveBayesClassifier fromCounts = new MultinomialNaiveBayesClassifier();
+    fromCounts.merge(merged);
+    assertSamePredictions(clf, fromCounts);
+  }
+
+  private static void assertSamePredictions(
+      MultinomialNaiveBayesClassifier expected,
+      MultinomialNaiveBayesClassifier actual) {
+    assertEquals(0d,
+        expected.getClassProbability().subtract(actual.getClassProbability())
+            .abs().sum(), 1e-12);
+    for (DoubleVector document : features) {
+      DoubleVector e = expected.predict(document);
+      DoubleVector a = actual.predict(document);
+      for (int c = 0; c < NUM_CLASSES; c++) {
+        assertEquals(e.get(c), a.get(c), 1e-9);
+      }
+    }
+  }
+
+}
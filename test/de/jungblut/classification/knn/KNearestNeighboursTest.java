@@ -7,6 +7,7 @@ import org.junit.Test;
 import de.jungblut.datastructure.ArrayUtils;
 import de.jungblut.math.DoubleVector;
 import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.sparse.SparseDoubleVector;
 import de.jungblut.math.tuple.Tuple;
 import de.jungblut.reader.MushroomReader;
 
@@ -45,4 +46,30 @@ public class KNearestNeighboursTest extends TestCase {
     assertEquals(100, correct);
 
   }
+
+  @Test
+  public void testTrainingAddsExamples() throws Exception {
+    KNearestNeighbours knn = new KNearestNeighbours(2, 1);
+    knn.train(
+        new DoubleVector[] { new DenseDoubleVector(new double[] { 0, 0 }) },
+        new DenseDoubleVector[] { new DenseDoubleVector(new double[] { 0 }) });
+    knn.train(
+        new DoubleVector[] { new DenseDoubleVector(new double[] { 10, 10 }) },
+        new DenseDoubleVector[] { new DenseDoubleVector(new double[] { 1 }) });
+    assertEquals(0d, knn.predict(new DenseDoubleVector(new double[] { 1, 1 }))
+        .get(0));
+    assertEquals(1d, knn.predict(new DenseDoubleVector(new double[] { 9, 9 }))
+        .get(0));
+
+    // sparse examples move all of them into the pointer tree
+    knn.train(
+        new DoubleVector[] { new SparseDoubleVector(new double[] { 0, 10 }) },
+        new DenseDoubleVector[] { new DenseDoubleVector(new double[] { 1 }) });
+    assertEquals(0d, knn.predict(new DenseDoubleVector(new double[] { 1, 1 }))
+        .get(0));
+    assertEquals(1d, knn.predict(new DenseDoubleVector(new double[] { 9, 9 }))
+        .get(0));
+    assertEquals(1d, knn.predict(new DenseDoubleVector(new double[] { 1, 9 }))
+        .get(0));
+  }
 }
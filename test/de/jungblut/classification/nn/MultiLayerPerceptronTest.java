@@ -3,6 +3,7 @@ package de.jungblut.classification.nn;
 import static de.jungblut.math.activation.ActivationFunctionSelector.LINEAR;
 import static de.jungblut.math.activation.ActivationFunctionSelector.SIGMOID;
 import static de.jungblut.math.activation.ActivationFunctionSelector.SOFTMAX;
+import static de.jungblut.math.activation.ActivationFunctionSelector.TANH;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
@@ -11,6 +12,8 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
 
 import junit.framework.TestCase;
 
@@ -18,17 +21,26 @@ import org.junit.Test;
 
 import com.google.common.math.DoubleMath;
 
+import de.jungblut.classification.nn.MultilayerPerceptron.Precision;
+import de.jungblut.classification.nn.MultilayerPerceptron.TrainingType;
 import de.jungblut.datastructure.CollectionInputProvider;
 import de.jungblut.datastructure.InputProvider;
 import de.jungblut.math.DoubleVector;
 import de.jungblut.math.activation.ActivationFunction;
 import de.jungblut.math.activation.ActivationFunctionSelector;
+import de.jungblut.math.backend.CompressedSparseRowMatrix;
+import de.jungblut.math.backend.JBlasMatrixBackend;
+import de.jungblut.math.backend.JavaMatrixBackend;
+import de.jungblut.math.backend.MatrixBackend;
 import de.jungblut.math.dense.DenseDoubleMatrix;
 import de.jungblut.math.dense.DenseDoubleVector;
 import de.jungblut.math.minimize.Fmincg;
 import de.jungblut.math.minimize.GradientDescent;
+import de.jungblut.math.minimize.MiniBatch;
+import de.jungblut.math.minimize.MiniBatchGradientDescent.MiniBatchGradientDescentConfiguration;
 import de.jungblut.math.minimize.ParticleSwarmOptimization;
 import de.jungblut.math.minimize.StochasticGradientDescent;
+import de.jungblut.math.sparse.SparseDoubleVector;
 import de.jungblut.math.tuple.Tuple;
 
 public class MultiLayerPerceptronTest extends TestCase {
@@ -171,6 +183,351 @@ public class MultiLayerPerceptronTest extends TestCase {
     testPredictions(sampleXOR(), mlp);
   }
 
+  @Test
+  public void testCpuBackendFallback() {
+    // without the native library the default type still trains in java
+    MatrixBackend expected = JBlasMatrixBackend.isAvailable()
+        ? JBlasMatrixBackend.get() : JavaMatrixBackend.get();
+    assertSame(expected, TrainingType.CPU.getBackend());
+  }
+
+  @Test
+  public void testParallelCostFunction() {
+    Tuple<DoubleVector[], DenseDoubleVector[]> sample = sampleParable();
+    DenseDoubleMatrix x = new DenseDoubleMatrix(sample.getFirst());
+    DenseDoubleMatrix y = new DenseDoubleMatrix(sample.getSecond());
+    // linear output uses the squared mean error, sigmoid the log loss
+    for (ActivationFunctionSelector output : new ActivationFunctionSelector[] {
+        LINEAR, SIGMOID }) {
+      MultilayerPerceptron mlp = MultilayerPerceptron.MultilayerPerceptronConfiguration
+          .newConfiguration(
+              new int[] { 2, 5, 1 },
+              new ActivationFunction[] { LINEAR.get(), SIGMOID.get(),
+                  output.get() }, new Fmincg(), 1).numThreads(3).build();
+      DenseDoubleVector theta = mlp.getFoldedThetaVector();
+
+      MultilayerPerceptronCostFunction parallelFunction = new MultilayerPerceptronCostFunction(
+          mlp, x, y, 0.1d);
+      Tuple<Double, DoubleVector> parallel = parallelFunction
+          .evaluateCost(theta);
+      // the pool threads are stopped after closing
+      parallelFunction.close();
+      try {
+        parallelFunction.evaluateCost(theta);
+        fail("Closed cost function must not evaluate in parallel!");
+      } catch (RejectedExecutionException e) {
+        // expected
+      }
+      Tuple<Double, DoubleVector> sequential = new MultilayerPerceptronCostFunction(
+          MultilayerPerceptron.MultilayerPerceptronConfiguration
+              .newConfiguration(mlp.getLayers(), mlp.getActivations(),
+                  new Fmincg(), 1).build(), x, y, 0.1d).evaluateCost(theta);
+
+      assertEquals(sequential.getFirst(), parallel.getFirst(),
+          Math.abs(sequential.getFirst()) * 1e-12);
+      for (int i = 0; i < theta.getDimension(); i++) {
+        assertEquals(sequential.getSecond().get(i),
+            parallel.getSecond().get(i),
+            Math.abs(sequential.getSecond().get(i)) * 1e-9 + 1e-12);
+      }
+    }
+  }
+
+  @Test
+  public void testGradientCheck() {
+    Random rnd = new Random(1L);
+    // pairs of output and hidden layer activation
+    ActivationFunctionSelector[][] configurations = new ActivationFunctionSelector[][] {
+        { SIGMOID, SIGMOID }, { SOFTMAX, TANH }, { LINEAR, SIGMOID },
+        { SIGMOID, LINEAR }, { SOFTMAX, LINEAR }, { LINEAR, LINEAR } };
+    for (ActivationFunctionSelector[] configuration : configurations) {
+      ActivationFunctionSelector output = configuration[0];
+      int numOutcomes = output == SOFTMAX ? 3 : 2;
+      int[] layers = new int[] { 3, 4, 3, numOutcomes };
+      MultilayerPerceptron mlp = MultilayerPerceptron.MultilayerPerceptronConfiguration
+          .newConfiguration(
+              layers,
+              new ActivationFunction[] { LINEAR.get(), configuration[1].get(),
+                  SIGMOID.get(), output.get() }, new Fmincg(), 1).build();
+      Tuple<DenseDoubleMatrix, DenseDoubleMatrix> sample = sampleGradientCheck(
+          rnd, 7, 3, numOutcomes, output);
+      DenseDoubleMatrix x = sample.getFirst();
+      DenseDoubleMatrix y = sample.getSecond();
+      DoubleVector theta = mlp.getFoldedThetaVector();
+
+      for (double lambda : new double[] { 0d, 0.5d }) {
+        MultilayerPerceptronCostFunction costFunction = new MultilayerPerceptronCostFunction(
+            mlp, x, y, lambda);
+        DoubleVector gradient = costFunction.evaluateCost(theta).getSecond();
+        final double epsilon = 1e-5;
+        for (int i = 0; i < theta.getDimension(); i++) {
+          DoubleVector plus = theta.deepCopy();
+          plus.set(i, theta.get(i) + epsilon);
+          DoubleVector minus = theta.deepCopy();
+          minus.set(i, theta.get(i) - epsilon);
+          double numerical = (objective(costFunction, plus, layers, lambda,
+              x.getRowCount(), output) - objective(costFunction, minus,
+              layers, lambda, x.getRowCount(), output)) / (2d * epsilon);
+          assertEquals(output + "/" + configuration[1] + " lambda=" + lambda
+              + " parameter " + i, numerical, gradient.get(i), 1e-7);
+        }
+      }
+
+      // the bias weights are not regularized, all others by lambda / m
+      final double lambda = 0.5d;
+      DoubleVector unregularized = new MultilayerPerceptronCostFunction(mlp,
+          x, y, 0d).evaluateCost(theta).getSecond();
+      DoubleVector regularized = new MultilayerPerceptronCostFunction(mlp, x,
+          y, lambda).evaluateCost(theta).getSecond();
+      int offset = 0;
+      for (int layer = 0; layer < layers.length - 1; layer++) {
+        // column major with the bias weights in the first column
+        int biasEnd = offset + layers[layer + 1];
+        int end = offset + layers[layer + 1] * (layers[layer] + 1);
+        for (int i = offset; i < end; i++) {
+          double expected = i < biasEnd ? 0d : lambda / x.getRowCount()
+              * theta.get(i);
+          assertEquals(expected, regularized.get(i) - unregularized.get(i),
+              1e-12);
+        }
+        offset = end;
+      }
+      assertEquals(theta.getDimension(), offset);
+    }
+  }
+
+  @Test
+  public void testXORMiniBatch() {
+    MultilayerPerceptron mlp = MultilayerPerceptron.MultilayerPerceptronConfiguration
+        .newConfiguration(
+            new int[] { 2, 4, 1 },
+            new ActivationFunction[] { LINEAR.get(), SIGMOID.get(),
+                SIGMOID.get() },
+            MiniBatchGradientDescentConfiguration
+                .newConfiguration(streamXORInput(), 2, 0.1).momentum(0.9)
+                .build(), 5000).build();
+    mlp.trainStochastic();
+    testPredictions(sampleXOR(), mlp);
+  }
+
+  @Test
+  public void testMiniBatchCostFunction() {
+    Tuple<DoubleVector[], DenseDoubleVector[]> sample = sampleXOR();
+    MultilayerPerceptron mlp = MultilayerPerceptron.MultilayerPerceptronConfiguration
+        .newConfiguration(
+            new int[] { 2, 3, 1 },
+            new ActivationFunction[] { LINEAR.get(), SIGMOID.get(),
+                SIGMOID.get() }, new Fmincg(), 1).build();
+    DenseDoubleVector theta = mlp.getFoldedThetaVector();
+    Tuple<Double, DoubleVector> expected = new MultilayerPerceptronCostFunction(
+        mlp, new DenseDoubleMatrix(sample.getFirst()), new DenseDoubleMatrix(
+            sample.getSecond()), 0.1d).evaluateCost(theta);
+
+    MultilayerPerceptronCostFunction costFunction = new MultilayerPerceptronCostFunction(
+        mlp, new DenseDoubleMatrix(1, 0), null, 0.1d);
+    // a full batch and a batch that isn't filled up to its capacity
+    for (int capacity : new int[] { 4, 7 }) {
+      MiniBatch batch = new MiniBatch(capacity, 2, 1);
+      for (int i = 0; i < sample.getFirst().length; i++) {
+        batch.add(new Tuple<>(sample.getFirst()[i], sample.getSecond()[i]));
+      }
+      double[] gradient = new double[theta.getDimension()];
+      double cost = costFunction.evaluateCost(theta, batch, gradient);
+      assertEquals(expected.getFirst(), cost, 1e-12);
+      for (int i = 0; i < gradient.length; i++) {
+        assertEquals(expected.getSecond().get(i), gradient[i], 1e-12);
+      }
+    }
+  }
+
+  @Test
+  public void testSparseCostFunction() {
+    Random rnd = new Random(0);
+    DoubleVector[] features = new DoubleVector[30];
+    DenseDoubleVector[] outcome = new DenseDoubleVector[features.length];
+    for (int i = 0; i < features.length; i++) {
+      features[i] = new SparseDoubleVector(20);
+      for (int j = 0; j < 4; j++) {
+        features[i].set(rnd.nextInt(20), rnd.nextGaussian());
+      }
+      outcome[i] = new DenseDoubleVector(new double[] { rnd.nextInt(2) });
+    }
+    DenseDoubleMatrix y = new DenseDoubleMatrix(outcome);
+    // without and with a second hidden layer
+    for (int[] layers : new int[][] { { 20, 4, 1 }, { 20, 4, 3, 1 } }) {
+      ActivationFunction[] activations = new ActivationFunction[layers.length];
+      activations[0] = LINEAR.get();
+      for (int i = 1; i < layers.length; i++) {
+        activations[i] = SIGMOID.get();
+      }
+      MultilayerPerceptron mlp = MultilayerPerceptron.MultilayerPerceptronConfiguration
+          .newConfiguration(layers, activations, new Fmincg(), 1)
+          .numThreads(2).sparseInput().build();
+      DenseDoubleVector theta = mlp.getFoldedThetaVector();
+
+      Tuple<Double, DoubleVector> dense = new MultilayerPerceptronCostFunction(
+          mlp, new DenseDoubleMatrix(features), y, 0.1d).evaluateCost(theta);
+      Tuple<Double, DoubleVector> sparse = new MultilayerPerceptronCostFunction(
+          mlp, CompressedSparseRowMatrix.fromVectors(features), y, 0.1d)
+          .evaluateCost(theta);
+
+      assertEquals(dense.getFirst(), sparse.getFirst(), 1e-12);
+      for (int i = 0; i < theta.getDimension(); i++) {
+        assertEquals(dense.getSecond().get(i), sparse.getSecond().get(i),
+            1e-12);
+      }
+    }
+  }
+
+  @Test
+  public void testNegativeSamplingCostFunction() {
+    Random rnd = new Random(0);
+    DoubleVector[] features = new DoubleVector[10];
+    DenseDoubleVector[] outcome = new DenseDoubleVector[features.length];
+    for (int i = 0; i < features.length; i++) {
+      features[i] = new DenseDoubleVector(new double[] { rnd.nextDouble(),
+          rnd.nextDouble(), rnd.nextDouble() });
+      outcome[i] = new DenseDoubleVector(5);
+      outcome[i].set(rnd.nextInt(5), 1d);
+    }
+    DenseDoubleMatrix x = new DenseDoubleMatrix(features);
+    DenseDoubleMatrix y = new DenseDoubleMatrix(outcome);
+    ActivationFunction[] activations = new ActivationFunction[] {
+        LINEAR.get(), SIGMOID.get(), SOFTMAX.get() };
+    MultilayerPerceptron exact = MultilayerPerceptron.MultilayerPerceptronConfiguration
+        .newConfiguration(new int[] { 3, 4, 5 }, activations, new Fmincg(), 1)
+        .build();
+    // with more samples than negatives all classes are candidates
+    MultilayerPerceptron sampled = MultilayerPerceptron.MultilayerPerceptronConfiguration
+        .newConfiguration(new int[] { 3, 4, 5 }, activations, new Fmincg(), 1)
+        .withWeights(exact.getWeights()).negativeSampling(4).build();
+    DenseDoubleVector theta = exact.getFoldedThetaVector();
+
+    Tuple<Double, DoubleVector> expected = new MultilayerPerceptronCostFunction(
+        exact, x, y, 0.1d).evaluateCost(theta);
+    Tuple<Double, DoubleVector> actual = new MultilayerPerceptronCostFunction(
+        sampled, x, y, 0.1d).evaluateCost(theta);
+
+    assertEquals(expected.getFirst(), actual.getFirst(), 1e-10);
+    for (int i = 0; i < theta.getDimension(); i++) {
+      assertEquals(expected.getSecond().get(i), actual.getSecond().get(i),
+          1e-10);
+    }
+  }
+
+  @Test
+  public void testNegativeSampling() {
+    // every class is indicated by its own input feature
+    final int classes = 20;
+    List<Tuple<DoubleVector, DenseDoubleVector>> list = new ArrayList<>();
+    for (int i = 0; i < classes; i++) {
+      DenseDoubleVector feature = new DenseDoubleVector(classes);
+      feature.set(i, 1d);
+      DenseDoubleVector outcome = new DenseDoubleVector(classes);
+      outcome.set(i, 1d);
+      list.add(new Tuple<DoubleVector, DenseDoubleVector>(feature, outcome));
+    }
+    MultilayerPerceptron mlp = MultilayerPerceptron.MultilayerPerceptronConfiguration
+        .newConfiguration(
+            new int[] { classes, 10, classes },
+            new ActivationFunction[] { LINEAR.get(), SIGMOID.get(),
+                SOFTMAX.get() },
+            MiniBatchGradientDescentConfiguration
+                .newConfiguration(new CollectionInputProvider<>(list), 5, 0.1)
+                .momentum(0.9).build(), 1000).negativeSampling(3).build();
+    mlp.trainStochastic();
+
+    int correct = 0;
+    for (Tuple<DoubleVector, DenseDoubleVector> example : list) {
+      DenseDoubleVector prediction = mlp.predict(example.getFirst());
+      if (prediction.maxIndex() == example.getSecond().maxIndex()) {
+        correct++;
+      }
+    }
+    assertTrue("only " + correct + " correct", correct >= classes * 0.9);
+  }
+
+  @Test
+  public void testBatchPrediction() {
+    MultilayerPerceptron mlp = MultilayerPerceptron.MultilayerPerceptronConfiguration
+        .newConfiguration(
+            new int[] { 3, 4, 5, 2 },
+            new ActivationFunction[] { LINEAR.get(), SIGMOID.get(),
+                TANH.get(), SOFTMAX.get() }, new Fmincg(), 1).build();
+    // more rows than a single block
+    Random rnd = new Random(0);
+    DoubleVector[] features = new DoubleVector[600];
+    for (int i = 0; i < features.length; i++) {
+      features[i] = new DenseDoubleVector(new double[] { rnd.nextDouble(),
+          rnd.nextDouble(), rnd.nextDouble() });
+    }
+    DenseDoubleMatrix batch = mlp.predictBatch(features);
+    DenseDoubleMatrix matrixBatch = mlp.predict(new DenseDoubleMatrix(
+        features));
+    assertEquals(features.length, batch.getRowCount());
+    assertEquals(2, batch.getColumnCount());
+    for (int i = 0; i < features.length; i++) {
+      DenseDoubleVector single = mlp.predict(features[i]);
+      for (int j = 0; j < single.getDimension(); j++) {
+        assertEquals(single.get(j), batch.get(i, j), 1e-12);
+        assertEquals(single.get(j), matrixBatch.get(i, j), 1e-12);
+      }
+    }
+  }
+
+  @Test
+  public void testFloatCostFunction() {
+    Tuple<DoubleVector[], DenseDoubleVector[]> sample = sampleParable();
+    DenseDoubleMatrix x = new DenseDoubleMatrix(sample.getFirst());
+    DenseDoubleMatrix y = new DenseDoubleMatrix(sample.getSecond());
+    MultilayerPerceptron mlp = MultilayerPerceptron.MultilayerPerceptronConfiguration
+        .newConfiguration(
+            new int[] { 2, 5, 1 },
+            new ActivationFunction[] { LINEAR.get(), SIGMOID.get(),
+                LINEAR.get() }, new Fmincg(), 1).build();
+    DenseDoubleVector theta = mlp.getFoldedThetaVector();
+
+    Tuple<Double, DoubleVector> expected = new MultilayerPerceptronCostFunction(
+        mlp, x, y, 0.1d).evaluateCost(theta);
+    Tuple<Double, DoubleVector> single = new MultilayerPerceptronCostFunction(
+        MultilayerPerceptron.MultilayerPerceptronConfiguration
+            .newConfiguration(mlp.getLayers(), mlp.getActivations(),
+                new Fmincg(), 1).precision(Precision.FLOAT).numThreads(2)
+            .build(), x, y, 0.1d).evaluateCost(theta);
+
+    assertEquals(expected.getFirst(), single.getFirst(),
+        Math.abs(expected.getFirst()) * 1e-5);
+    for (int i = 0; i < theta.getDimension(); i++) {
+      assertEquals(expected.getSecond().get(i), single.getSecond().get(i),
+          Math.abs(expected.getSecond().get(i)) * 1e-3 + 1e-3);
+    }
+  }
+
+  @SuppressWarnings("resource")
+  @Test
+  public void testFloatSerialization() throws Exception {
+    MultilayerPerceptron mlp = testXorSigmoidNetwork(MultilayerPerceptron.MultilayerPerceptronConfiguration
+        .newConfiguration(
+            new int[] { 2, 4, 1 },
+            new ActivationFunction[] { LINEAR.get(), SIGMOID.get(),
+                SIGMOID.get() }, new Fmincg(), 100)
+        .precision(Precision.FLOAT).build());
+    File tmp = File.createTempFile("neuraltest", ".tmp");
+    DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp));
+    MultilayerPerceptron.serialize(mlp, out);
+    out.close();
+    DataInputStream in = new DataInputStream(new FileInputStream(tmp));
+    MultilayerPerceptron deserialized = MultilayerPerceptron.deserialize(in);
+    in.close();
+
+    assertEquals(Precision.FLOAT, deserialized.getPrecision());
+    // the weights are already rounded, so nothing is lost in the file
+    for (DoubleVector v : sampleXOR().getFirst()) {
+      assertEquals(mlp.predict(v).get(0), deserialized.predict(v).get(0));
+    }
+    testPredictions(sampleXOR(), deserialized);
+  }
+
   @SuppressWarnings("resource")
   @Test
   public void testSerialization() throws Exception {
@@ -184,6 +541,19 @@ public class MultiLayerPerceptronTest extends TestCase {
     in.close();
   }
 
+  @Test
+  public void testMappedSerialization() throws Exception {
+    MultilayerPerceptron mlp = testXorSigmoidNetwork(null);
+    File tmp = File.createTempFile("neuraltest", ".tmp");
+    tmp.deleteOnExit();
+    MultilayerPerceptron.serializeMapped(mlp, tmp);
+    MultilayerPerceptron deserialized = MultilayerPerceptron
+        .deserializeMapped(tmp);
+    for (DoubleVector v : sampleXOR().getFirst()) {
+      assertEquals(mlp.predict(v).get(0), deserialized.predict(v).get(0));
+    }
+  }
+
   private MultilayerPerceptron testXorSigmoidNetwork(MultilayerPerceptron mlp) {
     if (mlp == null) {
       mlp = MultilayerPerceptron.MultilayerPerceptronConfiguration
@@ -234,6 +604,65 @@ public class MultiLayerPerceptronTest extends TestCase {
     return absDifference;
   }
 
+  /**
+   * @return the objective whose gradient the cost function computes. The
+   *         reported softmax error is the sum of y * log(h), the negative cross
+   *         entropy. The squared mean error of a linear output is reported as
+   *         sum(d^2) / m^2, but the gradient belongs to sum(d^2) / (2m).
+   */
+  private static double objective(MultilayerPerceptronCostFunction function,
+      DoubleVector theta, int[] layers, double lambda, int m,
+      ActivationFunctionSelector output) {
+    double cost = function.evaluateCost(theta).getFirst();
+    if (output == SIGMOID) {
+      return cost;
+    }
+    double regularization = 0d;
+    int offset = 0;
+    for (int layer = 0; layer < layers.length - 1; layer++) {
+      int biasEnd = offset + layers[layer + 1];
+      int end = offset + layers[layer + 1] * (layers[layer] + 1);
+      for (int i = biasEnd; i < end; i++) {
+        regularization += theta.get(i) * theta.get(i);
+      }
+      offset = end;
+    }
+    regularization *= lambda / (2d * m);
+    if (output == SOFTMAX) {
+      return regularization - (cost - regularization);
+    }
+    return (cost - regularization) * m / 2d + regularization;
+  }
+
+  /**
+   * Samples features and outcomes that match the error function of the given
+   * output layer: one-hot for softmax, binary for sigmoid and real valued for
+   * a linear output.
+   */
+  private Tuple<DenseDoubleMatrix, DenseDoubleMatrix> sampleGradientCheck(
+      Random rnd, int rows, int numFeatures, int numOutcomes,
+      ActivationFunctionSelector output) {
+    DoubleVector[] features = new DoubleVector[rows];
+    DoubleVector[] outcome = new DoubleVector[rows];
+    for (int i = 0; i < rows; i++) {
+      features[i] = new DenseDoubleVector(numFeatures);
+      for (int j = 0; j < numFeatures; j++) {
+        features[i].set(j, rnd.nextGaussian());
+      }
+      outcome[i] = new DenseDoubleVector(numOutcomes);
+      if (output == SOFTMAX) {
+        outcome[i].set(rnd.nextInt(numOutcomes), 1d);
+      } else {
+        for (int j = 0; j < numOutcomes; j++) {
+          outcome[i].set(j, output == LINEAR ? rnd.nextGaussian() : rnd
+              .nextInt(2));
+        }
+      }
+    }
+    return new Tuple<>(new DenseDoubleMatrix(features), new DenseDoubleMatrix(
+        outcome));
+  }
+
   private Tuple<DoubleVector[], DenseDoubleVector[]> sampleLinear() {
     // sample some points from 0 to 2000
     DoubleVector[] train = new DoubleVector[2000];
@@ -0,0 +1,92 @@
+package de.jungblut.classification.nn;
+
+import static de.jungblut.math.activation.ActivationFunctionSelector.LINEAR;
+import static de.jungblut.math.activation.ActivationFunctionSelector.SIGMOID;
+import static de.jungblut.math.activation.ActivationFunctionSelector.SOFTMAX;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.activation.ActivationFunction;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.minimize.Fmincg;
+import de.jungblut.math.sparse.SparseDoubleVector;
+
+public class QuantizedMultilayerPerceptronTest extends TestCase {
+
+  static {
+    MultilayerPerceptron.SEED = 0L;
+  }
+
+  @Test
+  public void testPredictions() {
+    MultilayerPerceptron mlp = newNetwork();
+    QuantizedMultilayerPerceptron quantized = QuantizedMultilayerPerceptron
+        .quantize(mlp);
+    Random rnd = new Random(0);
+    for (int i = 0; i < 100; i++) {
+      DoubleVector v = new DenseDoubleVector(10);
+      for (int k = 0; k < v.getDimension(); k++) {
+        v.set(k, rnd.nextDouble());
+      }
+      DoubleVector expected = mlp.predict(v);
+      DoubleVector actual = quantized.predict(v);
+      for (int k = 0; k < expected.getDimension(); k++) {
+        assertEquals(expected.get(k), actual.get(k), 0.02);
+      }
+    }
+
+    // sparse features are predicted the same as dense ones
+    SparseDoubleVector sparse = new SparseDoubleVector(10);
+    sparse.set(3, 0.5d);
+    sparse.set(7, 1d);
+    DoubleVector dense = new DenseDoubleVector(sparse.toArray());
+    assertTrue(Arrays.equals(quantized.predict(dense).toArray(), quantized
+        .predict(sparse).toArray()));
+
+    // a byte per weight, the bias and scale of each unit as floats
+    assertEquals(10 * 16 + 8 * 16 + 16 * 3 + 8 * 3,
+        quantized.getWeightBytes());
+  }
+
+  @Test
+  public void testSerialization() throws Exception {
+    QuantizedMultilayerPerceptron quantized = QuantizedMultilayerPerceptron
+        .quantize(newNetwork());
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    QuantizedMultilayerPerceptron.serialize(quantized, out);
+    out.close();
+    QuantizedMultilayerPerceptron deserialized = QuantizedMultilayerPerceptron
+        .deserialize(new DataInputStream(new ByteArrayInputStream(bytes
+            .toByteArray())));
+
+    Random rnd = new Random(1);
+    for (int i = 0; i < 10; i++) {
+      DoubleVector v = new DenseDoubleVector(10);
+      for (int k = 0; k < v.getDimension(); k++) {
+        v.set(k, rnd.nextDouble());
+      }
+      assertTrue(Arrays.equals(quantized.predict(v).toArray(), deserialized
+          .predict(v).toArray()));
+    }
+  }
+
+  private static MultilayerPerceptron newNetwork() {
+    return MultilayerPerceptron.MultilayerPerceptronConfiguration
+        .newConfiguration(
+            new int[] { 10, 16, 3 },
+            new ActivationFunction[] { LINEAR.get(), SIGMOID.get(),
+                SOFTMAX.get() }, new Fmincg(), 1).build();
+  }
+
+}
@@ -0,0 +1,93 @@
+package de.jungblut.classification.regression;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.datastructure.CollectionInputProvider;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.sparse.SparseDoubleVector;
+import de.jungblut.math.tuple.Tuple;
+
+public class FTRLLogisticRegressionTest extends TestCase {
+
+  private static final int NUM_FEATURES = 1000;
+
+  @Test
+  public void testLearnsSparseModel() {
+    Random rnd = new Random(0);
+    List<Tuple<DoubleVector, DenseDoubleVector>> train = generate(rnd, 20000);
+    List<Tuple<DoubleVector, DenseDoubleVector>> test = generate(rnd, 2000);
+
+    FTRLLogisticRegression clf = new FTRLLogisticRegression(0.1, 1, 10, 1);
+    CollectionInputProvider<Tuple<DoubleVector, DenseDoubleVector>> provider = new CollectionInputProvider<>(
+        train);
+    double firstPass = clf.train(provider);
+    double secondPass = clf.train(provider);
+    assertTrue(secondPass < firstPass);
+
+    int correct = 0;
+    for (Tuple<DoubleVector, DenseDoubleVector> example : test) {
+      if (clf.getPredictedClass(example.getFirst(), 0.5d) == example
+          .getSecond().get(0)) {
+        correct++;
+      }
+    }
+    assertTrue("Accuracy was " + correct / (double) test.size(),
+        correct > 0.9 * test.size());
+
+    // only the two informative features and the intercept survive the L1
+    DoubleVector weights = clf.getWeights(NUM_FEATURES);
+    assertEquals(NUM_FEATURES + 1, weights.getDimension());
+    assertTrue(weights.get(1) > 0d);
+    assertTrue(weights.get(2) < 0d);
+    assertTrue("Non-zero weights: " + clf.getNumNonZeroWeights(),
+        clf.getNumNonZeroWeights() < 20);
+  }
+
+  @Test
+  public void testSingleUpdates() {
+    FTRLLogisticRegression clf = new FTRLLogisticRegression(0.5, 1, 0, 0);
+    DoubleVector positive = new SparseDoubleVector(new double[] { 1, 0 });
+    DoubleVector negative = new SparseDoubleVector(new double[] { 0, 1 });
+    // an unseen model predicts 0.5
+    assertEquals(0.5d, clf.predict(positive).get(0), 1e-12);
+    assertEquals(Math.log(2), clf.update(positive, 1d), 1e-12);
+    for (int i = 0; i < 100; i++) {
+      clf.update(positive, 1d);
+      clf.update(negative, 0d);
+    }
+    assertEquals(1, clf.getPredictedClass(positive, 0.5d));
+    assertEquals(0, clf.getPredictedClass(negative, 0.5d));
+  }
+
+  /**
+   * Rows with a few random active features, the label is given by which of the
+   * first two features is active.
+   */
+  private static List<Tuple<DoubleVector, DenseDoubleVector>> generate(
+      Random rnd, int rows) {
+    List<Tuple<DoubleVector, DenseDoubleVector>> list = new ArrayList<>(rows);
+    for (int i = 0; i < rows; i++) {
+      DoubleVector x = new SparseDoubleVector(NUM_FEATURES);
+      double label = rnd.nextBoolean() ? 1d : 0d;
+      boolean first = label == 1d;
+      // 5% label noise
+      if (rnd.nextDouble() < 0.05) {
+        first = !first;
+      }
+      x.set(first ? 0 : 1, 1d);
+      for (int j = 0; j < 5; j++) {
+        x.set(2 + rnd.nextInt(NUM_FEATURES - 2), 1d);
+      }
+      list.add(new Tuple<>(x, new DenseDoubleVector(new double[] { label })));
+    }
+    return list;
+  }
+
+}
@@ -1,5 +1,7 @@
 package de.jungblut.classification.regression;
 
+import java.io.File;
+
 import junit.framework.TestCase;
 
 import org.junit.Test;
@@ -10,9 +12,11 @@ import de.jungblut.classification.Classifier;
 import de.jungblut.classification.Evaluator;
 import de.jungblut.classification.Evaluator.EvaluationResult;
 import de.jungblut.math.DoubleVector;
+import de.jungblut.math.backend.CompressedSparseRowMatrix;
 import de.jungblut.math.dense.DenseDoubleMatrix;
 import de.jungblut.math.dense.DenseDoubleVector;
 import de.jungblut.math.minimize.Fmincg;
+import de.jungblut.math.sparse.SparseDoubleVector;
 import de.jungblut.math.tuple.Tuple;
 import de.jungblut.reader.CsvDatasetReader;
 
@@ -79,6 +83,73 @@ public class LogisticRegressionTest extends TestCase {
         DoubleMath.fuzzyEquals(trainingError, 11, 2d));
   }
 
+  @Test
+  public void testSparseCostFunction() {
+    LogisticRegressionCostFunction dense = new LogisticRegressionCostFunction(
+        new DenseDoubleMatrix(features), y, 1d);
+    LogisticRegressionCostFunction sparse = new LogisticRegressionCostFunction(
+        CompressedSparseRowMatrix.fromVectors(sparseFeatures()), y, 1d);
+    DoubleVector theta = new DenseDoubleVector(new double[] { -1, 0.02, 0.01 });
+    Tuple<Double, DoubleVector> expected = dense.evaluateCost(theta);
+    Tuple<Double, DoubleVector> actual = sparse.evaluateCost(theta);
+    assertEquals(expected.getFirst(), actual.getFirst(), 1e-10);
+    for (int i = 0; i < theta.getDimension(); i++) {
+      assertEquals(expected.getSecond().get(i), actual.getSecond().get(i),
+          1e-10);
+    }
+    double[] gradient = new double[3];
+    assertEquals(expected.getFirst(), sparse.evaluateCost(theta, gradient),
+        1e-10);
+    assertEquals(expected.getSecond().get(1), gradient[1], 1e-10);
+  }
+
+  @Test
+  public void testSparsePredictions() {
+    DoubleVector[] sparseFeatures = sparseFeatures();
+    LogisticRegression reg = new LogisticRegression(1.0d, new Fmincg(), 1000,
+        false);
+    // sparse vectors are trained in CSR format
+    reg.train(sparseFeatures, outcome);
+    DoubleVector predict = reg.predict(
+        CompressedSparseRowMatrix.fromVectors(sparseFeatures), 0.5d);
+    double wrongPredictions = predict.subtract(y).abs().sum();
+    assertTrue(DoubleMath.fuzzyEquals(wrongPredictions, 11, 2d));
+    for (int i = 0; i < features.length; i++) {
+      assertEquals(predict.get(i),
+          (double) reg.getPredictedClass(sparseFeatures[i], 0.5d));
+      assertEquals(reg.predict(sparseFeatures[i]).get(0),
+          reg.predict(features[i]).get(0), 1e-12);
+    }
+  }
+
+  @Test
+  public void testMappedSerialization() throws Exception {
+    LogisticRegression reg = new LogisticRegression(1.0d, new Fmincg(), 1000,
+        false);
+    reg.train(x, y);
+
+    File tmp = File.createTempFile("logreg", ".tmp");
+    tmp.deleteOnExit();
+    LogisticRegression.serializeMapped(reg, tmp);
+    LogisticRegression mapped = LogisticRegression.deserializeMapped(tmp);
+
+    DoubleVector expected = reg.predict(x, 0.5d);
+    DoubleVector actual = mapped.predict(x, 0.5d);
+    for (int i = 0; i < features.length; i++) {
+      assertEquals(expected.get(i), actual.get(i));
+      assertEquals(reg.predict(features[i]).get(0),
+          mapped.predict(features[i]).get(0), 1e-12);
+    }
+  }
+
+  private static DoubleVector[] sparseFeatures() {
+    DoubleVector[] sparse = new DoubleVector[features.length];
+    for (int i = 0; i < features.length; i++) {
+      sparse[i] = new SparseDoubleVector(features[i].toArray());
+    }
+    return sparse;
+  }
+
   @Test
   public void testRegressionEvaluation() {
     Classifier clf = new LogisticRegression(1.0d, new Fmincg(), 1000, false);
@@ -0,0 +1,143 @@
+package de.jungblut.datastructure;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.datastructure.KDTree.VectorDistanceTuple;
+import de.jungblut.distance.EuclidianDistance;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+
+public class FlatKDTreeTest extends TestCase {
+
+  static final DoubleVector[] POINTS = new DoubleVector[] {
+      new DenseDoubleVector(new double[] { 2, 3 }),
+      new DenseDoubleVector(new double[] { 5, 4 }),
+      new DenseDoubleVector(new double[] { 9, 6 }),
+      new DenseDoubleVector(new double[] { 4, 7 }),
+      new DenseDoubleVector(new double[] { 8, 1 }),
+      new DenseDoubleVector(new double[] { 7, 2 }), };
+
+  @Test
+  public void testKNearestNeighbours() throws Exception {
+    FlatKDTree<Object> tree = new FlatKDTree<>(Arrays.asList(POINTS));
+    assertEquals(6, tree.size());
+    assertEquals(2, tree.getDimension());
+
+    List<VectorDistanceTuple<Object>> nearestNeighbours = tree
+        .getNearestNeighbours(new DenseDoubleVector(new double[] { 0, 0 }), 1);
+    assertEquals(1, nearestNeighbours.size());
+    assertTrue(POINTS[0] == nearestNeighbours.get(0).getVector());
+  }
+
+  @Test
+  public void testKNearestNeighboursRadiusSearch() throws Exception {
+    FlatKDTree<Integer> tree = new FlatKDTree<>(Arrays.asList(POINTS),
+        Arrays.asList(0, 1, 2, 3, 4, 5));
+
+    double maxDist = new EuclidianDistance().measureDistance(POINTS[0],
+        POINTS[1]);
+    List<VectorDistanceTuple<Integer>> nearestNeighbours = tree
+        .getNearestNeighbours(new DenseDoubleVector(new double[] { 5, 4 }),
+            maxDist);
+    Collections.sort(nearestNeighbours);
+    Collections.reverse(nearestNeighbours);
+    assertEquals(4, nearestNeighbours.size());
+    assertEquals(1, nearestNeighbours.get(0).getValue().intValue());
+    assertEquals(0d, nearestNeighbours.get(0).getDistance());
+    assertEquals(5, nearestNeighbours.get(1).getValue().intValue());
+    assertEquals(3, nearestNeighbours.get(2).getValue().intValue());
+    assertEquals(0, nearestNeighbours.get(3).getValue().intValue());
+    for (VectorDistanceTuple<Integer> neighbour : nearestNeighbours) {
+      assertTrue(neighbour.getDistance() <= maxDist);
+      assertTrue(POINTS[neighbour.getValue()] == neighbour.getVector());
+    }
+  }
+
+  @Test
+  public void testEmptyTree() throws Exception {
+    FlatKDTree<Object> tree = new FlatKDTree<>(new ArrayList<DoubleVector>());
+    assertEquals(0, tree.size());
+    assertTrue(tree.getNearestNeighbours(
+        new DenseDoubleVector(new double[] { 1, 2 }), 5).isEmpty());
+  }
+
+  @Test
+  public void testAgainstBruteForce() throws Exception {
+    Random rnd = new Random(42L);
+    for (int dimension : new int[] { 1, 2, 3, 8 }) {
+      List<DoubleVector> points = new ArrayList<>();
+      List<Integer> indices = new ArrayList<>();
+      for (int i = 0; i < 2000; i++) {
+        // some duplicate coordinates to test the partitioning on ties
+        points.add(randomVector(rnd, dimension, i % 3 == 0));
+        indices.add(i);
+      }
+      FlatKDTree<Integer> tree = new FlatKDTree<>(points, indices);
+
+      for (int q = 0; q < 100; q++) {
+        DoubleVector query = randomVector(rnd, dimension, false);
+        double[] distances = new double[points.size()];
+        for (int i = 0; i < distances.length; i++) {
+          distances[i] = EuclidianDistance.get().measureDistance(
+              points.get(i), query);
+        }
+        double[] sorted = distances.clone();
+        Arrays.sort(sorted);
+
+        int k = 1 + rnd.nextInt(20);
+        List<VectorDistanceTuple<Integer>> neighbours = tree
+            .getNearestNeighbours(query, k);
+        assertEquals(k, neighbours.size());
+        double[] found = distancesOf(neighbours, distances);
+        for (int i = 0; i < k; i++) {
+          assertEquals(sorted[i], found[i], 1e-9);
+        }
+
+        double radius = rnd.nextDouble();
+        int inRadius = 0;
+        for (double distance : distances) {
+          if (distance <= radius) {
+            inRadius++;
+          }
+        }
+        assertEquals(inRadius, tree.getNearestNeighbours(query, radius).size());
+        assertEquals(Math.min(k, inRadius),
+            tree.getNearestNeighbours(query, k, radius).size());
+      }
+    }
+  }
+
+  static DoubleVector randomVector(Random rnd, int dimension,
+      boolean discrete) {
+    DoubleVector v = new DenseDoubleVector(dimension);
+    for (int d = 0; d < dimension; d++) {
+      v.set(d, discrete ? rnd.nextInt(3) : rnd.nextGaussian());
+    }
+    return v;
+  }
+
+  /**
+   * Sorts the distances of the neighbours and checks them against the brute
+   * force distances of their points.
+   */
+  static double[] distancesOf(List<VectorDistanceTuple<Integer>> neighbours,
+      double[] distances) {
+    double[] result = new double[neighbours.size()];
+    for (int i = 0; i < result.length; i++) {
+      VectorDistanceTuple<Integer> neighbour = neighbours.get(i);
+      result[i] = neighbour.getDistance();
+      assertEquals(distances[neighbour.getValue()], result[i], 1e-9);
+    }
+    Arrays.sort(result);
+    return result;
+  }
+
+}
@@ -0,0 +1,108 @@
+package de.jungblut.math.activation;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+public class ActivationFunctionTest extends TestCase {
+
+  private static final int ROWS = 4;
+  private static final int COLUMNS = 3;
+  private static final int OFFSET = 2;
+
+  @Test
+  public void testInPlaceMatchesScalar() {
+    ActivationFunction[] functions = new ActivationFunction[] {
+        new SigmoidActivationFunction(), new TanhActivationFunction(),
+        new ElliotActivationFunction(), new LinearActivationFunction(),
+        new LogActivationFunction() };
+    double[] input = randomInput();
+    for (ActivationFunction f : functions) {
+      double[] applied = input.clone();
+      f.applyInPlace(applied, OFFSET, ROWS, COLUMNS);
+      double[] gradient = input.clone();
+      f.gradientInPlace(gradient, OFFSET, ROWS, COLUMNS);
+      double[] fused = input.clone();
+      double[] fusedGradient = new double[ROWS * COLUMNS];
+      f.applyWithGradient(fused, OFFSET, fusedGradient, 0, ROWS, COLUMNS);
+
+      for (int i = 0; i < OFFSET; i++) {
+        assertEquals(input[i], applied[i]);
+        assertEquals(input[i], gradient[i]);
+        assertEquals(input[i], fused[i]);
+      }
+      for (int i = OFFSET; i < input.length; i++) {
+        String msg = f.getClass().getSimpleName();
+        assertEquals(msg, f.apply(input[i]), applied[i], 1e-10);
+        assertEquals(msg, f.apply(input[i]), fused[i], 1e-10);
+        assertEquals(msg, f.gradient(input[i]), gradient[i], 1e-10);
+        assertEquals(msg, f.gradient(input[i]), fusedGradient[i - OFFSET],
+            1e-10);
+      }
+    }
+  }
+
+  @Test
+  public void testSoftMaxInPlace() {
+    double[] input = randomInput();
+    double[] applied = input.clone();
+    new SoftMaxActivationFunction().applyInPlace(applied, OFFSET, ROWS,
+        COLUMNS);
+    for (int row = 0; row < ROWS; row++) {
+      double sum = 0d;
+      double expSum = 0d;
+      for (int col = 0; col < COLUMNS; col++) {
+        sum += applied[OFFSET + col * ROWS + row];
+        expSum += Math.exp(input[OFFSET + col * ROWS + row]);
+      }
+      assertEquals(1d, sum, 1e-10);
+      for (int col = 0; col < COLUMNS; col++) {
+        int index = OFFSET + col * ROWS + row;
+        assertEquals(Math.exp(input[index]) / expSum, applied[index], 1e-10);
+      }
+    }
+  }
+
+  @Test
+  public void testSinglePrecision() {
+    ActivationFunction[] functions = new ActivationFunction[] {
+        new SigmoidActivationFunction(), new TanhActivationFunction(),
+        new ElliotActivationFunction(), new LinearActivationFunction(),
+        new SoftMaxActivationFunction() };
+    double[] input = randomInput();
+    float[] floatInput = new float[input.length];
+    for (int i = 0; i < input.length; i++) {
+      floatInput[i] = (float) input[i];
+    }
+    for (ActivationFunction f : functions) {
+      double[] expected = input.clone();
+      double[] expectedGradient = new double[ROWS * COLUMNS];
+      f.applyWithGradient(expected, OFFSET, expectedGradient, 0, ROWS,
+          COLUMNS);
+      float[] applied = floatInput.clone();
+      f.applyInPlace(applied, OFFSET, ROWS, COLUMNS);
+      float[] fused = floatInput.clone();
+      float[] fusedGradient = new float[ROWS * COLUMNS];
+      f.applyWithGradient(fused, OFFSET, fusedGradient, 0, ROWS, COLUMNS);
+      for (int i = OFFSET; i < input.length; i++) {
+        String msg = f.getClass().getSimpleName();
+        assertEquals(msg, expected[i], applied[i], 1e-5);
+        assertEquals(msg, expected[i], fused[i], 1e-5);
+        assertEquals(msg, expectedGradient[i - OFFSET],
+            fusedGradient[i - OFFSET], 1e-5);
+      }
+    }
+  }
+
+  private static double[] randomInput() {
+    Random rnd = new Random(0);
+    double[] input = new double[OFFSET + ROWS * COLUMNS];
+    for (int i = 0; i < input.length; i++) {
+      input[i] = rnd.nextGaussian() * 3d;
+    }
+    return input;
+  }
+
+}
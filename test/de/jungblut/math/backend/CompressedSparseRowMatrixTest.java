@@ -0,0 +1,129 @@
+package de.jungblut.math.backend;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.sparse.SparseDoubleVector;
+
+public class CompressedSparseRowMatrixTest extends TestCase {
+
+  private static final double[][] DENSE = new double[][] { { 0, 1, 0, 2 },
+      { 0, 0, 0, 0 }, { 3, 0, 4, 0 } };
+
+  @Test
+  public void testFromVectors() {
+    CompressedSparseRowMatrix x = CompressedSparseRowMatrix
+        .fromVectors(vectors());
+    assertEquals(3, x.getRowCount());
+    assertEquals(4, x.getColumnCount());
+    assertEquals(4, x.getNumNonZeros());
+    assertEquals(0, x.getRowPointers()[0]);
+    assertEquals(2, x.getRowPointers()[1]);
+    assertEquals(2, x.getRowPointers()[2]);
+    assertEquals(4, x.getRowPointers()[3]);
+  }
+
+  @Test
+  public void testMultiplyTransposed() {
+    CompressedSparseRowMatrix x = CompressedSparseRowMatrix
+        .fromVectors(vectors());
+    final int n = 2;
+    Random rnd = new Random(0);
+    // B is a (n x 4) matrix starting at offset one
+    double[] b = new double[1 + n * 4];
+    for (int i = 0; i < b.length; i++) {
+      b[i] = rnd.nextGaussian();
+    }
+    // C starts at offset two and is accumulated into
+    double[] c = new double[2 + 3 * n];
+    for (int i = 0; i < c.length; i++) {
+      c[i] = 1d;
+    }
+    x.multiplyTransposed(null, b, 1, n, n, c, 2, 3);
+
+    assertEquals(1d, c[0]);
+    assertEquals(1d, c[1]);
+    for (int row = 0; row < 3; row++) {
+      for (int j = 0; j < n; j++) {
+        double expected = 1d;
+        for (int col = 0; col < 4; col++) {
+          expected += DENSE[row][col] * b[1 + col * n + j];
+        }
+        assertEquals(expected, c[2 + j * 3 + row], 1e-12);
+      }
+    }
+  }
+
+  @Test
+  public void testTransposeMultiply() {
+    CompressedSparseRowMatrix x = CompressedSparseRowMatrix
+        .fromVectors(vectors());
+    final int n = 2;
+    Random rnd = new Random(0);
+    // A is a (3 x n) matrix
+    double[] a = new double[3 * n];
+    for (int i = 0; i < a.length; i++) {
+      a[i] = rnd.nextGaussian();
+    }
+    // replace the values as if the first one was dropped out
+    double[] values = x.getValues().clone();
+    values[0] = 0d;
+    final int droppedColumn = x.getColumnIndices()[0];
+    double[] g = new double[1 + n * 4];
+    x.transposeMultiply(a, 0, 3, n, values, g, 1, n);
+
+    assertEquals(0d, g[0]);
+    for (int j = 0; j < n; j++) {
+      for (int col = 0; col < 4; col++) {
+        double expected = 0d;
+        for (int row = 0; row < 3; row++) {
+          double v = row == 0 && col == droppedColumn ? 0d : DENSE[row][col];
+          expected += a[j * 3 + row] * v;
+        }
+        assertEquals(expected, g[1 + col * n + j], 1e-12);
+      }
+    }
+  }
+
+  @Test
+  public void testSlice() {
+    CompressedSparseRowMatrix x = CompressedSparseRowMatrix
+        .fromVectors(vectors());
+    CompressedSparseRowMatrix slice = x.slice(1, 2);
+    assertEquals(2, slice.getRowCount());
+    assertEquals(4, slice.getColumnCount());
+    assertEquals(2, slice.getNumNonZeros());
+    assertEquals(0, slice.getRowPointers()[0]);
+    assertEquals(0, slice.getRowPointers()[1]);
+    assertEquals(2, slice.getRowPointers()[2]);
+
+    double[] c = new double[2];
+    // multiply with a (1 x 4) matrix of ones to get the row sums
+    slice.multiplyTransposed(null, new double[] { 1, 1, 1, 1 }, 0, 1, 1, c,
+        0, 2);
+    assertEquals(0d, c[0]);
+    assertEquals(7d, c[1]);
+  }
+
+  private static DoubleVector[] vectors() {
+    DoubleVector[] vectors = new DoubleVector[DENSE.length];
+    for (int i = 0; i < DENSE.length; i++) {
+      // mix dense and sparse rows
+      DoubleVector v = i % 2 == 0 ? new SparseDoubleVector(DENSE[i].length)
+          : new DenseDoubleVector(DENSE[i].length);
+      for (int j = 0; j < DENSE[i].length; j++) {
+        if (DENSE[i][j] != 0d) {
+          v.set(j, DENSE[i][j]);
+        }
+      }
+      vectors[i] = v;
+    }
+    return vectors;
+  }
+
+}
@@ -0,0 +1,88 @@
+package de.jungblut.math.backend;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleMatrix;
+
+public class JavaMatrixBackendTest extends TestCase {
+
+  @Test
+  public void testGemm() {
+    Random rnd = new Random(0);
+    DenseDoubleMatrix a = new DenseDoubleMatrix(4, 3, rnd);
+    DenseDoubleMatrix b = new DenseDoubleMatrix(3, 5, rnd);
+    DenseDoubleMatrix expected = (DenseDoubleMatrix) a.multiply(b);
+
+    check(expected, a, b, false, false);
+    check(expected, (DenseDoubleMatrix) a.transpose(), b, true, false);
+    check(expected, a, (DenseDoubleMatrix) b.transpose(), false, true);
+    check(expected, (DenseDoubleMatrix) a.transpose(),
+        (DenseDoubleMatrix) b.transpose(), true, true);
+  }
+
+  @Test
+  public void testGemmAlphaBeta() {
+    DenseDoubleMatrix a = new DenseDoubleMatrix(new double[][] { { 1, 2 },
+        { 3, 4 } });
+    // offset of one, the first element must stay untouched
+    double[] c = new double[] { -1d, 1d, 1d, 1d, 1d };
+    double[] arr = AbstractMatrixBackend.toColumnMajor(a);
+    JavaMatrixBackend.get().gemm(false, false, 2, 2, 2, 2d, arr, 0, 2, arr, 0,
+        2, 1d, c, 1, 2);
+    // a*a = [[7, 10], [15, 22]] in column major order, times two plus one
+    assertEquals(-1d, c[0]);
+    assertEquals(15d, c[1]);
+    assertEquals(31d, c[2]);
+    assertEquals(21d, c[3]);
+    assertEquals(45d, c[4]);
+  }
+
+  private static void check(DenseDoubleMatrix expected, DenseDoubleMatrix a,
+      DenseDoubleMatrix b, boolean transposeA, boolean transposeB) {
+    DoubleMatrix result = JavaMatrixBackend.get().multiply(a, b, transposeA,
+        transposeB);
+    // run the raw gemm through the copying base implementation
+    double[] c = new double[expected.getRowCount()
+        * expected.getColumnCount()];
+    JavaMatrixBackend.get().gemm(transposeA, transposeB,
+        expected.getRowCount(), expected.getColumnCount(),
+        transposeA ? a.getRowCount() : a.getColumnCount(),
+        1d, AbstractMatrixBackend.toColumnMajor(a), 0, a.getRowCount(),
+        AbstractMatrixBackend.toColumnMajor(b), 0, b.getRowCount(), 0d, c, 0,
+        expected.getRowCount());
+    DoubleMatrix raw = new DenseDoubleMatrix(c, expected.getRowCount(),
+        expected.getColumnCount());
+    for (int row = 0; row < expected.getRowCount(); row++) {
+      for (int col = 0; col < expected.getColumnCount(); col++) {
+        assertEquals(expected.get(row, col), result.get(row, col), 1e-10);
+        assertEquals(expected.get(row, col), raw.get(row, col), 1e-10);
+      }
+    }
+
+    // and once more in single precision
+    float[] floatC = new float[c.length];
+    JavaMatrixBackend.get().gemm(transposeA, transposeB,
+        expected.getRowCount(), expected.getColumnCount(),
+        transposeA ? a.getRowCount() : a.getColumnCount(), 1f,
+        toFloat(AbstractMatrixBackend.toColumnMajor(a)), 0, a.getRowCount(),
+        toFloat(AbstractMatrixBackend.toColumnMajor(b)), 0, b.getRowCount(),
+        0f, floatC, 0, expected.getRowCount());
+    for (int i = 0; i < c.length; i++) {
+      assertEquals(c[i], floatC[i], 1e-5);
+    }
+  }
+
+  private static float[] toFloat(double[] arr) {
+    float[] result = new float[arr.length];
+    for (int i = 0; i < arr.length; i++) {
+      result[i] = (float) arr[i];
+    }
+    return result;
+  }
+
+}
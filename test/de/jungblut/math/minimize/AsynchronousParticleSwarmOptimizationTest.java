@@ -0,0 +1,106 @@
+package de.jungblut.math.minimize;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import com.google.common.math.DoubleMath;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.tuple.Tuple;
+
+public class AsynchronousParticleSwarmOptimizationTest extends TestCase {
+
+  // our function is f(x,y) = x^2+y^2
+  private static final CostFunction PARABOLOID = new CostFunction() {
+    @Override
+    public Tuple<Double, DoubleVector> evaluateCost(DoubleVector input) {
+      double cost = Math.pow(input.get(0), 2) + Math.pow(input.get(1), 2);
+      return new Tuple<>(cost, null);
+    }
+  };
+
+  @Test
+  public void testParticleSwarmOptimization() {
+    DoubleVector start = new DenseDoubleVector(new double[] { 22, 15 });
+    DoubleVector minimizeFunction;
+    try (AsynchronousParticleSwarmOptimization minimizer = new AsynchronousParticleSwarmOptimization(
+        1000, 0.1, 0.2, 0.4, 8)) {
+      minimizeFunction = minimizer.minimize(PARABOLOID, start, 100, false);
+    }
+    // 1E-5 is close enough to zero for the test to pass
+    assertEquals(0, DoubleMath.fuzzyCompare(minimizeFunction.get(0), 0, 1E-5));
+    assertEquals(0, DoubleMath.fuzzyCompare(minimizeFunction.get(1), 0, 1E-5));
+    // the start isn't altered
+    assertEquals(22d, start.get(0));
+  }
+
+  @Test
+  public void testEveryParticleIsMoved() {
+    final AtomicLong evaluations = new AtomicLong();
+    CostFunction counting = new CostFunction() {
+      @Override
+      public Tuple<Double, DoubleVector> evaluateCost(DoubleVector input) {
+        evaluations.incrementAndGet();
+        return PARABOLOID.evaluateCost(input);
+      }
+    };
+    final long[] totalEvaluations = new long[1];
+    final int numParticles = 101;
+    final int maxIterations = 20;
+    try (AsynchronousParticleSwarmOptimization minimizer = new AsynchronousParticleSwarmOptimization(
+        numParticles, 0.1, 0.2, 0.4, 4)) {
+      minimizer.setIterationListener(new IterationListener() {
+        @Override
+        public boolean onIterationFinished(IterationStatistics statistics) {
+          totalEvaluations[0] = statistics.getTotalEvaluations();
+          return true;
+        }
+      });
+      minimizer.minimize(counting, new DenseDoubleVector(new double[] { 22,
+          15 }), maxIterations, false);
+    }
+    // the start, the spread of every particle and a move of every particle in
+    // every iteration
+    long expected = 1 + numParticles + (long) numParticles * maxIterations;
+    assertEquals(expected, evaluations.get());
+    assertEquals(expected, totalEvaluations[0]);
+  }
+
+  @Test
+  public void testSharedPoolAndEarlyStopping() {
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    try {
+      // more partitions than threads must not block
+      AsynchronousParticleSwarmOptimization minimizer = new AsynchronousParticleSwarmOptimization(
+          100, 0.1, 0.2, 0.4, pool, 4);
+      final int[] iterations = new int[1];
+      minimizer.setIterationListener(new IterationListener() {
+        @Override
+        public boolean onIterationFinished(IterationStatistics statistics) {
+          iterations[0]++;
+          return statistics.getIteration() < 4;
+        }
+      });
+      DoubleVector first = minimizer.minimize(PARABOLOID,
+          new DenseDoubleVector(new double[] { 22, 15 }), 1000, false);
+      assertEquals(5, iterations[0]);
+      assertTrue(PARABOLOID.evaluateCost(first).getFirst() < 22 * 22 + 15 * 15);
+
+      // the pool is reused for the next minimization
+      minimizer.setIterationListener(null);
+      DoubleVector second = minimizer.minimize(PARABOLOID,
+          new DenseDoubleVector(new double[] { 22, 15 }), 100, false);
+      assertEquals(0, DoubleMath.fuzzyCompare(second.get(0), 0, 1E-5));
+      assertFalse(pool.isShutdown());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+}
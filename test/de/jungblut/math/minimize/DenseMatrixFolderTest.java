@@ -29,4 +29,28 @@ public class DenseMatrixFolderTest extends TestCase {
     assertEquals(0.0d, unfoldMatrices[1].subtract(mat2).sum());
 
   }
+
+  @Test
+  public void testUnfoldViews() {
+    DenseDoubleVector fold = new DenseDoubleVector(new double[] { 1.0, 4.0,
+        2.0, 5.0, 3.0, 6.0, 7.0, 10.0, 8.0, 11.0, 9.0, 12.0 });
+    MatrixView[] views = DenseMatrixFolder.unfoldViews(fold, new int[][] {
+        { 2, 3 }, { 3, 2 } });
+
+    assertEquals(2, views[0].getRowCount());
+    assertEquals(3, views[0].getColumnCount());
+    assertEquals(6.0, views[0].get(1, 2));
+    assertEquals(6, views[1].getOffset());
+    assertEquals(7.0, views[1].get(0, 0));
+    assertEquals(11.0, views[1].get(0, 1));
+
+    // views write through to the folded vector
+    views[1].set(2, 1, 42d);
+    assertEquals(42d, fold.get(11));
+
+    ParameterVector params = ParameterVector.copyOf(views[0].toDenseMatrix(),
+        views[1].toDenseMatrix());
+    assertEquals(0.0d, params.asVector().subtract(fold).sum());
+  }
+
 }
@@ -35,4 +35,57 @@ public class FmincgTest extends TestCase {
     assertEquals(4.0d, minimizeFunction.get(0));
   }
 
+  @Test
+  public void testInPlaceCostFunction() {
+    DoubleVector start = new DenseDoubleVector(new double[] { -1.2, 1 });
+
+    final InPlaceCostFunction inPlace = new Rosenbrock();
+    CostFunction allocating = new CostFunction() {
+      @Override
+      public Tuple<Double, DoubleVector> evaluateCost(DoubleVector input) {
+        return inPlace.evaluateCost(input);
+      }
+    };
+
+    DoubleVector inPlaceResult = Fmincg.minimizeFunction(inPlace, start, 100,
+        false);
+    DoubleVector result = Fmincg.minimizeFunction(allocating, start, 100,
+        false);
+    // both paths compute exactly the same steps
+    assertEquals(result.get(0), inPlaceResult.get(0));
+    assertEquals(result.get(1), inPlaceResult.get(1));
+    assertEquals(1d, result.get(0), 1e-4);
+    assertEquals(1d, result.get(1), 1e-4);
+    // the start point isn't altered
+    assertEquals(-1.2d, start.get(0));
+  }
+
+  @Test
+  public void testSameStepsAsAllocatingImplementation() {
+    DoubleVector start = new DenseDoubleVector(new double[] { -1.2, 1 });
+    final InPlaceCostFunction inPlace = new Rosenbrock();
+    CostFunction allocating = new CostFunction() {
+      @Override
+      public Tuple<Double, DoubleVector> evaluateCost(DoubleVector input) {
+        return inPlace.evaluateCost(input);
+      }
+    };
+
+    // position and cost after 10 and 20 iterations of the implementation
+    // that allocated new vectors for every step
+    double[][] expected = new double[][] {
+        { -0.01771464312270964, -0.007984153252967816, 1.0426287118861244 },
+        { 0.7821326841960193, 0.6192092884632674, 0.053057845952926695 } };
+    int[] iterations = new int[] { 10, 20 };
+    for (int i = 0; i < iterations.length; i++) {
+      for (CostFunction f : new CostFunction[] { inPlace, allocating }) {
+        DoubleVector result = Fmincg.minimizeFunction(f, start, iterations[i],
+            false);
+        assertEquals(expected[i][0], result.get(0), 1e-12);
+        assertEquals(expected[i][1], result.get(1), 1e-12);
+        assertEquals(expected[i][2], f.evaluateCost(result).getFirst(), 1e-12);
+      }
+    }
+  }
+
 }
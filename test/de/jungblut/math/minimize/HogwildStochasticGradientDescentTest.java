@@ -0,0 +1,72 @@
+package de.jungblut.math.minimize;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.classification.regression.StochasticLogisticRegressionCostFunction;
+import de.jungblut.datastructure.CollectionInputProvider;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.sparse.SparseDoubleVector;
+import de.jungblut.math.tuple.Tuple;
+
+public class HogwildStochasticGradientDescentTest extends TestCase {
+
+  private static final int DIMENSION = 1000;
+
+  @Test
+  public void testSparseLogisticRegression() {
+    // every example has a few active features, the even ones indicate the
+    // positive class and the odd ones the negative class
+    Random rnd = new Random(0);
+    ArrayList<Tuple<DoubleVector, DenseDoubleVector>> data = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      int clazz = rnd.nextInt(2);
+      SparseDoubleVector x = new SparseDoubleVector(DIMENSION);
+      for (int k = 0; k < 5; k++) {
+        x.set(rnd.nextInt(DIMENSION / 2) * 2 + (1 - clazz), 1d);
+      }
+      data.add(new Tuple<DoubleVector, DenseDoubleVector>(x,
+          new DenseDoubleVector(new double[] { clazz })));
+    }
+
+    DoubleVector theta = new HogwildStochasticGradientDescent(
+        new CollectionInputProvider<>(data), 4, 0.5, 1e-6).minimize(
+        new StochasticLogisticRegressionCostFunction(), new DenseDoubleVector(
+            DIMENSION + 1), 20, false);
+
+    int correct = 0;
+    for (Tuple<DoubleVector, DenseDoubleVector> example : data) {
+      double z = theta.get(0);
+      for (int i = 0; i < DIMENSION; i++) {
+        z += theta.get(i + 1) * example.getFirst().get(i);
+      }
+      if ((z > 0 ? 1d : 0d) == example.getSecond().get(0)) {
+        correct++;
+      }
+    }
+    assertTrue("only " + correct + " correct", correct > data.size() * 0.95);
+  }
+
+  @Test
+  public void testSparseUpdate() {
+    double[] theta = new double[] { 1, 1, 1, 1 };
+    SparseDoubleVector gradient = new SparseDoubleVector(4);
+    gradient.set(2, 4d);
+    HogwildStochasticGradientDescent.update(theta, gradient, 0.5);
+    assertEquals(1d, theta[0]);
+    assertEquals(1d, theta[1]);
+    assertEquals(-1d, theta[2]);
+    assertEquals(1d, theta[3]);
+
+    HogwildStochasticGradientDescent.update(theta, new DenseDoubleVector(
+        new double[] { 2, 2, 2, 2 }), 0.5);
+    assertEquals(0d, theta[0]);
+    assertEquals(-2d, theta[2]);
+  }
+
+}
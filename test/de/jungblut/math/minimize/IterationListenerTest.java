@@ -0,0 +1,77 @@
+package de.jungblut.math.minimize;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.tuple.Tuple;
+
+public class IterationListenerTest extends TestCase {
+
+  // f(x,y) = x^2+y^2
+  private static final CostFunction PARABOLOID = new CostFunction() {
+    @Override
+    public Tuple<Double, DoubleVector> evaluateCost(DoubleVector input) {
+      double cost = Math.pow(input.get(0), 2) + Math.pow(input.get(1), 2);
+      DenseDoubleVector gradient = new DenseDoubleVector(new double[] {
+          input.get(0) * 2, input.get(1) * 2 });
+      return new Tuple<Double, DoubleVector>(cost, gradient);
+    }
+  };
+
+  @Test
+  public void testEarlyStopping() {
+    final List<Double> costs = new ArrayList<>();
+    GradientDescent minimizer = new GradientDescent(0.1d, 0d);
+    minimizer.setIterationListener(new IterationListener() {
+      @Override
+      public boolean onIterationFinished(IterationStatistics statistics) {
+        assertEquals(costs.size(), statistics.getIteration());
+        assertEquals(1, statistics.getEvaluations());
+        assertEquals(costs.size() + 1, statistics.getTotalEvaluations());
+        assertEquals(2d * Math.sqrt(statistics.getCost()),
+            statistics.getGradientNorm(), 1e-10);
+        assertTrue(statistics.getIterationNanos() >= statistics
+            .getEvaluationNanos());
+        costs.add(statistics.getCost());
+        return costs.size() < 5;
+      }
+    });
+
+    minimizer.minimize(PARABOLOID, new DenseDoubleVector(
+        new double[] { 2, -1 }), 1000, false);
+    assertEquals(5, costs.size());
+    assertEquals(5d, costs.get(0));
+    for (int i = 1; i < costs.size(); i++) {
+      assertTrue(costs.get(i) < costs.get(i - 1));
+    }
+  }
+
+  @Test
+  public void testLineSearchEvaluations() {
+    final long[] evaluations = new long[2];
+    Fmincg minimizer = new Fmincg();
+    minimizer.setIterationListener(new IterationListener() {
+      @Override
+      public boolean onIterationFinished(IterationStatistics statistics) {
+        evaluations[0] += statistics.getEvaluations();
+        evaluations[1] = statistics.getTotalEvaluations();
+        // the first line search includes the evaluation at the start
+        assertTrue(statistics.getEvaluations() > 0);
+        return true;
+      }
+    });
+
+    DoubleVector result = minimizer.minimize(PARABOLOID,
+        new DenseDoubleVector(new double[] { 2, -1 }), 10, false);
+    assertEquals(0d, result.get(0), 1e-5);
+    assertEquals(evaluations[0], evaluations[1]);
+    assertTrue(evaluations[1] > 1);
+  }
+
+}
@@ -0,0 +1,69 @@
+package de.jungblut.math.minimize;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.tuple.Tuple;
+
+public class LBFGSTest extends TestCase {
+
+  @Test
+  public void testSimpleParable() {
+    DoubleVector start = new DenseDoubleVector(new double[] { -5 });
+
+    // our function is f(x) = (4-x)^2+10
+    // the derivative is f'(x) = 2x-8
+    CostFunction inlineFunction = new CostFunction() {
+      @Override
+      public Tuple<Double, DoubleVector> evaluateCost(DoubleVector input) {
+
+        double cost = Math.pow(4 - input.get(0), 2) + 10;
+        DenseDoubleVector gradient = new DenseDoubleVector(
+            new double[] { 2 * input.get(0) - 8 });
+
+        return new Tuple<Double, DoubleVector>(cost, gradient);
+      }
+    };
+
+    DoubleVector minimizeFunction = new LBFGS().minimize(inlineFunction,
+        start, 100, false);
+    assertEquals(4.0d, minimizeFunction.get(0), 1e-6);
+    // the start point isn't altered
+    assertEquals(-5d, start.get(0));
+  }
+
+  @Test
+  public void testRosenbrock() {
+    DoubleVector start = new DenseDoubleVector(new double[] { -1.2, 1 });
+
+    DoubleVector minimizeFunction = LBFGS.minimizeFunction(new Rosenbrock(),
+        start, 5, 200, false);
+    assertEquals(1.0d, minimizeFunction.get(0), 1e-4);
+    assertEquals(1.0d, minimizeFunction.get(1), 1e-4);
+  }
+
+  @Test
+  public void testLongExtrapolation() {
+    DoubleVector start = new DenseDoubleVector(new double[] { 0 });
+
+    // f(x) = 1e-12 / 2 * (x - 1e12)^2 is almost linear with a slope of -1
+    // around the start, the line search needs far more than 20 doublings to
+    // reach the curvature condition
+    CostFunction steep = new CostFunction() {
+      @Override
+      public Tuple<Double, DoubleVector> evaluateCost(DoubleVector input) {
+        double diff = input.get(0) - 1e12;
+        return new Tuple<Double, DoubleVector>(0.5e-12 * diff * diff,
+            new DenseDoubleVector(new double[] { 1e-12 * diff }));
+      }
+    };
+
+    DoubleVector minimizeFunction = new LBFGS().minimize(steep, start, 100,
+        false);
+    assertEquals(1e12, minimizeFunction.get(0), 1e6);
+  }
+
+}
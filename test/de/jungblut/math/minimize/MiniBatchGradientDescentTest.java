@@ -0,0 +1,90 @@
+package de.jungblut.math.minimize;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.datastructure.CollectionInputProvider;
+import de.jungblut.datastructure.InputProvider;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.minimize.MiniBatchGradientDescent.MiniBatchGradientDescentConfiguration;
+import de.jungblut.math.tuple.Tuple;
+
+public class MiniBatchGradientDescentTest extends TestCase {
+
+  // squared error of a linear model on a single example
+  private static final StochasticCostFunction LINEAR_REGRESSION = new StochasticCostFunction() {
+    @Override
+    public Tuple<Double, DoubleVector> evaluateCost(DoubleVector input,
+        DoubleVector x, DenseDoubleVector y) {
+      double diff = x.dot(input) - y.get(0);
+      return new Tuple<>(diff * diff, x.multiply(2d * diff));
+    }
+  };
+
+  @Test
+  public void testMomentum() {
+    DoubleVector theta = MiniBatchGradientDescentConfiguration
+        .newConfiguration(sampleLinear(), 16, 0.01).momentum(0.9).build()
+        .minimize(LINEAR_REGRESSION, new DenseDoubleVector(2), 200, false);
+    assertEquals(2d, theta.get(0), 1e-3);
+    assertEquals(-3d, theta.get(1), 1e-3);
+  }
+
+  @Test
+  public void testAdaptiveLearningRate() {
+    DoubleVector theta = MiniBatchGradientDescentConfiguration
+        .newConfiguration(sampleLinear(), 10, 0.5).adaptiveLearningRate()
+        .prefetchBatches(1).build()
+        .minimize(LINEAR_REGRESSION, new DenseDoubleVector(2), 500, false);
+    assertEquals(2d, theta.get(0), 1e-3);
+    assertEquals(-3d, theta.get(1), 1e-3);
+  }
+
+  @Test
+  public void testInputIsNotAltered() {
+    DenseDoubleVector start = new DenseDoubleVector(new double[] { 1, 1 });
+    MiniBatchGradientDescentConfiguration
+        .newConfiguration(sampleLinear(), 7, 0.01).build()
+        .minimize(LINEAR_REGRESSION, start, 5, false);
+    assertEquals(1d, start.get(0));
+    assertEquals(1d, start.get(1));
+  }
+
+  @Test
+  public void testProviderFailure() {
+    InputProvider<Tuple<DoubleVector, DenseDoubleVector>> failing = new InputProvider<Tuple<DoubleVector, DenseDoubleVector>>() {
+      @Override
+      public Iterable<Tuple<DoubleVector, DenseDoubleVector>> iterate() {
+        throw new IllegalStateException("broken input");
+      }
+    };
+    try {
+      MiniBatchGradientDescentConfiguration.newConfiguration(failing, 4, 0.1)
+          .build()
+          .minimize(LINEAR_REGRESSION, new DenseDoubleVector(2), 5, false);
+      fail("the failure of the provider must be propagated");
+    } catch (RuntimeException e) {
+      assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+  }
+
+  // y = 2 * x0 - 3 * x1
+  private static InputProvider<Tuple<DoubleVector, DenseDoubleVector>> sampleLinear() {
+    Random rnd = new Random(0);
+    ArrayList<Tuple<DoubleVector, DenseDoubleVector>> data = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      double x0 = rnd.nextDouble() * 2 - 1;
+      double x1 = rnd.nextDouble() * 2 - 1;
+      data.add(new Tuple<DoubleVector, DenseDoubleVector>(
+          new DenseDoubleVector(new double[] { x0, x1 }),
+          new DenseDoubleVector(new double[] { 2 * x0 - 3 * x1 })));
+    }
+    return new CollectionInputProvider<>(data);
+  }
+
+}
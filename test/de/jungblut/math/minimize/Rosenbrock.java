@@ -0,0 +1,30 @@
+package de.jungblut.math.minimize;
+
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.tuple.Tuple;
+
+/**
+ * The rosenbrock function f(x,y) = (1-x)^2 + 100 * (y-x^2)^2 with its minimum
+ * at (1,1), the gradient is written in place.
+ */
+final class Rosenbrock implements InPlaceCostFunction {
+
+  @Override
+  public double evaluateCost(DoubleVector input, double[] gradient) {
+    double x = input.get(0);
+    double y = input.get(1);
+    gradient[0] = -2 * (1 - x) - 400 * x * (y - x * x);
+    gradient[1] = 200 * (y - x * x);
+    return Math.pow(1 - x, 2) + 100 * Math.pow(y - x * x, 2);
+  }
+
+  @Override
+  public Tuple<Double, DoubleVector> evaluateCost(DoubleVector input) {
+    double[] gradient = new double[input.getDimension()];
+    double cost = evaluateCost(input, gradient);
+    return new Tuple<Double, DoubleVector>(cost, new DenseDoubleVector(
+        gradient));
+  }
+
+}
@@ -1,5 +1,6 @@
 package de.jungblut.ner;
 
+import java.io.File;
 import java.nio.charset.Charset;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
@@ -104,4 +105,78 @@ public class NamedEntityRecognitionTest extends TestCase {
     assertEquals(0, names.size());
 
   }
+
+  @Test
+  public void testMappedSerialization() throws Exception {
+    List<String> lines = Files.readAllLines(FileSystems.getDefault()
+        .getPath("files/ner/dev"), Charset.defaultCharset());
+    List<String> words = new ArrayList<>();
+    List<Integer> labels = new ArrayList<>();
+    // a small part is enough to compare the models
+    for (String line : lines.subList(0, 5000)) {
+      String[] split = line.trim().split("\\s+");
+      if (!line.isEmpty() && split.length == 2) {
+        words.add(split[0]);
+        labels.add(split[1].equals("O") ? 0 : 1);
+      }
+    }
+    SparseFeatureExtractorHelper fact = new SparseFeatureExtractorHelper(words,
+        labels, new BasicFeatureExtractor());
+    Tuple<DoubleVector[], DenseDoubleVector[]> vectorize = fact.vectorize();
+    MaxEntMarkovModel model = new MaxEntMarkovModel(new Fmincg(), 20, false);
+    model.train(vectorize.getFirst(), vectorize.getSecond());
+
+    File tmp = File.createTempFile("memm", ".tmp");
+    tmp.deleteOnExit();
+    MaxEntMarkovModel.serializeMapped(model, tmp);
+    MaxEntMarkovModel mapped = MaxEntMarkovModel.deserializeMapped(tmp);
+
+    SparseDoubleRowMatrix features = new SparseDoubleRowMatrix(
+        vectorize.getFirst());
+    SparseDoubleRowMatrix featuresPerState = new SparseDoubleRowMatrix(
+        fact.vectorizeEachLabel(words));
+    DoubleMatrix expected = model.predict(features, featuresPerState);
+    DoubleMatrix actual = mapped.predict(features, featuresPerState);
+    assertEquals(expected.getRowCount(), actual.getRowCount());
+    for (int i = 0; i < expected.getRowCount(); i++) {
+      assertEquals(expected.get(i, 0), actual.get(i, 0));
+    }
+  }
+
+  @Test
+  public void testHogwildTraining() throws Exception {
+    List<String> lines = Files.readAllLines(FileSystems.getDefault()
+        .getPath("files/ner/dev"), Charset.defaultCharset());
+    List<String> words = new ArrayList<>();
+    List<Integer> labels = new ArrayList<>();
+    for (String line : lines.subList(0, 5000)) {
+      String[] split = line.trim().split("\\s+");
+      if (!line.isEmpty() && split.length == 2) {
+        words.add(split[0]);
+        labels.add(split[1].equals("O") ? 0 : 1);
+      }
+    }
+    SparseFeatureExtractorHelper fact = new SparseFeatureExtractorHelper(words,
+        labels, new BasicFeatureExtractor());
+    Tuple<DoubleVector[], DenseDoubleVector[]> vectorize = fact.vectorize();
+    MaxEntMarkovModel model = new MaxEntMarkovModel(4, 0.5d, 10, false);
+    model.train(vectorize.getFirst(), vectorize.getSecond());
+
+    DoubleMatrix predict = model.predict(new SparseDoubleRowMatrix(
+        vectorize.getFirst()), new SparseDoubleRowMatrix(
+        fact.vectorizeEachLabel(words)));
+    int correct = 0;
+    int positives = 0;
+    for (int i = 0; i < predict.getRowCount(); i++) {
+      int predictedClass = (int) predict.get(i, 0);
+      if (predictedClass == labels.get(i)) {
+        correct++;
+      }
+      positives += predictedClass;
+    }
+    // most words are no names, so also check that some names are found
+    assertTrue("only " + correct + " correct",
+        correct > predict.getRowCount() * 0.95);
+    assertTrue(positives > 0);
+  }
 }
@@ -0,0 +1,184 @@
+package de.jungblut.nlp.mr;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mrunit.mapreduce.MapDriver;
+import org.apache.hadoop.mrunit.mapreduce.MapReduceDriver;
+import org.apache.hadoop.mrunit.types.Pair;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.HashMultiset;
+
+import de.jungblut.classification.bayes.MultinomialNaiveBayesClassifier;
+import de.jungblut.math.DoubleVector;
+import de.jungblut.math.dense.DenseDoubleVector;
+import de.jungblut.math.sparse.SparseDoubleVector;
+import de.jungblut.nlp.StandardTokenizer;
+import de.jungblut.nlp.mr.NaiveBayesTrainingJob.CountMapper;
+import de.jungblut.nlp.mr.NaiveBayesTrainingJob.ModelReducer;
+
+public class NaiveBayesTrainingJobTest extends TestCase {
+
+  static final String[] DOCUMENTS = new String[] {
+      "sports\tthe team won the game in the last minute",
+      "sports\tthe coach of the team praised the players",
+      "politics\tthe minister won the vote in the parliament",
+      "politics\tthe parliament debated the new law",
+      "sports\tplayers and coach celebrated the game",
+      "weather\train and wind in the north, sun in the south" };
+
+  MapDriver<LongWritable, Text, Text, TextIntIntIntWritable> mapDriver;
+  MapReduceDriver<LongWritable, Text, Text, TextIntIntIntWritable, Text, IntWritable> mapReduceDriver;
+
+  @Override
+  @Before
+  public void setUp() {
+    CountMapper mapper = new CountMapper();
+    ModelReducer reducer = new ModelReducer();
+    mapDriver = MapDriver.newMapDriver(mapper);
+    mapReduceDriver = MapReduceDriver.newMapReduceDriver(mapper, reducer);
+  }
+
+  @Test
+  public void testMapperCombinesCounts() throws Exception {
+    mapDriver.withInput(new LongWritable(), new Text("a\tfoo foo bar"));
+    mapDriver.withInput(new LongWritable(), new Text("a\tfoo baz"));
+    mapDriver.withInput(new LongWritable(), new Text("b\tbar"));
+    mapDriver.withInput(new LongWritable(), new Text("no label"));
+
+    Set<String> expected = new HashSet<>(Arrays.asList(
+        pair(NaiveBayesTrainingJob.DOCUMENTS_KEY.toString(), "a", 0, 0, 2),
+        pair(NaiveBayesTrainingJob.DOCUMENTS_KEY.toString(), "b", 0, 0, 1),
+        pair("foo", "a", 2, 3, 0), pair("bar", "a", 1, 1, 0),
+        pair("baz", "a", 1, 1, 0), pair("bar", "b", 1, 1, 0)));
+
+    List<Pair<Text, TextIntIntIntWritable>> output = mapDriver.run();
+    assertEquals(expected.size(), output.size());
+    assertEquals(expected, toStrings(output));
+  }
+
+  @Test
+  public void testMapperFlushesPartialCounts() throws Exception {
+    mapDriver.getConfiguration().setInt(
+        NaiveBayesTrainingJob.MAX_COMBINER_ENTRIES_KEY, 1);
+    mapDriver.withInput(new LongWritable(), new Text("a\tfoo"));
+    mapDriver.withInput(new LongWritable(), new Text("a\tfoo"));
+
+    // every document is written on its own
+    List<Pair<Text, TextIntIntIntWritable>> output = mapDriver.run();
+    assertEquals(4, output.size());
+    for (Pair<Text, TextIntIntIntWritable> pair : output) {
+      if (pair.getFirst().equals(NaiveBayesTrainingJob.DOCUMENTS_KEY)) {
+        assertEquals(1, pair.getSecond().getFourth().get());
+      } else {
+        assertEquals("foo", pair.getFirst().toString());
+        assertEquals(1, pair.getSecond().getSecond().get());
+        assertEquals(1, pair.getSecond().getThird().get());
+      }
+    }
+  }
+
+  @Test
+  public void testTrainingJob() throws Exception {
+    File dir = Files.createTempDirectory("naivebayes").toFile();
+    File modelFile = new File(dir, "model.bin");
+    File classesFile = new File(dir, "classes.txt");
+    mapReduceDriver.getConfiguration().set(
+        NaiveBayesTrainingJob.MODEL_OUT_PATH_KEY, modelFile.getAbsolutePath());
+    mapReduceDriver.getConfiguration().set(
+        NaiveBayesTrainingJob.CLASSES_OUT_PATH_KEY,
+        classesFile.getAbsolutePath());
+    // force the mapper to write partial counts
+    mapReduceDriver.getConfiguration().setInt(
+        NaiveBayesTrainingJob.MAX_COMBINER_ENTRIES_KEY, 5);
+    for (String document : DOCUMENTS) {
+      mapReduceDriver.withInput(new LongWritable(), new Text(document));
+    }
+
+    Map<String, Integer> dictionary = new HashMap<>();
+    for (Pair<Text, IntWritable> pair : mapReduceDriver.run()) {
+      dictionary.put(pair.getFirst().toString(), pair.getSecond().get());
+    }
+    assertFalse(dictionary.isEmpty());
+    assertEquals(dictionary.size(), new HashSet<>(dictionary.values()).size());
+
+    // the classes are indexed in sorted order
+    Map<String, Integer> classes = new HashMap<>();
+    for (String line : Files.readAllLines(classesFile.toPath(),
+        Charset.defaultCharset())) {
+      String[] split = line.split("\t");
+      classes.put(split[1], Integer.parseInt(split[0]));
+    }
+    assertEquals(3, classes.size());
+    assertEquals(0, classes.get("politics").intValue());
+    assertEquals(1, classes.get("sports").intValue());
+    assertEquals(2, classes.get("weather").intValue());
+
+    // the same documents trained in memory must give the same model
+    DoubleVector[] features = new DoubleVector[DOCUMENTS.length];
+    DenseDoubleVector[] outcome = new DenseDoubleVector[DOCUMENTS.length];
+    for (int i = 0; i < DOCUMENTS.length; i++) {
+      String[] split = DOCUMENTS[i].split("\t");
+      features[i] = vectorize(split[1], dictionary);
+      outcome[i] = new DenseDoubleVector(classes.size());
+      outcome[i].set(classes.get(split[0]), 1d);
+    }
+    MultinomialNaiveBayesClassifier expected = new MultinomialNaiveBayesClassifier(
+        true);
+    expected.train(features, outcome);
+
+    MultinomialNaiveBayesClassifier model = MultinomialNaiveBayesClassifier
+        .deserializeMapped(modelFile);
+    for (int i = 0; i < DOCUMENTS.length; i++) {
+      DoubleVector expectedDistribution = expected.predict(features[i]);
+      DoubleVector distribution = model.predict(features[i]);
+      for (int c = 0; c < classes.size(); c++) {
+        assertEquals(expectedDistribution.get(c), distribution.get(c), 1e-6);
+      }
+    }
+  }
+
+  static DoubleVector vectorize(String document,
+      Map<String, Integer> dictionary) {
+    HashMultiset<String> set = HashMultiset.create(Arrays
+        .asList(new StandardTokenizer().tokenize(document)));
+    DoubleVector vector = new SparseDoubleVector(dictionary.size());
+    for (String token : set.elementSet()) {
+      Integer index = dictionary.get(token);
+      if (index != null) {
+        vector.set(index, set.count(token));
+      }
+    }
+    return vector;
+  }
+
+  static String pair(String token, String label, int df, int tf, int docs) {
+    return token + "=" + label + "," + df + "," + tf + "," + docs;
+  }
+
+  static Set<String> toStrings(List<Pair<Text, TextIntIntIntWritable>> output) {
+    Set<String> set = new HashSet<>();
+    for (Pair<Text, TextIntIntIntWritable> pair : output) {
+      TextIntIntIntWritable value = pair.getSecond();
+      set.add(pair(pair.getFirst().toString(), value.getFirst().toString(),
+          value.getSecond().get(), value.getThird().get(), value.getFourth()
+              .get()));
+    }
+    return set;
+  }
+
+}
@@ -0,0 +1,63 @@
+package de.jungblut.writable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import de.jungblut.math.dense.DenseDoubleMatrix;
+import de.jungblut.math.dense.DenseDoubleVector;
+
+public class MappedModelFileTest extends TestCase {
+
+  @Test
+  public void testSerDe() throws Exception {
+    DenseDoubleMatrix mat = new DenseDoubleMatrix(new double[][] { { 1, 2, 3 },
+        { 4, 5, 6 } });
+    File tmp = File.createTempFile("mappedmodel", ".tmp");
+    tmp.deleteOnExit();
+    MappedModelFile.newWriter(MappedModelFileTest.class)
+        .putMatrix("matrix", mat)
+        .putVector("vector", new DenseDoubleVector(new double[] { 7, 8 }))
+        .putInts("ints", new int[] { 1, 2, 3 }).putInt("int", 42)
+        .putString("string", "\u00e4\u00f6\u00fc").write(tmp);
+
+    // every section starts on its own page
+    assertEquals(0, tmp.length() % MappedModelFile.PAGE_SIZE);
+    assertEquals(7 * MappedModelFile.PAGE_SIZE, tmp.length());
+
+    MappedModelFile in = MappedModelFile.open(tmp, MappedModelFileTest.class);
+    assertEquals(0.0d, mat.subtract(in.getMatrix("matrix")).sum());
+    // the view is column major
+    DoubleBuffer doubles = in.getDoubles("matrix");
+    assertEquals(6, doubles.remaining());
+    assertEquals(4d, doubles.get(1));
+    assertEquals(2d, doubles.get(2));
+    DenseDoubleVector vector = in.getVector("vector");
+    assertEquals(2, vector.getDimension());
+    assertEquals(8d, vector.get(1));
+    assertEquals(3, in.getInts("ints").length);
+    assertEquals(3, in.getInts("ints")[2]);
+    assertEquals(42, in.getInt("int"));
+    assertEquals("\u00e4\u00f6\u00fc", in.getString("string"));
+    assertFalse(in.contains("missing"));
+  }
+
+  @Test
+  public void testWrongModel() throws Exception {
+    File tmp = File.createTempFile("mappedmodel", ".tmp");
+    tmp.deleteOnExit();
+    MappedModelFile.newWriter(MappedModelFileTest.class).putInt("int", 1)
+        .write(tmp);
+    try {
+      MappedModelFile.open(tmp, MatrixWritable.class);
+      fail("Opened a file of a different model.");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+}